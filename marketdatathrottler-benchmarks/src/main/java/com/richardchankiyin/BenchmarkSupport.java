@@ -0,0 +1,56 @@
+package com.richardchankiyin;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Common set up of processors under benchmark
+ */
+public final class BenchmarkSupport {
+
+	// keep a strong reference so that the level is not lost
+	private static final Logger logger = Logger.getLogger("com.richardchankiyin");
+
+	/** effectively no rate limit so that publishing keeps up with the feed */
+	public static final int UNTHROTTLED_PERMITS = 1000000;
+
+	private BenchmarkSupport() {
+	}
+
+	/**
+	 * Silence per message INFO logging which would dominate the measurement
+	 */
+	public static void quietLogging() {
+		logger.setLevel(Level.WARNING);
+	}
+
+	public static List<String> symbols(int noOfSymbols) {
+		List<String> symbols = new ArrayList<>(noOfSymbols);
+		for (int i = 0; i < noOfSymbols; i++) {
+			symbols.add("SYM" + i);
+		}
+		return symbols;
+	}
+
+	/**
+	 * Create a processor with symbols loaded and receiver registered
+	 * @param noOfSymbols
+	 * @param receiver
+	 * @param throttled false to use an effectively unlimited rate limiter
+	 * and no min interval between publishes of a symbol
+	 * @return
+	 */
+	public static MarketDataProcessorImpl newProcessor(int noOfSymbols, Receiver receiver, boolean throttled) {
+		quietLogging();
+		MarketDataProcessorImpl processor = new MarketDataProcessorImpl();
+		processor.loadSymbols(symbols(noOfSymbols));
+		processor.registerReceiver(receiver);
+		if (!throttled) {
+			processor.setRateLimiter(new TokenBucketRateLimiter(UNTHROTTLED_PERMITS, 1000));
+			processor.setMinPublishIntervalMillis(0);
+		}
+		return processor;
+	}
+}
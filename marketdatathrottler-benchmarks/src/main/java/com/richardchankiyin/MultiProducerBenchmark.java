@@ -0,0 +1,88 @@
+package com.richardchankiyin;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * onMessage of a processor in multi producer mode called by 1 to 8 feed
+ * handler threads, each a venue of a consolidated feed. Venues share the
+ * same clock so their ticks of a symbol race, and the older one of a
+ * race is rejected as stale without an exception
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MultiProducerBenchmark {
+
+	@Param({"16", "10000"})
+	public int noOfSymbols;
+
+	private MarketDataProcessorImpl processor;
+
+	@State(Scope.Thread)
+	public static class Venue {
+		private ZipfFeedGenerator feed;
+
+		@Setup(Level.Trial)
+		public void setup(MultiProducerBenchmark benchmark) {
+			feed = new ZipfFeedGenerator(benchmark.noOfSymbols, 1.0, System.identityHashCode(this));
+		}
+	}
+
+	@Setup(Level.Trial)
+	public void setup() {
+		processor = BenchmarkSupport.newProcessor(noOfSymbols, d -> {}, false);
+		processor.setMultiProducer(true);
+		processor.start();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		processor.stop();
+	}
+
+	private void onMessage(Venue venue) {
+		processor.onMessage(venue.feed.nextSymbolId(), venue.feed.currentPrice(), System.nanoTime());
+	}
+
+	@Benchmark
+	@Threads(1)
+	public void producers1(Venue venue) {
+		onMessage(venue);
+	}
+
+	@Benchmark
+	@Threads(2)
+	public void producers2(Venue venue) {
+		onMessage(venue);
+	}
+
+	@Benchmark
+	@Threads(4)
+	public void producers4(Venue venue) {
+		onMessage(venue);
+	}
+
+	@Benchmark
+	@Threads(8)
+	public void producers8(Venue venue) {
+		onMessage(venue);
+	}
+}
@@ -0,0 +1,39 @@
+package com.richardchankiyin;
+
+/**
+ * Reusable market data for feeding onMessage(MarketData) without
+ * allocation in benchmarks
+ */
+public class MutableMarketData implements MarketData {
+
+	private String symbol;
+	private double price;
+	private long updateTime;
+
+	public MutableMarketData set(String symbol, double price, long updateTime) {
+		this.symbol = symbol;
+		this.price = price;
+		this.updateTime = updateTime;
+		return this;
+	}
+
+	@Override
+	public String getSymbol() {
+		return symbol;
+	}
+
+	@Override
+	public double getPrice() {
+		return price;
+	}
+
+	@Override
+	public long getUpdateTime() {
+		return updateTime;
+	}
+
+	@Override
+	public long getPublishTime() {
+		return MarketDataImpl.PUBLISH_TIME_NO_PUB;
+	}
+}
@@ -0,0 +1,100 @@
+package com.richardchankiyin;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Single threaded onMessage throughput across symbol universe sizes with
+ * Zipf skewed symbol activity. Run with -prof gc to get the allocation
+ * rate per message. The ratio of published to received messages printed
+ * after each iteration shows the conflation efficiency. onMessagesByPacket
+ * is measured per update for comparison with the single update calls
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class OnMessageBenchmark {
+
+	private static final int PACKET_SIZE = 32;
+
+	@Param({"100", "10000", "1000000"})
+	public int noOfSymbols;
+
+	@Param({"1.0"})
+	public double zipfExponent;
+
+	@Param({"true"})
+	public boolean throttled;
+
+	private MarketDataProcessorImpl processor;
+	private ZipfFeedGenerator feed;
+	private String[] symbols;
+	private final MutableMarketData data = new MutableMarketData();
+	private final MarketDataPacket packet = new MarketDataPacket(PACKET_SIZE);
+	private final LongAdder published = new LongAdder();
+	private long updateTime = 0;
+	private long received = 0;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		processor = BenchmarkSupport.newProcessor(noOfSymbols, d -> published.increment(), throttled);
+		symbols = BenchmarkSupport.symbols(noOfSymbols).toArray(new String[0]);
+		feed = new ZipfFeedGenerator(noOfSymbols, zipfExponent, 42);
+		processor.start();
+	}
+
+	@TearDown(Level.Iteration)
+	public void reportConflation() {
+		long noOfPublished = published.sumThenReset();
+		System.out.println("published " + noOfPublished + " of " + received + " messages");
+		received = 0;
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		processor.stop();
+	}
+
+	@Benchmark
+	public void onMessageBySymbolId() {
+		int symbolId = feed.nextSymbolId();
+		processor.onMessage(symbolId, feed.currentPrice(), ++updateTime);
+		received++;
+	}
+
+	@Benchmark
+	public void onMessageByMarketData() {
+		int symbolId = feed.nextSymbolId();
+		processor.onMessage(data.set(symbols[symbolId], feed.currentPrice(), ++updateTime));
+		received++;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(PACKET_SIZE)
+	public int onMessagesByPacket() {
+		packet.clear();
+		for (int i = 0; i < PACKET_SIZE; i++) {
+			packet.add(feed.nextSymbolId(), feed.currentPrice(), ++updateTime);
+		}
+		received += PACKET_SIZE;
+		return processor.onMessages(packet);
+	}
+}
@@ -0,0 +1,73 @@
+package com.richardchankiyin;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time from onMessage until the receiver gets the update. Sample time mode
+ * reports the latency histogram (p50, p99, p99.99 ...). The rate limiter is
+ * effectively disabled so that only the pipeline itself is measured
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TickToReceiverLatencyBenchmark {
+
+	@Param({"blocking", "yielding", "backoffSpin"})
+	public String waitStrategy;
+
+	@Param({"1000"})
+	public int noOfSymbols;
+
+	private MarketDataProcessorImpl processor;
+	private ZipfFeedGenerator feed;
+	private volatile long lastReceivedUpdateTime = -1;
+	private long updateTime = 0;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		processor = BenchmarkSupport.newProcessor(noOfSymbols, d -> lastReceivedUpdateTime = d.getUpdateTime(), false);
+		if ("yielding".equals(waitStrategy)) {
+			processor.setWaitStrategy(new YieldingWaitStrategy());
+		} else if ("backoffSpin".equals(waitStrategy)) {
+			processor.setWaitStrategy(new BackoffSpinWaitStrategy());
+		} else {
+			processor.setWaitStrategy(new BlockingWaitStrategy());
+		}
+		feed = new ZipfFeedGenerator(noOfSymbols, 0, 42);
+		processor.start();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		processor.stop();
+	}
+
+	@Benchmark
+	public long tickToReceiver() {
+		final long expected = ++updateTime;
+		int symbolId = feed.nextSymbolId();
+		processor.onMessage(symbolId, feed.currentPrice(), expected);
+		long received;
+		while ((received = lastReceivedUpdateTime) != expected) {
+			// wait for the receiver
+		}
+		return received;
+	}
+}
@@ -0,0 +1,72 @@
+package com.richardchankiyin;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * onMessage while the throttle controller thread publishes from the same
+ * slots and another thread reads the cache. A small universe makes the
+ * feed, the publisher and the reader contend on the same seqlocks
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Group)
+public class UpdatePublishContentionBenchmark {
+
+	@Param({"16", "10000"})
+	public int noOfSymbols;
+
+	@Param({"false", "true"})
+	public boolean throttled;
+
+	private MarketDataProcessorImpl processor;
+	private ZipfFeedGenerator feed;
+	private long updateTime = 0;
+	private int readerSymbolId = 0;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		processor = BenchmarkSupport.newProcessor(noOfSymbols, d -> {}, throttled);
+		feed = new ZipfFeedGenerator(noOfSymbols, 1.0, 42);
+		processor.start();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		processor.stop();
+	}
+
+	@Benchmark
+	@Group("updatePublish")
+	@GroupThreads(1)
+	public void onMessage() {
+		int symbolId = feed.nextSymbolId();
+		processor.onMessage(symbolId, feed.currentPrice(), ++updateTime);
+	}
+
+	@Benchmark
+	@Group("updatePublish")
+	@GroupThreads(1)
+	public MarketData getCache() {
+		readerSymbolId = readerSymbolId + 1 == noOfSymbols ? 0 : readerSymbolId + 1;
+		return processor.getCache(readerSymbolId);
+	}
+}
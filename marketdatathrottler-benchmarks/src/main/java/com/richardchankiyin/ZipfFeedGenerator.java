@@ -0,0 +1,96 @@
+package com.richardchankiyin;
+
+import java.util.Random;
+
+/**
+ * Synthetic feed of symbol ids where the activity of symbols follows a Zipf
+ * distribution, i.e. the k-th most active symbol ticks in proportion to
+ * 1/k^exponent. An exponent of 0 gives uniform activity.
+ *
+ * The sequence is generated up front so that drawing the next symbol id
+ * in a benchmark loop is an array read
+ */
+public class ZipfFeedGenerator {
+
+	public static final int DEFAULT_SEQUENCE_LENGTH = 1 << 20;
+
+	private final int[] symbolIds;
+	private final double[] prices;
+	private final int mask;
+	private int next = 0;
+
+	public ZipfFeedGenerator(int noOfSymbols, double exponent, long seed) {
+		this(noOfSymbols, exponent, DEFAULT_SEQUENCE_LENGTH, seed);
+	}
+
+	/**
+	 * @param noOfSymbols
+	 * @param exponent skew of symbol activity, 0 means uniform
+	 * @param sequenceLength power of 2
+	 * @param seed
+	 */
+	public ZipfFeedGenerator(int noOfSymbols, double exponent, int sequenceLength, long seed) {
+		if (noOfSymbols <= 0) {
+			throw new IllegalArgumentException("noOfSymbols must be positive");
+		}
+		if (Integer.bitCount(sequenceLength) != 1) {
+			throw new IllegalArgumentException("sequenceLength must be a power of 2");
+		}
+		Random random = new Random(seed);
+		double[] cdf = new double[noOfSymbols];
+		double sum = 0;
+		for (int rank = 0; rank < noOfSymbols; rank++) {
+			sum += 1.0 / Math.pow(rank + 1, exponent);
+			cdf[rank] = sum;
+		}
+		// most active symbols should not simply be the lowest ids
+		int[] rankToSymbolId = new int[noOfSymbols];
+		for (int i = 0; i < noOfSymbols; i++) {
+			rankToSymbolId[i] = i;
+		}
+		for (int i = noOfSymbols - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int tmp = rankToSymbolId[i];
+			rankToSymbolId[i] = rankToSymbolId[j];
+			rankToSymbolId[j] = tmp;
+		}
+		this.symbolIds = new int[sequenceLength];
+		this.prices = new double[sequenceLength];
+		for (int i = 0; i < sequenceLength; i++) {
+			symbolIds[i] = rankToSymbolId[search(cdf, random.nextDouble() * sum)];
+			prices[i] = 10 + random.nextDouble();
+		}
+		this.mask = sequenceLength - 1;
+	}
+
+	private static int search(double[] cdf, double value) {
+		int low = 0;
+		int high = cdf.length - 1;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (cdf[mid] < value) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Move to the next tick of the feed
+	 * @return symbol id of the tick
+	 */
+	public int nextSymbolId() {
+		next = (next + 1) & mask;
+		return symbolIds[next];
+	}
+
+	/**
+	 * Price of the current tick
+	 * @return
+	 */
+	public double currentPrice() {
+		return prices[next];
+	}
+}
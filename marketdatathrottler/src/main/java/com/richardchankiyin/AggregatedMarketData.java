@@ -0,0 +1,39 @@
+package com.richardchankiyin;
+
+/**
+ * Market data published with the aggregate of the updates received since
+ * the previous publish of the symbol, see
+ * {@link MarketDataProcessorImpl#setAggregation(boolean)}. The price is
+ * the last price of the interval
+ */
+public interface AggregatedMarketData extends MarketData {
+
+	/**
+	 * Get first price of the interval
+	 * @return
+	 */
+	public double getOpen();
+
+	public double getHigh();
+
+	public double getLow();
+
+	/**
+	 * Get no of updates applied in the interval
+	 * @return
+	 */
+	public long getTickCount();
+
+	/**
+	 * Get sum of quantities of the interval, updates without quantity are
+	 * not counted
+	 * @return
+	 */
+	public double getVolume();
+
+	/**
+	 * Get volume weighted average price of the interval
+	 * @return NaN if volume is 0
+	 */
+	public double getVwap();
+}
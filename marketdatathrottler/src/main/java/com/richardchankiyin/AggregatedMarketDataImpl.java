@@ -0,0 +1,87 @@
+package com.richardchankiyin;
+
+public class AggregatedMarketDataImpl extends MarketDataImpl implements AggregatedMarketData {
+
+	private final double open;
+	private final double high;
+	private final double low;
+	private final long tickCount;
+	private final double volume;
+	private final double vwap;
+
+	public AggregatedMarketDataImpl(String symbol, double price, long updateTime, long publishTime,
+			double open, double high, double low, long tickCount, double volume, double vwap) {
+		super(symbol, price, updateTime, publishTime);
+		this.open = open;
+		this.high = high;
+		this.low = low;
+		this.tickCount = tickCount;
+		this.volume = volume;
+		this.vwap = vwap;
+	}
+
+	/**
+	 * Merge a pending update of a symbol with the next one, e.g. when a
+	 * receiver lane conflates them, so that the aggregate covers the
+	 * intervals of both
+	 * @param pending
+	 * @param next
+	 * @return next if either of them is not aggregated
+	 */
+	static MarketData merge(MarketData pending, MarketData next) {
+		if (!(pending instanceof AggregatedMarketData) || !(next instanceof AggregatedMarketData)) {
+			return next;
+		}
+		AggregatedMarketData earlier = (AggregatedMarketData) pending;
+		AggregatedMarketData later = (AggregatedMarketData) next;
+		double volume = earlier.getVolume() + later.getVolume();
+		double notional = notional(earlier) + notional(later);
+		return new AggregatedMarketDataImpl(later.getSymbol(), later.getPrice(), later.getUpdateTime(), later.getPublishTime(),
+				earlier.getOpen(), Math.max(earlier.getHigh(), later.getHigh()), Math.min(earlier.getLow(), later.getLow()),
+				earlier.getTickCount() + later.getTickCount(), volume, volume != 0 ? notional / volume : Double.NaN);
+	}
+
+	private static double notional(AggregatedMarketData data) {
+		return data.getVolume() != 0 ? data.getVwap() * data.getVolume() : 0;
+	}
+
+	@Override
+	public double getOpen() {
+		return this.open;
+	}
+
+	@Override
+	public double getHigh() {
+		return this.high;
+	}
+
+	@Override
+	public double getLow() {
+		return this.low;
+	}
+
+	@Override
+	public long getTickCount() {
+		return this.tickCount;
+	}
+
+	@Override
+	public double getVolume() {
+		return this.volume;
+	}
+
+	@Override
+	public double getVwap() {
+		return this.vwap;
+	}
+
+	public String toString() {
+		return new StringBuilder(super.toString()).append("|")
+				.append(this.open).append("|")
+				.append(this.high).append("|")
+				.append(this.low).append("|")
+				.append(this.tickCount).append("|")
+				.append(this.volume).append("|")
+				.append(this.vwap).toString();
+	}
+}
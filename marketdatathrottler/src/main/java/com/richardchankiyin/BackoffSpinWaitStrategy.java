@@ -0,0 +1,92 @@
+package com.richardchankiyin;
+
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Busy spin for latency critical deployments. When no work arrives for a
+ * while it backs off to yielding and then to short parks growing up to
+ * maxParkNanos so that an idle instance does not hold a full core
+ */
+public class BackoffSpinWaitStrategy implements WaitStrategy {
+
+	public static final int DEFAULT_SPIN_TRIES = 10000;
+	public static final int DEFAULT_YIELD_TRIES = 100;
+	public static final long DEFAULT_MAX_PARK_NANOS = 1000000;
+	private static final long MIN_PARK_NANOS = 1000;
+	// about the timer slack of a park, spun through to be on time
+	private static final long FINAL_SPIN_NANOS = 50000;
+
+	private final int spinTries;
+	private final int yieldTries;
+	private final long maxParkNanos;
+
+	public BackoffSpinWaitStrategy() {
+		this(DEFAULT_SPIN_TRIES, DEFAULT_YIELD_TRIES, DEFAULT_MAX_PARK_NANOS);
+	}
+
+	public BackoffSpinWaitStrategy(int spinTries, int yieldTries, long maxParkNanos) {
+		if (spinTries < 0 || yieldTries < 0 || maxParkNanos < MIN_PARK_NANOS) {
+			throw new IllegalArgumentException("invalid backoff settings");
+		}
+		this.spinTries = spinTries;
+		this.yieldTries = yieldTries;
+		this.maxParkNanos = maxParkNanos;
+	}
+
+	@Override
+	public void waitForWork(BooleanSupplier workAvailable) {
+		int tries = 0;
+		long parkNanos = MIN_PARK_NANOS;
+		while (!workAvailable.getAsBoolean()) {
+			if (tries < spinTries) {
+				tries++;
+				Thread.onSpinWait();
+			} else if (tries < spinTries + yieldTries) {
+				tries++;
+				Thread.yield();
+			} else {
+				LockSupport.parkNanos(this, parkNanos);
+				parkNanos = Math.min(parkNanos << 1, maxParkNanos);
+			}
+		}
+	}
+
+	@Override
+	public void waitForWork(BooleanSupplier workAvailable, long nanos) {
+		final long deadline = System.nanoTime() + nanos;
+		int tries = 0;
+		long parkNanos = MIN_PARK_NANOS;
+		long remaining;
+		while (!workAvailable.getAsBoolean() && (remaining = deadline - System.nanoTime()) > 0) {
+			if (tries < spinTries) {
+				tries++;
+				Thread.onSpinWait();
+			} else if (tries < spinTries + yieldTries) {
+				tries++;
+				Thread.yield();
+			} else {
+				LockSupport.parkNanos(this, Math.min(parkNanos, remaining));
+				parkNanos = Math.min(parkNanos << 1, maxParkNanos);
+			}
+		}
+	}
+
+	@Override
+	public void waitFor(long nanos) {
+		final long deadline = System.nanoTime() + nanos;
+		long remaining;
+		while ((remaining = deadline - System.nanoTime()) > 0) {
+			if (remaining > FINAL_SPIN_NANOS) {
+				LockSupport.parkNanos(this, remaining - FINAL_SPIN_NANOS);
+			} else {
+				Thread.onSpinWait();
+			}
+		}
+	}
+
+	@Override
+	public void signal() {
+		// nothing to do, the waiting thread keeps checking
+	}
+}
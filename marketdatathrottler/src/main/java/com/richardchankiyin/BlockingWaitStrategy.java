@@ -0,0 +1,53 @@
+package com.richardchankiyin;
+
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Park the waiting thread until it is signalled. Producers only pay for
+ * an unpark when the thread is actually waiting for work
+ */
+public class BlockingWaitStrategy implements WaitStrategy {
+
+	private volatile Thread waiter = null;
+	private volatile boolean waiting = false;
+
+	@Override
+	public void waitForWork(BooleanSupplier workAvailable) {
+		// the waiting thread may change, e.g. when the instance is restarted
+		waiter = Thread.currentThread();
+		waiting = true;
+		// check again after advertising so that a signal cannot be lost
+		if (!workAvailable.getAsBoolean()) {
+			LockSupport.park(this);
+		}
+		waiting = false;
+	}
+
+	@Override
+	public void waitForWork(BooleanSupplier workAvailable, long nanos) {
+		// the waiting thread may change, e.g. when the instance is restarted
+		waiter = Thread.currentThread();
+		waiting = true;
+		if (!workAvailable.getAsBoolean()) {
+			LockSupport.parkNanos(this, nanos);
+		}
+		waiting = false;
+	}
+
+	@Override
+	public void waitFor(long nanos) {
+		LockSupport.parkNanos(this, nanos);
+	}
+
+	@Override
+	public void signal() {
+		// the work may be published by a release store only, order it
+		// before the load of waiting or both sides can miss each other
+		VarHandle.fullFence();
+		if (waiting) {
+			LockSupport.unpark(waiter);
+		}
+	}
+}
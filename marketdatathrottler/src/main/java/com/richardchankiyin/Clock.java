@@ -0,0 +1,30 @@
+package com.richardchankiyin;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Source of time of a processor, the time market data are published at
+ * and permits of the rate limiter are taken at
+ */
+@FunctionalInterface
+public interface Clock {
+
+	/** wall clock time */
+	public static final Clock SYSTEM = System::currentTimeMillis;
+
+	/**
+	 * Get current time
+	 * @return in milliseconds
+	 */
+	public long currentTimeMillis();
+
+	/**
+	 * Get real time to wait for a period of this clock to elapse. The
+	 * caller checks the time again after waiting
+	 * @param millis
+	 * @return
+	 */
+	public default long toWaitNanos(long millis) {
+		return TimeUnit.MILLISECONDS.toNanos(millis);
+	}
+}
@@ -0,0 +1,123 @@
+package com.richardchankiyin;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Exact sliding window rate limiter which can be shared by many threads,
+ * e.g. the throttle controller threads of all shards of
+ * {@link ShardedMarketDataProcessor}. A permit is taken by CAS of the
+ * oldest permit time in the ring to the current time, which only succeeds
+ * if the oldest permit has left the window. A permit is tagged with the
+ * round of the ring, so that other threads seeing it before next is moved
+ * help move next instead of taking it as the oldest permit. As a permit never overwrites
+ * one within the window, no more than maxPermits permits are granted
+ * within any window of windowMillis. Thread safe and lock free
+ */
+public class ConcurrentSlidingWindowRateLimiter implements RateLimiter {
+
+	private static final long NO_PERMIT = Long.MIN_VALUE;
+
+	private final int maxPermits;
+	private final long windowMillis;
+	private final AtomicLongArray permitTimes;
+	// no of permits granted, points to the oldest permit
+	private final AtomicLong next = new AtomicLong();
+
+	public ConcurrentSlidingWindowRateLimiter(int maxPermits, long windowMillis) {
+		if (maxPermits <= 0) {
+			throw new IllegalArgumentException("maxPermits must be positive");
+		}
+		if (windowMillis <= 0) {
+			throw new IllegalArgumentException("windowMillis must be positive");
+		}
+		this.maxPermits = maxPermits;
+		this.windowMillis = windowMillis;
+		this.permitTimes = new AtomicLongArray(maxPermits);
+		for (int i = 0; i < maxPermits; i++) {
+			permitTimes.set(i, NO_PERMIT);
+		}
+	}
+
+	/**
+	 * Create a limiter with the most recent permits of previous, so that
+	 * the window is not reset when the limit is changed. previous may be
+	 * still in use, permits it grants afterwards are not carried over
+	 * @param maxPermits
+	 * @param windowMillis
+	 * @param previous
+	 */
+	public ConcurrentSlidingWindowRateLimiter(int maxPermits, long windowMillis, ConcurrentSlidingWindowRateLimiter previous) {
+		this(maxPermits, windowMillis);
+		long previousNext = previous.next.get();
+		int noOfPermits = (int) Math.min(previousNext, Math.min(maxPermits, previous.maxPermits));
+		// oldest first
+		long from = previousNext - noOfPermits;
+		for (int i = 0; i < noOfPermits; i++) {
+			long permit = previous.permitTimes.get((int) ((from + i) % previous.maxPermits));
+			permitTimes.set(i, encode(timeOf(permit), i));
+		}
+		next.set(noOfPermits);
+	}
+
+	@Override
+	public boolean tryAcquire(long currentTime) {
+		while (true) {
+			long index = next.get();
+			int offset = (int) (index % maxPermits);
+			long permit = permitTimes.get(offset);
+			if (isTakenFor(permit, index)) {
+				// taken by another thread, help it move next
+				next.compareAndSet(index, index + 1);
+				continue;
+			}
+			if (permit != NO_PERMIT && timeOf(permit) + windowMillis > currentTime) {
+				return false;
+			}
+			if (permitTimes.compareAndSet(offset, permit, encode(currentTime, index))) {
+				next.compareAndSet(index, index + 1);
+				return true;
+			}
+		}
+	}
+
+	@Override
+	public long nextPermitTime(long currentTime) {
+		while (true) {
+			long index = next.get();
+			long permit = permitTimes.get((int) (index % maxPermits));
+			if (isTakenFor(permit, index)) {
+				next.compareAndSet(index, index + 1);
+				continue;
+			}
+			return permit == NO_PERMIT ? currentTime : Math.max(currentTime, timeOf(permit) + windowMillis);
+		}
+	}
+
+	/**
+	 * Permit time with the parity of the round of the ring it is taken in,
+	 * so that a permit taken for index before next moves past it is told
+	 * from the oldest permit of the previous round
+	 */
+	private long encode(long time, long index) {
+		return time << 1 | ((index / maxPermits) & 1);
+	}
+
+	private static long timeOf(long permit) {
+		return permit >> 1;
+	}
+
+	private boolean isTakenFor(long permit, long index) {
+		return permit != NO_PERMIT && (permit & 1) == ((index / maxPermits) & 1);
+	}
+
+	@Override
+	public int getMaxPermits() {
+		return maxPermits;
+	}
+
+	@Override
+	public long getWindowMillis() {
+		return windowMillis;
+	}
+}
@@ -0,0 +1,185 @@
+package com.richardchankiyin;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keep only the latest pending update of each symbol for a receiver. A
+ * receiver lagging behind gets the latest market data of each symbol once
+ * it catches up, in the order the symbols were first updated. Pending
+ * {@link AggregatedMarketData} are merged instead of replaced. Memory is
+ * bounded by the no of symbols whatever the publish rate is. It grows
+ * when symbols are added to the registry
+ */
+public class ConflatingReceiverLane implements ReceiverLane, Runnable {
+
+	private static final Logger logger = Logger.getLogger("com.richardchankiyin");
+
+	private final Receiver receiver;
+	private final SymbolRegistry symbolRegistry;
+	private MarketData[] latest;
+	private long[] firstOfferTimeNanos;
+	private final IntQueue pendingSymbolIds;
+	private final int maxBatchSize;
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition notEmpty = lock.newCondition();
+	private final List<MarketData> batch;
+	private final List<MarketData> batchView;
+	private volatile boolean isRunning = false;
+	private volatile long noOfDelivered = 0;
+	private volatile long noOfDropped = 0;
+	private volatile long noOfConflated = 0;
+	private volatile long dispatchLagNanos = 0;
+	private long batchOfferTimeNanos = 0;
+	private Thread thread = null;
+
+	/**
+	 * @param receiver
+	 * @param symbolRegistry symbols the lane conflates on
+	 * @param maxBatchSize 1 to deliver by onReceive, otherwise by onReceiveBatch
+	 */
+	public ConflatingReceiverLane(Receiver receiver, SymbolRegistry symbolRegistry, int maxBatchSize) {
+		if (maxBatchSize <= 0) {
+			throw new IllegalArgumentException("maxBatchSize must be positive");
+		}
+		this.receiver = receiver;
+		this.symbolRegistry = symbolRegistry;
+		this.latest = new MarketData[symbolRegistry.size()];
+		this.firstOfferTimeNanos = new long[symbolRegistry.size()];
+		this.pendingSymbolIds = new GrowableIntQueue(LockingIntQueue::new, Math.max(1, symbolRegistry.size()));
+		this.maxBatchSize = maxBatchSize;
+		this.batch = new ArrayList<>(maxBatchSize);
+		this.batchView = Collections.unmodifiableList(batch);
+	}
+
+	@Override
+	public Receiver getReceiver() {
+		return this.receiver;
+	}
+
+	@Override
+	public void start(String threadName, ReceiverThreadMode threadMode) {
+		isRunning = true;
+		thread = threadMode.newThread(this, threadName);
+		thread.start();
+	}
+
+	@Override
+	public void stop() {
+		lock.lock();
+		try {
+			isRunning = false;
+			notEmpty.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void offer(MarketData data) {
+		int symbolId = symbolRegistry.getSymbolId(data.getSymbol());
+		if (symbolId == SymbolRegistry.SYMBOL_ID_UNKNOWN) {
+			logger.log(Level.WARNING, "symbol {0} not loaded before, not delivered", data.getSymbol());
+			noOfDropped++;
+			return;
+		}
+		lock.lock();
+		try {
+			if (symbolId >= latest.length) {
+				// symbol added after the lane is created
+				int length = Math.max(symbolId + 1, latest.length * 2);
+				latest = Arrays.copyOf(latest, length);
+				firstOfferTimeNanos = Arrays.copyOf(firstOfferTimeNanos, length);
+			}
+			if (latest[symbolId] == null) {
+				firstOfferTimeNanos[symbolId] = System.nanoTime();
+				pendingSymbolIds.offer(symbolId);
+				notEmpty.signal();
+				latest[symbolId] = data;
+			} else {
+				noOfConflated++;
+				latest[symbolId] = AggregatedMarketDataImpl.merge(latest[symbolId], data);
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void run() {
+		while (true) {
+			lock.lock();
+			try {
+				while (pendingSymbolIds.isEmpty() && isRunning) {
+					notEmpty.awaitUninterruptibly();
+				}
+				if (pendingSymbolIds.isEmpty()) {
+					// stopped and nothing pending
+					return;
+				}
+				int symbolId;
+				while (batch.size() < maxBatchSize && (symbolId = pendingSymbolIds.poll()) != IntQueue.EMPTY) {
+					if (batch.isEmpty()) {
+						batchOfferTimeNanos = firstOfferTimeNanos[symbolId];
+					}
+					batch.add(latest[symbolId]);
+					latest[symbolId] = null;
+				}
+			} finally {
+				lock.unlock();
+			}
+			deliver();
+		}
+	}
+
+	private void deliver() {
+		try {
+			if (maxBatchSize == 1) {
+				receiver.onReceive(batch.get(0));
+			} else {
+				receiver.onReceiveBatch(batchView);
+			}
+		} catch (RuntimeException e) {
+			logger.log(Level.WARNING, "receiver failed", e);
+		}
+		noOfDelivered += batch.size();
+		dispatchLagNanos = System.nanoTime() - batchOfferTimeNanos;
+		batch.clear();
+	}
+
+	@Override
+	public int size() {
+		return pendingSymbolIds.size();
+	}
+
+	@Override
+	public int capacity() {
+		return symbolRegistry.size();
+	}
+
+	@Override
+	public long getNoOfDelivered() {
+		return noOfDelivered;
+	}
+
+	@Override
+	public long getNoOfDropped() {
+		return noOfDropped;
+	}
+
+	@Override
+	public long getNoOfConflated() {
+		return noOfConflated;
+	}
+
+	@Override
+	public long getDispatchLagNanos() {
+		return dispatchLagNanos;
+	}
+}
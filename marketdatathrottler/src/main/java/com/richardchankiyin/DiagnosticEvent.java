@@ -0,0 +1,25 @@
+package com.richardchankiyin;
+
+/**
+ * Types of events recorded by {@link Diagnostics}
+ */
+public enum DiagnosticEvent {
+	/** update applied and symbol queued for publish */
+	QUEUED,
+	/** update applied to a symbol already waiting for publish */
+	CONFLATED,
+	/** update older than the cached one */
+	REJECTED_STALE,
+	/** update of a symbol not loaded */
+	UNKNOWN_SYMBOL,
+	/** symbol published */
+	PUBLISHED,
+	/** throttle controller thread waits for a rate limiter permit */
+	RATE_LIMITED;
+
+	private static final DiagnosticEvent[] VALUES = values();
+
+	static DiagnosticEvent valueOf(int ordinal) {
+		return VALUES[ordinal];
+	}
+}
@@ -0,0 +1,157 @@
+package com.richardchankiyin;
+
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Diagnostics for the hot path. Disabled by default, so that the cost per
+ * message is a check of a volatile flag at the caller. When enabled, one
+ * in sampleRate events is recorded into a {@link FlightRecorder}, which can
+ * be dumped on demand, and traced to the logger at FINE level for no more
+ * than maxTracesPerSecond events.
+ *
+ * Warnings such as updates of unknown symbols go through warn, which logs
+ * no more than maxWarningsPerSecond whether enabled or not
+ */
+public class Diagnostics {
+
+	private static final Logger logger = Logger.getLogger("com.richardchankiyin");
+
+	public static final int DEFAULT_FLIGHT_RECORDER_CAPACITY = 4096;
+	public static final int DEFAULT_MAX_WARNINGS_PER_SECOND = 10;
+
+	private volatile boolean enabled = false;
+	private volatile int sampleMask = 0;
+	private volatile int maxTracesPerSecond = 0;
+	private volatile int maxWarningsPerSecond = DEFAULT_MAX_WARNINGS_PER_SECOND;
+	private final FlightRecorder flightRecorder;
+	// racy counters, good enough for sampling and limiting logs
+	private int sampleCounter = 0;
+	private final LogLimit traceLimit = new LogLimit();
+	private final LogLimit warningLimit = new LogLimit();
+
+	private static class LogLimit {
+		private long windowStart = 0;
+		private int count = 0;
+
+		boolean tryAcquire(int maxPerSecond) {
+			long now = System.currentTimeMillis();
+			if (now - windowStart >= 1000) {
+				windowStart = now;
+				count = 0;
+			}
+			return count++ < maxPerSecond;
+		}
+	}
+
+	public Diagnostics() {
+		this(DEFAULT_FLIGHT_RECORDER_CAPACITY);
+	}
+
+	public Diagnostics(int flightRecorderCapacity) {
+		this.flightRecorder = new FlightRecorder(flightRecorderCapacity);
+	}
+
+	/**
+	 * Check before building anything for record
+	 * @return
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/**
+	 * Record one in sampleRate events
+	 * @param sampleRate power of 2
+	 */
+	public void setSampleRate(int sampleRate) {
+		if (sampleRate <= 0 || Integer.bitCount(sampleRate) != 1) {
+			throw new IllegalArgumentException("sampleRate must be a power of 2");
+		}
+		this.sampleMask = sampleRate - 1;
+	}
+
+	/**
+	 * Max no of recorded events traced to the logger at FINE level per second, 0 to disable
+	 * @param maxTracesPerSecond
+	 */
+	public void setMaxTracesPerSecond(int maxTracesPerSecond) {
+		this.maxTracesPerSecond = maxTracesPerSecond;
+	}
+
+	public void setMaxWarningsPerSecond(int maxWarningsPerSecond) {
+		this.maxWarningsPerSecond = maxWarningsPerSecond;
+	}
+
+	public FlightRecorder getFlightRecorder() {
+		return flightRecorder;
+	}
+
+	/**
+	 * Record an event if it is sampled. Callers check isEnabled first
+	 * @param event
+	 * @param symbolId
+	 * @param price
+	 * @param time
+	 */
+	public void record(DiagnosticEvent event, int symbolId, double price, long time) {
+		recordRaw(event, symbolId, Double.doubleToRawLongBits(price), time);
+	}
+
+	/**
+	 * Record a rate limiter wait if it is sampled. Callers check isEnabled first
+	 * @param waitNanos
+	 * @param time
+	 */
+	public void recordRateLimited(long waitNanos, long time) {
+		recordRaw(DiagnosticEvent.RATE_LIMITED, SymbolRegistry.SYMBOL_ID_UNKNOWN, waitNanos, time);
+	}
+
+	private void recordRaw(DiagnosticEvent event, int symbolId, long value1, long value2) {
+		if ((sampleCounter++ & sampleMask) != 0) {
+			return;
+		}
+		flightRecorder.record(event, symbolId, value1, value2);
+		int maxTraces = maxTracesPerSecond;
+		if (maxTraces > 0 && logger.isLoggable(Level.FINE) && traceLimit.tryAcquire(maxTraces)) {
+			logger.log(Level.FINE, "{0} symbolId={1} value={2} time={3}", new Object[] {event, symbolId, value1, value2});
+		}
+	}
+
+	/**
+	 * Log a warning unless too many were logged within the last second
+	 * @param message
+	 * @param param
+	 */
+	public void warn(String message, Object param) {
+		if (warningLimit.tryAcquire(maxWarningsPerSecond)) {
+			logger.log(Level.WARNING, message, param);
+		}
+	}
+
+	/**
+	 * Log a warning with an int param, boxed only if the warning is logged
+	 * @param message
+	 * @param param
+	 */
+	public void warn(String message, int param) {
+		if (warningLimit.tryAcquire(maxWarningsPerSecond)) {
+			logger.log(Level.WARNING, message, param);
+		}
+	}
+
+	/**
+	 * Write recent events of the flight recorder
+	 * @param out
+	 * @param symbolRegistry to resolve symbol ids, can be null
+	 * @throws IOException
+	 */
+	public void dump(Appendable out, SymbolRegistry symbolRegistry) throws IOException {
+		flightRecorder.dump(out, symbolRegistry);
+	}
+}
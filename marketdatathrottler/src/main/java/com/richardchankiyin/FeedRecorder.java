@@ -0,0 +1,112 @@
+package com.richardchankiyin;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Capture market data received by onMessage to a binary file, with the
+ * time it arrived, so that the feed can be replayed by {@link FeedReplayer}.
+ * The file is a header of magic and version followed by records:
+ * <ul>
+ * <li>SYMBOL: ref, length and UTF-8 bytes of a symbol, before its first message</li>
+ * <li>MESSAGE: ref of the symbol, price, quantity, update time and arrival time</li>
+ * </ul>
+ * Captures of version 1 have no quantity in MESSAGE records
+ * Records are buffered, call flush or close to write them out. Thread
+ * safe, messages of many threads are recorded in the order they arrive
+ */
+public class FeedRecorder implements Closeable {
+
+	static final int MAGIC = 0x4D444643;
+	static final int VERSION = 2;
+	static final int VERSION_NO_QUANTITY = 1;
+	static final byte SYMBOL = 0;
+	static final byte MESSAGE = 1;
+
+	private final DataOutputStream out;
+	private final Map<String, Integer> symbolRefs = new HashMap<>();
+	private long noOfMessages = 0;
+	private boolean isClosed = false;
+
+	/**
+	 * @param file replaced if exists
+	 * @throws IOException
+	 */
+	public FeedRecorder(Path file) throws IOException {
+		this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16));
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+	}
+
+	/**
+	 * Record a message without quantity, messages after close are ignored
+	 * @param symbol
+	 * @param price
+	 * @param updateTime
+	 * @param arrivalTime time of the clock of the processor
+	 */
+	public void record(String symbol, double price, long updateTime, long arrivalTime) {
+		record(symbol, price, Double.NaN, updateTime, arrivalTime);
+	}
+
+	/**
+	 * Record a message, messages after close are ignored
+	 * @param symbol
+	 * @param price
+	 * @param quantity NaN if not known
+	 * @param updateTime
+	 * @param arrivalTime time of the clock of the processor
+	 */
+	public synchronized void record(String symbol, double price, double quantity, long updateTime, long arrivalTime) {
+		if (isClosed || symbol == null) {
+			return;
+		}
+		try {
+			Integer ref = symbolRefs.get(symbol);
+			if (ref == null) {
+				ref = symbolRefs.size();
+				symbolRefs.put(symbol, ref);
+				byte[] bytes = symbol.getBytes(StandardCharsets.UTF_8);
+				out.writeByte(SYMBOL);
+				out.writeInt(ref);
+				out.writeShort(bytes.length);
+				out.write(bytes);
+			}
+			out.writeByte(MESSAGE);
+			out.writeInt(ref);
+			out.writeDouble(price);
+			out.writeDouble(quantity);
+			out.writeLong(updateTime);
+			out.writeLong(arrivalTime);
+			noOfMessages++;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	public synchronized void flush() throws IOException {
+		if (!isClosed) {
+			out.flush();
+		}
+	}
+
+	public synchronized long getNoOfMessages() {
+		return noOfMessages;
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		if (!isClosed) {
+			isClosed = true;
+			out.close();
+		}
+	}
+}
@@ -0,0 +1,169 @@
+package com.richardchankiyin;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Feed market data captured by {@link FeedRecorder} to a processor, as
+ * fast as possible or at a multiple of the captured pace. With a
+ * {@link VirtualClock} set to the processor, the clock is moved to the
+ * arrival time of each message before it is fed, so that publish times
+ * and rate limiting follow the captured feed instead of the wall clock.
+ *
+ * In lockstep mode, supported for {@link MarketDataProcessorImpl}, the
+ * clock is only moved forward after the throttle controller thread has
+ * done everything it can at the current time, so that the same feed gives
+ * the same publishes whatever the machine speed. Not thread safe
+ */
+public class FeedReplayer {
+
+	private static final Logger logger = Logger.getLogger("com.richardchankiyin");
+
+	private final Path file;
+	private boolean lockstep = false;
+	private long noOfMessages = 0;
+	private long noOfRejected = 0;
+	private long elapsedNanos = 0;
+
+	public FeedReplayer(Path file) {
+		this.file = file;
+	}
+
+	/**
+	 * Move the clock forward only after the processor is idle at the
+	 * current time. Default is false
+	 * @param lockstep
+	 */
+	public void setLockstep(boolean lockstep) {
+		this.lockstep = lockstep;
+	}
+
+	/**
+	 * Replay the whole file. A message rejected by the processor, e.g. as
+	 * stale, is counted and replay goes on
+	 * @param processor started processor
+	 * @param clock clock of the processor, null if it is not a VirtualClock
+	 * @param speed multiple of the captured pace, 0 for as fast as possible
+	 * @return no of messages replayed
+	 * @throws IOException
+	 */
+	public long replay(MarketDataProcessor processor, VirtualClock clock, double speed) throws IOException {
+		if (speed < 0) {
+			throw new IllegalArgumentException("speed must not be negative");
+		}
+		noOfMessages = 0;
+		noOfRejected = 0;
+		MarketDataProcessorImpl lockstepProcessor = lockstep && clock != null && processor instanceof MarketDataProcessorImpl
+				? (MarketDataProcessorImpl) processor : null;
+		if (lockstep && lockstepProcessor == null) {
+			logger.warning("lockstep needs a VirtualClock and a MarketDataProcessorImpl, replay without it");
+		}
+		MappedByteBuffer buffer;
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		if (buffer.remaining() < 8 || buffer.getInt() != FeedRecorder.MAGIC) {
+			throw new IOException("not a feed capture: " + file);
+		}
+		int version = buffer.getInt();
+		if (version != FeedRecorder.VERSION && version != FeedRecorder.VERSION_NO_QUANTITY) {
+			throw new IOException("unsupported feed capture version " + version + ": " + file);
+		}
+		String[] symbols = new String[16];
+		long firstArrivalTime = Long.MIN_VALUE;
+		long lastArrivalTime = Long.MIN_VALUE;
+		final long startNanos = System.nanoTime();
+		while (buffer.hasRemaining()) {
+			byte type = buffer.get();
+			int ref = buffer.getInt();
+			if (type == FeedRecorder.SYMBOL) {
+				byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+				buffer.get(bytes);
+				if (ref >= symbols.length) {
+					symbols = Arrays.copyOf(symbols, Math.max(ref + 1, symbols.length << 1));
+				}
+				symbols[ref] = new String(bytes, StandardCharsets.UTF_8);
+				continue;
+			} else if (type != FeedRecorder.MESSAGE) {
+				throw new IOException("unknown record type " + type + ": " + file);
+			}
+			double price = buffer.getDouble();
+			double quantity = version != FeedRecorder.VERSION_NO_QUANTITY ? buffer.getDouble() : Double.NaN;
+			long updateTime = buffer.getLong();
+			long arrivalTime = buffer.getLong();
+			if (firstArrivalTime == Long.MIN_VALUE) {
+				firstArrivalTime = arrivalTime;
+			}
+			if (speed > 0) {
+				long dueNanos = startNanos + (long) ((arrivalTime - firstArrivalTime) * 1_000_000L / speed);
+				long waitNanos;
+				while ((waitNanos = dueNanos - System.nanoTime()) > 0) {
+					LockSupport.parkNanos(waitNanos);
+				}
+			}
+			if (clock != null && arrivalTime > lastArrivalTime) {
+				if (lockstepProcessor != null && lastArrivalTime != Long.MIN_VALUE) {
+					awaitIdle(lockstepProcessor, lastArrivalTime);
+				}
+				clock.setTime(arrivalTime);
+			}
+			lastArrivalTime = Math.max(lastArrivalTime, arrivalTime);
+			try {
+				processor.onMessage(new MarketDataImpl(symbols[ref], price, quantity, updateTime, MarketDataImpl.PUBLISH_TIME_NO_PUB));
+			} catch (IllegalStateException e) {
+				noOfRejected++;
+			}
+			noOfMessages++;
+		}
+		if (lockstepProcessor != null && lastArrivalTime != Long.MIN_VALUE) {
+			awaitIdle(lockstepProcessor, lastArrivalTime);
+		}
+		elapsedNanos = System.nanoTime() - startNanos;
+		return noOfMessages;
+	}
+
+	private static void awaitIdle(MarketDataProcessorImpl processor, long time) {
+		while (!processor.isIdleAt(time)) {
+			if (!processor.isStarted()) {
+				throw new IllegalStateException("the instance is not started");
+			}
+			Thread.yield();
+		}
+	}
+
+	public long getNoOfMessages() {
+		return noOfMessages;
+	}
+
+	/**
+	 * Get no of messages the processor threw on, e.g. stale ones
+	 * @return
+	 */
+	public long getNoOfRejected() {
+		return noOfRejected;
+	}
+
+	/**
+	 * Get real time the last replay took
+	 * @return
+	 */
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+
+	/**
+	 * Get no of messages replayed per second of real time
+	 * @return
+	 */
+	public double getThroughput() {
+		return elapsedNanos > 0 ? noOfMessages * 1e9 / elapsedNanos : 0;
+	}
+}
@@ -0,0 +1,54 @@
+package com.richardchankiyin;
+
+import java.util.Arrays;
+
+/**
+ * Publish symbols in the order they are ready. This is the default
+ */
+public class FifoPublishScheduler implements PublishScheduler {
+
+	private final IntQueue queue = new GrowableIntQueue(SpscIntQueue::new, 16);
+	private boolean[] queued = new boolean[16];
+
+	@Override
+	public void offer(int symbolId, String symbol, double price, long currentTime) {
+		if (symbolId >= queued.length) {
+			queued = Arrays.copyOf(queued, Math.max(symbolId + 1, queued.length << 1));
+		}
+		if (!queued[symbolId]) {
+			queued[symbolId] = true;
+			queue.offer(symbolId);
+		}
+	}
+
+	@Override
+	public boolean contains(int symbolId) {
+		return symbolId >= 0 && symbolId < queued.length && queued[symbolId];
+	}
+
+	@Override
+	public int peek() {
+		return queue.peek();
+	}
+
+	/**
+	 * Remove the symbol returned by peek
+	 */
+	@Override
+	public void remove(int symbolId) {
+		if (contains(symbolId) && queue.peek() == symbolId) {
+			queue.poll();
+			queued[symbolId] = false;
+		}
+	}
+
+	@Override
+	public void onPublished(int symbolId, MarketData data) {
+		// nothing to keep
+	}
+
+	@Override
+	public int size() {
+		return queue.size();
+	}
+}
@@ -0,0 +1,110 @@
+package com.richardchankiyin;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock free ring of the most recent events. Writers claim a sequence and
+ * fill the slot of it in place, so recording does not allocate. Each slot
+ * carries the sequence it holds so that a dump skips slots being
+ * overwritten
+ */
+public class FlightRecorder {
+
+	private final int mask;
+	private final AtomicLong nextSequence = new AtomicLong();
+	// sequence + 1 of a written slot, negative while being written
+	private final AtomicLongArray sequences;
+	private final AtomicLongArray timeNanos;
+	private final AtomicIntegerArray eventTypes;
+	private final AtomicIntegerArray symbolIds;
+	private final AtomicLongArray values1;
+	private final AtomicLongArray values2;
+	private final long baseTimeMillis = System.currentTimeMillis();
+	private final long baseTimeNanos = System.nanoTime();
+
+	/**
+	 * @param capacity no of most recent events kept, rounded up to a power of 2
+	 */
+	public FlightRecorder(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("capacity must be positive");
+		}
+		int size = SpscIntQueue.roundToPowerOfTwo(capacity);
+		this.mask = size - 1;
+		this.sequences = new AtomicLongArray(size);
+		this.timeNanos = new AtomicLongArray(size);
+		this.eventTypes = new AtomicIntegerArray(size);
+		this.symbolIds = new AtomicIntegerArray(size);
+		this.values1 = new AtomicLongArray(size);
+		this.values2 = new AtomicLongArray(size);
+	}
+
+	/**
+	 * Record an event
+	 * @param event
+	 * @param symbolId
+	 * @param value1 e.g. price bits
+	 * @param value2 e.g. update time
+	 */
+	public void record(DiagnosticEvent event, int symbolId, long value1, long value2) {
+		long sequence = nextSequence.getAndIncrement();
+		int index = (int) sequence & mask;
+		sequences.set(index, -(sequence + 1));
+		timeNanos.lazySet(index, System.nanoTime());
+		eventTypes.lazySet(index, event.ordinal());
+		symbolIds.lazySet(index, symbolId);
+		values1.lazySet(index, value1);
+		values2.lazySet(index, value2);
+		sequences.lazySet(index, sequence + 1);
+	}
+
+	/**
+	 * Get no of events recorded so far, including those overwritten
+	 * @return
+	 */
+	public long getNoOfRecorded() {
+		return nextSequence.get();
+	}
+
+	public int capacity() {
+		return mask + 1;
+	}
+
+	/**
+	 * Write the events still in the ring, oldest first, one per line
+	 * @param out
+	 * @param symbolRegistry to resolve symbol ids, can be null
+	 * @throws IOException
+	 */
+	public void dump(Appendable out, SymbolRegistry symbolRegistry) throws IOException {
+		long last = nextSequence.get();
+		long first = Math.max(0, last - capacity());
+		for (long sequence = first; sequence < last; sequence++) {
+			int index = (int) sequence & mask;
+			if (sequences.get(index) != sequence + 1) {
+				continue;
+			}
+			long nanos = timeNanos.get(index);
+			DiagnosticEvent event = DiagnosticEvent.valueOf(eventTypes.get(index));
+			int symbolId = symbolIds.get(index);
+			long value1 = values1.get(index);
+			long value2 = values2.get(index);
+			if (sequences.get(index) != sequence + 1) {
+				// overwritten while reading
+				continue;
+			}
+			String symbol = symbolRegistry != null ? symbolRegistry.getSymbol(symbolId) : null;
+			out.append(Long.toString(baseTimeMillis + TimeUnit.NANOSECONDS.toMillis(nanos - baseTimeNanos)))
+				.append('|').append(Long.toString(sequence))
+				.append('|').append(event.name())
+				.append('|').append(symbol != null ? symbol : Integer.toString(symbolId))
+				.append('|').append(event == DiagnosticEvent.RATE_LIMITED ? Long.toString(value1) : Double.toString(Double.longBitsToDouble(value1)))
+				.append('|').append(Long.toString(value2))
+				.append(System.lineSeparator());
+		}
+	}
+}
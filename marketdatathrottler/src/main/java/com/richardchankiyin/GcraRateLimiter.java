@@ -0,0 +1,76 @@
+package com.richardchankiyin;
+
+/**
+ * Generic cell rate algorithm (GCRA) rate limiter. Only the theoretical
+ * arrival time (TAT) is kept. Times are scaled by maxPermits so that the
+ * emission interval (windowMillis / maxPermits) is an exact integer.
+ *
+ * burst controls how many permits can be taken back to back. The default
+ * burst of 1 spaces permits evenly, so that no sliding window has more
+ * than maxPermits permits like the other limiters. A larger burst lets up
+ * to maxPermits + burst - 1 permits through a sliding window, e.g. about
+ * twice maxPermits with burst equal to maxPermits
+ */
+public class GcraRateLimiter implements RateLimiter {
+
+	private final int maxPermits;
+	private final long windowMillis;
+	// emission interval and tolerance in scaled time
+	private final long emissionInterval;
+	private final long tolerance;
+	private long theoreticalArrivalTime = Long.MIN_VALUE;
+
+	public GcraRateLimiter(int maxPermits, long windowMillis) {
+		this(maxPermits, windowMillis, 1);
+	}
+
+	public GcraRateLimiter(int maxPermits, long windowMillis, int burst) {
+		if (maxPermits <= 0) {
+			throw new IllegalArgumentException("maxPermits must be positive");
+		}
+		if (windowMillis <= 0) {
+			throw new IllegalArgumentException("windowMillis must be positive");
+		}
+		if (burst <= 0 || burst > maxPermits) {
+			throw new IllegalArgumentException("burst must be between 1 and maxPermits");
+		}
+		this.maxPermits = maxPermits;
+		this.windowMillis = windowMillis;
+		this.emissionInterval = windowMillis;
+		this.tolerance = (burst - 1) * windowMillis;
+	}
+
+	@Override
+	public boolean tryAcquire(long currentTime) {
+		long now = currentTime * maxPermits;
+		long tat = Math.max(theoreticalArrivalTime, now);
+		if (tat - tolerance > now) {
+			return false;
+		}
+		theoreticalArrivalTime = tat + emissionInterval;
+		return true;
+	}
+
+	@Override
+	public long nextPermitTime(long currentTime) {
+		if (theoreticalArrivalTime == Long.MIN_VALUE) {
+			return currentTime;
+		}
+		long now = currentTime * maxPermits;
+		long allowedAt = theoreticalArrivalTime - tolerance;
+		if (allowedAt <= now) {
+			return currentTime;
+		}
+		return (allowedAt + maxPermits - 1) / maxPermits;
+	}
+
+	@Override
+	public int getMaxPermits() {
+		return maxPermits;
+	}
+
+	@Override
+	public long getWindowMillis() {
+		return windowMillis;
+	}
+}
@@ -0,0 +1,128 @@
+package com.richardchankiyin;
+
+import java.util.function.IntFunction;
+
+/**
+ * Queue without a fixed capacity made of a chain of bounded queues. When
+ * the current queue is full, it is closed and producers continue on a new
+ * queue of twice the capacity. The consumer moves on to the new queue once
+ * it drains the closed one. Values are never copied and neither side is
+ * blocked while it grows. Threading is the same as the bounded queues
+ */
+public class GrowableIntQueue implements IntQueue {
+
+	private static final int MAX_CAPACITY = 1 << 30;
+
+	private static class Node {
+		private final IntQueue queue;
+		private volatile Node next = null;
+
+		private Node(IntQueue queue) {
+			this.queue = queue;
+		}
+	}
+
+	private final IntFunction<IntQueue> queueFactory;
+	private volatile Node producerNode;
+	private volatile Node consumerNode;
+	private volatile boolean closed = false;
+
+	/**
+	 * @param queueFactory creates a bounded queue of at least the given capacity
+	 * @param initialCapacity
+	 */
+	public GrowableIntQueue(IntFunction<IntQueue> queueFactory, int initialCapacity) {
+		this.queueFactory = queueFactory;
+		this.producerNode = new Node(queueFactory.apply(initialCapacity));
+		this.consumerNode = producerNode;
+	}
+
+	@Override
+	public boolean offer(int value) {
+		while (true) {
+			Node node = producerNode;
+			if (node.queue.offer(value)) {
+				return true;
+			}
+			if (closed || !grow(node)) {
+				return false;
+			}
+		}
+	}
+
+	private synchronized boolean grow(Node node) {
+		if (producerNode != node) {
+			// grown by another producer
+			return true;
+		}
+		int capacity = node.queue.capacity();
+		if (closed || capacity >= MAX_CAPACITY) {
+			return false;
+		}
+		Node next = new Node(queueFactory.apply(capacity << 1));
+		node.next = next;
+		producerNode = next;
+		node.queue.close();
+		return true;
+	}
+
+	private IntQueue consumerQueue() {
+		Node node = consumerNode;
+		Node next;
+		// a closed queue is drained only when no more value can be offered
+		while (node.queue.isClosed() && node.queue.isEmpty() && (next = node.next) != null) {
+			node = next;
+			consumerNode = node;
+		}
+		return node.queue;
+	}
+
+	@Override
+	public int peek() {
+		return consumerQueue().peek();
+	}
+
+	@Override
+	public int poll() {
+		return consumerQueue().poll();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		for (Node node = consumerNode; node != null; node = node.next) {
+			if (!node.queue.isEmpty()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public int size() {
+		int size = 0;
+		for (Node node = consumerNode; node != null; node = node.next) {
+			size += node.queue.size();
+		}
+		return size;
+	}
+
+	/**
+	 * Get capacity of the queue producers currently offer to, it
+	 * doubles when full
+	 */
+	@Override
+	public int capacity() {
+		return producerNode.queue.capacity();
+	}
+
+	@Override
+	public synchronized void close() {
+		closed = true;
+		producerNode.queue.close();
+	}
+
+	@Override
+	public boolean isClosed() {
+		return closed;
+	}
+}
@@ -0,0 +1,98 @@
+package com.richardchankiyin;
+
+/**
+ * Cache of a {@link MarketDataSlot} object per symbol
+ */
+public class HeapMarketDataCache implements MarketDataCache {
+
+	private final SegmentedArray<MarketDataSlot> slots = new SegmentedArray<>();
+	private final boolean aggregating;
+
+	public HeapMarketDataCache() {
+		this(false);
+	}
+
+	/**
+	 * @param aggregating true to add slots aggregating updates between publishes
+	 */
+	public HeapMarketDataCache(boolean aggregating) {
+		this.aggregating = aggregating;
+	}
+
+	@Override
+	public void add(int symbolId, String symbol) {
+		slots.set(symbolId, new MarketDataSlot(symbol, aggregating));
+	}
+
+	@Override
+	public void remove(int symbolId) {
+		slots.set(symbolId, null);
+	}
+
+	@Override
+	public boolean contains(int symbolId) {
+		return slots.get(symbolId) != null;
+	}
+
+	@Override
+	public int update(int symbolId, double price, double quantity, long updateTime) {
+		MarketDataSlot slot = slots.get(symbolId);
+		return slot != null ? slot.update(price, quantity, updateTime) : UPDATE_NOT_LOADED;
+	}
+
+	@Override
+	public boolean restore(int symbolId, double price, long updateTime, long publishTime) {
+		MarketDataSlot slot = slots.get(symbolId);
+		return slot != null && slot.restore(price, updateTime, publishTime);
+	}
+
+	@Override
+	public MarketData publish(int symbolId, long publishTime) {
+		MarketDataSlot slot = slots.get(symbolId);
+		return slot != null ? slot.publish(publishTime) : null;
+	}
+
+	@Override
+	public MarketData snapshot(int symbolId) {
+		MarketDataSlot slot = slots.get(symbolId);
+		return slot != null ? slot.snapshot() : null;
+	}
+
+	@Override
+	public boolean isDirty(int symbolId) {
+		MarketDataSlot slot = slots.get(symbolId);
+		return slot != null && slot.isDirty();
+	}
+
+	@Override
+	public double getPrice(int symbolId) {
+		MarketDataSlot slot = slots.get(symbolId);
+		return slot != null ? slot.getPrice() : Double.NaN;
+	}
+
+	@Override
+	public long getPublishTime(int symbolId) {
+		MarketDataSlot slot = slots.get(symbolId);
+		return slot != null ? slot.getPublishTime() : MarketDataImpl.PUBLISH_TIME_NO_PUB;
+	}
+
+	@Override
+	public long getDirtyTimeNanos(int symbolId) {
+		MarketDataSlot slot = slots.get(symbolId);
+		return slot != null ? slot.getDirtyTimeNanos() : 0;
+	}
+
+	@Override
+	public boolean tryMarkRequeued(int symbolId) {
+		MarketDataSlot slot = slots.get(symbolId);
+		return slot != null && slot.tryMarkRequeued();
+	}
+
+	@Override
+	public void clearRequeued(int symbolId) {
+		MarketDataSlot slot = slots.get(symbolId);
+		if (slot != null) {
+			slot.clearRequeued();
+		}
+	}
+}
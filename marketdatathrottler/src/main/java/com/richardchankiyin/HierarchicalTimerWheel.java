@@ -0,0 +1,232 @@
+package com.richardchankiyin;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Hierarchical hashed timer wheel of non negative int ids, e.g. symbol
+ * ids, with a tick of one millisecond. Each of the LEVELS wheels has
+ * WHEEL_SIZE buckets, a bucket of level n covering WHEEL_SIZE^n ticks.
+ * A timer is put in the lowest level whose bucket holds its deadline, and
+ * cascaded to a lower level when the wheel turns to its bucket, so that
+ * scheduling, cancelling and expiring a timer are O(1) without scanning
+ * deadlines. Deadlines beyond the range of the top level are cascaded
+ * again until they are in range.
+ * Buckets are doubly linked lists threaded through arrays indexed by id,
+ * so there is no allocation per timer. Arrays grow with the largest id.
+ * Not thread safe
+ */
+public class HierarchicalTimerWheel {
+
+	public static final long NO_DEADLINE = Long.MAX_VALUE;
+
+	private static final int WHEEL_BITS = 6;
+	private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+	private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+	private static final int LEVELS = 4;
+	private static final long RANGE_MASK = (1L << (WHEEL_BITS * LEVELS)) - 1;
+	private static final int NIL = -1;
+
+	// first id by level * WHEEL_SIZE + bucket
+	private final int[] heads = new int[LEVELS * WHEEL_SIZE];
+	// by id
+	private int[] next;
+	private int[] prev;
+	private int[] buckets;
+	private long[] deadlines;
+	private int size = 0;
+	// all timers of ticks up to currentTick are expired
+	private long currentTick;
+
+	/**
+	 * @param initialCapacity expected largest id + 1
+	 * @param currentTime in milliseconds
+	 */
+	public HierarchicalTimerWheel(int initialCapacity, long currentTime) {
+		int capacity = Math.max(1, initialCapacity);
+		this.next = new int[capacity];
+		this.prev = new int[capacity];
+		this.buckets = new int[capacity];
+		this.deadlines = new long[capacity];
+		Arrays.fill(heads, NIL);
+		Arrays.fill(buckets, NIL);
+		this.currentTick = currentTime;
+	}
+
+	/**
+	 * Add a timer of the id, or change its deadline if already added. A
+	 * deadline not after the current time expires on the next advance
+	 * @param id
+	 * @param deadline in milliseconds
+	 */
+	public void schedule(int id, long deadline) {
+		if (id >= buckets.length) {
+			growIds(id);
+		}
+		if (buckets[id] != NIL) {
+			unlink(id);
+		}
+		deadlines[id] = deadline;
+		link(id, deadline);
+	}
+
+	private void growIds(int id) {
+		int length = Math.max(id + 1, buckets.length << 1);
+		int oldLength = buckets.length;
+		next = Arrays.copyOf(next, length);
+		prev = Arrays.copyOf(prev, length);
+		deadlines = Arrays.copyOf(deadlines, length);
+		buckets = Arrays.copyOf(buckets, length);
+		Arrays.fill(buckets, oldLength, length, NIL);
+	}
+
+	private void link(int id, long deadline) {
+		long tick = Math.max(deadline, currentTick + 1);
+		if (((tick ^ currentTick) & ~RANGE_MASK) != 0) {
+			// out of range, cascaded again from the last tick in range
+			tick = currentTick | RANGE_MASK;
+		}
+		int level = 0;
+		while (((tick ^ currentTick) >>> (WHEEL_BITS * (level + 1))) != 0) {
+			level++;
+		}
+		int bucket = (level << WHEEL_BITS) | (int) ((tick >>> (WHEEL_BITS * level)) & WHEEL_MASK);
+		int head = heads[bucket];
+		next[id] = head;
+		prev[id] = NIL;
+		if (head != NIL) {
+			prev[head] = id;
+		}
+		heads[bucket] = id;
+		buckets[id] = bucket;
+		size++;
+	}
+
+	private void unlink(int id) {
+		int bucket = buckets[id];
+		if (prev[id] == NIL) {
+			heads[bucket] = next[id];
+		} else {
+			next[prev[id]] = next[id];
+		}
+		if (next[id] != NIL) {
+			prev[next[id]] = prev[id];
+		}
+		buckets[id] = NIL;
+		size--;
+	}
+
+	/**
+	 * Remove the timer of the id if added
+	 * @param id
+	 * @return true if removed
+	 */
+	public boolean cancel(int id) {
+		if (!contains(id)) {
+			return false;
+		}
+		unlink(id);
+		return true;
+	}
+
+	public boolean contains(int id) {
+		return id >= 0 && id < buckets.length && buckets[id] != NIL;
+	}
+
+	/**
+	 * Get deadline of an id in the wheel
+	 * @param id
+	 * @return
+	 */
+	public long getDeadline(int id) {
+		return deadlines[id];
+	}
+
+	/**
+	 * Turn the wheel up to currentTime, removing the expired timers
+	 * @param currentTime in milliseconds
+	 * @param expired called with id of each expired timer
+	 */
+	public void advance(long currentTime, IntConsumer expired) {
+		while (currentTick < currentTime) {
+			if (size == 0) {
+				currentTick = currentTime;
+				return;
+			}
+			long tick = ++currentTick;
+			for (int level = LEVELS - 1; level > 0; level--) {
+				if ((tick & ((1L << (WHEEL_BITS * level)) - 1)) == 0) {
+					expireOrCascade((level << WHEEL_BITS) | (int) ((tick >>> (WHEEL_BITS * level)) & WHEEL_MASK), expired);
+				}
+			}
+			expireOrCascade((int) (tick & WHEEL_MASK), expired);
+		}
+	}
+
+	private void expireOrCascade(int bucket, IntConsumer expired) {
+		int id = heads[bucket];
+		heads[bucket] = NIL;
+		while (id != NIL) {
+			int nextId = next[id];
+			buckets[id] = NIL;
+			size--;
+			if (deadlines[id] <= currentTick) {
+				expired.accept(id);
+			} else {
+				link(id, deadlines[id]);
+			}
+			id = nextId;
+		}
+	}
+
+	/**
+	 * Get the earliest time the wheel has to be advanced to, which is the
+	 * earliest deadline or the time a bucket holding it is cascaded
+	 * @return NO_DEADLINE if empty
+	 */
+	public long nextTick() {
+		if (size == 0) {
+			return NO_DEADLINE;
+		}
+		// timers of a level are after the current bucket of the level
+		// and before the end of the current bucket of the level above
+		for (int level = 0; level < LEVELS; level++) {
+			int shift = WHEEL_BITS * level;
+			int currentBucket = (int) ((currentTick >>> shift) & WHEEL_MASK);
+			for (int bucket = currentBucket + 1; bucket < WHEEL_SIZE; bucket++) {
+				if (heads[(level << WHEEL_BITS) | bucket] != NIL) {
+					long base = currentTick & ~((1L << (shift + WHEEL_BITS)) - 1);
+					return base | ((long) bucket << shift);
+				}
+			}
+		}
+		// out of range timers only
+		return (currentTick | RANGE_MASK) + 1;
+	}
+
+	/**
+	 * Remove all timers
+	 * @return ids removed
+	 */
+	public int[] removeAll() {
+		int[] ids = new int[size];
+		int count = 0;
+		for (int bucket = 0; bucket < heads.length; bucket++) {
+			for (int id = heads[bucket]; id != NIL; id = next[id]) {
+				buckets[id] = NIL;
+				ids[count++] = id;
+			}
+			heads[bucket] = NIL;
+		}
+		size = 0;
+		return ids;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public int size() {
+		return size;
+	}
+}
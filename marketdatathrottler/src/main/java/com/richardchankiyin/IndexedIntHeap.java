@@ -0,0 +1,168 @@
+package com.richardchankiyin;
+
+import java.util.Arrays;
+
+/**
+ * Binary min heap of non negative int ids, e.g. symbol ids, keyed by
+ * double. The position of each id in the heap is indexed by id, so that
+ * the key of any id can be changed or the id removed in O(log n). Arrays
+ * grow with the largest id. Not thread safe
+ */
+public class IndexedIntHeap {
+
+	private static final int NOT_IN_HEAP = -1;
+
+	private int[] heap;
+	// by id
+	private int[] positions;
+	private double[] keys;
+	private int size = 0;
+
+	public IndexedIntHeap(int initialCapacity) {
+		int capacity = Math.max(1, initialCapacity);
+		this.heap = new int[capacity];
+		this.positions = new int[capacity];
+		this.keys = new double[capacity];
+		Arrays.fill(positions, NOT_IN_HEAP);
+	}
+
+	/**
+	 * Add the id, or change its key if already added
+	 * @param id
+	 * @param key
+	 */
+	public void put(int id, double key) {
+		if (id >= positions.length) {
+			growIds(id);
+		}
+		int position = positions[id];
+		if (position == NOT_IN_HEAP) {
+			if (size == heap.length) {
+				heap = Arrays.copyOf(heap, size << 1);
+			}
+			keys[id] = key;
+			heap[size] = id;
+			positions[id] = size;
+			siftUp(size++);
+		} else {
+			double oldKey = keys[id];
+			keys[id] = key;
+			if (key < oldKey) {
+				siftUp(position);
+			} else {
+				siftDown(position);
+			}
+		}
+	}
+
+	private void growIds(int id) {
+		int length = Math.max(id + 1, positions.length << 1);
+		int oldLength = positions.length;
+		positions = Arrays.copyOf(positions, length);
+		Arrays.fill(positions, oldLength, length, NOT_IN_HEAP);
+		keys = Arrays.copyOf(keys, length);
+	}
+
+	public boolean contains(int id) {
+		return id >= 0 && id < positions.length && positions[id] != NOT_IN_HEAP;
+	}
+
+	/**
+	 * Get key of an id in the heap
+	 * @param id
+	 * @return
+	 */
+	public double getKey(int id) {
+		return keys[id];
+	}
+
+	/**
+	 * Retrieve without removing the id with the smallest key
+	 * @return IntQueue.EMPTY if the heap is empty
+	 */
+	public int peek() {
+		return size == 0 ? IntQueue.EMPTY : heap[0];
+	}
+
+	/**
+	 * Retrieve and remove the id with the smallest key
+	 * @return IntQueue.EMPTY if the heap is empty
+	 */
+	public int poll() {
+		if (size == 0) {
+			return IntQueue.EMPTY;
+		}
+		int id = heap[0];
+		remove(id);
+		return id;
+	}
+
+	/**
+	 * Remove the id
+	 * @param id
+	 * @return false if the id is not in the heap
+	 */
+	public boolean remove(int id) {
+		if (!contains(id)) {
+			return false;
+		}
+		int position = positions[id];
+		positions[id] = NOT_IN_HEAP;
+		int last = heap[--size];
+		if (position < size) {
+			heap[position] = last;
+			positions[last] = position;
+			siftDown(position);
+			siftUp(positions[last]);
+		}
+		return true;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	private void siftUp(int position) {
+		int id = heap[position];
+		double key = keys[id];
+		while (position > 0) {
+			int parentPosition = (position - 1) >>> 1;
+			int parent = heap[parentPosition];
+			if (keys[parent] <= key) {
+				break;
+			}
+			heap[position] = parent;
+			positions[parent] = position;
+			position = parentPosition;
+		}
+		heap[position] = id;
+		positions[id] = position;
+	}
+
+	private void siftDown(int position) {
+		int id = heap[position];
+		double key = keys[id];
+		int half = size >>> 1;
+		while (position < half) {
+			int childPosition = (position << 1) + 1;
+			int child = heap[childPosition];
+			int rightPosition = childPosition + 1;
+			if (rightPosition < size && keys[heap[rightPosition]] < keys[child]) {
+				childPosition = rightPosition;
+				child = heap[childPosition];
+			}
+			if (key <= keys[child]) {
+				break;
+			}
+			heap[position] = child;
+			positions[child] = position;
+			position = childPosition;
+		}
+		heap[position] = id;
+		positions[id] = position;
+	}
+}
@@ -0,0 +1,48 @@
+package com.richardchankiyin;
+
+/**
+ * FIFO queue of non negative primitive int values, e.g. symbol ids.
+ * peek and poll can only be called by a single consumer thread
+ */
+public interface IntQueue {
+
+	public static final int EMPTY = -1;
+
+	/**
+	 * Insert value at the tail
+	 * @param value non negative value
+	 * @return false if the queue is full
+	 */
+	public boolean offer(int value);
+
+	/**
+	 * Retrieve without removing the head
+	 * @return EMPTY if the queue is empty
+	 */
+	public int peek();
+
+	/**
+	 * Retrieve and remove the head
+	 * @return EMPTY if the queue is empty
+	 */
+	public int poll();
+
+	public boolean isEmpty();
+
+	/**
+	 * Get no of queued values. Can be approximate while other
+	 * threads are offering or polling
+	 * @return
+	 */
+	public int size();
+
+	public int capacity();
+
+	/**
+	 * Stop accepting values, offer returns false afterwards. Values
+	 * already offered can still be polled
+	 */
+	public void close();
+
+	public boolean isClosed();
+}
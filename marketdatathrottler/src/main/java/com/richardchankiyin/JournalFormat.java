@@ -0,0 +1,104 @@
+package com.richardchankiyin;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Layout of the journal written by {@link JournalReceiver} and read by
+ * {@link JournalReader}. A journal is a directory of fixed size segment
+ * files, journal-&lt;index&gt;.dat, of little endian records aligned to
+ * RECORD_SIZE. The first int of a record is its header, release stored
+ * last by the writer and acquired first by the reader, so that a reader
+ * never sees a partly written record:
+ * <ul>
+ * <li>0: not written yet</li>
+ * <li>symbol id + 1: market data, then at 8 price, at 16 update time and
+ * at 24 publish time</li>
+ * <li>-(symbol id + 1): symbol, then at 4 length and at 8 UTF-8 bytes of
+ * the symbol, padded to RECORD_SIZE</li>
+ * <li>END_OF_SEGMENT: the rest of the segment is not used</li>
+ * </ul>
+ * A symbol record is written to a segment before the first market data
+ * of the symbol in it, so that each segment can be read on its own
+ */
+final class JournalFormat {
+
+	static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+	static final int RECORD_SIZE = 32;
+	static final int HEADER_NOT_WRITTEN = 0;
+	static final int END_OF_SEGMENT = Integer.MIN_VALUE;
+	static final int SYMBOL_LENGTH_OFFSET = 4;
+	static final int SYMBOL_OFFSET = 8;
+	static final int PRICE_OFFSET = 8;
+	static final int UPDATE_TIME_OFFSET = 16;
+	static final int PUBLISH_TIME_OFFSET = 24;
+	static final int MAX_SYMBOL_LENGTH = 1024;
+	static final int MIN_SEGMENT_SIZE = 4096;
+	// header access with release/acquire semantics
+	static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, BYTE_ORDER);
+
+	private static final String SEGMENT_PREFIX = "journal-";
+	private static final String SEGMENT_SUFFIX = ".dat";
+
+	private JournalFormat() {
+	}
+
+	static Path segmentPath(Path directory, int segmentIndex) {
+		return directory.resolve(String.format("%s%010d%s", SEGMENT_PREFIX, segmentIndex, SEGMENT_SUFFIX));
+	}
+
+	/**
+	 * Get index of the last segment in the directory
+	 * @param directory
+	 * @return -1 if none
+	 * @throws IOException
+	 */
+	static int lastSegmentIndex(Path directory) throws IOException {
+		return segmentIndex(directory, true);
+	}
+
+	/**
+	 * Get index of the first segment in the directory
+	 * @param directory
+	 * @return -1 if none
+	 * @throws IOException
+	 */
+	static int firstSegmentIndex(Path directory) throws IOException {
+		return segmentIndex(directory, false);
+	}
+
+	private static int segmentIndex(Path directory, boolean last) throws IOException {
+		int found = -1;
+		if (!Files.isDirectory(directory)) {
+			return found;
+		}
+		try (DirectoryStream<Path> segments = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+			for (Path segment: segments) {
+				String name = segment.getFileName().toString();
+				try {
+					int index = Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+					if (found == -1 || (last ? index > found : index < found)) {
+						found = index;
+					}
+				} catch (NumberFormatException e) {
+					// not a segment
+				}
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Size of the symbol record of a symbol of length bytes
+	 * @param length
+	 * @return
+	 */
+	static int symbolRecordSize(int length) {
+		return (SYMBOL_OFFSET + length + RECORD_SIZE - 1) / RECORD_SIZE * RECORD_SIZE;
+	}
+}
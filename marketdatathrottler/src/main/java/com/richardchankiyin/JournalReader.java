@@ -0,0 +1,182 @@
+package com.richardchankiyin;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read a journal written by {@link JournalReceiver}, possibly by another
+ * process while it is being written. Segments are memory mapped read only
+ * and records are handed over field by field without copying. Not thread
+ * safe
+ */
+public class JournalReader implements Closeable {
+
+	/**
+	 * Handle a market data record
+	 */
+	@FunctionalInterface
+	public interface RecordHandler {
+		public void onRecord(int symbolId, String symbol, double price, long updateTime, long publishTime);
+	}
+
+	// how often a header not written is checked for a writer which stopped
+	// without ending the segment
+	private static final long NEXT_SEGMENT_CHECK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+	private final Path directory;
+	private long nextSegmentCheckNanos = System.nanoTime() - NEXT_SEGMENT_CHECK_NANOS;
+	private MappedByteBuffer segment = null;
+	private int segmentIndex;
+	private int position = 0;
+	// by symbol id
+	private String[] symbols = new String[0];
+	private long noOfRecords = 0;
+
+	/**
+	 * Read from the first segment in the directory
+	 * @param directory
+	 * @throws IOException
+	 */
+	public JournalReader(Path directory) throws IOException {
+		this(directory, Math.max(0, JournalFormat.firstSegmentIndex(directory)));
+	}
+
+	/**
+	 * Read from a segment, e.g. to skip segments already read
+	 * @param directory
+	 * @param segmentIndex
+	 */
+	public JournalReader(Path directory, int segmentIndex) {
+		this.directory = directory;
+		this.segmentIndex = segmentIndex;
+	}
+
+	/**
+	 * Read market data records written so far
+	 * @param handler
+	 * @param maxRecords
+	 * @return no of market data records read, 0 if none written yet
+	 * @throws IOException
+	 */
+	public int poll(RecordHandler handler, int maxRecords) throws IOException {
+		int count = 0;
+		while (count < maxRecords) {
+			if (segment == null && !openSegment()) {
+				break;
+			}
+			int header = position < segment.capacity() ? header() : JournalFormat.END_OF_SEGMENT;
+			if (header == JournalFormat.HEADER_NOT_WRITTEN) {
+				// not written yet, unless the writer stopped without ending
+				// the segment, which is checked now and then only
+				long now = System.nanoTime();
+				if (now - nextSegmentCheckNanos < NEXT_SEGMENT_CHECK_NANOS) {
+					break;
+				}
+				nextSegmentCheckNanos = now;
+				if (!nextSegmentExists()) {
+					break;
+				}
+				// the writer may have written the record and ended the
+				// segment since the header was read, it is only the end
+				// if the header is still not written
+				header = header();
+				if (header == JournalFormat.HEADER_NOT_WRITTEN) {
+					header = JournalFormat.END_OF_SEGMENT;
+				}
+			}
+			if (header == JournalFormat.END_OF_SEGMENT) {
+				if (!nextSegmentExists()) {
+					break;
+				}
+				segment = null;
+				segmentIndex++;
+				position = 0;
+			} else if (header < 0) {
+				readSymbol(-header - 1);
+			} else {
+				int symbolId = header - 1;
+				handler.onRecord(symbolId, symbolId < symbols.length ? symbols[symbolId] : null,
+						segment.getDouble(position + JournalFormat.PRICE_OFFSET),
+						segment.getLong(position + JournalFormat.UPDATE_TIME_OFFSET),
+						segment.getLong(position + JournalFormat.PUBLISH_TIME_OFFSET));
+				position += JournalFormat.RECORD_SIZE;
+				noOfRecords++;
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private int header() {
+		return (int) JournalFormat.INT.getAcquire(segment, position);
+	}
+
+	// the next segment is created after the current one is ended
+	boolean nextSegmentExists() {
+		return Files.exists(JournalFormat.segmentPath(directory, segmentIndex + 1));
+	}
+
+	private boolean openSegment() throws IOException {
+		Path path = JournalFormat.segmentPath(directory, segmentIndex);
+		if (!Files.exists(path)) {
+			return false;
+		}
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size == 0) {
+				// being created
+				return false;
+			}
+			segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+		}
+		segment.order(JournalFormat.BYTE_ORDER);
+		return true;
+	}
+
+	private void readSymbol(int symbolId) {
+		int length = segment.getInt(position + JournalFormat.SYMBOL_LENGTH_OFFSET);
+		byte[] bytes = new byte[length];
+		for (int i = 0; i < length; i++) {
+			bytes[i] = segment.get(position + JournalFormat.SYMBOL_OFFSET + i);
+		}
+		if (symbolId >= symbols.length) {
+			symbols = Arrays.copyOf(symbols, Math.max(symbolId + 1, symbols.length << 1));
+		}
+		symbols[symbolId] = new String(bytes, StandardCharsets.UTF_8);
+		position += JournalFormat.symbolRecordSize(length);
+	}
+
+	/**
+	 * Get symbol of an id read so far
+	 * @param symbolId
+	 * @return null if not read yet
+	 */
+	public String getSymbol(int symbolId) {
+		return symbolId >= 0 && symbolId < symbols.length ? symbols[symbolId] : null;
+	}
+
+	/**
+	 * Get index of the segment being read
+	 * @return
+	 */
+	public int getSegmentIndex() {
+		return this.segmentIndex;
+	}
+
+	public long getNoOfRecords() {
+		return this.noOfRecords;
+	}
+
+	@Override
+	public void close() {
+		segment = null;
+	}
+}
@@ -0,0 +1,179 @@
+package com.richardchankiyin;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Receiver appending each published market data as a fixed size binary
+ * record to a memory mapped journal, see {@link JournalFormat}. Nothing is
+ * allocated per record. A new segment is started when the current one is
+ * full and when the receiver is created, so a journal is never appended
+ * to by two instances. Segments are forced to disk when full and on
+ * close. Other processes can tail the journal by {@link JournalReader}.
+ * onReceive is called by a single thread, e.g. its receiver lane
+ */
+public class JournalReceiver implements Receiver, Closeable {
+
+	private static final Logger logger = Logger.getLogger("com.richardchankiyin");
+	public static final int DEFAULT_SEGMENT_SIZE = 64 << 20;
+
+	private final Path directory;
+	private final SymbolRegistry symbolRegistry;
+	private final int segmentSize;
+	private MappedByteBuffer segment;
+	private int segmentIndex;
+	private int position;
+	// symbol record written to the current segment by symbol id
+	private boolean[] symbolWritten = new boolean[0];
+	private boolean isClosed = false;
+	private volatile long noOfRecords = 0;
+	private volatile long noOfDropped = 0;
+
+	/**
+	 * @param directory created if not exists
+	 * @param symbolRegistry registry of the processor, e.g. getSymbolRegistry()
+	 * @throws IOException
+	 */
+	public JournalReceiver(Path directory, SymbolRegistry symbolRegistry) throws IOException {
+		this(directory, symbolRegistry, DEFAULT_SEGMENT_SIZE);
+	}
+
+	/**
+	 * @param directory created if not exists
+	 * @param symbolRegistry registry of the processor, e.g. getSymbolRegistry()
+	 * @param segmentSize multiple of 32 bytes, at least 4096
+	 * @throws IOException
+	 */
+	public JournalReceiver(Path directory, SymbolRegistry symbolRegistry, int segmentSize) throws IOException {
+		if (segmentSize < JournalFormat.MIN_SEGMENT_SIZE || segmentSize % JournalFormat.RECORD_SIZE != 0) {
+			throw new IllegalArgumentException("segmentSize must be a multiple of "
+					+ JournalFormat.RECORD_SIZE + " and at least " + JournalFormat.MIN_SEGMENT_SIZE);
+		}
+		this.directory = directory;
+		this.symbolRegistry = symbolRegistry;
+		this.segmentSize = segmentSize;
+		Files.createDirectories(directory);
+		this.segmentIndex = JournalFormat.lastSegmentIndex(directory);
+		openNextSegment();
+	}
+
+	private void openNextSegment() throws IOException {
+		segmentIndex++;
+		try (FileChannel channel = FileChannel.open(JournalFormat.segmentPath(directory, segmentIndex),
+				StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			// the mapping stays valid after the channel is closed
+			segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+		}
+		segment.order(JournalFormat.BYTE_ORDER);
+		position = 0;
+		Arrays.fill(symbolWritten, false);
+		logger.log(Level.INFO, "journal segment opened: {0}", segmentIndex);
+	}
+
+	private void endSegment() {
+		if (position < segmentSize) {
+			JournalFormat.INT.setRelease(segment, position, JournalFormat.END_OF_SEGMENT);
+		}
+		segment.force();
+	}
+
+	@Override
+	public void onReceive(MarketData data) {
+		if (isClosed) {
+			noOfDropped++;
+			return;
+		}
+		String symbol = data.getSymbol();
+		int symbolId = symbolRegistry.getSymbolId(symbol);
+		if (symbolId == SymbolRegistry.SYMBOL_ID_UNKNOWN) {
+			// removed after publish
+			noOfDropped++;
+			return;
+		}
+		if (symbolId >= symbolWritten.length) {
+			symbolWritten = Arrays.copyOf(symbolWritten, Math.max(symbolId + 1, symbolWritten.length << 1));
+		}
+		byte[] symbolBytes = symbolWritten[symbolId] ? null : symbol.getBytes(StandardCharsets.UTF_8);
+		if (symbolBytes != null && symbolBytes.length > JournalFormat.MAX_SYMBOL_LENGTH) {
+			logger.log(Level.WARNING, "symbol too long for journal: {0}", symbol);
+			noOfDropped++;
+			return;
+		}
+		try {
+			int size = JournalFormat.RECORD_SIZE
+					+ (symbolBytes != null ? JournalFormat.symbolRecordSize(symbolBytes.length) : 0);
+			if (segmentSize - position < size) {
+				endSegment();
+				openNextSegment();
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		if (symbolBytes != null) {
+			writeSymbol(symbolId, symbolBytes);
+		}
+		segment.putDouble(position + JournalFormat.PRICE_OFFSET, data.getPrice());
+		segment.putLong(position + JournalFormat.UPDATE_TIME_OFFSET, data.getUpdateTime());
+		segment.putLong(position + JournalFormat.PUBLISH_TIME_OFFSET, data.getPublishTime());
+		JournalFormat.INT.setRelease(segment, position, symbolId + 1);
+		position += JournalFormat.RECORD_SIZE;
+		noOfRecords++;
+	}
+
+	private void writeSymbol(int symbolId, byte[] symbolBytes) {
+		segment.putInt(position + JournalFormat.SYMBOL_LENGTH_OFFSET, symbolBytes.length);
+		for (int i = 0; i < symbolBytes.length; i++) {
+			segment.put(position + JournalFormat.SYMBOL_OFFSET + i, symbolBytes[i]);
+		}
+		JournalFormat.INT.setRelease(segment, position, -(symbolId + 1));
+		position += JournalFormat.symbolRecordSize(symbolBytes.length);
+		symbolWritten[symbolId] = true;
+	}
+
+	/**
+	 * Mark the end of the journal and force it to disk. Later market data
+	 * are dropped. Called by the thread calling onReceive, or after it
+	 * stops, e.g. after the processor is stopped
+	 */
+	@Override
+	public void close() {
+		if (!isClosed) {
+			isClosed = true;
+			endSegment();
+		}
+	}
+
+	public Path getDirectory() {
+		return this.directory;
+	}
+
+	/**
+	 * Get index of the segment being written
+	 * @return
+	 */
+	public int getSegmentIndex() {
+		return this.segmentIndex;
+	}
+
+	public long getNoOfRecords() {
+		return this.noOfRecords;
+	}
+
+	/**
+	 * Get no of market data not written, e.g. of removed symbols
+	 * @return
+	 */
+	public long getNoOfDropped() {
+		return this.noOfDropped;
+	}
+}
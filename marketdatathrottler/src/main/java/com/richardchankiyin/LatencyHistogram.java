@@ -0,0 +1,111 @@
+package com.richardchankiyin;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Log linear histogram in the style of HdrHistogram. Values below
+ * 2 * SUB_BUCKET_COUNT are counted exactly, larger values share a bucket
+ * with values within 1 / SUB_BUCKET_COUNT of them (about 3%).
+ *
+ * record is allocation free and meant for a single writer thread,
+ * any thread can read
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 5;
+	private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+	private static final int NO_OF_COUNTS = indexOf(Long.MAX_VALUE) + 1;
+
+	private final AtomicLongArray counts;
+	private volatile long totalCount = 0;
+	private volatile long maxValue = 0;
+
+	public LatencyHistogram() {
+		this.counts = new AtomicLongArray(NO_OF_COUNTS);
+	}
+
+	private LatencyHistogram(LatencyHistogram source) {
+		this.counts = new AtomicLongArray(NO_OF_COUNTS);
+		long total = 0;
+		for (int i = 0; i < NO_OF_COUNTS; i++) {
+			long count = source.counts.get(i);
+			counts.lazySet(i, count);
+			total += count;
+		}
+		this.totalCount = total;
+		this.maxValue = source.maxValue;
+	}
+
+	static int indexOf(long value) {
+		if (value < 2 * SUB_BUCKET_COUNT) {
+			return (int) value;
+		}
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		return (shift << SUB_BUCKET_BITS) + (int) (value >>> shift);
+	}
+
+	static long highestValueOf(int index) {
+		int shift = (index >> SUB_BUCKET_BITS) - 1;
+		if (shift <= 0) {
+			return index;
+		}
+		long subBucket = index - ((long) shift << SUB_BUCKET_BITS);
+		return ((subBucket + 1) << shift) - 1;
+	}
+
+	/**
+	 * Record a value, negative values are recorded as 0
+	 * @param value
+	 */
+	public void record(long value) {
+		if (value < 0) {
+			value = 0;
+		}
+		int index = indexOf(value);
+		counts.lazySet(index, counts.get(index) + 1);
+		if (value > maxValue) {
+			maxValue = value;
+		}
+		totalCount = totalCount + 1;
+	}
+
+	public long getTotalCount() {
+		return totalCount;
+	}
+
+	public long getMaxValue() {
+		return maxValue;
+	}
+
+	/**
+	 * Get the value below which the given percentage of recorded values fall
+	 * @param percentile between 0 and 100
+	 * @return 0 if nothing is recorded
+	 */
+	public long getValueAtPercentile(double percentile) {
+		long total = 0;
+		for (int i = 0; i < NO_OF_COUNTS; i++) {
+			total += counts.get(i);
+		}
+		if (total == 0) {
+			return 0;
+		}
+		long target = Math.max(1, (long) Math.ceil(Math.min(100, percentile) / 100 * total));
+		long cumulative = 0;
+		for (int i = 0; i < NO_OF_COUNTS; i++) {
+			cumulative += counts.get(i);
+			if (cumulative >= target) {
+				return Math.min(highestValueOf(i), maxValue);
+			}
+		}
+		return maxValue;
+	}
+
+	/**
+	 * Copy current counts, e.g. for a consistent set of percentiles
+	 * @return
+	 */
+	public LatencyHistogram copy() {
+		return new LatencyHistogram(this);
+	}
+}
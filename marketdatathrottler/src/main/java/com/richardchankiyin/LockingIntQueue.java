@@ -0,0 +1,96 @@
+package com.richardchankiyin;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded queue backed by an int array and guarded by a lock. Any
+ * number of threads can offer
+ */
+public class LockingIntQueue implements IntQueue {
+
+	private final int[] buffer;
+	private final ReentrantLock lock = new ReentrantLock();
+	private int head = 0;
+	private int tail = 0;
+	private volatile int count = 0;
+	private volatile boolean closed = false;
+
+	public LockingIntQueue(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("capacity must be positive");
+		}
+		this.buffer = new int[capacity];
+	}
+
+	@Override
+	public boolean offer(int value) {
+		lock.lock();
+		try {
+			if (count == buffer.length || closed) {
+				return false;
+			}
+			buffer[tail] = value;
+			tail = tail + 1 == buffer.length ? 0 : tail + 1;
+			count++;
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public int peek() {
+		lock.lock();
+		try {
+			return count == 0 ? EMPTY : buffer[head];
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public int poll() {
+		lock.lock();
+		try {
+			if (count == 0) {
+				return EMPTY;
+			}
+			int value = buffer[head];
+			head = head + 1 == buffer.length ? 0 : head + 1;
+			count--;
+			return value;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return count == 0;
+	}
+
+	@Override
+	public int size() {
+		return count;
+	}
+
+	@Override
+	public int capacity() {
+		return buffer.length;
+	}
+
+	@Override
+	public void close() {
+		lock.lock();
+		try {
+			closed = true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public boolean isClosed() {
+		return closed;
+	}
+}
@@ -5,4 +5,13 @@ public interface MarketData {
 	public double getPrice();
 	public long getUpdateTime();
 	public long getPublishTime();
+	
+	/**
+	 * Get traded quantity of the update, e.g. for the volume and VWAP of
+	 * {@link AggregatedMarketData}
+	 * @return NaN if not a trade or not known
+	 */
+	public default double getQuantity() {
+		return Double.NaN;
+	}
 }
@@ -0,0 +1,122 @@
+package com.richardchankiyin;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * Array backed container of market data published together, in publish
+ * order. A batch comes from a {@link MarketDataBatchPool} and is reused
+ * once released. The publisher releases it after
+ * {@link MarketDataProcessor#publishAggregatedMarketData(MarketDataBatch)}
+ * returns, so a sink keeping it longer must call retain before returning
+ * and release when done
+ */
+public class MarketDataBatch {
+
+	private static final AtomicIntegerFieldUpdater<MarketDataBatch> REF_COUNT =
+			AtomicIntegerFieldUpdater.newUpdater(MarketDataBatch.class, "refCount");
+
+	private final MarketData[] datas;
+	private final MarketDataBatchPool pool;
+	// index in the pool, -1 if not pooled
+	private final int poolIndex;
+	private int size = 0;
+	private volatile int refCount = 0;
+
+	/**
+	 * Create a batch not returned to any pool
+	 * @param capacity
+	 */
+	public MarketDataBatch(int capacity) {
+		this(capacity, null, -1);
+	}
+
+	MarketDataBatch(int capacity, MarketDataBatchPool pool, int poolIndex) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("capacity must be positive");
+		}
+		this.datas = new MarketData[capacity];
+		this.pool = pool;
+		this.poolIndex = poolIndex;
+	}
+
+	/**
+	 * Append market data
+	 * @param data
+	 * @return false if the batch is full
+	 */
+	public boolean add(MarketData data) {
+		if (size == datas.length) {
+			return false;
+		}
+		datas[size++] = data;
+		return true;
+	}
+
+	public MarketData get(int index) {
+		if (index >= size) {
+			throw new IndexOutOfBoundsException("index: " + index + " size: " + size);
+		}
+		return datas[index];
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public boolean isFull() {
+		return size == datas.length;
+	}
+
+	public int capacity() {
+		return datas.length;
+	}
+
+	public void clear() {
+		Arrays.fill(datas, 0, size, null);
+		size = 0;
+	}
+
+	/**
+	 * Keep the batch from being reused until released
+	 * @return
+	 */
+	public MarketDataBatch retain() {
+		REF_COUNT.incrementAndGet(this);
+		return this;
+	}
+
+	/**
+	 * Give up a reference, the last one clears the batch and returns it
+	 * to its pool
+	 */
+	public void release() {
+		int count = REF_COUNT.decrementAndGet(this);
+		if (count == 0) {
+			clear();
+			if (pool != null) {
+				pool.recycle(this);
+			}
+		} else if (count < 0) {
+			REF_COUNT.incrementAndGet(this);
+			throw new IllegalStateException("batch released more than retained");
+		}
+	}
+
+	int getRefCount() {
+		return refCount;
+	}
+
+	int getPoolIndex() {
+		return poolIndex;
+	}
+
+	@Override
+	public String toString() {
+		return "MarketDataBatch [size=" + size + ", datas=" + Arrays.toString(Arrays.copyOf(datas, size)) + "]";
+	}
+}
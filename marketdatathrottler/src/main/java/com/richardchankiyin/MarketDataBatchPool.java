@@ -0,0 +1,68 @@
+package com.richardchankiyin;
+
+/**
+ * Fixed set of reusable {@link MarketDataBatch}. Batches are acquired by a
+ * single thread, e.g. the throttle controller thread, and can be released
+ * by any thread. A new unpooled batch is created if all are in use
+ */
+public class MarketDataBatchPool {
+
+	private final MarketDataBatch[] batches;
+	// indexes of batches not in use
+	private final IntQueue free;
+	private final int batchCapacity;
+	private volatile long noOfMisses = 0;
+
+	/**
+	 * @param poolSize no of batches
+	 * @param batchCapacity max no of market data of a batch
+	 */
+	public MarketDataBatchPool(int poolSize, int batchCapacity) {
+		if (poolSize <= 0) {
+			throw new IllegalArgumentException("poolSize must be positive");
+		}
+		this.batches = new MarketDataBatch[poolSize];
+		this.free = new MpscIntQueue(poolSize);
+		this.batchCapacity = batchCapacity;
+		for (int i = 0; i < poolSize; i++) {
+			batches[i] = new MarketDataBatch(batchCapacity, this, i);
+			free.offer(i);
+		}
+	}
+
+	/**
+	 * Get an empty batch with one reference. Called by a single thread only
+	 * @return
+	 */
+	public MarketDataBatch acquire() {
+		int index = free.poll();
+		MarketDataBatch batch;
+		if (index == IntQueue.EMPTY) {
+			noOfMisses++;
+			batch = new MarketDataBatch(batchCapacity);
+		} else {
+			batch = batches[index];
+		}
+		return batch.retain();
+	}
+
+	void recycle(MarketDataBatch batch) {
+		free.offer(batch.getPoolIndex());
+	}
+
+	/**
+	 * Get no of batches not in use
+	 * @return
+	 */
+	public int getNoOfFree() {
+		return free.size();
+	}
+
+	/**
+	 * Get no of times all batches were in use on acquire
+	 * @return
+	 */
+	public long getNoOfMisses() {
+		return noOfMisses;
+	}
+}
@@ -0,0 +1,96 @@
+package com.richardchankiyin;
+
+/**
+ * Cache entries of loaded symbols by symbol id. Symbols are added and
+ * removed by one thread at a time, entries are read and updated by id by
+ * any thread, with the semantics of the methods of {@link MarketDataSlot}.
+ * An entry removed in the meantime reads as not loaded: update returns
+ * UPDATE_NOT_LOADED, publish and snapshot return null
+ */
+public interface MarketDataCache {
+
+	/** update of a symbol not loaded */
+	public static final int UPDATE_NOT_LOADED = -1;
+
+	/**
+	 * Add an empty entry of a symbol
+	 * @param symbolId
+	 * @param symbol
+	 */
+	public void add(int symbolId, String symbol);
+
+	/**
+	 * Remove the entry of a symbol
+	 * @param symbolId
+	 */
+	public void remove(int symbolId);
+
+	/**
+	 * Check whether a symbol is loaded
+	 * @param symbolId
+	 * @return
+	 */
+	public boolean contains(int symbolId);
+
+	/**
+	 * See {@link MarketDataSlot#update(double, double, long)}
+	 * @param symbolId
+	 * @param price
+	 * @param quantity NaN if not known
+	 * @param updateTime
+	 * @return UPDATE_NOT_LOADED, or MarketDataSlot.UPDATE_STALE, UPDATE_CONFLATED or UPDATE_DIRTY
+	 */
+	public int update(int symbolId, double price, double quantity, long updateTime);
+
+	/**
+	 * See {@link MarketDataSlot#restore(double, long, long)}
+	 * @param symbolId
+	 * @param price
+	 * @param updateTime
+	 * @param publishTime
+	 * @return false if not loaded or the cached value is not older
+	 */
+	public boolean restore(int symbolId, double price, long updateTime, long publishTime);
+
+	/**
+	 * See {@link MarketDataSlot#publish(long)}
+	 * @param symbolId
+	 * @param publishTime
+	 * @return null if not loaded or not dirty
+	 */
+	public MarketData publish(int symbolId, long publishTime);
+
+	/**
+	 * Get a consistent copy of the entry
+	 * @param symbolId
+	 * @return null if not loaded
+	 */
+	public MarketData snapshot(int symbolId);
+
+	public boolean isDirty(int symbolId);
+
+	/**
+	 * Get latest price without a consistent view of other fields
+	 * @param symbolId
+	 * @return
+	 */
+	public double getPrice(int symbolId);
+
+	public long getPublishTime(int symbolId);
+
+	/**
+	 * See {@link MarketDataSlot#getDirtyTimeNanos()}
+	 * @param symbolId
+	 * @return
+	 */
+	public long getDirtyTimeNanos(int symbolId);
+
+	/**
+	 * See {@link MarketDataSlot#tryMarkRequeued()}
+	 * @param symbolId
+	 * @return false if not loaded or already marked
+	 */
+	public boolean tryMarkRequeued(int symbolId);
+
+	public void clearRequeued(int symbolId);
+}
@@ -10,6 +10,7 @@ public class MarketDataImpl implements MarketData {
 	private double price;
 	private long updateTime;
 	private long publishTime; // -1 means not published
+	private double quantity = Double.NaN;
 	public MarketDataImpl(String symbol, double price, long updateTime, long publishTime) {
 		Objects.requireNonNull(symbol);
 		this.symbol = symbol;
@@ -18,6 +19,19 @@ public class MarketDataImpl implements MarketData {
 		this.publishTime = publishTime;
 	}
 	
+	/**
+	 * Create market data of a trade
+	 * @param symbol
+	 * @param price
+	 * @param quantity
+	 * @param updateTime
+	 * @param publishTime
+	 */
+	public MarketDataImpl(String symbol, double price, double quantity, long updateTime, long publishTime) {
+		this(symbol, price, updateTime, publishTime);
+		this.quantity = quantity;
+	}
+	
 	public MarketDataImpl(String symbol, double price) {
 		this(symbol, price, UPDATE_TIME_INIT_LOAD, PUBLISH_TIME_NO_PUB);
 	}
@@ -46,6 +60,11 @@ public class MarketDataImpl implements MarketData {
 	public long getPublishTime() {
 		return this.publishTime;
 	}	
+	
+	@Override
+	public double getQuantity() {
+		return this.quantity;
+	}
 
 	public String toString() {
 		return new StringBuilder(this.symbol).append("|")
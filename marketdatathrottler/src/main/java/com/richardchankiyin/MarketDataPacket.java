@@ -0,0 +1,182 @@
+package com.richardchankiyin;
+
+import java.util.Arrays;
+
+/**
+ * Reusable columnar container of the updates of a feed packet, by symbol
+ * id, for {@link MarketDataProcessorImpl#onMessages(MarketDataPacket)}.
+ * Filled by one feed handler thread at a time and cleared before the
+ * next packet. Not thread safe
+ */
+public class MarketDataPacket {
+
+	private final int[] symbolIds;
+	private final double[] prices;
+	private final double[] quantities;
+	private final long[] updateTimes;
+	private final boolean[] superseded;
+	private final boolean[] stale;
+	// open addressing table of symbol id to index of its latest update,
+	// entries of an older stamp are empty
+	private final int[] tableSymbolIds;
+	private final int[] tableIndexes;
+	private final int[] tableStamps;
+	private final int tableMask;
+	private int stamp = 0;
+	private int size = 0;
+
+	public MarketDataPacket(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("capacity must be positive");
+		}
+		this.symbolIds = new int[capacity];
+		this.prices = new double[capacity];
+		this.quantities = new double[capacity];
+		this.updateTimes = new long[capacity];
+		this.superseded = new boolean[capacity];
+		this.stale = new boolean[capacity];
+		int tableSize = Integer.highestOneBit(capacity * 2 - 1) << 1;
+		this.tableSymbolIds = new int[tableSize];
+		this.tableIndexes = new int[tableSize];
+		this.tableStamps = new int[tableSize];
+		this.tableMask = tableSize - 1;
+	}
+
+	/**
+	 * Append an update
+	 * @param symbolId
+	 * @param price
+	 * @param updateTime
+	 * @return false if the packet is full
+	 */
+	public boolean add(int symbolId, double price, long updateTime) {
+		return add(symbolId, price, Double.NaN, updateTime);
+	}
+
+	/**
+	 * Append a trade
+	 * @param symbolId
+	 * @param price
+	 * @param quantity NaN if not known
+	 * @param updateTime
+	 * @return false if the packet is full
+	 */
+	public boolean add(int symbolId, double price, double quantity, long updateTime) {
+		if (size == symbolIds.length) {
+			return false;
+		}
+		symbolIds[size] = symbolId;
+		prices[size] = price;
+		quantities[size] = quantity;
+		updateTimes[size] = updateTime;
+		size++;
+		return true;
+	}
+
+	public int getSymbolId(int index) {
+		checkIndex(index);
+		return symbolIds[index];
+	}
+
+	public double getPrice(int index) {
+		checkIndex(index);
+		return prices[index];
+	}
+
+	public double getQuantity(int index) {
+		checkIndex(index);
+		return quantities[index];
+	}
+
+	public long getUpdateTime(int index) {
+		checkIndex(index);
+		return updateTimes[index];
+	}
+
+	private void checkIndex(int index) {
+		if (index >= size) {
+			throw new IndexOutOfBoundsException("index: " + index + " size: " + size);
+		}
+	}
+
+	/**
+	 * Mark updates superseded by another update of the same symbol in the
+	 * packet with a later update time, or the same update time and a later
+	 * position. An update older than an earlier update of the same symbol
+	 * is marked stale instead, as onMessage would reject it
+	 * @return no of updates superseded or stale
+	 */
+	public int coalesce() {
+		if (++stamp == 0) {
+			// wrapped, stamps left in the table could be taken as current
+			Arrays.fill(tableStamps, 0);
+			stamp = 1;
+		}
+		int noOfMarked = 0;
+		for (int i = 0; i < size; i++) {
+			superseded[i] = false;
+			stale[i] = false;
+			int symbolId = symbolIds[i];
+			int hash = symbolId * 0x9E3779B9;
+			int slot = (hash ^ (hash >>> 16)) & tableMask;
+			while (tableStamps[slot] == stamp && tableSymbolIds[slot] != symbolId) {
+				slot = (slot + 1) & tableMask;
+			}
+			if (tableStamps[slot] != stamp) {
+				tableStamps[slot] = stamp;
+				tableSymbolIds[slot] = symbolId;
+				tableIndexes[slot] = i;
+			} else {
+				int latest = tableIndexes[slot];
+				if (updateTimes[i] >= updateTimes[latest]) {
+					superseded[latest] = true;
+					tableIndexes[slot] = i;
+				} else {
+					stale[i] = true;
+				}
+				noOfMarked++;
+			}
+		}
+		return noOfMarked;
+	}
+
+	/**
+	 * Check whether an update is marked by the last coalesce
+	 * @param index
+	 * @return
+	 */
+	public boolean isSuperseded(int index) {
+		checkIndex(index);
+		return superseded[index];
+	}
+
+	/**
+	 * Check whether an update is marked stale by the last coalesce
+	 * @param index
+	 * @return
+	 */
+	public boolean isStale(int index) {
+		checkIndex(index);
+		return stale[index];
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public boolean isFull() {
+		return size == symbolIds.length;
+	}
+
+	public int capacity() {
+		return symbolIds.length;
+	}
+
+	public void clear() {
+		size = 0;
+	}
+}
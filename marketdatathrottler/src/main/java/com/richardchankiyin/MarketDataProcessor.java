@@ -3,4 +3,16 @@ package com.richardchankiyin;
 public abstract class MarketDataProcessor {
 	public abstract void onMessage(MarketData data);
 	public abstract void publishAggregatedMarketData(MarketData data);
+	
+	/**
+	 * Publish market data of several symbols in one call. Default is
+	 * calling publishAggregatedMarketData(MarketData) for each. The batch
+	 * is reused after the call returns unless retained
+	 * @param batch
+	 */
+	public void publishAggregatedMarketData(MarketDataBatch batch) {
+		for (int i = 0, size = batch.size(); i < size; i++) {
+			publishAggregatedMarketData(batch.get(i));
+		}
+	}
 }
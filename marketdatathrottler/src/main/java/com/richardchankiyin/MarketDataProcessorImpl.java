@@ -1,13 +1,20 @@
 package com.richardchankiyin;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ArrayBlockingQueue;
+import java.util.Objects;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntConsumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -17,22 +24,68 @@ public class MarketDataProcessorImpl extends MarketDataProcessor {
 	private final IllegalStateException DATA_NOT_UPDATED_EXCEPTION = new IllegalStateException("data not updated");
 	
 	private static final Logger logger = Logger.getLogger("com.richardchankiyin");
-	private static final int MAXSENDPERTIMESLOT = 100;
-	private static final int TIMESLOTMILLISEC = 1000;
+	public static final int MAXSENDPERTIMESLOT = 100;
+	public static final int TIMESLOTMILLISEC = 1000;
+	public static final int DEFAULT_RECEIVER_LANE_CAPACITY = 1024;
+	// batches a sink can retain before new ones are allocated
+	private static final int BATCH_POOL_SIZE = 4;
+	private static final long NOT_IDLE = Long.MIN_VALUE;
+	private static final long SNAPSHOT_STOP_TIMEOUT_MILLIS = 10000;
 	private final List<Receiver> receivers = new ArrayList<>();
-	private ThreadPoolExecutor executorPool = null;
+	private final List<Receiver> conflatingReceivers = new ArrayList<>();
+	private int receiverLaneCapacity = DEFAULT_RECEIVER_LANE_CAPACITY;
+	private OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+	private int maxReceiverBatchSize = 1;
+	private ReceiverThreadMode receiverThreadMode = ReceiverThreadMode.PLATFORM;
+	private int maxConcurrentDeliveries = ReceiverDispatcher.UNBOUNDED_DELIVERIES;
+	private ReceiverDispatcher receiverDispatcher = null;
 	
-	private final Map<String, AtomicReference<MarketData>> marketDataCache = new HashMap<>();
-	private ArrayBlockingQueue<String> publishQueue;
-	private boolean isStarted = false;
+	private SymbolRegistry symbolRegistry = new SymbolRegistry(Collections.emptyList());
+	private boolean offHeapCache = false;
+	private boolean aggregation = false;
+	private MarketDataCache marketDataCache = new HeapMarketDataCache();
+	private PublishQueueType publishQueueType = PublishQueueType.SPSC;
+	private boolean multiProducer = false;
+	private IntQueue publishQueue;
+	private PublishScheduler publishScheduler = new FifoPublishScheduler();
+	private volatile ThrottlePolicy throttlePolicy = ThrottlePolicy.DEFAULT;
+	// below owned by the throttle controller thread after start
+	private ThrottlePolicy appliedThrottlePolicy = throttlePolicy;
+	// min publish interval by symbol id of appliedThrottlePolicy, -1 if not resolved yet
+	private long[] minPublishIntervals = new long[0];
+	// symbols published within their min publish interval, by the end of it
+	private HierarchicalTimerWheel cooldown = new HierarchicalTimerWheel(1, 0);
+	private final IntConsumer cooldownExpired = symbolId -> {
+		if (marketDataCache.contains(symbolId)) {
+			// ready since the end of its cooldown
+			publishScheduler.offer(symbolId, symbolRegistry.getSymbol(symbolId), marketDataCache.getPrice(symbolId),
+					cooldown.getDeadline(symbolId));
+		}
+	};
+	private boolean requeueOnPriceMove = false;
+	private int publishBatchSize = 1;
+	private MarketDataBatchPool batchPool = null;
+	private volatile boolean isStarted = false;
+	private volatile RateLimiter rateLimiter = throttlePolicy.newRateLimiter(null);
+	private WaitStrategy waitStrategy = new BlockingWaitStrategy();
+	private ThreadFactory threadFactory = r -> new Thread(r, "throttle-controller");
 	private Thread throttleControllerThread = null;
+	private Clock clock = Clock.SYSTEM;
+	private FeedRecorder feedRecorder = null;
+	// time the throttle controller thread has nothing to do at, NOT_IDLE if busy
+	private volatile long idleTime = NOT_IDLE;
+	private Path snapshotFile = null;
+	private long snapshotIntervalMillis = 0;
+	private ScheduledExecutorService snapshotExecutor = null;
+	private final ProcessorMetrics metrics = new ProcessorMetrics(this);
+	private final Diagnostics diagnostics = new Diagnostics();
 	
 	/**
 	 * To return current timestamp
 	 * @return
 	 */
 	public long getCurrentTimeInMilliseconds() {
-		return System.currentTimeMillis();
+		return clock.currentTimeMillis();
 	}
 	
 	/**
@@ -47,53 +100,225 @@ public class MarketDataProcessorImpl extends MarketDataProcessor {
 	 * Start the instance
 	 */
 	public void start() {
+		//init queue with size of symbols, each symbol is queued at most once.
+		//the queue grows when symbols are added after start
+		PublishQueueType queueType = multiProducer && publishQueueType == PublishQueueType.SPSC
+				? PublishQueueType.MPSC : publishQueueType;
+		publishQueue = new GrowableIntQueue(queueType::newQueue, Math.max(1, symbolRegistry.size()));
+		// not published before a restart or restored from a snapshot
+		for (int i = 0, noOfIds = symbolRegistry.size(); i < noOfIds; i++) {
+			if (marketDataCache.isDirty(i)) {
+				publishQueue.offer(i);
+			}
+		}
+		receiverDispatcher = ReceiverDispatcher.create(receivers, conflatingReceivers, symbolRegistry,
+				receiverLaneCapacity, overflowPolicy, maxReceiverBatchSize, receiverThreadMode, maxConcurrentDeliveries);
+		receiverDispatcher.start();
+		cooldown = new HierarchicalTimerWheel(symbolRegistry.size(), getCurrentTimeInMilliseconds());
+		requeueOnPriceMove = publishScheduler.isPriceSensitive();
+		batchPool = publishBatchSize > 1 ? new MarketDataBatchPool(BATCH_POOL_SIZE, publishBatchSize) : null;
 		isStarted = true;
 		// start publishing here
-		throttleControllerThread = new Thread(()-> {
-			int publishedCount = 0;
-			long timestampStartCounting = this.getCurrentTimeInMilliseconds();
+		throttleControllerThread = threadFactory.newThread(()-> {
+			final BooleanSupplier workAvailable = () -> !isStarted || !publishQueue.isEmpty()
+					|| throttlePolicy != appliedThrottlePolicy;
 			while (isStarted) {
-				if (publishQueue != null) {
-					String symbol = publishQueue.peek();
-					if (symbol != null)	{
-						AtomicReference<MarketData> ref = marketDataCache.get(symbol);
-						logger.log(Level.INFO, "symbol to be published: {0}", symbol);
-						int attempts = 0;
-						final int maxattempts = 2;
-						boolean updateAttempt = true;
-						boolean updated = false;
-						MarketData dataPub = null;
-						do {
-							MarketData dataExp = ref.get();
-							dataPub = new MarketDataImpl(dataExp.getSymbol(), dataExp.getPrice(), dataExp.getUpdateTime(), this.getCurrentTimeInMilliseconds());
-							
-							updated = ref.compareAndSet(dataExp, dataPub);
-							attempts++;
-							if (updated == true || attempts == maxattempts) {
-								updateAttempt = false;
-							}
-						} while(updateAttempt);
-						if (updated) {
-							publishQueue.poll();
-							publishAggregatedMarketData(dataPub);
-							publishedCount++;
-						}
-						if (publishedCount >= MAXSENDPERTIMESLOT) {
-							long currentTime = this.getCurrentTimeInMilliseconds();
-							long sleepTime = currentTime - timestampStartCounting;
-							try { Thread.sleep(sleepTime); } catch (InterruptedException ie) {}
-						}
-						long currentTime = this.getCurrentTimeInMilliseconds();
-						long timeDiff = currentTime - timestampStartCounting;
-						if (timeDiff >= TIMESLOTMILLISEC) {
-							// reset count
-							publishedCount = 0;
+				idleTime = NOT_IDLE;
+				long currentTime = this.getCurrentTimeInMilliseconds();
+				ThrottlePolicy policy = throttlePolicy;
+				if (policy != appliedThrottlePolicy) {
+					applyThrottlePolicy(policy, currentTime);
+				}
+				schedule(currentTime);
+				int symbolId = publishScheduler.peek();
+				if (symbolId == IntQueue.EMPTY) {
+					if (cooldown.isEmpty()) {
+						// park until onMessage pushes a symbol
+						idleTime = Long.MAX_VALUE;
+						waitStrategy.waitForWork(workAvailable);
+					} else {
+						// park until onMessage pushes a symbol or a cooldown is over
+						long cooldownTick = cooldown.nextTick();
+						idleTime = currentTime;
+						waitStrategy.waitForWork(workAvailable, clock.toWaitNanos(Math.max(1, cooldownTick - currentTime)));
+					}
+				} else {
+					long permitTime = rateLimiter.nextPermitTime(currentTime);
+					if (permitTime > currentTime) {
+						// wait until the oldest publish leaves the window
+						long waitStartNanos = System.nanoTime();
+						idleTime = currentTime;
+						waitStrategy.waitFor(clock.toWaitNanos(permitTime - currentTime));
+						long waitNanos = System.nanoTime() - waitStartNanos;
+						metrics.onRateLimiterWait(waitNanos);
+						if (diagnostics.isEnabled()) {
+							diagnostics.recordRateLimited(waitNanos, currentTime);
 						}
-					}					
+					} else if (batchPool == null) {
+						publish(symbolId, currentTime);
+					} else {
+						publishBatch(currentTime);
+					}
 				}
 			}
 		});
 		throttleControllerThread.start();
+		if (snapshotFile != null) {
+			snapshotExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+				Thread thread = new Thread(r, "snapshot-writer");
+				thread.setDaemon(true);
+				return thread;
+			});
+			snapshotExecutor.scheduleWithFixedDelay(this::saveSnapshotQuietly,
+					snapshotIntervalMillis, snapshotIntervalMillis, TimeUnit.MILLISECONDS);
+		}
+	}
+	
+	/**
+	 * Publish a symbol if a permit is taken. The permit is taken before
+	 * publish as the rate limiter can be shared with other instances,
+	 * otherwise wait again.
+	 * Called by the throttle controller thread only
+	 * @param symbolId
+	 * @param currentTime
+	 */
+	private void publish(int symbolId, long currentTime) {
+		if (!marketDataCache.contains(symbolId)) {
+			// symbol is removed
+			publishScheduler.remove(symbolId);
+		} else if (rateLimiter.tryAcquire(currentTime)) {
+			publishScheduler.remove(symbolId);
+			MarketData dataPub = marketDataCache.publish(symbolId, currentTime);
+			if (dataPub != null) {
+				publishScheduler.onPublished(symbolId, dataPub);
+				publishAggregatedMarketData(dataPub);
+				onPublished(symbolId, dataPub);
+			}
+		}
+	}
+	
+	/**
+	 * Publish up to publishBatchSize symbols in one call, taking a permit
+	 * for each of them.
+	 * Called by the throttle controller thread only
+	 * @param currentTime
+	 */
+	private void publishBatch(long currentTime) {
+		MarketDataBatch batch = batchPool.acquire();
+		try {
+			int symbolId;
+			while (!batch.isFull() && (symbolId = publishScheduler.peek()) != IntQueue.EMPTY) {
+				if (!marketDataCache.contains(symbolId)) {
+					// symbol is removed
+					publishScheduler.remove(symbolId);
+					continue;
+				}
+				if (!rateLimiter.tryAcquire(currentTime)) {
+					break;
+				}
+				publishScheduler.remove(symbolId);
+				MarketData dataPub = marketDataCache.publish(symbolId, currentTime);
+				if (dataPub != null) {
+					publishScheduler.onPublished(symbolId, dataPub);
+					batch.add(dataPub);
+					onPublished(symbolId, dataPub);
+				}
+			}
+			if (!batch.isEmpty()) {
+				publishAggregatedMarketData(batch);
+			}
+		} finally {
+			batch.release();
+		}
+	}
+	
+	private void onPublished(int symbolId, MarketData dataPub) {
+		metrics.onPublished(System.nanoTime() - marketDataCache.getDirtyTimeNanos(symbolId));
+		if (diagnostics.isEnabled()) {
+			diagnostics.record(DiagnosticEvent.PUBLISHED, symbolId, dataPub.getPrice(), dataPub.getUpdateTime());
+		}
+	}
+	
+	/**
+	 * Move symbols turned dirty and those whose cooldown is over to the
+	 * publish scheduler. A symbol published within its min publish interval
+	 * waits in the cooldown timer wheel until the end of its cooldown.
+	 * Called by the throttle controller thread only
+	 * @param currentTime
+	 */
+	private void schedule(long currentTime) {
+		int symbolId;
+		while ((symbolId = publishQueue.poll()) != IntQueue.EMPTY) {
+			if (!marketDataCache.contains(symbolId)) {
+				// symbol is removed
+				continue;
+			}
+			marketDataCache.clearRequeued(symbolId);
+			if (publishScheduler.contains(symbolId)) {
+				// price moved while waiting
+				publishScheduler.offer(symbolId, symbolRegistry.getSymbol(symbolId), marketDataCache.getPrice(symbolId),
+						currentTime);
+			} else if (marketDataCache.isDirty(symbolId) && !cooldown.contains(symbolId)) {
+				scheduleAfterCooldown(symbolId, currentTime);
+			}
+		}
+		cooldown.advance(currentTime, cooldownExpired);
+	}
+	
+	private void scheduleAfterCooldown(int symbolId, long currentTime) {
+		long publishTime = marketDataCache.getPublishTime(symbolId);
+		long cooldownEndTime = publishTime + minPublishIntervalOf(symbolId);
+		if (publishTime != MarketDataImpl.PUBLISH_TIME_NO_PUB && cooldownEndTime > currentTime) {
+			cooldown.schedule(symbolId, cooldownEndTime);
+		} else {
+			publishScheduler.offer(symbolId, symbolRegistry.getSymbol(symbolId), marketDataCache.getPrice(symbolId),
+					currentTime);
+		}
+	}
+	
+	private long minPublishIntervalOf(int symbolId) {
+		if (symbolId >= minPublishIntervals.length) {
+			int oldLength = minPublishIntervals.length;
+			minPublishIntervals = Arrays.copyOf(minPublishIntervals, Math.max(symbolId + 1, oldLength << 1));
+			Arrays.fill(minPublishIntervals, oldLength, minPublishIntervals.length, -1);
+		}
+		long interval = minPublishIntervals[symbolId];
+		if (interval < 0) {
+			interval = appliedThrottlePolicy.getMinPublishIntervalMillis(symbolRegistry.getSymbol(symbolId));
+			minPublishIntervals[symbolId] = interval;
+		}
+		return interval;
+	}
+	
+	/**
+	 * Switch to a new policy. The rate limiter is created by the new
+	 * policy from the current one, and symbols in cooldown are scheduled
+	 * again by their new min publish interval.
+	 * Called by the throttle controller thread only
+	 * @param policy
+	 * @param currentTime
+	 */
+	private void applyThrottlePolicy(ThrottlePolicy policy, long currentTime) {
+		rateLimiter = policy.newRateLimiter(rateLimiter);
+		appliedThrottlePolicy = policy;
+		Arrays.fill(minPublishIntervals, -1);
+		for (int symbolId: cooldown.removeAll()) {
+			if (marketDataCache.contains(symbolId)) {
+				scheduleAfterCooldown(symbolId, currentTime);
+			}
+		}
+		logger.log(Level.INFO, "throttle policy applied, max publishes: {0}", policy.getMaxPublishes());
+	}
+	
+	/**
+	 * Check whether the throttle controller thread has done everything it
+	 * can until the time moves past the given time or new market data come
+	 * @param time
+	 * @return
+	 */
+	boolean isIdleAt(long time) {
+		IntQueue queue = this.publishQueue;
+		return queue != null && queue.isEmpty() && idleTime >= time;
 	}
 	
 	/**
@@ -101,21 +326,185 @@ public class MarketDataProcessorImpl extends MarketDataProcessor {
 	 */
 	public void stop() {
 		isStarted = false;
-		if (executorPool != null) executorPool.shutdown();
+		if (throttleControllerThread != null) LockSupport.unpark(throttleControllerThread);
+		if (receiverDispatcher != null) receiverDispatcher.stop();
+		if (snapshotExecutor != null) {
+			// last one for the next start, on the snapshot thread so that
+			// it never overlaps a scheduled one
+			snapshotExecutor.execute(this::saveSnapshotQuietly);
+			snapshotExecutor.shutdown();
+			try {
+				if (!snapshotExecutor.awaitTermination(SNAPSHOT_STOP_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+					logger.log(Level.WARNING, "snapshot not saved on stop: {0}", snapshotFile);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			snapshotExecutor = null;
+		}
+	}
+	
+	private void saveSnapshotQuietly() {
+		try {
+			saveSnapshot(snapshotFile);
+		} catch (IOException | RuntimeException e) {
+			logger.log(Level.WARNING, "snapshot failed: " + snapshotFile, e);
+		}
 	}
 	
 	/**
-	 * Get cached market data value based on Symbol
+	 * Get a copy of cached market data value based on Symbol
 	 * @param symbol
 	 * @return
 	 */
 	public MarketData getCache(String symbol) {
-		AtomicReference<MarketData> ref = marketDataCache.get(symbol);
-		if (ref != null) {
-			return ref.get();
-		} else {
-			return null;
-		}
+		return getCache(symbolRegistry.getSymbolId(symbol));
+	}
+	
+	/**
+	 * Get a copy of cached market data value based on symbol id
+	 * @param symbolId
+	 * @return
+	 */
+	public MarketData getCache(int symbolId) {
+		return marketDataCache.snapshot(symbolId);
+	}
+	
+	/**
+	 * Get id of a loaded symbol
+	 * @param symbol
+	 * @return SymbolRegistry.SYMBOL_ID_UNKNOWN if the symbol is not loaded
+	 */
+	public int getSymbolId(String symbol) {
+		return symbolRegistry.getSymbolId(symbol);
+	}
+	
+	/**
+	 * Get registry of loaded symbols
+	 * @return
+	 */
+	public SymbolRegistry getSymbolRegistry() {
+		return this.symbolRegistry;
+	}
+	
+	/**
+	 * Get metrics of the instance
+	 * @return
+	 */
+	public ProcessorMetrics getMetrics() {
+		return this.metrics;
+	}
+	
+	/**
+	 * Get diagnostics of the hot path. Disabled by default, can be
+	 * enabled and disabled at any time
+	 * @return
+	 */
+	public Diagnostics getDiagnostics() {
+		return this.diagnostics;
+	}
+	
+	/**
+	 * Write events recently recorded by diagnostics
+	 * @param out
+	 * @throws IOException
+	 */
+	public void dumpDiagnostics(Appendable out) throws IOException {
+		diagnostics.dump(out, symbolRegistry);
+	}
+	
+	/**
+	 * Get the rate limiter controlling publishAggregatedMarketData calls
+	 * @return
+	 */
+	public RateLimiter getRateLimiter() {
+		return this.rateLimiter;
+	}
+	
+	/**
+	 * Get the strategy used by the throttle controller thread to wait
+	 * @return
+	 */
+	public WaitStrategy getWaitStrategy() {
+		return this.waitStrategy;
+	}
+	
+	/**
+	 * Get type of the queue of symbols waiting to be published
+	 * @return
+	 */
+	public PublishQueueType getPublishQueueType() {
+		return this.publishQueueType;
+	}
+	
+	public boolean isOffHeapCache() {
+		return this.offHeapCache;
+	}
+	
+	public boolean isAggregation() {
+		return this.aggregation;
+	}
+	
+	public boolean isMultiProducer() {
+		return this.multiProducer;
+	}
+	
+	/**
+	 * Get no of symbols waiting to be published
+	 * @return
+	 */
+	public int getPublishQueueDepth() {
+		IntQueue queue = this.publishQueue;
+		// scheduler and cooldown are read without synchronization, approximate
+		return queue != null ? queue.size() + publishScheduler.size() + cooldown.size() : 0;
+	}
+	
+	/**
+	 * Get the scheduler deciding which dirty symbol is published next
+	 * @return
+	 */
+	public PublishScheduler getPublishScheduler() {
+		return this.publishScheduler;
+	}
+	
+	/**
+	 * Get min interval between publishes of the same symbol
+	 * @return
+	 */
+	public long getMinPublishIntervalMillis() {
+		return this.throttlePolicy.getMinPublishIntervalMillis();
+	}
+	
+	/**
+	 * Get max no of symbols published per call
+	 * @return
+	 */
+	public int getPublishBatchSize() {
+		return this.publishBatchSize;
+	}
+	
+	/**
+	 * Get the clock market data are published by
+	 * @return
+	 */
+	public Clock getClock() {
+		return this.clock;
+	}
+	
+	/**
+	 * Get the current throttle policy
+	 * @return
+	 */
+	public ThrottlePolicy getThrottlePolicy() {
+		return this.throttlePolicy;
+	}
+	
+	/**
+	 * Get dispatcher delivering to receivers, null before start
+	 * @return
+	 */
+	public ReceiverDispatcher getReceiverDispatcher() {
+		return this.receiverDispatcher;
 	}
 	
 	/**
@@ -130,19 +519,19 @@ public class MarketDataProcessorImpl extends MarketDataProcessor {
 	/********* Pre-start calls **************/
 	/**
 	 * load symbols into the instance. Can only do that
-	 * before the instance is started
+	 * before the instance is started, use addSymbol and
+	 * removeSymbol afterwards
 	 * @param symbols
 	 */
-	public void loadSymbols(List<String> symbols) {
+	public synchronized void loadSymbols(List<String> symbols) {
 		if (!isStarted()) {
-			//init queue with size of symbols
-			publishQueue = new ArrayBlockingQueue<>(symbols.size(), true);
-			for (String symbol: symbols) {
-				logger.log(Level.INFO, "init symbol: {0}",symbol);
-				MarketData data = new MarketDataImpl(symbol, Double.NaN);
-				AtomicReference<MarketData> ref = new AtomicReference<>(data);
-				marketDataCache.put(symbol, ref);
+			symbolRegistry = new SymbolRegistry(symbols);
+			marketDataCache = newMarketDataCache();
+			int noOfSymbols = symbolRegistry.size();
+			for (int i = 0; i < noOfSymbols; i++) {
+				marketDataCache.add(i, symbolRegistry.getSymbol(i));
 			}
+			logger.log(Level.INFO, "no of symbols loaded: {0}", noOfSymbols);
 		} else {
 			logger.warning("the instance isStarted!");
 			throw INSTANCE_START_STATE_EXCEPTION;
@@ -156,14 +545,446 @@ public class MarketDataProcessorImpl extends MarketDataProcessor {
 	 * @param receiver
 	 */
 	public void registerReceiver(Receiver receiver) {
+		registerReceiver(receiver, false);
+	}
+	
+	/**
+	 * register receiver. Can only do that before the instance is
+	 * started. A conflating receiver keeps only the latest pending
+	 * update of each symbol, so a slow receiver gets the latest market
+	 * data once it catches up and its backlog is bounded by the no of
+	 * symbols
+	 * @param receiver
+	 * @param conflateBySymbol
+	 */
+	public void registerReceiver(Receiver receiver, boolean conflateBySymbol) {
 		if (!isStarted()) {
 			receivers.add(receiver);
+			if (conflateBySymbol) {
+				conflatingReceivers.add(receiver);
+			}
+		} else {
+			logger.warning("the instance isStarted!");
+			throw INSTANCE_START_STATE_EXCEPTION;
+		}
+	}
+	
+	
+	/**
+	 * set rate limiter controlling publishAggregatedMarketData calls.
+	 * Can only do that before the instance is started. Default is
+	 * a sliding window of MAXSENDPERTIMESLOT per TIMESLOTMILLISEC. The
+	 * limiter is kept by policies derived from getThrottlePolicy() with the
+	 * same global rate, see {@link ThrottlePolicy#fixed(RateLimiter)}
+	 * @param rateLimiter
+	 */
+	public void setRateLimiter(RateLimiter rateLimiter) {
+		if (!isStarted()) {
+			Objects.requireNonNull(rateLimiter);
+			setThrottlePolicy(throttlePolicy.withGlobalRate(rateLimiter.getMaxPermits(), rateLimiter.getWindowMillis())
+					.withRateLimiterFactory(ThrottlePolicy.fixed(rateLimiter)));
+		} else {
+			logger.warning("the instance isStarted!");
+			throw INSTANCE_START_STATE_EXCEPTION;
+		}
+	}
+	
+	
+	/**
+	 * set the strategy used by the throttle controller thread to wait
+	 * for new symbols and for rate limiter permits. Can only do that
+	 * before the instance is started. Default is {@link BlockingWaitStrategy}
+	 * @param waitStrategy
+	 */
+	public void setWaitStrategy(WaitStrategy waitStrategy) {
+		if (!isStarted()) {
+			Objects.requireNonNull(waitStrategy);
+			this.waitStrategy = waitStrategy;
+		} else {
+			logger.warning("the instance isStarted!");
+			throw INSTANCE_START_STATE_EXCEPTION;
+		}
+	}
+	
+	
+	/**
+	 * set type of the queue of symbols waiting to be published. Can only
+	 * do that before the instance is started. Default is SPSC, which
+	 * requires onMessage to be called by a single thread
+	 * @param publishQueueType
+	 */
+	public void setPublishQueueType(PublishQueueType publishQueueType) {
+		if (!isStarted()) {
+			Objects.requireNonNull(publishQueueType);
+			this.publishQueueType = publishQueueType;
+		} else {
+			logger.warning("the instance isStarted!");
+			throw INSTANCE_START_STATE_EXCEPTION;
+		}
+	}
+	
+	
+	/**
+	 * set whether cached market data are kept off heap by an
+	 * {@link OffHeapMarketDataCache} instead of a {@link HeapMarketDataCache}
+	 * object per symbol, for universes of millions of symbols. Can only
+	 * do that before the instance is started. Default is false.
+	 * Data already cached, e.g. restored from a snapshot, are moved over
+	 * @param offHeapCache
+	 */
+	public synchronized void setOffHeapCache(boolean offHeapCache) {
+		if (!isStarted()) {
+			if (this.offHeapCache != offHeapCache) {
+				this.offHeapCache = offHeapCache;
+				rebuildMarketDataCache();
+			}
+		} else {
+			logger.warning("the instance isStarted!");
+			throw INSTANCE_START_STATE_EXCEPTION;
+		}
+	}
+	
+	
+	/**
+	 * set whether updates received between two publishes of a symbol are
+	 * aggregated instead of only conflated. Can only do that before the
+	 * instance is started. Default is false.
+	 * Open, high, low, tick count and, for updates with a quantity,
+	 * volume and VWAP are kept in the cache entry of the symbol in O(1)
+	 * per update and published as {@link AggregatedMarketData}, then reset
+	 * in place. Stale updates are not aggregated, and updates of a packet
+	 * of onMessages are all applied instead of being coalesced
+	 * @param aggregation
+	 */
+	public synchronized void setAggregation(boolean aggregation) {
+		if (!isStarted()) {
+			if (this.aggregation != aggregation) {
+				this.aggregation = aggregation;
+				rebuildMarketDataCache();
+			}
 		} else {
 			logger.warning("the instance isStarted!");
 			throw INSTANCE_START_STATE_EXCEPTION;
 		}
 	}
 	
+	private MarketDataCache newMarketDataCache() {
+		return offHeapCache ? new OffHeapMarketDataCache(symbolRegistry, aggregation) : new HeapMarketDataCache(aggregation);
+	}
+	
+	private void rebuildMarketDataCache() {
+		MarketDataCache previous = marketDataCache;
+		marketDataCache = newMarketDataCache();
+		for (int i = 0, noOfIds = symbolRegistry.size(); i < noOfIds; i++) {
+			MarketData data = previous.snapshot(i);
+			if (data != null) {
+				marketDataCache.add(i, data.getSymbol());
+				marketDataCache.restore(i, data.getPrice(), data.getUpdateTime(), data.getPublishTime());
+			}
+		}
+	}
+	
+	
+	/**
+	 * set whether onMessage is called by many threads, e.g. a feed
+	 * handler thread per venue of a consolidated feed. Can only do that
+	 * before the instance is started. Default is false.
+	 * In multi producer mode an SPSC publish queue is replaced by MPSC,
+	 * and an update older than the cached one, e.g. one losing the race
+	 * to a later tick of another venue, is counted as rejected stale and
+	 * dropped instead of throwing an IllegalStateException. The latest
+	 * update time wins whichever thread writes last, and a symbol is
+	 * queued once by the thread turning its slot dirty
+	 * @param multiProducer
+	 */
+	public void setMultiProducer(boolean multiProducer) {
+		if (!isStarted()) {
+			this.multiProducer = multiProducer;
+		} else {
+			logger.warning("the instance isStarted!");
+			throw INSTANCE_START_STATE_EXCEPTION;
+		}
+	}
+	
+	
+	/**
+	 * set the scheduler deciding which dirty symbol is published next.
+	 * Can only do that before the instance is started. Default is
+	 * {@link FifoPublishScheduler}
+	 * @param publishScheduler
+	 */
+	public void setPublishScheduler(PublishScheduler publishScheduler) {
+		if (!isStarted()) {
+			Objects.requireNonNull(publishScheduler);
+			this.publishScheduler = publishScheduler;
+		} else {
+			logger.warning("the instance isStarted!");
+			throw INSTANCE_START_STATE_EXCEPTION;
+		}
+	}
+	
+	
+	/**
+	 * set min interval between publishes of the same symbol. Can only do
+	 * that before the instance is started. Default is TIMESLOTMILLISEC,
+	 * i.e. no more than one update per second per symbol
+	 * @param minPublishIntervalMillis 0 for no limit
+	 */
+	public void setMinPublishIntervalMillis(long minPublishIntervalMillis) {
+		if (!isStarted()) {
+			setThrottlePolicy(throttlePolicy.withMinPublishInterval(minPublishIntervalMillis));
+		} else {
+			logger.warning("the instance isStarted!");
+			throw INSTANCE_START_STATE_EXCEPTION;
+		}
+	}
+	
+	/**
+	 * set max no of symbols published per call. Above 1 the eligible
+	 * symbols are published together by
+	 * {@link #publishAggregatedMarketData(MarketDataBatch)}, each taking a
+	 * permit of the rate limiter. Can only do that before the instance is
+	 * started. Default is 1, i.e. publishAggregatedMarketData(MarketData)
+	 * @param publishBatchSize
+	 */
+	public void setPublishBatchSize(int publishBatchSize) {
+		if (!isStarted()) {
+			if (publishBatchSize <= 0) {
+				throw new IllegalArgumentException("publishBatchSize must be positive");
+			}
+			this.publishBatchSize = publishBatchSize;
+		} else {
+			logger.warning("the instance isStarted!");
+			throw INSTANCE_START_STATE_EXCEPTION;
+		}
+	}
+	
+	
+	/**
+	 * Restore cached market data of loaded symbols from a snapshot file,
+	 * e.g. written by the instance before restart. Symbols not loaded are
+	 * skipped. Restored data are not published again, except those not
+	 * published before the snapshot, which are queued on start. Can only do that
+	 * before the instance is started, after loadSymbols
+	 * @param file
+	 * @return no of symbols restored
+	 * @throws IOException
+	 */
+	public synchronized int loadSnapshot(Path file) throws IOException {
+		if (!isStarted()) {
+			long startNanos = System.nanoTime();
+			int count = MarketDataSnapshot.read(file, (symbolIdHint, symbol, length, price, updateTime, publishTime) -> {
+				String hinted = symbolRegistry.getSymbol(symbolIdHint);
+				if (hinted != null && MarketDataSnapshot.isSymbol(hinted, symbol, length)) {
+					return marketDataCache.restore(symbolIdHint, price, updateTime, publishTime);
+				}
+				return restore(new String(symbol, 0, length, StandardCharsets.UTF_8), price, updateTime, publishTime);
+			});
+			logger.log(Level.INFO, "snapshot loaded: {0} symbols in {1} us",
+					new Object[] {count, TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos)});
+			return count;
+		} else {
+			logger.warning("the instance isStarted!");
+			throw INSTANCE_START_STATE_EXCEPTION;
+		}
+	}
+	
+	/**
+	 * set file the cache is saved to periodically after start, and once
+	 * more on stop. Can only do that before the instance is started
+	 * @param file
+	 * @param intervalMillis
+	 */
+	public void setSnapshotFile(Path file, long intervalMillis) {
+		if (!isStarted()) {
+			if (intervalMillis <= 0) {
+				throw new IllegalArgumentException("intervalMillis must be positive");
+			}
+			this.snapshotFile = Objects.requireNonNull(file);
+			this.snapshotIntervalMillis = intervalMillis;
+		} else {
+			logger.warning("the instance isStarted!");
+			throw INSTANCE_START_STATE_EXCEPTION;
+		}
+	}
+	
+	/**
+	 * set the clock market data are published by and permits are taken
+	 * by, e.g. a {@link VirtualClock} to replay a feed. Can only do that
+	 * before the instance is started. Default is Clock.SYSTEM
+	 * @param clock
+	 */
+	public void setClock(Clock clock) {
+		if (!isStarted()) {
+			this.clock = Objects.requireNonNull(clock);
+		} else {
+			logger.warning("the instance isStarted!");
+			throw INSTANCE_START_STATE_EXCEPTION;
+		}
+	}
+	
+	/**
+	 * set recorder capturing each message received by onMessage,
+	 * including rejected ones, with the time of the clock it arrives at.
+	 * Can only do that before the instance is started
+	 * @param feedRecorder null to stop capturing
+	 */
+	public void setFeedRecorder(FeedRecorder feedRecorder) {
+		if (!isStarted()) {
+			this.feedRecorder = feedRecorder;
+		} else {
+			logger.warning("the instance isStarted!");
+			throw INSTANCE_START_STATE_EXCEPTION;
+		}
+	}
+	
+	/**
+	 * set factory of the throttle controller thread, e.g. to name it or
+	 * to pin it to a core by an affinity library. Can only do that before
+	 * the instance is started
+	 * @param threadFactory
+	 */
+	public void setThreadFactory(ThreadFactory threadFactory) {
+		if (!isStarted()) {
+			Objects.requireNonNull(threadFactory);
+			this.threadFactory = threadFactory;
+		} else {
+			logger.warning("the instance isStarted!");
+			throw INSTANCE_START_STATE_EXCEPTION;
+		}
+	}
+	
+	
+	/**
+	 * set how updates are queued for each receiver. Can only do that
+	 * before the instance is started. Default is a capacity of
+	 * DEFAULT_RECEIVER_LANE_CAPACITY with BLOCK policy, delivered by onReceive,
+	 * so every published update is delivered
+	 * @param capacity max no of pending updates per receiver
+	 * @param overflowPolicy what to do when a receiver has capacity pending updates
+	 * @param maxBatchSize 1 to deliver by onReceive, otherwise by onReceiveBatch
+	 */
+	public void setReceiverLane(int capacity, OverflowPolicy overflowPolicy, int maxBatchSize) {
+		if (!isStarted()) {
+			Objects.requireNonNull(overflowPolicy);
+			if (capacity <= 0 || maxBatchSize <= 0) {
+				throw new IllegalArgumentException("capacity and maxBatchSize must be positive");
+			}
+			this.receiverLaneCapacity = capacity;
+			this.overflowPolicy = overflowPolicy;
+			this.maxReceiverBatchSize = maxBatchSize;
+		} else {
+			logger.warning("the instance isStarted!");
+			throw INSTANCE_START_STATE_EXCEPTION;
+		}
+	}
+
+	/**
+	 * set the kind of thread each receiver lane delivers on and the max no
+	 * of deliveries in progress of all receivers. Can only do that before
+	 * the instance is started. Default is PLATFORM and UNBOUNDED_DELIVERIES.
+	 * VIRTUAL suits receivers blocking on I/O, each still gets updates in
+	 * publish order on its own thread
+	 * @param threadMode
+	 * @param maxConcurrentDeliveries positive, or ReceiverDispatcher.UNBOUNDED_DELIVERIES
+	 */
+	public void setReceiverThreadMode(ReceiverThreadMode threadMode, int maxConcurrentDeliveries) {
+		if (!isStarted()) {
+			Objects.requireNonNull(threadMode);
+			if (maxConcurrentDeliveries < 0) {
+				throw new IllegalArgumentException("maxConcurrentDeliveries must not be negative");
+			}
+			this.receiverThreadMode = threadMode;
+			this.maxConcurrentDeliveries = maxConcurrentDeliveries;
+		} else {
+			logger.warning("the instance isStarted!");
+			throw INSTANCE_START_STATE_EXCEPTION;
+		}
+	}
+	
+	
+	/********* Calls at any time **************/
+	/**
+	 * set throttle policy, before or after the instance is started.
+	 * After start the throttle controller thread picks it up on its next
+	 * loop without any lock, creates the rate limiter of the new policy
+	 * from the current one and applies the new min publish intervals,
+	 * including to symbols in cooldown
+	 * @param throttlePolicy
+	 */
+	public synchronized void setThrottlePolicy(ThrottlePolicy throttlePolicy) {
+		Objects.requireNonNull(throttlePolicy);
+		if (!isStarted()) {
+			// no throttle controller thread yet
+			this.rateLimiter = throttlePolicy.newRateLimiter(this.rateLimiter);
+			this.appliedThrottlePolicy = throttlePolicy;
+			Arrays.fill(minPublishIntervals, -1);
+		}
+		this.throttlePolicy = throttlePolicy;
+		if (isStarted()) {
+			// wake up to apply the policy
+			LockSupport.unpark(throttleControllerThread);
+		}
+	}
+	
+	/**
+	 * Write cached market data of all symbols to a snapshot file, before
+	 * or after the instance is started. Slots are copied without locking
+	 * so onMessage and publishing are not paused
+	 * @param file replaced when the snapshot is complete
+	 * @return no of symbols written
+	 * @throws IOException
+	 */
+	public int saveSnapshot(Path file) throws IOException {
+		long startNanos = System.nanoTime();
+		int count = MarketDataSnapshot.write(file, getCurrentTimeInMilliseconds(), symbolRegistry.size(),
+				marketDataCache::snapshot);
+		logger.log(Level.FINE, "snapshot saved: {0} symbols in {1} us",
+				new Object[] {count, TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos)});
+		return count;
+	}
+	
+	/**
+	 * Restore the cache entry of a symbol, see {@link MarketDataCache#restore(int, double, long, long)}
+	 * @return false if the symbol is not loaded or not restored
+	 */
+	boolean restore(String symbol, double price, long updateTime, long publishTime) {
+		return marketDataCache.restore(symbolRegistry.getSymbolId(symbol), price, updateTime, publishTime);
+	}
+	
+	/**
+	 * add a symbol, before or after the instance is started. onMessage
+	 * and publishing are not paused
+	 * @param symbol
+	 * @return id of the symbol, the existing one if added before
+	 */
+	public synchronized int addSymbol(String symbol) {
+		Objects.requireNonNull(symbol);
+		int symbolId = symbolRegistry.getSymbolId(symbol);
+		if (symbolId == SymbolRegistry.SYMBOL_ID_UNKNOWN) {
+			symbolId = symbolRegistry.addSymbol(symbol);
+			marketDataCache.add(symbolId, symbol);
+			logger.log(Level.INFO, "symbol added: {0}", symbol);
+		}
+		return symbolId;
+	}
+	
+	/**
+	 * remove a symbol, before or after the instance is started. Its
+	 * pending update is not published and its id is not reused
+	 * @param symbol
+	 * @return false if the symbol is not loaded
+	 */
+	public synchronized boolean removeSymbol(String symbol) {
+		int symbolId = symbolRegistry.removeSymbol(symbol);
+		if (symbolId == SymbolRegistry.SYMBOL_ID_UNKNOWN) {
+			return false;
+		}
+		marketDataCache.remove(symbolId);
+		logger.log(Level.INFO, "symbol removed: {0}", symbol);
+		return true;
+	}
+	
 	
 	/********* Post-start calls **************/
 	@Override
@@ -171,81 +992,215 @@ public class MarketDataProcessorImpl extends MarketDataProcessor {
 		if (!isStarted()) {
 			throw INSTANCE_NOT_START_STATE_EXCEPTION;
 		}
+		if (feedRecorder != null && data != null) {
+			feedRecorder.record(data.getSymbol(), data.getPrice(), data.getQuantity(), data.getUpdateTime(),
+					getCurrentTimeInMilliseconds());
+		}
 		if (data != null) {
 			String symbol = data.getSymbol();
 			if (symbol != null) {
-				AtomicReference<MarketData> ref = marketDataCache.get(symbol);
-				if (ref != null) {
-					int attempts = 0;
-					final int maxattempts = 2;
-					boolean updateAttempt = true;
-					boolean updated = false;
-					do {
-						double price = data.getPrice();
-						long updateTime = data.getUpdateTime();
-						MarketData dataUp = new MarketDataImpl(symbol, price, updateTime);
-						MarketData dataExp = ref.get();
-						// check update time of incoming entry is later then the one cached. If not skip
-						if (dataExp.getUpdateTime() <= dataUp.getUpdateTime()) {
-							// check whether data updated without published.
-							boolean dataNotPub = dataExp.getPublishTime() == MarketDataImpl.PUBLISH_TIME_NO_PUB;
-							boolean dataJustInit = dataExp.getUpdateTime() == MarketDataImpl.UPDATE_TIME_INIT_LOAD;
-							updated = ref.compareAndSet(dataExp, dataUp);
-							if (!dataNotPub || dataJustInit) {
-								// if data publish, that means queue has no symbol
-								boolean inserted = pushSymbolToQueue(symbol);
-								logger.log(Level.INFO, "symbol {0} inserted into cache", symbol);
-								logger.log(Level.INFO, "inserted? {0}", inserted);
-							} else {
-								logger.log(Level.INFO, "symbol {0} not published before this update", symbol);
-							}
-							
-							attempts++;
-							if (updated == true || attempts == maxattempts) {
-								updateAttempt = false;
-							}	
-						} else {
-							// do not update
-							updateAttempt = false;
-						}
-					} while (updateAttempt);					
-					if (!updated) {
-						throw DATA_NOT_UPDATED_EXCEPTION;
+				int symbolId = symbolRegistry.getSymbolId(symbol);
+				if (!updateCache(symbolId, data.getPrice(), data.getQuantity(), data.getUpdateTime())) {
+					if (diagnostics.isEnabled()) {
+						diagnostics.record(DiagnosticEvent.UNKNOWN_SYMBOL, symbolId, data.getPrice(), data.getUpdateTime());
 					}
-					
-				} else {
-					logger.log(Level.WARNING, "symbol {0} not loaded before", symbol);
+					diagnostics.warn("symbol {0} not loaded before", symbol);
 				}
 			} else {
-				logger.warning("symbol is null");
+				diagnostics.warn("symbol is null", null);
 			}
 		} else {
-			logger.warning("Market Data is null");
+			diagnostics.warn("Market Data is null", null);
 		}
 		
 	}
 	
-	protected boolean pushSymbolToQueue(String symbol) {
-		if (logger.isLoggable(Level.FINEST)) {
-			logger.log(Level.FINEST, "queue contains symbol: {0}", this.publishQueue.contains(symbol));
+	/**
+	 * Receive market data by symbol id, see {@link #getSymbolId(String)}.
+	 * No lookup by symbol is needed
+	 * @param symbolId
+	 * @param price
+	 * @param updateTime
+	 */
+	public void onMessage(int symbolId, double price, long updateTime) {
+		onMessage(symbolId, price, Double.NaN, updateTime);
+	}
+	
+	/**
+	 * Receive a trade by symbol id, see {@link #getSymbolId(String)}.
+	 * The quantity adds to the volume and VWAP when aggregation is on
+	 * @param symbolId
+	 * @param price
+	 * @param quantity
+	 * @param updateTime
+	 */
+	public void onMessage(int symbolId, double price, double quantity, long updateTime) {
+		if (!isStarted()) {
+			throw INSTANCE_NOT_START_STATE_EXCEPTION;
+		}
+		if (feedRecorder != null) {
+			feedRecorder.record(symbolRegistry.getSymbol(symbolId), price, quantity, updateTime, getCurrentTimeInMilliseconds());
 		}
-		return this.publishQueue.offer(symbol);
+		if (!updateCache(symbolId, price, quantity, updateTime)) {
+			if (diagnostics.isEnabled()) {
+				diagnostics.record(DiagnosticEvent.UNKNOWN_SYMBOL, symbolId, price, updateTime);
+			}
+			diagnostics.warn("symbol id {0} not loaded before", symbolId);
+		}
+	}
+	
+	/**
+	 * Update the cache and queue the symbol if needed
+	 * @return false if the symbol is not loaded
+	 */
+	private boolean updateCache(int symbolId, double price, double quantity, long updateTime) {
+		int result = applyUpdate(symbolId, price, quantity, updateTime);
+		if (result == MarketDataCache.UPDATE_NOT_LOADED) {
+			return false;
+		}
+		if (result == MarketDataSlot.UPDATE_STALE) {
+			if (!multiProducer) {
+				throw DATA_NOT_UPDATED_EXCEPTION;
+			}
+		} else if (needsQueuing(symbolId, result)) {
+			pushSymbolToQueue(symbolId);
+		}
+		return true;
+	}
+	
+	/**
+	 * Receive the updates of a feed packet at once, e.g. from a feed
+	 * handler decoding a packet of dozens of updates. Updates of a symbol
+	 * superseded by a later one in the packet are counted as conflated
+	 * without touching the cache, and the throttle controller thread is
+	 * signalled once for the packet.
+	 * Unlike onMessage an update older than the cached one, or than an
+	 * earlier update of the symbol in the packet, is counted as rejected
+	 * stale without an exception, so that the rest of the packet is applied
+	 * @param packet updates by symbol id, see {@link #getSymbolId(String)}
+	 * @return no of updates rejected as stale
+	 */
+	public int onMessages(MarketDataPacket packet) {
+		if (!isStarted()) {
+			throw INSTANCE_NOT_START_STATE_EXCEPTION;
+		}
+		if (feedRecorder != null) {
+			long arrivalTime = getCurrentTimeInMilliseconds();
+			for (int i = 0, size = packet.size(); i < size; i++) {
+				feedRecorder.record(symbolRegistry.getSymbol(packet.getSymbolId(i)),
+						packet.getPrice(i), packet.getQuantity(i), packet.getUpdateTime(i), arrivalTime);
+			}
+		}
+		// every update counts in an aggregate
+		boolean coalesced = !aggregation;
+		if (coalesced) {
+			packet.coalesce();
+		}
+		int noOfStale = 0;
+		boolean queued = false;
+		for (int i = 0, size = packet.size(); i < size; i++) {
+			int symbolId = packet.getSymbolId(i);
+			double price = packet.getPrice(i);
+			long updateTime = packet.getUpdateTime(i);
+			if (coalesced && packet.isSuperseded(i)) {
+				metrics.onReceived();
+				metrics.onConflated();
+				if (diagnostics.isEnabled()) {
+					diagnostics.record(DiagnosticEvent.CONFLATED, symbolId, price, updateTime);
+				}
+				continue;
+			}
+			if (coalesced && packet.isStale(i)) {
+				// older than an earlier update of the symbol in the packet
+				metrics.onReceived();
+				metrics.onRejectedStale();
+				if (diagnostics.isEnabled()) {
+					diagnostics.record(DiagnosticEvent.REJECTED_STALE, symbolId, price, updateTime);
+				}
+				noOfStale++;
+				continue;
+			}
+			int result = applyUpdate(symbolId, price, packet.getQuantity(i), updateTime);
+			if (result == MarketDataCache.UPDATE_NOT_LOADED) {
+				if (diagnostics.isEnabled()) {
+					diagnostics.record(DiagnosticEvent.UNKNOWN_SYMBOL, symbolId, price, updateTime);
+				}
+				diagnostics.warn("symbol id {0} not loaded before", symbolId);
+			} else if (result == MarketDataSlot.UPDATE_STALE) {
+				noOfStale++;
+			} else if (needsQueuing(symbolId, result)) {
+				queued |= publishQueue.offer(symbolId);
+			}
+		}
+		if (queued) {
+			waitStrategy.signal();
+		}
+		return noOfStale;
+	}
+	
+	/**
+	 * Update the cache and count the result
+	 * @return result of {@link MarketDataCache#update(int, double, double, long)}
+	 */
+	private int applyUpdate(int symbolId, double price, double quantity, long updateTime) {
+		int result = marketDataCache.update(symbolId, price, quantity, updateTime);
+		if (result == MarketDataCache.UPDATE_NOT_LOADED) {
+			return result;
+		}
+		metrics.onReceived();
+		if (result == MarketDataSlot.UPDATE_STALE) {
+			metrics.onRejectedStale();
+			if (diagnostics.isEnabled()) {
+				diagnostics.record(DiagnosticEvent.REJECTED_STALE, symbolId, price, updateTime);
+			}
+		} else if (result == MarketDataSlot.UPDATE_DIRTY) {
+			// slot turns dirty, that means queue has no symbol
+			if (diagnostics.isEnabled()) {
+				diagnostics.record(DiagnosticEvent.QUEUED, symbolId, price, updateTime);
+			}
+		} else {
+			metrics.onConflated();
+			if (diagnostics.isEnabled()) {
+				diagnostics.record(DiagnosticEvent.CONFLATED, symbolId, price, updateTime);
+			}
+		}
+		return result;
+	}
+	
+	private boolean needsQueuing(int symbolId, int result) {
+		// a conflated symbol is queued again to let the scheduler
+		// reprioritize it
+		return result == MarketDataSlot.UPDATE_DIRTY
+				|| (requeueOnPriceMove && marketDataCache.tryMarkRequeued(symbolId));
+	}
+	
+	protected boolean pushSymbolToQueue(int symbolId) {
+		boolean inserted = this.publishQueue.offer(symbolId);
+		if (inserted) {
+			waitStrategy.signal();
+		}
+		return inserted;
 	}
 	
 
 	@Override
 	public void publishAggregatedMarketData(MarketData data) {
-		int noOfReceivers = receivers.size();
-		
-		if (noOfReceivers > 0) {
-			if (executorPool == null) {
-				executorPool = (ThreadPoolExecutor)Executors.newFixedThreadPool(noOfReceivers);
-			}
-			for (int i = 0; i < noOfReceivers; i++) {
-				final Receiver receiver = receivers.get(i);
-				executorPool.execute(()->{receiver.onReceive(data);});
-			}
-		}	
+		ReceiverDispatcher dispatcher = this.receiverDispatcher;
+		if (dispatcher != null) {
+			dispatcher.dispatch(data);
+		} else {
+			logger.warning("the instance is not started, nothing published");
+		}
+	}
+
+	@Override
+	public void publishAggregatedMarketData(MarketDataBatch batch) {
+		ReceiverDispatcher dispatcher = this.receiverDispatcher;
+		if (dispatcher != null) {
+			dispatcher.dispatch(batch);
+		} else {
+			logger.warning("the instance is not started, nothing published");
+		}
 	}
 
 	
@@ -0,0 +1,293 @@
+package com.richardchankiyin;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * Mutable cache entry of a symbol. Price, update time, publish time and
+ * the dirty flag are updated in place so that no garbage is produced per
+ * tick.
+ *
+ * Writers (onMessage and the throttle controller thread) take a seqlock by
+ * moving sequence from even to odd and release it by moving it to the next
+ * even value. Readers retry until they see the same even sequence before
+ * and after reading the fields.
+ *
+ * An aggregating slot also keeps open, high, low, tick count, volume and
+ * notional of the updates since the last publish, updated and reset in
+ * place under the seqlock, and publishes {@link AggregatedMarketData}.
+ */
+public class MarketDataSlot {
+
+	/** update rejected as update time is earlier than the cached one */
+	public static final int UPDATE_STALE = 0;
+	/** update applied and the slot is already waiting to be published */
+	public static final int UPDATE_CONFLATED = 1;
+	/** update applied and the slot just turned dirty, so it has to be queued */
+	public static final int UPDATE_DIRTY = 2;
+
+	private static final AtomicLongFieldUpdater<MarketDataSlot> SEQUENCE_UPDATER =
+			AtomicLongFieldUpdater.newUpdater(MarketDataSlot.class, "sequence");
+	private static final AtomicIntegerFieldUpdater<MarketDataSlot> REQUEUED_UPDATER =
+			AtomicIntegerFieldUpdater.newUpdater(MarketDataSlot.class, "requeued");
+
+	private final String symbol;
+	private volatile long sequence = 0;
+	private volatile double price = Double.NaN;
+	private volatile long updateTime = MarketDataImpl.UPDATE_TIME_INIT_LOAD;
+	private volatile long publishTime = MarketDataImpl.PUBLISH_TIME_NO_PUB;
+	private volatile boolean dirty = false;
+	// 1 while the symbol is queued again for its price moved
+	private volatile int requeued = 0;
+	// written under the seqlock by the update turning the slot dirty
+	private long dirtyTimeNanos = 0;
+	// null if not aggregating, guarded by the seqlock
+	private final Aggregate aggregate;
+
+	public MarketDataSlot(String symbol) {
+		this(symbol, false);
+	}
+
+	/**
+	 * @param symbol
+	 * @param aggregating true to aggregate updates between publishes
+	 */
+	public MarketDataSlot(String symbol, boolean aggregating) {
+		this.symbol = symbol;
+		this.aggregate = aggregating ? new Aggregate() : null;
+	}
+
+	private long lock() {
+		while (true) {
+			long seq = sequence;
+			if ((seq & 1) == 0 && SEQUENCE_UPDATER.compareAndSet(this, seq, seq + 1)) {
+				return seq + 1;
+			}
+			Thread.onSpinWait();
+		}
+	}
+
+	private void unlock(long lockedSeq) {
+		sequence = lockedSeq + 1;
+	}
+
+	public String getSymbol() {
+		return this.symbol;
+	}
+
+	/**
+	 * Apply an update if its update time is not earlier than the cached one
+	 * @param price
+	 * @param updateTime
+	 * @return UPDATE_STALE, UPDATE_CONFLATED or UPDATE_DIRTY
+	 */
+	public int update(double price, long updateTime) {
+		return update(price, Double.NaN, updateTime);
+	}
+
+	/**
+	 * Apply an update with its traded quantity if its update time is not
+	 * earlier than the cached one
+	 * @param price
+	 * @param quantity NaN if not known
+	 * @param updateTime
+	 * @return UPDATE_STALE, UPDATE_CONFLATED or UPDATE_DIRTY
+	 */
+	public int update(double price, double quantity, long updateTime) {
+		// update time only moves forward, a stale update is rejected
+		// without contending for the lock
+		if (updateTime < this.updateTime) {
+			return UPDATE_STALE;
+		}
+		long seq = lock();
+		try {
+			if (updateTime < this.updateTime) {
+				return UPDATE_STALE;
+			}
+			this.price = price;
+			this.updateTime = updateTime;
+			if (aggregate != null) {
+				aggregate.add(price, quantity);
+			}
+			if (this.dirty) {
+				return UPDATE_CONFLATED;
+			}
+			// stamped before the symbol can be queued or published
+			this.dirtyTimeNanos = System.nanoTime();
+			this.dirty = true;
+			return UPDATE_DIRTY;
+		} finally {
+			unlock(seq);
+		}
+	}
+
+	/**
+	 * Restore a value, e.g. from a snapshot. The slot turns dirty if the
+	 * value was not published, i.e. its update time is after its publish
+	 * time, so that it is published after start. An aggregating slot
+	 * counts such a value as a tick of the next publish
+	 * @param price
+	 * @param updateTime
+	 * @param publishTime
+	 * @return false if the cached value is not older
+	 */
+	public boolean restore(double price, long updateTime, long publishTime) {
+		long seq = lock();
+		try {
+			if (updateTime <= this.updateTime) {
+				return false;
+			}
+			this.price = price;
+			this.updateTime = updateTime;
+			this.publishTime = publishTime;
+			if (updateTime > publishTime) {
+				if (aggregate != null) {
+					aggregate.add(price, Double.NaN);
+				}
+				if (!this.dirty) {
+					this.dirtyTimeNanos = System.nanoTime();
+					this.dirty = true;
+				}
+			}
+			return true;
+		} finally {
+			unlock(seq);
+		}
+	}
+
+	/**
+	 * Stamp publish time and clear the dirty flag
+	 * @param publishTime
+	 * @return the data to be published or null if the slot is not dirty
+	 */
+	public MarketData publish(long publishTime) {
+		double pubPrice;
+		long pubUpdateTime;
+		long seq = lock();
+		try {
+			if (!this.dirty) {
+				return null;
+			}
+			this.dirty = false;
+			this.publishTime = publishTime;
+			pubPrice = this.price;
+			pubUpdateTime = this.updateTime;
+			if (aggregate != null) {
+				return aggregate.publish(symbol, pubPrice, pubUpdateTime, publishTime);
+			}
+		} finally {
+			unlock(seq);
+		}
+		return new MarketDataImpl(symbol, pubPrice, pubUpdateTime, publishTime);
+	}
+
+	/**
+	 * Check whether updates are aggregated between publishes
+	 * @return
+	 */
+	public boolean isAggregating() {
+		return aggregate != null;
+	}
+
+	/**
+	 * Get when the slot last turned dirty, stamped by update. Only
+	 * meaningful to the thread publishing the slot
+	 * @return
+	 */
+	public long getDirtyTimeNanos() {
+		return this.dirtyTimeNanos;
+	}
+
+	/**
+	 * Get latest price without a consistent view of other fields
+	 * @return
+	 */
+	public double getPrice() {
+		return this.price;
+	}
+
+	/**
+	 * Get time of the last publish
+	 * @return MarketDataImpl.PUBLISH_TIME_NO_PUB if never published
+	 */
+	public long getPublishTime() {
+		return this.publishTime;
+	}
+
+	/**
+	 * Mark the dirty symbol as queued again because its price moved, so
+	 * that it is not queued again before the mark is cleared
+	 * @return false if already marked
+	 */
+	public boolean tryMarkRequeued() {
+		return requeued == 0 && REQUEUED_UPDATER.compareAndSet(this, 0, 1);
+	}
+
+	/**
+	 * Clear the mark after the symbol is taken from the queue
+	 */
+	public void clearRequeued() {
+		requeued = 0;
+	}
+
+	/**
+	 * Check whether the slot has an update not yet published
+	 * @return
+	 */
+	public boolean isDirty() {
+		return this.dirty;
+	}
+
+	/**
+	 * Copy out a consistent view of the slot
+	 * @return
+	 */
+	public MarketData snapshot() {
+		while (true) {
+			long seq = sequence;
+			if ((seq & 1) == 0) {
+				double snapPrice = this.price;
+				long snapUpdateTime = this.updateTime;
+				long snapPublishTime = this.publishTime;
+				if (seq == sequence) {
+					return new MarketDataImpl(symbol, snapPrice, snapUpdateTime, snapPublishTime);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Running aggregate of updates since the last publish
+	 */
+	private static final class Aggregate {
+		private double open;
+		private double high;
+		private double low;
+		private long tickCount = 0;
+		private double volume = 0;
+		private double notional = 0;
+
+		private void add(double price, double quantity) {
+			if (tickCount == 0) {
+				open = high = low = price;
+			} else {
+				high = Math.max(high, price);
+				low = Math.min(low, price);
+			}
+			tickCount++;
+			if (!Double.isNaN(quantity)) {
+				volume += quantity;
+				notional += price * quantity;
+			}
+		}
+
+		private MarketData publish(String symbol, double price, long updateTime, long publishTime) {
+			MarketData data = new AggregatedMarketDataImpl(symbol, price, updateTime, publishTime,
+					open, high, low, tickCount, volume, volume != 0 ? notional / volume : Double.NaN);
+			tickCount = 0;
+			volume = 0;
+			notional = 0;
+			return data;
+		}
+	}
+}
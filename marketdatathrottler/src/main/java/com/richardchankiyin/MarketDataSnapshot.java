@@ -0,0 +1,207 @@
+package com.richardchankiyin;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.function.IntFunction;
+
+/**
+ * Binary snapshot of cached market data, to warm up the cache on restart.
+ * A snapshot is a header of magic, version and snapshot time followed by
+ * a record of each symbol ever updated: position of the symbol in the
+ * entries written, e.g. its id, length and UTF-8 bytes of the symbol, price,
+ * update time and publish time. The position lets a reader with the same
+ * symbols find an entry without decoding the symbol. It is written to a
+ * temporary file forced to the device and moved over the previous
+ * snapshot, so a snapshot file is always complete. Snapshots of version 1,
+ * with a short length of the symbol, are still read
+ */
+public class MarketDataSnapshot {
+
+	private static final int MAGIC = 0x4D445348;
+	private static final int VERSION = 2;
+	private static final int VERSION_SHORT_SYMBOL_LENGTH = 1;
+	private static final String TEMP_SUFFIX = ".tmp";
+
+	/**
+	 * Restore the entry of a symbol in a snapshot
+	 */
+	@FunctionalInterface
+	public interface Restorer {
+		/**
+		 * See {@link MarketDataSlot#restore(double, long, long)}
+		 * @param symbolIdHint position of the entry when written, check its symbol before use
+		 * @param symbol UTF-8 bytes of the symbol
+		 * @param length no of bytes of the symbol
+		 * @param price
+		 * @param updateTime
+		 * @param publishTime
+		 * @return false if the symbol is not loaded or not restored
+		 */
+		public boolean restore(int symbolIdHint, byte[] symbol, int length, double price, long updateTime, long publishTime);
+	}
+
+	/**
+	 * Restore the entry of a decoded symbol
+	 */
+	@FunctionalInterface
+	public interface SymbolRestorer {
+		public boolean restore(String symbol, double price, long updateTime, long publishTime);
+	}
+
+	private MarketDataSnapshot() {
+	}
+
+	/**
+	 * Restorer decoding each symbol
+	 * @param restorer
+	 * @return
+	 */
+	public static Restorer bySymbol(SymbolRestorer restorer) {
+		return (symbolIdHint, symbol, length, price, updateTime, publishTime) ->
+				restorer.restore(new String(symbol, 0, length, StandardCharsets.UTF_8), price, updateTime, publishTime);
+	}
+
+	/**
+	 * Check whether the UTF-8 bytes are of the symbol, without decoding
+	 * them if the symbol is ASCII
+	 * @param symbol
+	 * @param bytes
+	 * @param length
+	 * @return
+	 */
+	public static boolean isSymbol(String symbol, byte[] bytes, int length) {
+		if (symbol.length() != length) {
+			return symbol.length() < length && symbol.equals(new String(bytes, 0, length, StandardCharsets.UTF_8));
+		}
+		for (int i = 0; i < length; i++) {
+			char c = symbol.charAt(i);
+			if (c >= 0x80) {
+				return symbol.equals(new String(bytes, 0, length, StandardCharsets.UTF_8));
+			}
+			if (bytes[i] != c) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Write consistent copies of cache entries, without blocking their
+	 * writers
+	 * @param file
+	 * @param snapshotTime
+	 * @param size no of positions, e.g. symbol ids
+	 * @param snapshotByPosition copy of the entry at a position, null if removed
+	 * @return no of symbols written
+	 * @throws IOException
+	 */
+	public static int write(Path file, long snapshotTime, int size, IntFunction<MarketData> snapshotByPosition) throws IOException {
+		Path temp = file.resolveSibling(file.getFileName() + TEMP_SUFFIX);
+		int count = 0;
+		try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+				DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(snapshotTime);
+			for (int i = 0; i < size; i++) {
+				MarketData data = snapshotByPosition.apply(i);
+				if (data == null || data.getUpdateTime() == MarketDataImpl.UPDATE_TIME_INIT_LOAD) {
+					// removed or never updated
+					continue;
+				}
+				byte[] symbol = data.getSymbol().getBytes(StandardCharsets.UTF_8);
+				out.writeInt(i);
+				out.writeInt(symbol.length);
+				out.write(symbol);
+				out.writeDouble(data.getPrice());
+				out.writeLong(data.getUpdateTime());
+				out.writeLong(data.getPublishTime());
+				count++;
+			}
+			out.flush();
+			// durable before it replaces the previous snapshot
+			channel.force(true);
+		}
+		Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		return count;
+	}
+
+	/**
+	 * Restore cache entries from a snapshot by memory mapping it
+	 * @param file
+	 * @param restorer
+	 * @return no of symbols restored
+	 * @throws IOException
+	 */
+	public static int read(Path file, Restorer restorer) throws IOException {
+		MappedByteBuffer buffer;
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		readHeader(buffer, file);
+		final boolean shortSymbolLength = buffer.getInt(4) == VERSION_SHORT_SYMBOL_LENGTH;
+		int count = 0;
+		byte[] symbolBytes = new byte[256];
+		try {
+			while (buffer.hasRemaining()) {
+				int symbolIdHint = buffer.getInt();
+				int length = shortSymbolLength ? buffer.getShort() & 0xFFFF : buffer.getInt();
+				if (length < 0 || length > buffer.remaining()) {
+					throw new IOException("corrupted snapshot, symbol length " + length + ": " + file);
+				}
+				if (length > symbolBytes.length) {
+					symbolBytes = new byte[length];
+				}
+				buffer.get(symbolBytes, 0, length);
+				double price = buffer.getDouble();
+				long updateTime = buffer.getLong();
+				long publishTime = buffer.getLong();
+				if (restorer.restore(symbolIdHint, symbolBytes, length, price, updateTime, publishTime)) {
+					count++;
+				}
+			}
+		} catch (BufferUnderflowException e) {
+			throw new IOException("truncated snapshot: " + file, e);
+		}
+		return count;
+	}
+
+	/**
+	 * Get time a snapshot was taken
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	public static long readSnapshotTime(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			ByteBuffer header = ByteBuffer.allocate(16);
+			while (header.hasRemaining() && channel.read(header) >= 0) {
+				// read the whole header
+			}
+			header.flip();
+			return readHeader(header, file);
+		}
+	}
+
+	private static long readHeader(ByteBuffer buffer, Path file) throws IOException {
+		if (buffer.remaining() < 16 || buffer.getInt() != MAGIC) {
+			throw new IOException("not a snapshot: " + file);
+		}
+		int version = buffer.getInt();
+		if (version != VERSION && version != VERSION_SHORT_SYMBOL_LENGTH) {
+			throw new IOException("unsupported snapshot version " + version + ": " + file);
+		}
+		return buffer.getLong();
+	}
+}
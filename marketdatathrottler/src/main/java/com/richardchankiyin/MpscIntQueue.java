@@ -0,0 +1,107 @@
+package com.richardchankiyin;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Lock free bounded queue for many producer threads and a single consumer
+ * thread. Producers claim an index by CAS and then release store the value
+ * into the slot, the consumer clears the slot after reading it. close
+ * sets a bit of the producer index so that no index is claimed afterwards
+ */
+public class MpscIntQueue implements IntQueue {
+
+	private static final long CLOSED = 1L << 62;
+
+	private final AtomicIntegerArray buffer;
+	private final int capacity;
+	private final int mask;
+	private final Sequence producerIndex = new Sequence();
+	private final Sequence consumerIndex = new Sequence();
+
+	public MpscIntQueue(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("capacity must be positive");
+		}
+		this.capacity = SpscIntQueue.roundToPowerOfTwo(capacity);
+		this.mask = this.capacity - 1;
+		this.buffer = new AtomicIntegerArray(this.capacity);
+		for (int i = 0; i < this.capacity; i++) {
+			buffer.lazySet(i, EMPTY);
+		}
+	}
+
+	@Override
+	public boolean offer(int value) {
+		long index;
+		do {
+			index = producerIndex.get();
+			if ((index & CLOSED) != 0 || index - consumerIndex.get() >= capacity) {
+				return false;
+			}
+		} while (!producerIndex.compareAndSet(index, index + 1));
+		buffer.lazySet((int) index & mask, value);
+		return true;
+	}
+
+	@Override
+	public int peek() {
+		final long index = consumerIndex.get();
+		return index < producerIndex() ? waitForValue((int) index & mask) : EMPTY;
+	}
+
+	@Override
+	public int poll() {
+		final long index = consumerIndex.get();
+		if (index >= producerIndex()) {
+			return EMPTY;
+		}
+		int offset = (int) index & mask;
+		int value = waitForValue(offset);
+		buffer.lazySet(offset, EMPTY);
+		consumerIndex.lazySet(index + 1);
+		return value;
+	}
+
+	private long producerIndex() {
+		return producerIndex.get() & ~CLOSED;
+	}
+
+	private int waitForValue(int offset) {
+		// the index is claimed, the producer is about to store the value
+		int value;
+		while ((value = buffer.get(offset)) == EMPTY) {
+			// spin
+		}
+		return value;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return consumerIndex.get() >= producerIndex();
+	}
+
+	@Override
+	public int size() {
+		long consumer = consumerIndex.get();
+		long producer = producerIndex();
+		return (int) Math.min(Math.max(0, producer - consumer), capacity);
+	}
+
+	@Override
+	public int capacity() {
+		return capacity;
+	}
+
+	@Override
+	public void close() {
+		long index;
+		do {
+			index = producerIndex.get();
+		} while ((index & CLOSED) == 0 && !producerIndex.compareAndSet(index, index | CLOSED));
+	}
+
+	@Override
+	public boolean isClosed() {
+		return (producerIndex.get() & CLOSED) != 0;
+	}
+}
@@ -0,0 +1,369 @@
+package com.richardchankiyin;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Cache keeping the entries of all symbols in direct buffers instead of
+ * an object per symbol, so that the heap footprint and GC marking time do
+ * not grow with the no of symbols. Only symbol names stay on the heap, in
+ * the {@link SymbolRegistry}.
+ *
+ * An entry is a record of RECORD_SIZE bytes, or AGGREGATING_RECORD_SIZE
+ * bytes with the running aggregate of an aggregating cache, at
+ * symbolId * record size of a segment of RECORDS_PER_SEGMENT records, so
+ * entries of two symbols never share a cache line. Segments are never
+ * copied, the directory of segments is copied on write like
+ * {@link SegmentedArray}. Records are accessed by
+ * VarHandle with the same seqlock protocol as {@link MarketDataSlot}: the
+ * sequence is taken by CAS, fields are written in place and the sequence
+ * is released by a release store. Readers acquire the sequence, read the
+ * fields and check the sequence again after a load fence. Records are
+ * read and updated by symbol id in place, nothing is allocated per update
+ */
+public class OffHeapMarketDataCache implements MarketDataCache {
+
+	static final int RECORD_SIZE = 64;
+	static final int AGGREGATING_RECORD_SIZE = 128;
+	static final int SEGMENT_BITS = 14;
+	static final int RECORDS_PER_SEGMENT = 1 << SEGMENT_BITS;
+	private static final int SEGMENT_MASK = RECORDS_PER_SEGMENT - 1;
+
+	private static final int SEQUENCE_OFFSET = 0;
+	private static final int PRICE_OFFSET = 8;
+	private static final int UPDATE_TIME_OFFSET = 16;
+	private static final int PUBLISH_TIME_OFFSET = 24;
+	private static final int DIRTY_TIME_NANOS_OFFSET = 32;
+	private static final int DIRTY_OFFSET = 40;
+	private static final int REQUEUED_OFFSET = 44;
+	private static final int LOADED_OFFSET = 48;
+	private static final int OPEN_OFFSET = 64;
+	private static final int HIGH_OFFSET = 72;
+	private static final int LOW_OFFSET = 80;
+	private static final int TICK_COUNT_OFFSET = 88;
+	private static final int VOLUME_OFFSET = 96;
+	private static final int NOTIONAL_OFFSET = 104;
+
+	private static final VarHandle LONG = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+	private static final VarHandle DOUBLE = MethodHandles.byteBufferViewVarHandle(double[].class, ByteOrder.nativeOrder());
+	private static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+
+	private final SymbolRegistry symbolRegistry;
+	private final boolean aggregating;
+	private final int recordSize;
+	private volatile ByteBuffer[] segments = new ByteBuffer[0];
+
+	/**
+	 * @param symbolRegistry registry of the symbols added, to name the entries
+	 */
+	public OffHeapMarketDataCache(SymbolRegistry symbolRegistry) {
+		this(symbolRegistry, false);
+	}
+
+	/**
+	 * @param symbolRegistry registry of the symbols added, to name the entries
+	 * @param aggregating true to aggregate updates between publishes like
+	 * an aggregating {@link MarketDataSlot}
+	 */
+	public OffHeapMarketDataCache(SymbolRegistry symbolRegistry, boolean aggregating) {
+		this.symbolRegistry = symbolRegistry;
+		this.aggregating = aggregating;
+		this.recordSize = aggregating ? AGGREGATING_RECORD_SIZE : RECORD_SIZE;
+	}
+
+	@Override
+	public void add(int symbolId, String symbol) {
+		if (symbolId < 0) {
+			throw new IndexOutOfBoundsException("symbolId " + symbolId);
+		}
+		int segment = symbolId >>> SEGMENT_BITS;
+		ByteBuffer[] directory = segments;
+		if (segment >= directory.length) {
+			directory = grow(segment);
+		}
+		ByteBuffer buffer = directory[segment];
+		int offset = offset(symbolId);
+		if (aggregating) {
+			LONG.set(buffer, offset + TICK_COUNT_OFFSET, 0L);
+			DOUBLE.set(buffer, offset + VOLUME_OFFSET, 0.0);
+			DOUBLE.set(buffer, offset + NOTIONAL_OFFSET, 0.0);
+		}
+		DOUBLE.set(buffer, offset + PRICE_OFFSET, Double.NaN);
+		LONG.set(buffer, offset + UPDATE_TIME_OFFSET, MarketDataImpl.UPDATE_TIME_INIT_LOAD);
+		LONG.set(buffer, offset + PUBLISH_TIME_OFFSET, MarketDataImpl.PUBLISH_TIME_NO_PUB);
+		LONG.set(buffer, offset + DIRTY_TIME_NANOS_OFFSET, 0L);
+		INT.set(buffer, offset + DIRTY_OFFSET, 0);
+		INT.set(buffer, offset + REQUEUED_OFFSET, 0);
+		// publish the empty entry
+		INT.setRelease(buffer, offset + LOADED_OFFSET, 1);
+	}
+
+	@Override
+	public void remove(int symbolId) {
+		ByteBuffer[] directory = segments;
+		int segment = symbolId >>> SEGMENT_BITS;
+		if (symbolId >= 0 && segment < directory.length) {
+			INT.setRelease(directory[segment], offset(symbolId) + LOADED_OFFSET, 0);
+		}
+	}
+
+	private synchronized ByteBuffer[] grow(int segment) {
+		ByteBuffer[] directory = segments;
+		if (segment >= directory.length) {
+			int length = directory.length;
+			directory = Arrays.copyOf(directory, segment + 1);
+			for (int i = length; i < directory.length; i++) {
+				// records aligned to cache lines
+				directory[i] = ByteBuffer.allocateDirect(RECORDS_PER_SEGMENT * recordSize + RECORD_SIZE)
+						.alignedSlice(RECORD_SIZE).order(ByteOrder.nativeOrder());
+			}
+			segments = directory;
+		}
+		return directory;
+	}
+
+	/**
+	 * Get no of symbols the cache can hold without allocating a segment
+	 * @return
+	 */
+	public int capacity() {
+		return segments.length << SEGMENT_BITS;
+	}
+
+	/**
+	 * Get bytes of direct memory allocated
+	 * @return
+	 */
+	public long getAllocatedBytes() {
+		return (long) segments.length * RECORDS_PER_SEGMENT * recordSize;
+	}
+
+	/**
+	 * Get the segment of a loaded symbol
+	 * @param symbolId
+	 * @return null if not loaded
+	 */
+	private ByteBuffer loaded(int symbolId) {
+		ByteBuffer[] directory = segments;
+		int segment = symbolId >>> SEGMENT_BITS;
+		if (symbolId < 0 || segment >= directory.length) {
+			return null;
+		}
+		ByteBuffer buffer = directory[segment];
+		return (int) INT.getAcquire(buffer, offset(symbolId) + LOADED_OFFSET) != 0 ? buffer : null;
+	}
+
+	private int offset(int symbolId) {
+		return (symbolId & SEGMENT_MASK) * recordSize;
+	}
+
+	private static long lock(ByteBuffer buffer, int offset) {
+		while (true) {
+			long seq = (long) LONG.getVolatile(buffer, offset + SEQUENCE_OFFSET);
+			if ((seq & 1) == 0 && LONG.compareAndSet(buffer, offset + SEQUENCE_OFFSET, seq, seq + 1)) {
+				return seq + 1;
+			}
+			Thread.onSpinWait();
+		}
+	}
+
+	private static void unlock(ByteBuffer buffer, int offset, long lockedSeq) {
+		LONG.setRelease(buffer, offset + SEQUENCE_OFFSET, lockedSeq + 1);
+	}
+
+	@Override
+	public boolean contains(int symbolId) {
+		return loaded(symbolId) != null;
+	}
+
+	@Override
+	public int update(int symbolId, double price, double quantity, long updateTime) {
+		ByteBuffer buffer = loaded(symbolId);
+		if (buffer == null) {
+			return UPDATE_NOT_LOADED;
+		}
+		int offset = offset(symbolId);
+		if (updateTime < (long) LONG.getAcquire(buffer, offset + UPDATE_TIME_OFFSET)) {
+			return MarketDataSlot.UPDATE_STALE;
+		}
+		long seq = lock(buffer, offset);
+		try {
+			if (updateTime < (long) LONG.get(buffer, offset + UPDATE_TIME_OFFSET)) {
+				return MarketDataSlot.UPDATE_STALE;
+			}
+			DOUBLE.set(buffer, offset + PRICE_OFFSET, price);
+			LONG.setRelease(buffer, offset + UPDATE_TIME_OFFSET, updateTime);
+			if (aggregating) {
+				aggregate(buffer, offset, price, quantity);
+			}
+			if ((int) INT.get(buffer, offset + DIRTY_OFFSET) != 0) {
+				return MarketDataSlot.UPDATE_CONFLATED;
+			}
+			LONG.set(buffer, offset + DIRTY_TIME_NANOS_OFFSET, System.nanoTime());
+			INT.setRelease(buffer, offset + DIRTY_OFFSET, 1);
+			return MarketDataSlot.UPDATE_DIRTY;
+		} finally {
+			unlock(buffer, offset, seq);
+		}
+	}
+
+	@Override
+	public boolean restore(int symbolId, double price, long updateTime, long publishTime) {
+		ByteBuffer buffer = loaded(symbolId);
+		if (buffer == null) {
+			return false;
+		}
+		int offset = offset(symbolId);
+		long seq = lock(buffer, offset);
+		try {
+			if (updateTime <= (long) LONG.get(buffer, offset + UPDATE_TIME_OFFSET)) {
+				return false;
+			}
+			DOUBLE.set(buffer, offset + PRICE_OFFSET, price);
+			LONG.setRelease(buffer, offset + UPDATE_TIME_OFFSET, updateTime);
+			LONG.setRelease(buffer, offset + PUBLISH_TIME_OFFSET, publishTime);
+			if (updateTime > publishTime) {
+				if (aggregating) {
+					aggregate(buffer, offset, price, Double.NaN);
+				}
+				if ((int) INT.get(buffer, offset + DIRTY_OFFSET) == 0) {
+					LONG.set(buffer, offset + DIRTY_TIME_NANOS_OFFSET, System.nanoTime());
+					INT.setRelease(buffer, offset + DIRTY_OFFSET, 1);
+				}
+			}
+			return true;
+		} finally {
+			unlock(buffer, offset, seq);
+		}
+	}
+
+	@Override
+	public MarketData publish(int symbolId, long publishTime) {
+		ByteBuffer buffer = loaded(symbolId);
+		String symbol = symbolRegistry.getSymbol(symbolId);
+		if (buffer == null || symbol == null) {
+			return null;
+		}
+		int offset = offset(symbolId);
+		double pubPrice;
+		long pubUpdateTime;
+		long seq = lock(buffer, offset);
+		try {
+			if ((int) INT.get(buffer, offset + DIRTY_OFFSET) == 0) {
+				return null;
+			}
+			INT.setRelease(buffer, offset + DIRTY_OFFSET, 0);
+			LONG.setRelease(buffer, offset + PUBLISH_TIME_OFFSET, publishTime);
+			pubPrice = (double) DOUBLE.get(buffer, offset + PRICE_OFFSET);
+			pubUpdateTime = (long) LONG.get(buffer, offset + UPDATE_TIME_OFFSET);
+			if (aggregating) {
+				return publishAggregate(buffer, offset, symbol, pubPrice, pubUpdateTime, publishTime);
+			}
+		} finally {
+			unlock(buffer, offset, seq);
+		}
+		return new MarketDataImpl(symbol, pubPrice, pubUpdateTime, publishTime);
+	}
+
+	private static void aggregate(ByteBuffer buffer, int offset, double price, double quantity) {
+		long tickCount = (long) LONG.get(buffer, offset + TICK_COUNT_OFFSET);
+		if (tickCount == 0) {
+			DOUBLE.set(buffer, offset + OPEN_OFFSET, price);
+			DOUBLE.set(buffer, offset + HIGH_OFFSET, price);
+			DOUBLE.set(buffer, offset + LOW_OFFSET, price);
+		} else {
+			DOUBLE.set(buffer, offset + HIGH_OFFSET, Math.max((double) DOUBLE.get(buffer, offset + HIGH_OFFSET), price));
+			DOUBLE.set(buffer, offset + LOW_OFFSET, Math.min((double) DOUBLE.get(buffer, offset + LOW_OFFSET), price));
+		}
+		LONG.set(buffer, offset + TICK_COUNT_OFFSET, tickCount + 1);
+		if (!Double.isNaN(quantity)) {
+			DOUBLE.set(buffer, offset + VOLUME_OFFSET, (double) DOUBLE.get(buffer, offset + VOLUME_OFFSET) + quantity);
+			DOUBLE.set(buffer, offset + NOTIONAL_OFFSET, (double) DOUBLE.get(buffer, offset + NOTIONAL_OFFSET) + price * quantity);
+		}
+	}
+
+	private static MarketData publishAggregate(ByteBuffer buffer, int offset, String symbol, double price,
+			long updateTime, long publishTime) {
+		double volume = (double) DOUBLE.get(buffer, offset + VOLUME_OFFSET);
+		double notional = (double) DOUBLE.get(buffer, offset + NOTIONAL_OFFSET);
+		MarketData data = new AggregatedMarketDataImpl(symbol, price, updateTime, publishTime,
+				(double) DOUBLE.get(buffer, offset + OPEN_OFFSET),
+				(double) DOUBLE.get(buffer, offset + HIGH_OFFSET),
+				(double) DOUBLE.get(buffer, offset + LOW_OFFSET),
+				(long) LONG.get(buffer, offset + TICK_COUNT_OFFSET),
+				volume, volume != 0 ? notional / volume : Double.NaN);
+		LONG.set(buffer, offset + TICK_COUNT_OFFSET, 0L);
+		DOUBLE.set(buffer, offset + VOLUME_OFFSET, 0.0);
+		DOUBLE.set(buffer, offset + NOTIONAL_OFFSET, 0.0);
+		return data;
+	}
+
+	@Override
+	public MarketData snapshot(int symbolId) {
+		ByteBuffer buffer = loaded(symbolId);
+		String symbol = symbolRegistry.getSymbol(symbolId);
+		if (buffer == null || symbol == null) {
+			return null;
+		}
+		int offset = offset(symbolId);
+		while (true) {
+			long seq = (long) LONG.getAcquire(buffer, offset + SEQUENCE_OFFSET);
+			if ((seq & 1) == 0) {
+				double snapPrice = (double) DOUBLE.getOpaque(buffer, offset + PRICE_OFFSET);
+				long snapUpdateTime = (long) LONG.getOpaque(buffer, offset + UPDATE_TIME_OFFSET);
+				long snapPublishTime = (long) LONG.getOpaque(buffer, offset + PUBLISH_TIME_OFFSET);
+				VarHandle.loadLoadFence();
+				if (seq == (long) LONG.getAcquire(buffer, offset + SEQUENCE_OFFSET)) {
+					return new MarketDataImpl(symbol, snapPrice, snapUpdateTime, snapPublishTime);
+				}
+			}
+			Thread.onSpinWait();
+		}
+	}
+
+	@Override
+	public boolean isDirty(int symbolId) {
+		ByteBuffer buffer = loaded(symbolId);
+		return buffer != null && (int) INT.getAcquire(buffer, offset(symbolId) + DIRTY_OFFSET) != 0;
+	}
+
+	@Override
+	public double getPrice(int symbolId) {
+		ByteBuffer buffer = loaded(symbolId);
+		return buffer != null ? (double) DOUBLE.getAcquire(buffer, offset(symbolId) + PRICE_OFFSET) : Double.NaN;
+	}
+
+	@Override
+	public long getPublishTime(int symbolId) {
+		ByteBuffer buffer = loaded(symbolId);
+		return buffer != null ? (long) LONG.getAcquire(buffer, offset(symbolId) + PUBLISH_TIME_OFFSET) : MarketDataImpl.PUBLISH_TIME_NO_PUB;
+	}
+
+	@Override
+	public long getDirtyTimeNanos(int symbolId) {
+		ByteBuffer buffer = loaded(symbolId);
+		return buffer != null ? (long) LONG.get(buffer, offset(symbolId) + DIRTY_TIME_NANOS_OFFSET) : 0;
+	}
+
+	@Override
+	public boolean tryMarkRequeued(int symbolId) {
+		ByteBuffer buffer = loaded(symbolId);
+		if (buffer == null) {
+			return false;
+		}
+		int offset = offset(symbolId);
+		return (int) INT.getAcquire(buffer, offset + REQUEUED_OFFSET) == 0
+				&& INT.compareAndSet(buffer, offset + REQUEUED_OFFSET, 0, 1);
+	}
+
+	@Override
+	public void clearRequeued(int symbolId) {
+		ByteBuffer buffer = loaded(symbolId);
+		if (buffer != null) {
+			INT.setRelease(buffer, offset(symbolId) + REQUEUED_OFFSET, 0);
+		}
+	}
+}
@@ -0,0 +1,17 @@
+package com.richardchankiyin;
+
+/**
+ * What a receiver lane does when its ring is full
+ */
+public enum OverflowPolicy {
+	/** wait until the receiver catches up, it stalls the publisher */
+	BLOCK,
+	/** drop the oldest pending update */
+	DROP_OLDEST,
+	/**
+	 * replace the pending update of the same symbol, merging aggregates,
+	 * otherwise wait like BLOCK, so the pending update of another symbol is
+	 * never dropped
+	 */
+	CONFLATE
+}
@@ -0,0 +1,142 @@
+package com.richardchankiyin;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Publish the symbol whose price moved most since its last publish first,
+ * so that scarce permits are not taken by symbols barely moved. The score
+ * of a symbol is its weight times its price change plus agingPerSecond for
+ * each second it has been ready, so that no symbol starves. As every ready
+ * symbol ages at the same rate, the aging part does not change the order
+ * over time and the score is kept as a fixed heap key. Selection is
+ * O(log n) by an {@link IndexedIntHeap}
+ */
+public class PriorityPublishScheduler implements PublishScheduler {
+
+	public enum PriceChange {
+		/** absolute difference of prices */
+		ABSOLUTE,
+		/** difference of prices relative to the last published price */
+		RELATIVE
+	}
+
+	public static final double DEFAULT_WEIGHT = 1.0;
+	/** relative change of 1% per second */
+	public static final double DEFAULT_AGING_PER_SECOND = 0.01;
+
+	private final PriceChange priceChange;
+	private final double agingPerSecond;
+	private final ConcurrentHashMap<String, Double> weights = new ConcurrentHashMap<>();
+	private final IndexedIntHeap heap = new IndexedIntHeap(16);
+	// by symbol id, owned by the throttle controller thread
+	private double[] lastPublishedPrices = new double[0];
+	private double[] readyWeights = new double[0];
+	private long[] readyTimes = new long[0];
+	private long baseTime = Long.MIN_VALUE;
+
+	public PriorityPublishScheduler() {
+		this(PriceChange.RELATIVE, DEFAULT_AGING_PER_SECOND);
+	}
+
+	/**
+	 * @param priceChange how price change is measured
+	 * @param agingPerSecond score gained per second a symbol is ready, in unit of price change
+	 */
+	public PriorityPublishScheduler(PriceChange priceChange, double agingPerSecond) {
+		if (agingPerSecond < 0) {
+			throw new IllegalArgumentException("agingPerSecond must not be negative");
+		}
+		this.priceChange = priceChange;
+		this.agingPerSecond = agingPerSecond;
+	}
+
+	/**
+	 * Set weight of a symbol, e.g. by its tier. Can be called by any
+	 * thread at any time, it applies from the next time the symbol is ready
+	 * @param symbol
+	 * @param weight
+	 */
+	public void setWeight(String symbol, double weight) {
+		if (weight < 0) {
+			throw new IllegalArgumentException("weight must not be negative");
+		}
+		weights.put(symbol, weight);
+	}
+
+	public double getWeight(String symbol) {
+		return weights.getOrDefault(symbol, DEFAULT_WEIGHT);
+	}
+
+	@Override
+	public void offer(int symbolId, String symbol, double price, long currentTime) {
+		if (symbolId >= readyTimes.length) {
+			grow(symbolId);
+		}
+		if (!heap.contains(symbolId)) {
+			readyWeights[symbolId] = getWeight(symbol);
+			readyTimes[symbolId] = currentTime;
+			if (baseTime == Long.MIN_VALUE) {
+				baseTime = currentTime;
+			}
+		}
+		double change = change(lastPublishedPrices[symbolId], price);
+		double score = readyWeights[symbolId] * change - agingPerSecond * (readyTimes[symbolId] - baseTime) / 1000.0;
+		// min heap, so the highest score goes first
+		heap.put(symbolId, -score);
+	}
+
+	private double change(double lastPublishedPrice, double price) {
+		if (Double.isNaN(lastPublishedPrice)) {
+			// never published, as if it moved 100%
+			return priceChange == PriceChange.RELATIVE ? 1.0 : Math.abs(price);
+		}
+		double change = Math.abs(price - lastPublishedPrice);
+		if (priceChange == PriceChange.RELATIVE) {
+			return lastPublishedPrice != 0 ? change / Math.abs(lastPublishedPrice) : 1.0;
+		}
+		return change;
+	}
+
+	private void grow(int symbolId) {
+		int oldLength = readyTimes.length;
+		int length = Math.max(symbolId + 1, oldLength << 1);
+		lastPublishedPrices = Arrays.copyOf(lastPublishedPrices, length);
+		Arrays.fill(lastPublishedPrices, oldLength, length, Double.NaN);
+		readyWeights = Arrays.copyOf(readyWeights, length);
+		readyTimes = Arrays.copyOf(readyTimes, length);
+	}
+
+	@Override
+	public boolean contains(int symbolId) {
+		return heap.contains(symbolId);
+	}
+
+	@Override
+	public int peek() {
+		return heap.peek();
+	}
+
+	@Override
+	public void remove(int symbolId) {
+		heap.remove(symbolId);
+	}
+
+	@Override
+	public void onPublished(int symbolId, MarketData data) {
+		if (symbolId >= readyTimes.length) {
+			grow(symbolId);
+		}
+		lastPublishedPrices[symbolId] = data.getPrice();
+	}
+
+	@Override
+	public int size() {
+		return heap.size();
+	}
+
+	@Override
+	public boolean isPriceSensitive() {
+		return true;
+	}
+}
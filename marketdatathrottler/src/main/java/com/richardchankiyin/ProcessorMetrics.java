@@ -0,0 +1,155 @@
+package com.richardchankiyin;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Counters of a processor. Updates are striped LongAdder increments and
+ * single writer histogram records, so they do not allocate. Reads are
+ * done on snapshot or by JMX and do not touch the hot path
+ */
+public class ProcessorMetrics implements ProcessorMetricsMXBean {
+
+	private final MarketDataProcessorImpl processor;
+	private final LongAdder noOfReceived = new LongAdder();
+	private final LongAdder noOfConflated = new LongAdder();
+	private final LongAdder noOfRejectedStale = new LongAdder();
+	private final LongAdder noOfPublished = new LongAdder();
+	private final LongAdder rateLimiterWaitNanos = new LongAdder();
+	private final LatencyHistogram tickToPublishLatency = new LatencyHistogram();
+
+	public ProcessorMetrics(MarketDataProcessorImpl processor) {
+		this.processor = processor;
+	}
+
+	/********* Updates **************/
+	public void onReceived() {
+		noOfReceived.increment();
+	}
+
+	public void onConflated() {
+		noOfConflated.increment();
+	}
+
+	public void onRejectedStale() {
+		noOfRejectedStale.increment();
+	}
+
+	/**
+	 * Called by throttle controller thread only
+	 * @param latencyNanos time from the symbol turning dirty to publish
+	 */
+	public void onPublished(long latencyNanos) {
+		noOfPublished.increment();
+		tickToPublishLatency.record(latencyNanos);
+	}
+
+	public void onRateLimiterWait(long nanos) {
+		rateLimiterWaitNanos.add(nanos);
+	}
+
+	/********* Reads **************/
+	/**
+	 * Take a snapshot of all metrics
+	 * @return
+	 */
+	public ProcessorMetricsSnapshot snapshot() {
+		return new ProcessorMetricsSnapshot(noOfReceived.sum(), noOfConflated.sum(), noOfRejectedStale.sum(),
+				noOfPublished.sum(), processor.getPublishQueueDepth(), rateLimiterWaitNanos.sum(),
+				tickToPublishLatency.copy(), getReceiverBacklogs(), getReceiverDispatchLagNanos());
+	}
+
+	/**
+	 * Register as MXBean under com.richardchankiyin:type=MarketDataProcessor,name=name
+	 * @param name
+	 * @return the registered object name
+	 * @throws JMException
+	 */
+	public ObjectName registerMBean(String name) throws JMException {
+		ObjectName objectName = new ObjectName("com.richardchankiyin:type=MarketDataProcessor,name=" + ObjectName.quote(name));
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+		return objectName;
+	}
+
+	@Override
+	public long getNoOfReceived() {
+		return noOfReceived.sum();
+	}
+
+	@Override
+	public long getNoOfConflated() {
+		return noOfConflated.sum();
+	}
+
+	@Override
+	public long getNoOfRejectedStale() {
+		return noOfRejectedStale.sum();
+	}
+
+	@Override
+	public long getNoOfPublished() {
+		return noOfPublished.sum();
+	}
+
+	@Override
+	public int getPublishQueueDepth() {
+		return processor.getPublishQueueDepth();
+	}
+
+	@Override
+	public long getRateLimiterWaitNanos() {
+		return rateLimiterWaitNanos.sum();
+	}
+
+	@Override
+	public long getTickToPublishLatencyP50Nanos() {
+		return tickToPublishLatency.getValueAtPercentile(50);
+	}
+
+	@Override
+	public long getTickToPublishLatencyP99Nanos() {
+		return tickToPublishLatency.getValueAtPercentile(99);
+	}
+
+	@Override
+	public long getTickToPublishLatencyP999Nanos() {
+		return tickToPublishLatency.getValueAtPercentile(99.9);
+	}
+
+	@Override
+	public long getTickToPublishLatencyMaxNanos() {
+		return tickToPublishLatency.getMaxValue();
+	}
+
+	@Override
+	public int[] getReceiverBacklogs() {
+		ReceiverDispatcher dispatcher = processor.getReceiverDispatcher();
+		if (dispatcher == null) {
+			return new int[0];
+		}
+		List<ReceiverLane> lanes = dispatcher.getLanes();
+		int[] backlogs = new int[lanes.size()];
+		for (int i = 0; i < backlogs.length; i++) {
+			backlogs[i] = lanes.get(i).size();
+		}
+		return backlogs;
+	}
+
+	@Override
+	public long[] getReceiverDispatchLagNanos() {
+		ReceiverDispatcher dispatcher = processor.getReceiverDispatcher();
+		if (dispatcher == null) {
+			return new long[0];
+		}
+		List<ReceiverLane> lanes = dispatcher.getLanes();
+		long[] lags = new long[lanes.size()];
+		for (int i = 0; i < lags.length; i++) {
+			lags[i] = lanes.get(i).getDispatchLagNanos();
+		}
+		return lags;
+	}
+}
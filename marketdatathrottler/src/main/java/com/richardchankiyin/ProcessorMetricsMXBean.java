@@ -0,0 +1,31 @@
+package com.richardchankiyin;
+
+/**
+ * JMX view of {@link ProcessorMetrics}
+ */
+public interface ProcessorMetricsMXBean {
+
+	public long getNoOfReceived();
+
+	public long getNoOfConflated();
+
+	public long getNoOfRejectedStale();
+
+	public long getNoOfPublished();
+
+	public int getPublishQueueDepth();
+
+	public long getRateLimiterWaitNanos();
+
+	public long getTickToPublishLatencyP50Nanos();
+
+	public long getTickToPublishLatencyP99Nanos();
+
+	public long getTickToPublishLatencyP999Nanos();
+
+	public long getTickToPublishLatencyMaxNanos();
+
+	public int[] getReceiverBacklogs();
+
+	public long[] getReceiverDispatchLagNanos();
+}
@@ -0,0 +1,106 @@
+package com.richardchankiyin;
+
+/**
+ * Metrics of a processor at a point in time
+ */
+public class ProcessorMetricsSnapshot {
+
+	private final long noOfReceived;
+	private final long noOfConflated;
+	private final long noOfRejectedStale;
+	private final long noOfPublished;
+	private final int publishQueueDepth;
+	private final long rateLimiterWaitNanos;
+	private final LatencyHistogram tickToPublishLatency;
+	private final int[] receiverBacklogs;
+	private final long[] receiverDispatchLagNanos;
+
+	public ProcessorMetricsSnapshot(long noOfReceived, long noOfConflated, long noOfRejectedStale,
+			long noOfPublished, int publishQueueDepth, long rateLimiterWaitNanos,
+			LatencyHistogram tickToPublishLatency, int[] receiverBacklogs, long[] receiverDispatchLagNanos) {
+		this.noOfReceived = noOfReceived;
+		this.noOfConflated = noOfConflated;
+		this.noOfRejectedStale = noOfRejectedStale;
+		this.noOfPublished = noOfPublished;
+		this.publishQueueDepth = publishQueueDepth;
+		this.rateLimiterWaitNanos = rateLimiterWaitNanos;
+		this.tickToPublishLatency = tickToPublishLatency;
+		this.receiverBacklogs = receiverBacklogs;
+		this.receiverDispatchLagNanos = receiverDispatchLagNanos;
+	}
+
+	/**
+	 * Get no of messages of loaded symbols received
+	 * @return
+	 */
+	public long getNoOfReceived() {
+		return noOfReceived;
+	}
+
+	/**
+	 * Get no of messages merged into an update not yet published
+	 * @return
+	 */
+	public long getNoOfConflated() {
+		return noOfConflated;
+	}
+
+	/**
+	 * Get no of messages rejected as older than the cached update
+	 * @return
+	 */
+	public long getNoOfRejectedStale() {
+		return noOfRejectedStale;
+	}
+
+	public long getNoOfPublished() {
+		return noOfPublished;
+	}
+
+	public int getPublishQueueDepth() {
+		return publishQueueDepth;
+	}
+
+	/**
+	 * Get total time the throttle controller thread waited for rate limiter permits
+	 * @return
+	 */
+	public long getRateLimiterWaitNanos() {
+		return rateLimiterWaitNanos;
+	}
+
+	/**
+	 * Get distribution of time from a symbol turning dirty to its publish
+	 * @return
+	 */
+	public LatencyHistogram getTickToPublishLatency() {
+		return tickToPublishLatency;
+	}
+
+	/**
+	 * Get no of pending updates of each receiver, in registration order
+	 * @return
+	 */
+	public int[] getReceiverBacklogs() {
+		return receiverBacklogs.clone();
+	}
+
+	/**
+	 * Get time the last delivered update of each receiver waited in its lane, in registration order
+	 * @return
+	 */
+	public long[] getReceiverDispatchLagNanos() {
+		return receiverDispatchLagNanos.clone();
+	}
+
+	public String toString() {
+		return new StringBuilder("received=").append(noOfReceived)
+				.append("|conflated=").append(noOfConflated)
+				.append("|rejectedStale=").append(noOfRejectedStale)
+				.append("|published=").append(noOfPublished)
+				.append("|queueDepth=").append(publishQueueDepth)
+				.append("|rateLimiterWaitNanos=").append(rateLimiterWaitNanos)
+				.append("|p99TickToPublishNanos=").append(tickToPublishLatency.getValueAtPercentile(99))
+				.toString();
+	}
+}
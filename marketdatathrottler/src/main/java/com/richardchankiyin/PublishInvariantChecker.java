@@ -0,0 +1,106 @@
+package com.richardchankiyin;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Check published market data against a throttle policy: no more than
+ * maxPublishes within any window, no two publishes of a symbol within its
+ * min publish interval, and update time of a symbol never going backwards.
+ * It can be registered as a receiver, e.g. during a replay by
+ * {@link FeedReplayer}, or fed from a journal by {@link JournalReader}.
+ * Publishes are expected in publish order, i.e. of a single processor.
+ * Called by a single thread
+ */
+public class PublishInvariantChecker implements Receiver, JournalReader.RecordHandler {
+
+	private static final int MAX_VIOLATIONS_KEPT = 100;
+
+	private final ThrottlePolicy throttlePolicy;
+	// publish times of the last maxPublishes publishes
+	private final long[] publishTimes;
+	private int next = 0;
+	private volatile long noOfPublishes = 0;
+	// last update time and publish time by symbol
+	private final Map<String, long[]> lastBySymbol = new HashMap<>();
+	private final List<String> violations = new ArrayList<>();
+	private volatile long noOfViolations = 0;
+
+	public PublishInvariantChecker(ThrottlePolicy throttlePolicy) {
+		this.throttlePolicy = throttlePolicy;
+		this.publishTimes = new long[throttlePolicy.getMaxPublishes()];
+	}
+
+	@Override
+	public void onReceive(MarketData data) {
+		check(data.getSymbol(), data.getUpdateTime(), data.getPublishTime());
+	}
+
+	@Override
+	public void onRecord(int symbolId, String symbol, double price, long updateTime, long publishTime) {
+		check(symbol, updateTime, publishTime);
+	}
+
+	/**
+	 * Check a publish
+	 * @param symbol
+	 * @param updateTime
+	 * @param publishTime
+	 * @return false if any invariant is violated
+	 */
+	public boolean check(String symbol, long updateTime, long publishTime) {
+		boolean valid = true;
+		if (noOfPublishes >= publishTimes.length) {
+			long oldest = publishTimes[next];
+			if (publishTime - oldest < throttlePolicy.getWindowMillis()) {
+				valid = violate("more than " + publishTimes.length + " publishes within "
+						+ throttlePolicy.getWindowMillis() + " ms, at " + publishTime + " since " + oldest);
+			}
+		}
+		publishTimes[next] = publishTime;
+		next = next + 1 == publishTimes.length ? 0 : next + 1;
+		noOfPublishes++;
+		long[] last = lastBySymbol.get(symbol);
+		if (last == null) {
+			lastBySymbol.put(symbol, new long[] {updateTime, publishTime});
+			return valid;
+		}
+		long interval = throttlePolicy.getMinPublishIntervalMillis(symbol);
+		if (publishTime - last[1] < interval) {
+			valid = violate(symbol + " published at " + publishTime + " within " + interval + " ms of " + last[1]);
+		}
+		if (updateTime < last[0]) {
+			valid = violate(symbol + " update time " + updateTime + " before " + last[0]);
+		}
+		last[0] = updateTime;
+		last[1] = publishTime;
+		return valid;
+	}
+
+	private boolean violate(String violation) {
+		if (violations.size() < MAX_VIOLATIONS_KEPT) {
+			violations.add(violation);
+		}
+		noOfViolations++;
+		return false;
+	}
+
+	public long getNoOfPublishes() {
+		return noOfPublishes;
+	}
+
+	public long getNoOfViolations() {
+		return noOfViolations;
+	}
+
+	/**
+	 * Get the first violations found
+	 * @return
+	 */
+	public List<String> getViolations() {
+		return Collections.unmodifiableList(violations);
+	}
+}
@@ -0,0 +1,29 @@
+package com.richardchankiyin;
+
+/**
+ * Implementation of the queue of symbols waiting to be published
+ */
+public enum PublishQueueType {
+	/** lock free, onMessage is called by a single thread */
+	SPSC,
+	/** lock free, onMessage can be called by many threads */
+	MPSC,
+	/** guarded by a lock, onMessage can be called by many threads */
+	LOCKING;
+
+	/**
+	 * Create a queue of this type
+	 * @param capacity
+	 * @return
+	 */
+	public IntQueue newQueue(int capacity) {
+		switch (this) {
+		case MPSC:
+			return new MpscIntQueue(capacity);
+		case LOCKING:
+			return new LockingIntQueue(capacity);
+		default:
+			return new SpscIntQueue(capacity);
+		}
+	}
+}
@@ -0,0 +1,54 @@
+package com.richardchankiyin;
+
+/**
+ * Decide which dirty symbol gets the next publish permit. Symbols are
+ * offered once their cooldown since the last publish is over. Used by the
+ * single throttle controller thread and not thread safe
+ */
+public interface PublishScheduler {
+
+	/**
+	 * Add a symbol ready to be published, or update it if added before
+	 * @param symbolId
+	 * @param symbol
+	 * @param price latest price of the symbol
+	 * @param currentTime in milliseconds
+	 */
+	public void offer(int symbolId, String symbol, double price, long currentTime);
+
+	public boolean contains(int symbolId);
+
+	/**
+	 * Retrieve without removing the symbol to be published next
+	 * @return IntQueue.EMPTY if no symbol is added
+	 */
+	public int peek();
+
+	/**
+	 * Remove a symbol, e.g. the one returned by peek before it is published
+	 * @param symbolId
+	 */
+	public void remove(int symbolId);
+
+	/**
+	 * Called after a symbol is published
+	 * @param symbolId
+	 * @param data the published data
+	 */
+	public void onPublished(int symbolId, MarketData data);
+
+	/**
+	 * Get no of symbols added
+	 * @return
+	 */
+	public int size();
+
+	/**
+	 * Whether a symbol should be offered again when its price moves while
+	 * it waits, e.g. the order depends on price change
+	 * @return
+	 */
+	public default boolean isPriceSensitive() {
+		return false;
+	}
+}
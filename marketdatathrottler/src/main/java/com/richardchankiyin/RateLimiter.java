@@ -0,0 +1,36 @@
+package com.richardchankiyin;
+
+/**
+ * Decide whether a publish can be made at a given time.
+ * Implementations are used by the single throttle controller thread and
+ * are not thread safe unless stated otherwise
+ */
+public interface RateLimiter {
+
+	/**
+	 * Try to take a permit at current time
+	 * @param currentTime in milliseconds
+	 * @return true if a permit is taken
+	 */
+	public boolean tryAcquire(long currentTime);
+
+	/**
+	 * Earliest time a permit will be available. A value not later
+	 * than currentTime means a permit is available now
+	 * @param currentTime in milliseconds
+	 * @return
+	 */
+	public long nextPermitTime(long currentTime);
+
+	/**
+	 * Max no of permits within the window
+	 * @return
+	 */
+	public int getMaxPermits();
+
+	/**
+	 * Window size in milliseconds
+	 * @return
+	 */
+	public long getWindowMillis();
+}
@@ -1,7 +1,20 @@
 package com.richardchankiyin;
 
+import java.util.List;
+
 public interface Receiver {
 
 	public void onReceive(MarketData data);
 	
+	/**
+	 * Receive several updates at once, in publish order. The list is reused
+	 * after the call returns so it must not be kept
+	 * @param datas
+	 */
+	public default void onReceiveBatch(List<MarketData> datas) {
+		for (int i = 0, size = datas.size(); i < size; i++) {
+			onReceive(datas.get(i));
+		}
+	}
+	
 }
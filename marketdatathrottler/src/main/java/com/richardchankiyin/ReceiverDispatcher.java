@@ -0,0 +1,155 @@
+package com.richardchankiyin;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Fan out published updates to receivers. Each receiver has its own
+ * {@link ReceiverLane} so that a slow receiver does not hold up the others
+ */
+public class ReceiverDispatcher {
+
+	/** no limit of deliveries in progress at the same time */
+	public static final int UNBOUNDED_DELIVERIES = 0;
+
+	private final List<ReceiverLane> lanes;
+	private final ReceiverThreadMode threadMode;
+
+	public ReceiverDispatcher(List<ReceiverLane> lanes) {
+		this(lanes, ReceiverThreadMode.PLATFORM);
+	}
+
+	public ReceiverDispatcher(List<ReceiverLane> lanes, ReceiverThreadMode threadMode) {
+		this.lanes = Collections.unmodifiableList(new ArrayList<>(lanes));
+		this.threadMode = threadMode;
+	}
+
+	/**
+	 * Create a dispatcher with a lane for each receiver
+	 * @param receivers
+	 * @param conflatingReceivers receivers getting a {@link ConflatingReceiverLane}, others get a {@link RingReceiverLane}
+	 * @param symbolRegistry symbols conflating lanes and CONFLATE conflate on
+	 * @param capacity
+	 * @param overflowPolicy
+	 * @param maxBatchSize
+	 * @return
+	 */
+	public static ReceiverDispatcher create(List<Receiver> receivers, List<Receiver> conflatingReceivers,
+			SymbolRegistry symbolRegistry, int capacity, OverflowPolicy overflowPolicy, int maxBatchSize) {
+		return create(receivers, conflatingReceivers, symbolRegistry, capacity, overflowPolicy, maxBatchSize,
+				ReceiverThreadMode.PLATFORM, UNBOUNDED_DELIVERIES);
+	}
+
+	/**
+	 * Create a dispatcher with a lane for each receiver, delivering on
+	 * threads of the thread mode. Each receiver still has one thread so it
+	 * gets updates in publish order, and has at most capacity updates
+	 * pending. Deliveries in progress of all receivers can be limited
+	 * further, e.g. to the no of connections of a pool the receivers use
+	 * @param receivers
+	 * @param conflatingReceivers
+	 * @param symbolRegistry
+	 * @param capacity
+	 * @param overflowPolicy
+	 * @param maxBatchSize
+	 * @param threadMode
+	 * @param maxConcurrentDeliveries max no of receivers in onReceive or onReceiveBatch at the same time, or UNBOUNDED_DELIVERIES
+	 * @return
+	 */
+	public static ReceiverDispatcher create(List<Receiver> receivers, List<Receiver> conflatingReceivers,
+			SymbolRegistry symbolRegistry, int capacity, OverflowPolicy overflowPolicy, int maxBatchSize,
+			ReceiverThreadMode threadMode, int maxConcurrentDeliveries) {
+		if (maxConcurrentDeliveries < 0) {
+			throw new IllegalArgumentException("maxConcurrentDeliveries must not be negative");
+		}
+		Semaphore deliveries = maxConcurrentDeliveries == UNBOUNDED_DELIVERIES ? null : new Semaphore(maxConcurrentDeliveries);
+		List<ReceiverLane> lanes = new ArrayList<>(receivers.size());
+		for (Receiver laneReceiver: receivers) {
+			Receiver receiver = deliveries == null ? laneReceiver : new BoundedReceiver(laneReceiver, deliveries);
+			if (conflatingReceivers.contains(laneReceiver)) {
+				lanes.add(new ConflatingReceiverLane(receiver, symbolRegistry, maxBatchSize));
+			} else {
+				lanes.add(new RingReceiverLane(receiver, capacity, overflowPolicy, maxBatchSize, symbolRegistry));
+			}
+		}
+		return new ReceiverDispatcher(lanes, threadMode);
+	}
+
+	public void start() {
+		for (int i = 0; i < lanes.size(); i++) {
+			lanes.get(i).start("receiver-lane-" + i, threadMode);
+		}
+	}
+
+	public void stop() {
+		for (int i = 0; i < lanes.size(); i++) {
+			lanes.get(i).stop();
+		}
+	}
+
+	/**
+	 * Queue the update to every receiver
+	 * @param data
+	 */
+	public void dispatch(MarketData data) {
+		for (int i = 0, size = lanes.size(); i < size; i++) {
+			lanes.get(i).offer(data);
+		}
+	}
+
+	/**
+	 * Queue the updates of a batch to every receiver, one receiver at a time
+	 * @param batch
+	 */
+	public void dispatch(MarketDataBatch batch) {
+		for (int i = 0, size = lanes.size(); i < size; i++) {
+			ReceiverLane lane = lanes.get(i);
+			for (int j = 0, batchSize = batch.size(); j < batchSize; j++) {
+				lane.offer(batch.get(j));
+			}
+		}
+	}
+
+	public List<ReceiverLane> getLanes() {
+		return this.lanes;
+	}
+
+	public ReceiverThreadMode getThreadMode() {
+		return this.threadMode;
+	}
+
+	/**
+	 * Take a permit of the shared semaphore for each delivery
+	 */
+	private static class BoundedReceiver implements Receiver {
+		private final Receiver receiver;
+		private final Semaphore deliveries;
+
+		private BoundedReceiver(Receiver receiver, Semaphore deliveries) {
+			this.receiver = receiver;
+			this.deliveries = deliveries;
+		}
+
+		@Override
+		public void onReceive(MarketData data) {
+			deliveries.acquireUninterruptibly();
+			try {
+				receiver.onReceive(data);
+			} finally {
+				deliveries.release();
+			}
+		}
+
+		@Override
+		public void onReceiveBatch(List<MarketData> datas) {
+			deliveries.acquireUninterruptibly();
+			try {
+				receiver.onReceiveBatch(datas);
+			} finally {
+				deliveries.release();
+			}
+		}
+	}
+}
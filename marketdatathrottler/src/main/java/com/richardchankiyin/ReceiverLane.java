@@ -0,0 +1,59 @@
+package com.richardchankiyin;
+
+/**
+ * Queue of published updates for one receiver, delivered on its own thread
+ */
+public interface ReceiverLane {
+
+	public Receiver getReceiver();
+
+	/**
+	 * Start the platform thread delivering to the receiver
+	 * @param threadName
+	 */
+	public default void start(String threadName) {
+		start(threadName, ReceiverThreadMode.PLATFORM);
+	}
+
+	/**
+	 * Start the thread delivering to the receiver
+	 * @param threadName
+	 * @param threadMode
+	 */
+	public void start(String threadName, ReceiverThreadMode threadMode);
+
+	/**
+	 * Stop after delivering pending updates
+	 */
+	public void stop();
+
+	/**
+	 * Queue an update for the receiver
+	 * @param data
+	 */
+	public void offer(MarketData data);
+
+	/**
+	 * Get no of pending updates
+	 * @return
+	 */
+	public int size();
+
+	/**
+	 * Get max no of pending updates
+	 * @return
+	 */
+	public int capacity();
+
+	public long getNoOfDelivered();
+
+	public long getNoOfDropped();
+
+	public long getNoOfConflated();
+
+	/**
+	 * Get time the last delivered update waited in the lane
+	 * @return
+	 */
+	public long getDispatchLagNanos();
+}
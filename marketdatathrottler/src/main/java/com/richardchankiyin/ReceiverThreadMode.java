@@ -0,0 +1,33 @@
+package com.richardchankiyin;
+
+/**
+ * Kind of thread a {@link ReceiverLane} delivers on
+ */
+public enum ReceiverThreadMode {
+	/** an OS thread per receiver */
+	PLATFORM {
+		@Override
+		public Thread newThread(Runnable runnable, String name) {
+			return new Thread(runnable, name);
+		}
+	},
+	/**
+	 * a virtual thread per receiver, which unmounts from its carrier
+	 * thread while the receiver blocks on I/O, so hundreds of blocking
+	 * receivers share a few OS threads
+	 */
+	VIRTUAL {
+		@Override
+		public Thread newThread(Runnable runnable, String name) {
+			return Thread.ofVirtual().name(name).unstarted(runnable);
+		}
+	};
+
+	/**
+	 * Create an unstarted thread
+	 * @param runnable
+	 * @param name
+	 * @return
+	 */
+	public abstract Thread newThread(Runnable runnable, String name);
+}
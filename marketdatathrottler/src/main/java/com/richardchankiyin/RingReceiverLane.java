@@ -0,0 +1,287 @@
+package com.richardchankiyin;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Deliver published updates to one receiver on its own thread, in publish
+ * order. Pending updates are kept in a bounded ring, what happens when it
+ * is full is decided by the {@link OverflowPolicy}. With CONFLATE the
+ * pending update of each symbol is found by symbol id, like
+ * {@link ConflatingReceiverLane}
+ */
+public class RingReceiverLane implements ReceiverLane, Runnable {
+
+	private static final Logger logger = Logger.getLogger("com.richardchankiyin");
+
+	private final Receiver receiver;
+	private final MarketData[] ring;
+	private final long[] offerTimeNanos;
+	// symbol id of each pending update and ring index + 1 of the pending
+	// update of each symbol id, 0 if none, kept for CONFLATE only
+	private final int[] ringSymbolIds;
+	private int[] pendingIndexes;
+	private final SymbolRegistry symbolRegistry;
+	private final boolean ownsSymbolRegistry;
+	private final OverflowPolicy overflowPolicy;
+	private final int maxBatchSize;
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition notEmpty = lock.newCondition();
+	private final Condition notFull = lock.newCondition();
+	private final List<MarketData> batch;
+	private final List<MarketData> batchView;
+	private int head = 0;
+	private int count = 0;
+	private volatile boolean isRunning = false;
+	private volatile long noOfDelivered = 0;
+	private volatile long noOfDropped = 0;
+	private volatile long noOfConflated = 0;
+	private volatile long dispatchLagNanos = 0;
+	private long batchOfferTimeNanos = 0;
+	private Thread thread = null;
+
+	/**
+	 * @param receiver
+	 * @param capacity max no of pending updates
+	 * @param overflowPolicy
+	 * @param maxBatchSize 1 to deliver by onReceive, otherwise by onReceiveBatch
+	 */
+	public RingReceiverLane(Receiver receiver, int capacity, OverflowPolicy overflowPolicy, int maxBatchSize) {
+		this(receiver, capacity, overflowPolicy, maxBatchSize, null);
+	}
+
+	/**
+	 * @param receiver
+	 * @param capacity max no of pending updates
+	 * @param overflowPolicy
+	 * @param maxBatchSize 1 to deliver by onReceive, otherwise by onReceiveBatch
+	 * @param symbolRegistry symbols CONFLATE conflates on, null to register
+	 * symbols with the lane as they are offered
+	 */
+	public RingReceiverLane(Receiver receiver, int capacity, OverflowPolicy overflowPolicy, int maxBatchSize,
+			SymbolRegistry symbolRegistry) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("capacity must be positive");
+		}
+		if (maxBatchSize <= 0) {
+			throw new IllegalArgumentException("maxBatchSize must be positive");
+		}
+		this.receiver = receiver;
+		this.ring = new MarketData[capacity];
+		this.offerTimeNanos = new long[capacity];
+		this.overflowPolicy = overflowPolicy;
+		if (overflowPolicy == OverflowPolicy.CONFLATE) {
+			this.ownsSymbolRegistry = symbolRegistry == null;
+			this.symbolRegistry = ownsSymbolRegistry ? new SymbolRegistry(Collections.emptyList()) : symbolRegistry;
+			this.ringSymbolIds = new int[capacity];
+			this.pendingIndexes = new int[Math.max(1, this.symbolRegistry.size())];
+		} else {
+			this.ownsSymbolRegistry = false;
+			this.symbolRegistry = null;
+			this.ringSymbolIds = null;
+			this.pendingIndexes = null;
+		}
+		this.maxBatchSize = maxBatchSize;
+		this.batch = new ArrayList<>(maxBatchSize);
+		this.batchView = Collections.unmodifiableList(batch);
+	}
+
+	@Override
+	public Receiver getReceiver() {
+		return this.receiver;
+	}
+
+	@Override
+	public void start(String threadName, ReceiverThreadMode threadMode) {
+		isRunning = true;
+		thread = threadMode.newThread(this, threadName);
+		thread.start();
+	}
+
+	@Override
+	public void stop() {
+		lock.lock();
+		try {
+			isRunning = false;
+			notEmpty.signalAll();
+			notFull.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void offer(MarketData data) {
+		int symbolId = overflowPolicy == OverflowPolicy.CONFLATE ? conflationSymbolId(data) : SymbolRegistry.SYMBOL_ID_UNKNOWN;
+		lock.lock();
+		try {
+			if (count == ring.length) {
+				switch (overflowPolicy) {
+				case CONFLATE:
+					if (replacePending(symbolId, data)) {
+						noOfConflated++;
+						return;
+					}
+					// never drop the pending update of another symbol
+					if (!awaitNotFull()) {
+						return;
+					}
+					break;
+				case BLOCK:
+					if (!awaitNotFull()) {
+						return;
+					}
+					break;
+				default:
+					dropOldest();
+				}
+			}
+			int tail = head + count;
+			tail = tail < ring.length ? tail : tail - ring.length;
+			ring[tail] = data;
+			offerTimeNanos[tail] = System.nanoTime();
+			if (ringSymbolIds != null) {
+				ringSymbolIds[tail] = symbolId;
+				if (symbolId != SymbolRegistry.SYMBOL_ID_UNKNOWN) {
+					if (symbolId >= pendingIndexes.length) {
+						// symbol added after the lane is created
+						pendingIndexes = Arrays.copyOf(pendingIndexes, Math.max(symbolId + 1, pendingIndexes.length * 2));
+					}
+					pendingIndexes[symbolId] = tail + 1;
+				}
+			}
+			count++;
+			notEmpty.signal();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private int conflationSymbolId(MarketData data) {
+		int symbolId = symbolRegistry.getSymbolId(data.getSymbol());
+		if (symbolId == SymbolRegistry.SYMBOL_ID_UNKNOWN && ownsSymbolRegistry) {
+			symbolId = symbolRegistry.addSymbol(data.getSymbol());
+		}
+		return symbolId;
+	}
+
+	/**
+	 * @return false if stopped while waiting
+	 */
+	private boolean awaitNotFull() {
+		while (count == ring.length && isRunning) {
+			notFull.awaitUninterruptibly();
+		}
+		return count < ring.length;
+	}
+
+	private boolean replacePending(int symbolId, MarketData data) {
+		if (symbolId == SymbolRegistry.SYMBOL_ID_UNKNOWN || symbolId >= pendingIndexes.length || pendingIndexes[symbolId] == 0) {
+			return false;
+		}
+		int index = pendingIndexes[symbolId] - 1;
+		ring[index] = AggregatedMarketDataImpl.merge(ring[index], data);
+		return true;
+	}
+
+	private void dropOldest() {
+		ring[head] = null;
+		head = head + 1 == ring.length ? 0 : head + 1;
+		count--;
+		noOfDropped++;
+	}
+
+	private void take() {
+		if (ringSymbolIds != null) {
+			int symbolId = ringSymbolIds[head];
+			if (symbolId != SymbolRegistry.SYMBOL_ID_UNKNOWN && pendingIndexes[symbolId] == head + 1) {
+				pendingIndexes[symbolId] = 0;
+			}
+		}
+		ring[head] = null;
+		head = head + 1 == ring.length ? 0 : head + 1;
+	}
+
+	@Override
+	public void run() {
+		while (true) {
+			lock.lock();
+			try {
+				while (count == 0 && isRunning) {
+					notEmpty.awaitUninterruptibly();
+				}
+				if (count == 0) {
+					// stopped and nothing pending
+					return;
+				}
+				int noOfTaken = Math.min(count, maxBatchSize);
+				batchOfferTimeNanos = offerTimeNanos[head];
+				for (int i = 0; i < noOfTaken; i++) {
+					batch.add(ring[head]);
+					take();
+				}
+				count -= noOfTaken;
+				notFull.signal();
+			} finally {
+				lock.unlock();
+			}
+			deliver();
+		}
+	}
+
+	private void deliver() {
+		try {
+			if (maxBatchSize == 1) {
+				receiver.onReceive(batch.get(0));
+			} else {
+				receiver.onReceiveBatch(batchView);
+			}
+		} catch (RuntimeException e) {
+			logger.log(Level.WARNING, "receiver failed", e);
+		}
+		noOfDelivered += batch.size();
+		dispatchLagNanos = System.nanoTime() - batchOfferTimeNanos;
+		batch.clear();
+	}
+
+	@Override
+	public int size() {
+		lock.lock();
+		try {
+			return count;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public int capacity() {
+		return ring.length;
+	}
+
+	@Override
+	public long getNoOfDelivered() {
+		return noOfDelivered;
+	}
+
+	@Override
+	public long getNoOfDropped() {
+		return noOfDropped;
+	}
+
+	@Override
+	public long getNoOfConflated() {
+		return noOfConflated;
+	}
+
+	@Override
+	public long getDispatchLagNanos() {
+		return dispatchLagNanos;
+	}
+}
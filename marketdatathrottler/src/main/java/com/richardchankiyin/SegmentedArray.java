@@ -0,0 +1,74 @@
+package com.richardchankiyin;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Array of references indexed by int which grows by fixed size segments.
+ * Segments are never copied, only the small directory of segments is
+ * copied on write, so readers are never blocked or slowed down while it
+ * grows. Writers of different indexes can run concurrently, growing is
+ * serialized
+ */
+public class SegmentedArray<E> {
+
+	static final int SEGMENT_BITS = 10;
+	static final int SEGMENT_SIZE = 1 << SEGMENT_BITS;
+	private static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+	private volatile AtomicReferenceArray<?>[] segments = new AtomicReferenceArray<?>[0];
+
+	/**
+	 * Get the element
+	 * @param index
+	 * @return null if never set or out of range
+	 */
+	@SuppressWarnings("unchecked")
+	public E get(int index) {
+		AtomicReferenceArray<?>[] directory = segments;
+		int segment = index >>> SEGMENT_BITS;
+		if (index < 0 || segment >= directory.length) {
+			return null;
+		}
+		return (E) directory[segment].get(index & SEGMENT_MASK);
+	}
+
+	/**
+	 * Set the element, growing the array if needed
+	 * @param index non negative
+	 * @param element
+	 */
+	@SuppressWarnings("unchecked")
+	public void set(int index, E element) {
+		if (index < 0) {
+			throw new IndexOutOfBoundsException("index " + index);
+		}
+		int segment = index >>> SEGMENT_BITS;
+		AtomicReferenceArray<?>[] directory = segments;
+		if (segment >= directory.length) {
+			directory = grow(segment);
+		}
+		((AtomicReferenceArray<E>) directory[segment]).set(index & SEGMENT_MASK, element);
+	}
+
+	private synchronized AtomicReferenceArray<?>[] grow(int segment) {
+		AtomicReferenceArray<?>[] directory = segments;
+		if (segment >= directory.length) {
+			int length = directory.length;
+			directory = Arrays.copyOf(directory, segment + 1);
+			for (int i = length; i < directory.length; i++) {
+				directory[i] = new AtomicReferenceArray<Object>(SEGMENT_SIZE);
+			}
+			segments = directory;
+		}
+		return directory;
+	}
+
+	/**
+	 * Get no of elements the array can hold without growing
+	 * @return
+	 */
+	public int capacity() {
+		return segments.length << SEGMENT_BITS;
+	}
+}
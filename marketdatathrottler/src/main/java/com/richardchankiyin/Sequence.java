@@ -0,0 +1,64 @@
+package com.richardchankiyin;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+abstract class SequenceLhsPadding {
+	protected long p01, p02, p03, p04, p05, p06, p07;
+}
+
+abstract class SequenceValue extends SequenceLhsPadding {
+	protected volatile long value;
+	protected long cachedValue;
+}
+
+abstract class SequenceRhsPadding extends SequenceValue {
+	protected long p11, p12, p13, p14, p15, p16, p17;
+}
+
+/**
+ * Counter padded to its own cache line so that the producer and consumer
+ * indices of a queue do not false share. cachedValue is a plain field for
+ * the owner thread to cache the index of the other side
+ */
+public class Sequence extends SequenceRhsPadding {
+
+	private static final AtomicLongFieldUpdater<SequenceValue> VALUE_UPDATER =
+			AtomicLongFieldUpdater.newUpdater(SequenceValue.class, "value");
+
+	public Sequence() {
+		this(0);
+	}
+
+	public Sequence(long initialValue) {
+		this.value = initialValue;
+	}
+
+	public long get() {
+		return value;
+	}
+
+	public void set(long newValue) {
+		value = newValue;
+	}
+
+	/**
+	 * Release store. Writes before it are visible to a thread
+	 * reading the new value
+	 * @param newValue
+	 */
+	public void lazySet(long newValue) {
+		VALUE_UPDATER.lazySet(this, newValue);
+	}
+
+	public boolean compareAndSet(long expect, long update) {
+		return VALUE_UPDATER.compareAndSet(this, expect, update);
+	}
+
+	public long getCachedValue() {
+		return cachedValue;
+	}
+
+	public void setCachedValue(long cachedValue) {
+		this.cachedValue = cachedValue;
+	}
+}
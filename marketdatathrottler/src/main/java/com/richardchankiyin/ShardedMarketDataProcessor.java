@@ -0,0 +1,576 @@
+package com.richardchankiyin;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Partition symbols by hash across independent {@link MarketDataProcessorImpl}
+ * shards, each with its own cache, publish queue and throttle controller
+ * thread, so that publishing scales with the no of cores. All shards take
+ * permits from one thread safe rate limiter, a
+ * {@link ConcurrentSlidingWindowRateLimiter} of MAXSENDPERTIMESLOT per
+ * TIMESLOTMILLISEC by default, so the global limit still holds.
+ *
+ * Receivers are registered here instead of on the shards. Updates published
+ * by all shards go to one {@link ReceiverDispatcher}, so each receiver is
+ * still called by a single lane thread.
+ *
+ * onMessage of different shards can be called by different threads, e.g.
+ * one feed handler thread per exchange. Symbols of the same shard need the
+ * MPSC or LOCKING publish queue type to be updated by many threads
+ */
+public class ShardedMarketDataProcessor extends MarketDataProcessor {
+	private final IllegalStateException INSTANCE_START_STATE_EXCEPTION = new IllegalStateException("the instance is started");
+	private final IllegalStateException INSTANCE_NOT_START_STATE_EXCEPTION = new IllegalStateException("the instance is not started");
+
+	private static final Logger logger = Logger.getLogger("com.richardchankiyin");
+	private final MarketDataProcessorImpl[] shards;
+	private final List<Receiver> receivers = new ArrayList<>();
+	private final List<Receiver> conflatingReceivers = new ArrayList<>();
+	private int receiverLaneCapacity = MarketDataProcessorImpl.DEFAULT_RECEIVER_LANE_CAPACITY;
+	private OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+	private int maxReceiverBatchSize = 1;
+	private ReceiverThreadMode receiverThreadMode = ReceiverThreadMode.PLATFORM;
+	private int maxConcurrentDeliveries = ReceiverDispatcher.UNBOUNDED_DELIVERIES;
+	private volatile ReceiverDispatcher receiverDispatcher = null;
+	// all symbols, for conflating receivers
+	private SymbolRegistry symbolRegistry = new SymbolRegistry(Collections.emptyList());
+	private volatile ThrottlePolicy throttlePolicy;
+	private volatile RateLimiter rateLimiter;
+	private volatile boolean isStarted = false;
+
+	/**
+	 * @param noOfShards e.g. no of cores available for publishing
+	 */
+	public ShardedMarketDataProcessor(int noOfShards) {
+		if (noOfShards <= 0) {
+			throw new IllegalArgumentException("noOfShards must be positive");
+		}
+		this.shards = new MarketDataProcessorImpl[noOfShards];
+		for (int i = 0; i < noOfShards; i++) {
+			final int shardIndex = i;
+			shards[i] = new MarketDataProcessorImpl() {
+				@Override
+				public void publishAggregatedMarketData(MarketData data) {
+					ShardedMarketDataProcessor.this.publishAggregatedMarketData(data);
+				}
+
+				@Override
+				public void publishAggregatedMarketData(MarketDataBatch batch) {
+					ShardedMarketDataProcessor.this.publishAggregatedMarketData(batch);
+				}
+			};
+			shards[i].setThreadFactory(r -> new Thread(r, "throttle-controller-shard-" + shardIndex));
+		}
+		setThrottlePolicy(ThrottlePolicy.DEFAULT);
+	}
+
+	/**
+	 * Check whether the instance is started
+	 * @return
+	 */
+	public boolean isStarted() {
+		return this.isStarted;
+	}
+
+	/**
+	 * Start the instance
+	 */
+	public void start() {
+		receiverDispatcher = ReceiverDispatcher.create(receivers, conflatingReceivers, symbolRegistry,
+				receiverLaneCapacity, overflowPolicy, maxReceiverBatchSize, receiverThreadMode, maxConcurrentDeliveries);
+		receiverDispatcher.start();
+		for (MarketDataProcessorImpl shard: shards) {
+			shard.start();
+		}
+		isStarted = true;
+	}
+
+	/**
+	 * Stop the instance
+	 */
+	public void stop() {
+		isStarted = false;
+		for (MarketDataProcessorImpl shard: shards) {
+			shard.stop();
+		}
+		if (receiverDispatcher != null) receiverDispatcher.stop();
+	}
+
+	/**
+	 * Get index of the shard the symbol belongs to
+	 * @param symbol
+	 * @return
+	 */
+	public int getShardIndex(String symbol) {
+		int hash = symbol.hashCode();
+		// spread the high bits as symbols often differ in the last characters only
+		hash ^= hash >>> 16;
+		return (hash & Integer.MAX_VALUE) % shards.length;
+	}
+
+	/**
+	 * Get the shard the symbol belongs to
+	 * @param symbol
+	 * @return
+	 */
+	public MarketDataProcessorImpl getShard(String symbol) {
+		return shards[getShardIndex(symbol)];
+	}
+
+	/**
+	 * Get shard by index, e.g. for its metrics
+	 * @param shardIndex
+	 * @return
+	 */
+	public MarketDataProcessorImpl getShard(int shardIndex) {
+		return shards[shardIndex];
+	}
+
+	public int getNoOfShards() {
+		return shards.length;
+	}
+
+	/**
+	 * Get a copy of cached market data value based on Symbol
+	 * @param symbol
+	 * @return
+	 */
+	public MarketData getCache(String symbol) {
+		return getShard(symbol).getCache(symbol);
+	}
+
+	/**
+	 * Get the rate limiter shared by all shards
+	 * @return
+	 */
+	public RateLimiter getRateLimiter() {
+		return this.rateLimiter;
+	}
+
+	/**
+	 * Get the current throttle policy
+	 * @return
+	 */
+	public ThrottlePolicy getThrottlePolicy() {
+		return this.throttlePolicy;
+	}
+
+	/**
+	 * Get dispatcher delivering to receivers, null before start
+	 * @return
+	 */
+	public ReceiverDispatcher getReceiverDispatcher() {
+		return this.receiverDispatcher;
+	}
+
+
+	/********* Pre-start calls **************/
+	/**
+	 * load symbols into the shards they belong to. Can only do that
+	 * before the instance is started, use addSymbol and
+	 * removeSymbol afterwards
+	 * @param symbols
+	 */
+	public synchronized void loadSymbols(List<String> symbols) {
+		if (!isStarted()) {
+			List<List<String>> symbolsPerShard = new ArrayList<>(shards.length);
+			for (int i = 0; i < shards.length; i++) {
+				symbolsPerShard.add(new ArrayList<>());
+			}
+			for (String symbol: symbols) {
+				if (symbol != null) {
+					symbolsPerShard.get(getShardIndex(symbol)).add(symbol);
+				}
+			}
+			for (int i = 0; i < shards.length; i++) {
+				shards[i].loadSymbols(symbolsPerShard.get(i));
+			}
+			symbolRegistry = new SymbolRegistry(symbols);
+		} else {
+			logger.warning("the instance isStarted!");
+			throw INSTANCE_START_STATE_EXCEPTION;
+		}
+	}
+
+	/**
+	 * Restore cached market data of loaded symbols of all shards from a
+	 * snapshot file. Can only do that before the instance is started,
+	 * after loadSymbols. See {@link MarketDataProcessorImpl#loadSnapshot(Path)}
+	 * @param file
+	 * @return no of symbols restored
+	 * @throws IOException
+	 */
+	public synchronized int loadSnapshot(Path file) throws IOException {
+		if (!isStarted()) {
+			return MarketDataSnapshot.read(file, MarketDataSnapshot.bySymbol((symbol, price, updateTime, publishTime) ->
+					getShard(symbol).restore(symbol, price, updateTime, publishTime)));
+		} else {
+			logger.warning("the instance isStarted!");
+			throw INSTANCE_START_STATE_EXCEPTION;
+		}
+	}
+
+	/**
+	 * register receiver. Can only do that
+	 * before the instance is started
+	 * @param receiver
+	 */
+	public void registerReceiver(Receiver receiver) {
+		registerReceiver(receiver, false);
+	}
+
+	/**
+	 * register receiver. Can only do that before the instance is
+	 * started. See {@link MarketDataProcessorImpl#registerReceiver(Receiver, boolean)}
+	 * @param receiver
+	 * @param conflateBySymbol
+	 */
+	public void registerReceiver(Receiver receiver, boolean conflateBySymbol) {
+		if (!isStarted()) {
+			receivers.add(receiver);
+			if (conflateBySymbol) {
+				conflatingReceivers.add(receiver);
+			}
+		} else {
+			logger.warning("the instance isStarted!");
+			throw INSTANCE_START_STATE_EXCEPTION;
+		}
+	}
+
+	/**
+	 * set rate limiter shared by all shards. It must be thread safe.
+	 * Can only do that before the instance is started
+	 * @param rateLimiter
+	 */
+	public void setRateLimiter(RateLimiter rateLimiter) {
+		if (!isStarted()) {
+			Objects.requireNonNull(rateLimiter);
+			applyThrottlePolicy(throttlePolicy.withGlobalRate(rateLimiter.getMaxPermits(), rateLimiter.getWindowMillis()), rateLimiter);
+		} else {
+			logger.warning("the instance isStarted!");
+			throw INSTANCE_START_STATE_EXCEPTION;
+		}
+	}
+
+	/**
+	 * set the strategy used by the throttle controller thread of each
+	 * shard. Can only do that before the instance is started
+	 * @param waitStrategySupplier called once per shard
+	 */
+	public void setWaitStrategy(Supplier<WaitStrategy> waitStrategySupplier) {
+		if (!isStarted()) {
+			for (MarketDataProcessorImpl shard: shards) {
+				shard.setWaitStrategy(waitStrategySupplier.get());
+			}
+		} else {
+			logger.warning("the instance isStarted!");
+			throw INSTANCE_START_STATE_EXCEPTION;
+		}
+	}
+
+	/**
+	 * set type of the publish queue of each shard. Can only do that
+	 * before the instance is started
+	 * @param publishQueueType
+	 */
+	public void setPublishQueueType(PublishQueueType publishQueueType) {
+		if (!isStarted()) {
+			for (MarketDataProcessorImpl shard: shards) {
+				shard.setPublishQueueType(publishQueueType);
+			}
+		} else {
+			logger.warning("the instance isStarted!");
+			throw INSTANCE_START_STATE_EXCEPTION;
+		}
+	}
+
+	/**
+	 * set whether each shard keeps cached market data off heap. Can only
+	 * do that before the instance is started.
+	 * See {@link MarketDataProcessorImpl#setOffHeapCache(boolean)}
+	 * @param offHeapCache
+	 */
+	public void setOffHeapCache(boolean offHeapCache) {
+		if (!isStarted()) {
+			for (MarketDataProcessorImpl shard: shards) {
+				shard.setOffHeapCache(offHeapCache);
+			}
+		} else {
+			logger.warning("the instance isStarted!");
+			throw INSTANCE_START_STATE_EXCEPTION;
+		}
+	}
+
+	/**
+	 * set whether each shard aggregates updates between publishes. Can
+	 * only do that before the instance is started.
+	 * See {@link MarketDataProcessorImpl#setAggregation(boolean)}
+	 * @param aggregation
+	 */
+	public void setAggregation(boolean aggregation) {
+		if (!isStarted()) {
+			for (MarketDataProcessorImpl shard: shards) {
+				shard.setAggregation(aggregation);
+			}
+		} else {
+			logger.warning("the instance isStarted!");
+			throw INSTANCE_START_STATE_EXCEPTION;
+		}
+	}
+
+	/**
+	 * set whether onMessage is called by many threads. Can only do that
+	 * before the instance is started.
+	 * See {@link MarketDataProcessorImpl#setMultiProducer(boolean)}
+	 * @param multiProducer
+	 */
+	public void setMultiProducer(boolean multiProducer) {
+		if (!isStarted()) {
+			for (MarketDataProcessorImpl shard: shards) {
+				shard.setMultiProducer(multiProducer);
+			}
+		} else {
+			logger.warning("the instance isStarted!");
+			throw INSTANCE_START_STATE_EXCEPTION;
+		}
+	}
+
+	/**
+	 * set max no of symbols each shard publishes per call. Can only do
+	 * that before the instance is started. See
+	 * {@link MarketDataProcessorImpl#setPublishBatchSize(int)}
+	 * @param publishBatchSize
+	 */
+	public void setPublishBatchSize(int publishBatchSize) {
+		if (!isStarted()) {
+			for (MarketDataProcessorImpl shard: shards) {
+				shard.setPublishBatchSize(publishBatchSize);
+			}
+		} else {
+			logger.warning("the instance isStarted!");
+			throw INSTANCE_START_STATE_EXCEPTION;
+		}
+	}
+
+	/**
+	 * set the clock of all shards. Can only do that before the instance
+	 * is started. See {@link MarketDataProcessorImpl#setClock(Clock)}
+	 * @param clock
+	 */
+	public void setClock(Clock clock) {
+		if (!isStarted()) {
+			for (MarketDataProcessorImpl shard: shards) {
+				shard.setClock(clock);
+			}
+		} else {
+			logger.warning("the instance isStarted!");
+			throw INSTANCE_START_STATE_EXCEPTION;
+		}
+	}
+
+	/**
+	 * set recorder capturing messages of all shards. Can only do that
+	 * before the instance is started. See
+	 * {@link MarketDataProcessorImpl#setFeedRecorder(FeedRecorder)}
+	 * @param feedRecorder
+	 */
+	public void setFeedRecorder(FeedRecorder feedRecorder) {
+		if (!isStarted()) {
+			for (MarketDataProcessorImpl shard: shards) {
+				shard.setFeedRecorder(feedRecorder);
+			}
+		} else {
+			logger.warning("the instance isStarted!");
+			throw INSTANCE_START_STATE_EXCEPTION;
+		}
+	}
+
+	/**
+	 * set the scheduler of each shard deciding which dirty symbol is
+	 * published next. Can only do that before the instance is started
+	 * @param publishSchedulerSupplier called once per shard
+	 */
+	public void setPublishScheduler(Supplier<PublishScheduler> publishSchedulerSupplier) {
+		if (!isStarted()) {
+			for (MarketDataProcessorImpl shard: shards) {
+				shard.setPublishScheduler(publishSchedulerSupplier.get());
+			}
+		} else {
+			logger.warning("the instance isStarted!");
+			throw INSTANCE_START_STATE_EXCEPTION;
+		}
+	}
+
+	/**
+	 * set min interval between publishes of the same symbol. Can only do
+	 * that before the instance is started
+	 * @param minPublishIntervalMillis
+	 */
+	public void setMinPublishIntervalMillis(long minPublishIntervalMillis) {
+		if (!isStarted()) {
+			applyThrottlePolicy(throttlePolicy.withMinPublishInterval(minPublishIntervalMillis), rateLimiter);
+		} else {
+			logger.warning("the instance isStarted!");
+			throw INSTANCE_START_STATE_EXCEPTION;
+		}
+	}
+
+	/**
+	 * set how updates are queued for each receiver. Can only do that
+	 * before the instance is started.
+	 * See {@link MarketDataProcessorImpl#setReceiverLane(int, OverflowPolicy, int)}
+	 * @param capacity
+	 * @param overflowPolicy
+	 * @param maxBatchSize
+	 */
+	public void setReceiverLane(int capacity, OverflowPolicy overflowPolicy, int maxBatchSize) {
+		if (!isStarted()) {
+			Objects.requireNonNull(overflowPolicy);
+			if (capacity <= 0 || maxBatchSize <= 0) {
+				throw new IllegalArgumentException("capacity and maxBatchSize must be positive");
+			}
+			this.receiverLaneCapacity = capacity;
+			this.overflowPolicy = overflowPolicy;
+			this.maxReceiverBatchSize = maxBatchSize;
+		} else {
+			logger.warning("the instance isStarted!");
+			throw INSTANCE_START_STATE_EXCEPTION;
+		}
+	}
+
+	/**
+	 * set the kind of thread each receiver lane delivers on. Can only do
+	 * that before the instance is started.
+	 * See {@link MarketDataProcessorImpl#setReceiverThreadMode(ReceiverThreadMode, int)}
+	 * @param threadMode
+	 * @param maxConcurrentDeliveries
+	 */
+	public void setReceiverThreadMode(ReceiverThreadMode threadMode, int maxConcurrentDeliveries) {
+		if (!isStarted()) {
+			Objects.requireNonNull(threadMode);
+			if (maxConcurrentDeliveries < 0) {
+				throw new IllegalArgumentException("maxConcurrentDeliveries must not be negative");
+			}
+			this.receiverThreadMode = threadMode;
+			this.maxConcurrentDeliveries = maxConcurrentDeliveries;
+		} else {
+			logger.warning("the instance isStarted!");
+			throw INSTANCE_START_STATE_EXCEPTION;
+		}
+	}
+
+
+	/********* Calls at any time **************/
+	/**
+	 * set throttle policy of all shards, before or after the instance is
+	 * started. Its global rate is enforced by a new
+	 * {@link ConcurrentSlidingWindowRateLimiter} shared by all shards,
+	 * carrying the permits of the current one over. The RateLimiterFactory
+	 * of the policy is not used
+	 * @param throttlePolicy
+	 */
+	public synchronized void setThrottlePolicy(ThrottlePolicy throttlePolicy) {
+		Objects.requireNonNull(throttlePolicy);
+		RateLimiter previous = this.rateLimiter;
+		applyThrottlePolicy(throttlePolicy, previous instanceof ConcurrentSlidingWindowRateLimiter
+				? new ConcurrentSlidingWindowRateLimiter(throttlePolicy.getMaxPublishes(), throttlePolicy.getWindowMillis(),
+						(ConcurrentSlidingWindowRateLimiter) previous)
+				: new ConcurrentSlidingWindowRateLimiter(throttlePolicy.getMaxPublishes(), throttlePolicy.getWindowMillis()));
+	}
+
+	private synchronized void applyThrottlePolicy(ThrottlePolicy throttlePolicy, RateLimiter sharedRateLimiter) {
+		ThrottlePolicy shardPolicy = throttlePolicy.withRateLimiterFactory(ThrottlePolicy.fixed(sharedRateLimiter));
+		this.rateLimiter = sharedRateLimiter;
+		this.throttlePolicy = shardPolicy;
+		for (MarketDataProcessorImpl shard: shards) {
+			shard.setThrottlePolicy(shardPolicy);
+		}
+	}
+
+	/**
+	 * add a symbol to the shard it belongs to, before or after the
+	 * instance is started
+	 * @param symbol
+	 */
+	public synchronized void addSymbol(String symbol) {
+		Objects.requireNonNull(symbol);
+		symbolRegistry.addSymbol(symbol);
+		getShard(symbol).addSymbol(symbol);
+	}
+
+	/**
+	 * Write cached market data of all shards to one snapshot file, before
+	 * or after the instance is started. It can be loaded by a
+	 * {@link MarketDataProcessorImpl} too, only slower as symbol ids differ
+	 * @param file
+	 * @return no of symbols written
+	 * @throws IOException
+	 */
+	public int saveSnapshot(Path file) throws IOException {
+		// positions of a shard follow those of the shards before it
+		int[] noOfIds = new int[shards.length];
+		int size = 0;
+		for (int i = 0; i < shards.length; i++) {
+			noOfIds[i] = shards[i].getSymbolRegistry().size();
+			size += noOfIds[i];
+		}
+		return MarketDataSnapshot.write(file, shards[0].getCurrentTimeInMilliseconds(), size, position -> {
+			int shard = 0;
+			while (position >= noOfIds[shard]) {
+				position -= noOfIds[shard++];
+			}
+			return shards[shard].getCache(position);
+		});
+	}
+
+	/**
+	 * remove a symbol, before or after the instance is started
+	 * @param symbol
+	 * @return false if the symbol is not loaded
+	 */
+	public synchronized boolean removeSymbol(String symbol) {
+		symbolRegistry.removeSymbol(symbol);
+		return getShard(symbol).removeSymbol(symbol);
+	}
+
+
+	/********* Post-start calls **************/
+	@Override
+	public void onMessage(MarketData data) {
+		if (!isStarted()) {
+			throw INSTANCE_NOT_START_STATE_EXCEPTION;
+		}
+		if (data != null && data.getSymbol() != null) {
+			getShard(data.getSymbol()).onMessage(data);
+		} else {
+			logger.warning("Market Data or symbol is null");
+		}
+	}
+
+	@Override
+	public void publishAggregatedMarketData(MarketData data) {
+		ReceiverDispatcher dispatcher = this.receiverDispatcher;
+		if (dispatcher != null) {
+			dispatcher.dispatch(data);
+		} else {
+			logger.warning("the instance is not started, nothing published");
+		}
+	}
+
+	@Override
+	public void publishAggregatedMarketData(MarketDataBatch batch) {
+		ReceiverDispatcher dispatcher = this.receiverDispatcher;
+		if (dispatcher != null) {
+			dispatcher.dispatch(batch);
+		} else {
+			logger.warning("the instance is not started, nothing published");
+		}
+	}
+}
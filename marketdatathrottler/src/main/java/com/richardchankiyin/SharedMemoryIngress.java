@@ -0,0 +1,216 @@
+package com.richardchankiyin;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Ingress of ticks written by feed handlers of another local process
+ * through a {@link SharedMemoryRingWriter}. It creates a memory mapped,
+ * file backed single producer single consumer ring, see
+ * {@link SharedMemoryRingFormat}, with the symbol table of the processor
+ * so that writers can send symbol ids. Records are polled straight from
+ * the mapping into a {@link MarketDataPacket} and applied by
+ * {@link MarketDataProcessorImpl#onMessages(MarketDataPacket)}, without
+ * allocation or system calls unless a record has its symbol inline.
+ * poll is called by one thread at a time, e.g. the thread of start
+ */
+public class SharedMemoryIngress implements Closeable, Runnable {
+
+	private static final Logger logger = Logger.getLogger("com.richardchankiyin");
+	private static final long IDLE_CHECK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+	private final MarketDataProcessorImpl processor;
+	private final int capacity;
+	private final MarketDataPacket packet;
+	private final WaitStrategy waitStrategy;
+	private MappedByteBuffer ring;
+	private long readerIndex = 0;
+	private volatile long noOfRecords = 0;
+	private volatile long noOfRejectedStale = 0;
+	private volatile long noOfDropped = 0;
+	private volatile boolean isRunning = false;
+	private Thread thread = null;
+
+	/**
+	 * Create the ring file, replacing any existing one, with a
+	 * {@link BackoffSpinWaitStrategy} to wait for records
+	 * @param file
+	 * @param processor with symbols loaded
+	 * @param capacity max no of records not polled yet, a power of two
+	 * @throws IOException
+	 */
+	public SharedMemoryIngress(Path file, MarketDataProcessorImpl processor, int capacity) throws IOException {
+		this(file, processor, capacity, new BackoffSpinWaitStrategy());
+	}
+
+	public SharedMemoryIngress(Path file, MarketDataProcessorImpl processor, int capacity, WaitStrategy waitStrategy) throws IOException {
+		if (capacity <= 0 || capacity > SharedMemoryRingFormat.MAX_CAPACITY || Integer.bitCount(capacity) != 1) {
+			throw new IllegalArgumentException("capacity must be a power of two up to " + SharedMemoryRingFormat.MAX_CAPACITY);
+		}
+		this.processor = Objects.requireNonNull(processor);
+		this.waitStrategy = Objects.requireNonNull(waitStrategy);
+		this.capacity = capacity;
+		this.packet = new MarketDataPacket(Math.min(capacity, 1024));
+		this.ring = create(file, processor.getSymbolRegistry(), capacity);
+	}
+
+	private static MappedByteBuffer create(Path file, SymbolRegistry symbolRegistry, int capacity) throws IOException {
+		int noOfIds = symbolRegistry.size();
+		byte[][] symbols = new byte[noOfIds][];
+		int count = 0;
+		int symbolTableSize = 4;
+		for (int i = 0; i < noOfIds; i++) {
+			String symbol = symbolRegistry.getSymbol(i);
+			if (symbol != null) {
+				symbols[i] = symbol.getBytes(StandardCharsets.UTF_8);
+				symbolTableSize += 8 + symbols[i].length;
+				count++;
+			}
+		}
+		int symbolTableOffset = SharedMemoryRingFormat.RECORDS_OFFSET + capacity * SharedMemoryRingFormat.RECORD_SIZE;
+		MappedByteBuffer ring = SharedMemoryRingFormat.map(file, (long) symbolTableOffset + symbolTableSize,
+				StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		int position = symbolTableOffset;
+		ring.putInt(position, count);
+		position += 4;
+		for (int i = 0; i < noOfIds; i++) {
+			if (symbols[i] != null) {
+				ring.putInt(position, i);
+				ring.putInt(position + 4, symbols[i].length);
+				ring.put(position + 8, symbols[i]);
+				position += 8 + symbols[i].length;
+			}
+		}
+		ring.putInt(SharedMemoryRingFormat.VERSION_OFFSET, SharedMemoryRingFormat.VERSION);
+		ring.putInt(SharedMemoryRingFormat.CAPACITY_OFFSET, capacity);
+		ring.putInt(SharedMemoryRingFormat.SYMBOL_TABLE_OFFSET_OFFSET, symbolTableOffset);
+		ring.putInt(SharedMemoryRingFormat.SYMBOL_TABLE_SIZE_OFFSET, symbolTableSize);
+		// ready for writers
+		SharedMemoryRingFormat.INT.setRelease(ring, SharedMemoryRingFormat.MAGIC_OFFSET, SharedMemoryRingFormat.MAGIC);
+		logger.log(Level.INFO, "shared memory ring created: {0} with {1} symbols", new Object[] {file, count});
+		return ring;
+	}
+
+	/**
+	 * Apply records written so far. Records the processor fails to
+	 * apply, e.g. as it is not started, are logged and counted as dropped
+	 * so that the polling thread goes on with the next records
+	 * @param maxRecords
+	 * @return no of records polled
+	 */
+	public int poll(int maxRecords) {
+		long writerIndex = (long) SharedMemoryRingFormat.LONG.getAcquire(ring, SharedMemoryRingFormat.WRITER_INDEX_OFFSET);
+		int count = (int) Math.min(writerIndex - readerIndex, Math.min(maxRecords, packet.capacity()));
+		if (count <= 0) {
+			return 0;
+		}
+		packet.clear();
+		for (int i = 0; i < count; i++) {
+			int offset = SharedMemoryRingFormat.recordOffset(readerIndex + i, capacity);
+			int symbolId = ring.getInt(offset + SharedMemoryRingFormat.SYMBOL_ID_OFFSET);
+			if (symbolId == SharedMemoryRingFormat.SYMBOL_ID_INLINE) {
+				symbolId = inlineSymbolId(offset);
+			}
+			packet.add(symbolId, ring.getDouble(offset + SharedMemoryRingFormat.PRICE_OFFSET),
+					ring.getDouble(offset + SharedMemoryRingFormat.QUANTITY_OFFSET),
+					ring.getLong(offset + SharedMemoryRingFormat.UPDATE_TIME_OFFSET));
+		}
+		readerIndex += count;
+		noOfRecords += count;
+		try {
+			noOfRejectedStale += processor.onMessages(packet);
+		} catch (RuntimeException e) {
+			noOfDropped += count;
+			logger.log(Level.WARNING, "records dropped: " + count, e);
+		} finally {
+			// hand the records back to the writer once applied
+			SharedMemoryRingFormat.LONG.setRelease(ring, SharedMemoryRingFormat.READER_INDEX_OFFSET, readerIndex);
+		}
+		return count;
+	}
+
+	private int inlineSymbolId(int offset) {
+		int length = Math.max(0, Math.min(ring.getInt(offset + SharedMemoryRingFormat.SYMBOL_LENGTH_OFFSET),
+				SharedMemoryRingFormat.MAX_INLINE_SYMBOL_LENGTH));
+		byte[] bytes = new byte[length];
+		ring.get(offset + SharedMemoryRingFormat.SYMBOL_OFFSET, bytes);
+		return processor.getSymbolId(new String(bytes, StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Check whether records are written and not polled yet
+	 * @return
+	 */
+	public boolean hasRecords() {
+		return (long) SharedMemoryRingFormat.LONG.getAcquire(ring, SharedMemoryRingFormat.WRITER_INDEX_OFFSET) != readerIndex;
+	}
+
+	/**
+	 * Start a thread polling the ring, after the processor is started
+	 * @param threadName
+	 */
+	public void start(String threadName) {
+		isRunning = true;
+		thread = new Thread(this, threadName);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	@Override
+	public void run() {
+		while (isRunning) {
+			if (poll(packet.capacity()) == 0) {
+				waitStrategy.waitForWork(() -> !isRunning || hasRecords(), IDLE_CHECK_NANOS);
+			}
+		}
+	}
+
+	/**
+	 * Stop the thread of start after it polls the records written so far
+	 */
+	public void stop() {
+		if (thread == null) {
+			return;
+		}
+		isRunning = false;
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		thread = null;
+		while (poll(packet.capacity()) > 0) {
+			// drain
+		}
+	}
+
+	public long getNoOfRecords() {
+		return this.noOfRecords;
+	}
+
+	public long getNoOfRejectedStale() {
+		return this.noOfRejectedStale;
+	}
+
+	/**
+	 * Get no of records polled but not applied as the processor failed
+	 * @return
+	 */
+	public long getNoOfDropped() {
+		return this.noOfDropped;
+	}
+
+	@Override
+	public void close() {
+		stop();
+		ring = null;
+	}
+}
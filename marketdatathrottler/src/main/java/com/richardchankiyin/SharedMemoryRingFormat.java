@@ -0,0 +1,73 @@
+package com.richardchankiyin;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Layout of the memory mapped ring created by {@link SharedMemoryIngress}
+ * and written by {@link SharedMemoryRingWriter} of another local process.
+ * Values are in the native byte order of the host:
+ * <ul>
+ * <li>at 0 MAGIC, written last once the file is ready, then at 4 version,
+ * at 8 capacity in records, a power of two, at 16 offset and at 20 size
+ * of the symbol table</li>
+ * <li>at WRITER_INDEX_OFFSET and READER_INDEX_OFFSET, each on its own
+ * cache line, the no of records written and read so far</li>
+ * <li>at RECORDS_OFFSET capacity records of RECORD_SIZE: symbol id, or
+ * SYMBOL_ID_INLINE followed by length of the symbol at 4 and its UTF-8
+ * bytes at 32, then price at 8, update time at 16 and quantity at 24,
+ * NaN if not known</li>
+ * <li>the symbol table: count, then id, length and UTF-8 bytes of each
+ * symbol loaded when the ring is created</li>
+ * </ul>
+ * The writer fills a record and then release stores the writer index,
+ * the reader acquires the writer index, reads the records and release
+ * stores the reader index to hand the records back
+ */
+final class SharedMemoryRingFormat {
+
+	static final int MAGIC = 0x52494E47;
+	static final int VERSION = 2;
+	static final int MAGIC_OFFSET = 0;
+	static final int VERSION_OFFSET = 4;
+	static final int CAPACITY_OFFSET = 8;
+	static final int SYMBOL_TABLE_OFFSET_OFFSET = 16;
+	static final int SYMBOL_TABLE_SIZE_OFFSET = 20;
+	static final int WRITER_INDEX_OFFSET = 64;
+	static final int READER_INDEX_OFFSET = 128;
+	static final int RECORDS_OFFSET = 192;
+	static final int RECORD_SIZE = 64;
+	static final int SYMBOL_ID_OFFSET = 0;
+	static final int SYMBOL_LENGTH_OFFSET = 4;
+	static final int PRICE_OFFSET = 8;
+	static final int UPDATE_TIME_OFFSET = 16;
+	static final int QUANTITY_OFFSET = 24;
+	static final int SYMBOL_OFFSET = 32;
+	static final int MAX_INLINE_SYMBOL_LENGTH = RECORD_SIZE - SYMBOL_OFFSET;
+	static final int SYMBOL_ID_INLINE = -1;
+	static final int MAX_CAPACITY = 1 << 24;
+
+	static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+	static final VarHandle LONG = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+	private SharedMemoryRingFormat() {
+	}
+
+	static int recordOffset(long index, int capacity) {
+		return RECORDS_OFFSET + (int) (index & (capacity - 1)) * RECORD_SIZE;
+	}
+
+	static MappedByteBuffer map(Path file, long size, StandardOpenOption... options) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, options)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size < 0 ? channel.size() : size);
+			buffer.order(ByteOrder.nativeOrder());
+			return buffer;
+		}
+	}
+}
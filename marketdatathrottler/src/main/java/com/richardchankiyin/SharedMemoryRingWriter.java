@@ -0,0 +1,183 @@
+package com.richardchankiyin;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writer of ticks into the ring of a {@link SharedMemoryIngress}, for a
+ * feed handler running in another local process. A tick is written into
+ * the mapping and released to the reader without allocation or system
+ * calls. The ring has a single writer, so offer is called by one thread
+ * at a time
+ */
+public class SharedMemoryRingWriter implements Closeable {
+
+	private MappedByteBuffer ring;
+	private final int capacity;
+	private final Map<String, Integer> symbolIds;
+	private long writerIndex;
+	// reader index last seen, the writer reads the shared one only when
+	// the ring looks full
+	private long cachedReaderIndex;
+
+	/**
+	 * Open the ring created by a {@link SharedMemoryIngress}
+	 * @param file
+	 * @throws IOException if the ring is not created yet
+	 */
+	public SharedMemoryRingWriter(Path file) throws IOException {
+		this.ring = SharedMemoryRingFormat.map(file, -1, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		if (ring.capacity() < SharedMemoryRingFormat.RECORDS_OFFSET
+				|| (int) SharedMemoryRingFormat.INT.getAcquire(ring, SharedMemoryRingFormat.MAGIC_OFFSET) != SharedMemoryRingFormat.MAGIC) {
+			throw new IOException("shared memory ring not ready: " + file);
+		}
+		if (ring.getInt(SharedMemoryRingFormat.VERSION_OFFSET) != SharedMemoryRingFormat.VERSION) {
+			throw new IOException("unsupported shared memory ring version: " + ring.getInt(SharedMemoryRingFormat.VERSION_OFFSET));
+		}
+		this.capacity = ring.getInt(SharedMemoryRingFormat.CAPACITY_OFFSET);
+		this.symbolIds = readSymbolTable(ring);
+		// continue after records of a previous writer
+		this.writerIndex = (long) SharedMemoryRingFormat.LONG.getAcquire(ring, SharedMemoryRingFormat.WRITER_INDEX_OFFSET);
+		this.cachedReaderIndex = (long) SharedMemoryRingFormat.LONG.getAcquire(ring, SharedMemoryRingFormat.READER_INDEX_OFFSET);
+	}
+
+	private static Map<String, Integer> readSymbolTable(MappedByteBuffer ring) {
+		int position = ring.getInt(SharedMemoryRingFormat.SYMBOL_TABLE_OFFSET_OFFSET);
+		int count = ring.getInt(position);
+		position += 4;
+		Map<String, Integer> symbolIds = new HashMap<>(count * 2);
+		for (int i = 0; i < count; i++) {
+			int symbolId = ring.getInt(position);
+			byte[] bytes = new byte[ring.getInt(position + 4)];
+			ring.get(position + 8, bytes);
+			symbolIds.put(new String(bytes, StandardCharsets.UTF_8), symbolId);
+			position += 8 + bytes.length;
+		}
+		return symbolIds;
+	}
+
+	/**
+	 * Get id of a symbol of the symbol table of the ring
+	 * @param symbol
+	 * @return SymbolRegistry.SYMBOL_ID_UNKNOWN if the symbol was not
+	 * loaded when the ring was created
+	 */
+	public int getSymbolId(String symbol) {
+		Integer symbolId = symbolIds.get(symbol);
+		return symbolId != null ? symbolId : SymbolRegistry.SYMBOL_ID_UNKNOWN;
+	}
+
+	/**
+	 * Write a tick by symbol id, see {@link #getSymbolId(String)}
+	 * @param symbolId
+	 * @param price
+	 * @param updateTime
+	 * @return false if the ring is full
+	 */
+	public boolean offer(int symbolId, double price, long updateTime) {
+		return offer(symbolId, price, Double.NaN, updateTime);
+	}
+
+	/**
+	 * Write a trade by symbol id, see {@link #getSymbolId(String)}
+	 * @param symbolId
+	 * @param price
+	 * @param quantity NaN if not known
+	 * @param updateTime
+	 * @return false if the ring is full
+	 */
+	public boolean offer(int symbolId, double price, double quantity, long updateTime) {
+		int offset = claim();
+		if (offset < 0) {
+			return false;
+		}
+		ring.putInt(offset + SharedMemoryRingFormat.SYMBOL_ID_OFFSET, symbolId);
+		write(offset, price, quantity, updateTime);
+		return true;
+	}
+
+	/**
+	 * Write a tick by symbol. A symbol not in the symbol table, e.g. added
+	 * to the processor after the ring was created, is written inline and
+	 * looked up by the reader
+	 * @param symbol
+	 * @param price
+	 * @param updateTime
+	 * @return false if the ring is full
+	 */
+	public boolean offer(String symbol, double price, long updateTime) {
+		return offer(symbol, price, Double.NaN, updateTime);
+	}
+
+	/**
+	 * Write a trade by symbol, see {@link #offer(String, double, long)}
+	 * @param symbol
+	 * @param price
+	 * @param quantity NaN if not known
+	 * @param updateTime
+	 * @return false if the ring is full
+	 */
+	public boolean offer(String symbol, double price, double quantity, long updateTime) {
+		int symbolId = getSymbolId(symbol);
+		if (symbolId != SymbolRegistry.SYMBOL_ID_UNKNOWN) {
+			return offer(symbolId, price, quantity, updateTime);
+		}
+		byte[] bytes = symbol.getBytes(StandardCharsets.UTF_8);
+		if (bytes.length > SharedMemoryRingFormat.MAX_INLINE_SYMBOL_LENGTH) {
+			throw new IllegalArgumentException("symbol longer than " + SharedMemoryRingFormat.MAX_INLINE_SYMBOL_LENGTH + " bytes: " + symbol);
+		}
+		int offset = claim();
+		if (offset < 0) {
+			return false;
+		}
+		ring.putInt(offset + SharedMemoryRingFormat.SYMBOL_ID_OFFSET, SharedMemoryRingFormat.SYMBOL_ID_INLINE);
+		ring.putInt(offset + SharedMemoryRingFormat.SYMBOL_LENGTH_OFFSET, bytes.length);
+		ring.put(offset + SharedMemoryRingFormat.SYMBOL_OFFSET, bytes);
+		write(offset, price, quantity, updateTime);
+		return true;
+	}
+
+	private void write(int offset, double price, double quantity, long updateTime) {
+		ring.putDouble(offset + SharedMemoryRingFormat.PRICE_OFFSET, price);
+		ring.putDouble(offset + SharedMemoryRingFormat.QUANTITY_OFFSET, quantity);
+		ring.putLong(offset + SharedMemoryRingFormat.UPDATE_TIME_OFFSET, updateTime);
+		release();
+	}
+
+	private int claim() {
+		if (writerIndex - cachedReaderIndex >= capacity) {
+			cachedReaderIndex = (long) SharedMemoryRingFormat.LONG.getAcquire(ring, SharedMemoryRingFormat.READER_INDEX_OFFSET);
+			if (writerIndex - cachedReaderIndex >= capacity) {
+				return -1;
+			}
+		}
+		return SharedMemoryRingFormat.recordOffset(writerIndex, capacity);
+	}
+
+	private void release() {
+		SharedMemoryRingFormat.LONG.setRelease(ring, SharedMemoryRingFormat.WRITER_INDEX_OFFSET, ++writerIndex);
+	}
+
+	/**
+	 * Get no of ticks written and not read yet, as last seen
+	 * @return
+	 */
+	public int size() {
+		return (int) (writerIndex - (long) SharedMemoryRingFormat.LONG.getAcquire(ring, SharedMemoryRingFormat.READER_INDEX_OFFSET));
+	}
+
+	public int capacity() {
+		return this.capacity;
+	}
+
+	@Override
+	public void close() {
+		ring = null;
+	}
+}
@@ -0,0 +1,80 @@
+package com.richardchankiyin;
+
+/**
+ * Exact sliding window rate limiter. Timestamps of the last maxPermits
+ * permits are kept in a ring buffer so that the oldest one tells when the
+ * next permit is available. No more than maxPermits permits are granted
+ * within any window of windowMillis
+ */
+public class SlidingWindowRateLimiter implements RateLimiter {
+
+	private final int maxPermits;
+	private final long windowMillis;
+	private final long[] permitTimes;
+	private int next = 0;
+	private int count = 0;
+
+	public SlidingWindowRateLimiter(int maxPermits, long windowMillis) {
+		if (maxPermits <= 0) {
+			throw new IllegalArgumentException("maxPermits must be positive");
+		}
+		if (windowMillis <= 0) {
+			throw new IllegalArgumentException("windowMillis must be positive");
+		}
+		this.maxPermits = maxPermits;
+		this.windowMillis = windowMillis;
+		this.permitTimes = new long[maxPermits];
+	}
+
+	/**
+	 * Create a limiter with the most recent permits of another one, e.g.
+	 * when the limit is changed
+	 * @param maxPermits
+	 * @param windowMillis
+	 * @param previous
+	 */
+	public SlidingWindowRateLimiter(int maxPermits, long windowMillis, SlidingWindowRateLimiter previous) {
+		this(maxPermits, windowMillis);
+		int noOfPermits = Math.min(previous.count, maxPermits);
+		// oldest first
+		int from = previous.next - noOfPermits;
+		for (int i = 0; i < noOfPermits; i++) {
+			int index = from + i;
+			permitTimes[i] = previous.permitTimes[index < 0 ? index + previous.maxPermits : index];
+		}
+		this.count = noOfPermits;
+		this.next = noOfPermits == maxPermits ? 0 : noOfPermits;
+	}
+
+	@Override
+	public boolean tryAcquire(long currentTime) {
+		if (nextPermitTime(currentTime) > currentTime) {
+			return false;
+		}
+		permitTimes[next] = currentTime;
+		next = next + 1 == maxPermits ? 0 : next + 1;
+		if (count < maxPermits) {
+			count++;
+		}
+		return true;
+	}
+
+	@Override
+	public long nextPermitTime(long currentTime) {
+		if (count < maxPermits) {
+			return currentTime;
+		}
+		// ring is full, next points to the oldest permit
+		return Math.max(currentTime, permitTimes[next] + windowMillis);
+	}
+
+	@Override
+	public int getMaxPermits() {
+		return maxPermits;
+	}
+
+	@Override
+	public long getWindowMillis() {
+		return windowMillis;
+	}
+}
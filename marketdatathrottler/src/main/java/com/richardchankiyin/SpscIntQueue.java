@@ -0,0 +1,107 @@
+package com.richardchankiyin;
+
+/**
+ * Lock free bounded queue for a single producer thread and a single
+ * consumer thread. Each side caches the index of the other side and only
+ * reads it again when the queue looks full or empty. Values are published
+ * by a release store of the producer index. close can only be called by
+ * the producer thread
+ */
+public class SpscIntQueue implements IntQueue {
+
+	private final int[] buffer;
+	private final int mask;
+	// cachedValue of producerIndex is the consumer index seen by producer
+	private final Sequence producerIndex = new Sequence();
+	// cachedValue of consumerIndex is the producer index seen by consumer
+	private final Sequence consumerIndex = new Sequence();
+	private volatile boolean closed = false;
+
+	public SpscIntQueue(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("capacity must be positive");
+		}
+		this.buffer = new int[roundToPowerOfTwo(capacity)];
+		this.mask = buffer.length - 1;
+	}
+
+	static int roundToPowerOfTwo(int capacity) {
+		if (capacity > (1 << 30)) {
+			throw new IllegalArgumentException("capacity too large");
+		}
+		return capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+	}
+
+	@Override
+	public boolean offer(int value) {
+		if (closed) {
+			return false;
+		}
+		final long index = producerIndex.get();
+		if (index - producerIndex.getCachedValue() >= buffer.length) {
+			producerIndex.setCachedValue(consumerIndex.get());
+			if (index - producerIndex.getCachedValue() >= buffer.length) {
+				return false;
+			}
+		}
+		buffer[(int) index & mask] = value;
+		producerIndex.lazySet(index + 1);
+		return true;
+	}
+
+	@Override
+	public int peek() {
+		final long index = consumerIndex.get();
+		if (!isAvailable(index)) {
+			return EMPTY;
+		}
+		return buffer[(int) index & mask];
+	}
+
+	@Override
+	public int poll() {
+		final long index = consumerIndex.get();
+		if (!isAvailable(index)) {
+			return EMPTY;
+		}
+		int value = buffer[(int) index & mask];
+		consumerIndex.lazySet(index + 1);
+		return value;
+	}
+
+	private boolean isAvailable(long index) {
+		if (index >= consumerIndex.getCachedValue()) {
+			consumerIndex.setCachedValue(producerIndex.get());
+			return index < consumerIndex.getCachedValue();
+		}
+		return true;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return consumerIndex.get() >= producerIndex.get();
+	}
+
+	@Override
+	public int size() {
+		// read consumer first so that the result is never negative
+		long consumer = consumerIndex.get();
+		long producer = producerIndex.get();
+		return (int) Math.min(Math.max(0, producer - consumer), buffer.length);
+	}
+
+	@Override
+	public int capacity() {
+		return buffer.length;
+	}
+
+	@Override
+	public void close() {
+		closed = true;
+	}
+
+	@Override
+	public boolean isClosed() {
+		return closed;
+	}
+}
@@ -0,0 +1,104 @@
+package com.richardchankiyin;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Assign each symbol a dense int id in the order the symbols are added.
+ * Duplicated symbols share the same id. Symbols can be added and removed
+ * while other threads look them up. Ids of removed symbols are not reused,
+ * so an id seen by another thread never turns into a different symbol
+ */
+public class SymbolRegistry {
+
+	public static final int SYMBOL_ID_UNKNOWN = -1;
+
+	private final ConcurrentHashMap<String, Integer> symbolIds;
+	private final SegmentedArray<String> symbols = new SegmentedArray<>();
+	private volatile int size = 0;
+
+	public SymbolRegistry(List<String> symbols) {
+		this.symbolIds = new ConcurrentHashMap<>(Math.max(16, symbols.size() * 2));
+		for (String symbol: symbols) {
+			if (symbol != null) {
+				addSymbol(symbol);
+			}
+		}
+	}
+
+	/**
+	 * Add the symbol if not added before
+	 * @param symbol
+	 * @return id of the symbol
+	 */
+	public synchronized int addSymbol(String symbol) {
+		Integer id = symbolIds.get(symbol);
+		if (id != null) {
+			return id;
+		}
+		int newId = size;
+		symbols.set(newId, symbol);
+		symbolIds.put(symbol, newId);
+		size = newId + 1;
+		return newId;
+	}
+
+	/**
+	 * Remove the symbol, its id is not reused
+	 * @param symbol
+	 * @return id of the removed symbol, SYMBOL_ID_UNKNOWN if the symbol is not registered
+	 */
+	public synchronized int removeSymbol(String symbol) {
+		Integer id = symbolIds.remove(symbol);
+		if (id == null) {
+			return SYMBOL_ID_UNKNOWN;
+		}
+		symbols.set(id, null);
+		return id;
+	}
+
+	/**
+	 * Get id of the symbol
+	 * @param symbol
+	 * @return SYMBOL_ID_UNKNOWN if the symbol is not registered
+	 */
+	public int getSymbolId(String symbol) {
+		Integer id = symbolIds.get(symbol);
+		return id != null ? id : SYMBOL_ID_UNKNOWN;
+	}
+
+	/**
+	 * Get symbol of the id
+	 * @param symbolId
+	 * @return null if the id is not registered or removed
+	 */
+	public String getSymbol(int symbolId) {
+		return symbols.get(symbolId);
+	}
+
+	/**
+	 * Check whether the id is registered and not removed
+	 * @param symbolId
+	 * @return
+	 */
+	public boolean isValid(int symbolId) {
+		return symbols.get(symbolId) != null;
+	}
+
+	/**
+	 * Get no of ids assigned, including those of removed symbols. All
+	 * ids are below it
+	 * @return
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Get no of registered symbols, excluding removed ones
+	 * @return
+	 */
+	public int getNoOfSymbols() {
+		return symbolIds.size();
+	}
+}
@@ -0,0 +1,200 @@
+package com.richardchankiyin;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Immutable set of throttle limits: the global rate, the default min
+ * interval between publishes of the same symbol, and overrides of it by
+ * symbol group or by symbol. A symbol override wins over a group override,
+ * which wins over the default. Each with method returns a new policy, so
+ * a policy can be swapped atomically while the processor is running
+ */
+public class ThrottlePolicy {
+
+	/**
+	 * Create the rate limiter of a policy
+	 */
+	@FunctionalInterface
+	public interface RateLimiterFactory {
+		/**
+		 * @param maxPermits
+		 * @param windowMillis
+		 * @param previous limiter of the previous policy, null if none
+		 * @return
+		 */
+		public RateLimiter newRateLimiter(int maxPermits, long windowMillis, RateLimiter previous);
+	}
+
+	/**
+	 * Sliding window carrying the permits of the previous sliding window
+	 * over, so that swapping the policy does not reset the window
+	 */
+	public static final RateLimiterFactory SLIDING_WINDOW = (maxPermits, windowMillis, previous) ->
+			previous instanceof SlidingWindowRateLimiter
+					? new SlidingWindowRateLimiter(maxPermits, windowMillis, (SlidingWindowRateLimiter) previous)
+					: new SlidingWindowRateLimiter(maxPermits, windowMillis);
+
+	/**
+	 * Keep the given limiter while the policy has its rate. A policy
+	 * derived with another global rate gets a SLIDING_WINDOW limiter of
+	 * that rate instead, so the rate of a policy is always the one enforced
+	 * @param rateLimiter
+	 * @return
+	 */
+	public static RateLimiterFactory fixed(RateLimiter rateLimiter) {
+		Objects.requireNonNull(rateLimiter);
+		return (maxPermits, windowMillis, previous) ->
+				maxPermits == rateLimiter.getMaxPermits() && windowMillis == rateLimiter.getWindowMillis()
+						? rateLimiter
+						: SLIDING_WINDOW.newRateLimiter(maxPermits, windowMillis, previous);
+	}
+
+	/** MAXSENDPERTIMESLOT per TIMESLOTMILLISEC and one update per TIMESLOTMILLISEC per symbol */
+	public static final ThrottlePolicy DEFAULT = new ThrottlePolicy(MarketDataProcessorImpl.MAXSENDPERTIMESLOT,
+			MarketDataProcessorImpl.TIMESLOTMILLISEC, MarketDataProcessorImpl.TIMESLOTMILLISEC);
+
+	private final int maxPublishes;
+	private final long windowMillis;
+	private final long minPublishIntervalMillis;
+	private final Map<String, String> symbolGroups;
+	private final Map<String, Long> groupMinPublishIntervals;
+	private final Map<String, Long> symbolMinPublishIntervals;
+	private final RateLimiterFactory rateLimiterFactory;
+
+	/**
+	 * @param maxPublishes max no of publishes of all symbols within windowMillis
+	 * @param windowMillis
+	 * @param minPublishIntervalMillis min interval between publishes of the same symbol, 0 for no limit
+	 */
+	public ThrottlePolicy(int maxPublishes, long windowMillis, long minPublishIntervalMillis) {
+		this(maxPublishes, windowMillis, minPublishIntervalMillis, Collections.emptyMap(),
+				Collections.emptyMap(), Collections.emptyMap(), SLIDING_WINDOW);
+	}
+
+	private ThrottlePolicy(int maxPublishes, long windowMillis, long minPublishIntervalMillis,
+			Map<String, String> symbolGroups, Map<String, Long> groupMinPublishIntervals,
+			Map<String, Long> symbolMinPublishIntervals, RateLimiterFactory rateLimiterFactory) {
+		if (maxPublishes <= 0) {
+			throw new IllegalArgumentException("maxPublishes must be positive");
+		}
+		if (windowMillis <= 0) {
+			throw new IllegalArgumentException("windowMillis must be positive");
+		}
+		checkInterval(minPublishIntervalMillis);
+		this.maxPublishes = maxPublishes;
+		this.windowMillis = windowMillis;
+		this.minPublishIntervalMillis = minPublishIntervalMillis;
+		this.symbolGroups = symbolGroups;
+		this.groupMinPublishIntervals = groupMinPublishIntervals;
+		this.symbolMinPublishIntervals = symbolMinPublishIntervals;
+		this.rateLimiterFactory = Objects.requireNonNull(rateLimiterFactory);
+	}
+
+	private static void checkInterval(long minPublishIntervalMillis) {
+		if (minPublishIntervalMillis < 0) {
+			throw new IllegalArgumentException("minPublishIntervalMillis must not be negative");
+		}
+	}
+
+	private static <V> Map<String, V> with(Map<String, V> map, String key, V value) {
+		Map<String, V> copy = new HashMap<>(map);
+		copy.put(Objects.requireNonNull(key), value);
+		return Collections.unmodifiableMap(copy);
+	}
+
+	public ThrottlePolicy withGlobalRate(int maxPublishes, long windowMillis) {
+		return new ThrottlePolicy(maxPublishes, windowMillis, minPublishIntervalMillis, symbolGroups,
+				groupMinPublishIntervals, symbolMinPublishIntervals, rateLimiterFactory);
+	}
+
+	public ThrottlePolicy withMinPublishInterval(long minPublishIntervalMillis) {
+		return new ThrottlePolicy(maxPublishes, windowMillis, minPublishIntervalMillis, symbolGroups,
+				groupMinPublishIntervals, symbolMinPublishIntervals, rateLimiterFactory);
+	}
+
+	/**
+	 * Put a symbol into a group, e.g. a product tier
+	 * @param symbol
+	 * @param group
+	 * @return
+	 */
+	public ThrottlePolicy withSymbolGroup(String symbol, String group) {
+		return new ThrottlePolicy(maxPublishes, windowMillis, minPublishIntervalMillis, with(symbolGroups, symbol, group),
+				groupMinPublishIntervals, symbolMinPublishIntervals, rateLimiterFactory);
+	}
+
+	public ThrottlePolicy withGroupMinPublishInterval(String group, long minPublishIntervalMillis) {
+		checkInterval(minPublishIntervalMillis);
+		return new ThrottlePolicy(maxPublishes, windowMillis, this.minPublishIntervalMillis, symbolGroups,
+				with(groupMinPublishIntervals, group, minPublishIntervalMillis), symbolMinPublishIntervals, rateLimiterFactory);
+	}
+
+	public ThrottlePolicy withSymbolMinPublishInterval(String symbol, long minPublishIntervalMillis) {
+		checkInterval(minPublishIntervalMillis);
+		return new ThrottlePolicy(maxPublishes, windowMillis, this.minPublishIntervalMillis, symbolGroups,
+				groupMinPublishIntervals, with(symbolMinPublishIntervals, symbol, minPublishIntervalMillis), rateLimiterFactory);
+	}
+
+	/**
+	 * Set how the rate limiter is created. Default is SLIDING_WINDOW.
+	 * Note a {@link GcraRateLimiter} with a burst above 1 lets more than
+	 * maxPublishes through some sliding windows
+	 * @param rateLimiterFactory
+	 * @return
+	 */
+	public ThrottlePolicy withRateLimiterFactory(RateLimiterFactory rateLimiterFactory) {
+		return new ThrottlePolicy(maxPublishes, windowMillis, minPublishIntervalMillis, symbolGroups,
+				groupMinPublishIntervals, symbolMinPublishIntervals, rateLimiterFactory);
+	}
+
+	public int getMaxPublishes() {
+		return maxPublishes;
+	}
+
+	public long getWindowMillis() {
+		return windowMillis;
+	}
+
+	/**
+	 * Get the default min interval between publishes of the same symbol
+	 * @return
+	 */
+	public long getMinPublishIntervalMillis() {
+		return minPublishIntervalMillis;
+	}
+
+	/**
+	 * Get min interval between publishes of the symbol
+	 * @param symbol
+	 * @return
+	 */
+	public long getMinPublishIntervalMillis(String symbol) {
+		Long interval = symbolMinPublishIntervals.get(symbol);
+		if (interval == null) {
+			String group = symbolGroups.get(symbol);
+			interval = group != null ? groupMinPublishIntervals.get(group) : null;
+		}
+		return interval != null ? interval : minPublishIntervalMillis;
+	}
+
+	/**
+	 * Get group of the symbol
+	 * @param symbol
+	 * @return null if not in any group
+	 */
+	public String getSymbolGroup(String symbol) {
+		return symbolGroups.get(symbol);
+	}
+
+	/**
+	 * Create the rate limiter of this policy
+	 * @param previous limiter of the previous policy, null if none
+	 * @return
+	 */
+	public RateLimiter newRateLimiter(RateLimiter previous) {
+		return rateLimiterFactory.newRateLimiter(maxPublishes, windowMillis, previous);
+	}
+}
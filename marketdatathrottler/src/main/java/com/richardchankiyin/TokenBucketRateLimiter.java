@@ -0,0 +1,73 @@
+package com.richardchankiyin;
+
+/**
+ * Token bucket rate limiter. The bucket holds up to maxPermits tokens and
+ * is refilled at maxPermits per windowMillis. Credit is kept in fixed point
+ * (one token = windowMillis units, each millisecond adds maxPermits units)
+ * so that no floating point rounding is involved.
+ *
+ * Unlike {@link SlidingWindowRateLimiter} a full bucket plus the refill can
+ * grant more than maxPermits within a single window
+ */
+public class TokenBucketRateLimiter implements RateLimiter {
+
+	private final int maxPermits;
+	private final long windowMillis;
+	private final long capacity;
+	private long credit;
+	private long lastRefillTime = Long.MIN_VALUE;
+
+	public TokenBucketRateLimiter(int maxPermits, long windowMillis) {
+		if (maxPermits <= 0) {
+			throw new IllegalArgumentException("maxPermits must be positive");
+		}
+		if (windowMillis <= 0) {
+			throw new IllegalArgumentException("windowMillis must be positive");
+		}
+		this.maxPermits = maxPermits;
+		this.windowMillis = windowMillis;
+		this.capacity = maxPermits * windowMillis;
+		this.credit = capacity;
+	}
+
+	private void refill(long currentTime) {
+		if (lastRefillTime == Long.MIN_VALUE) {
+			lastRefillTime = currentTime;
+		} else if (currentTime > lastRefillTime) {
+			long elapsed = currentTime - lastRefillTime;
+			// avoid overflow after a long idle period
+			credit = elapsed >= windowMillis ? capacity : Math.min(capacity, credit + elapsed * maxPermits);
+			lastRefillTime = currentTime;
+		}
+	}
+
+	@Override
+	public boolean tryAcquire(long currentTime) {
+		refill(currentTime);
+		if (credit >= windowMillis) {
+			credit -= windowMillis;
+			return true;
+		}
+		return false;
+	}
+
+	@Override
+	public long nextPermitTime(long currentTime) {
+		refill(currentTime);
+		if (credit >= windowMillis) {
+			return currentTime;
+		}
+		long missing = windowMillis - credit;
+		return currentTime + (missing + maxPermits - 1) / maxPermits;
+	}
+
+	@Override
+	public int getMaxPermits() {
+		return maxPermits;
+	}
+
+	@Override
+	public long getWindowMillis() {
+		return windowMillis;
+	}
+}
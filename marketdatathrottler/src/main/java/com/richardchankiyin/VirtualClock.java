@@ -0,0 +1,69 @@
+package com.richardchankiyin;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Clock moved forward explicitly, e.g. by {@link FeedReplayer} to the
+ * arrival time of each replayed message, so that a run does not depend
+ * on the wall clock. Time never goes backwards. As the time can move at
+ * any moment, a wait for a period of this clock is at most pollMicros of
+ * real time. Thread safe
+ */
+public class VirtualClock implements Clock {
+
+	public static final long DEFAULT_POLL_MICROS = 100;
+
+	private final AtomicLong time;
+	private final long pollNanos;
+
+	/**
+	 * @param startTime in milliseconds
+	 */
+	public VirtualClock(long startTime) {
+		this(startTime, DEFAULT_POLL_MICROS);
+	}
+
+	/**
+	 * @param startTime in milliseconds
+	 * @param pollMicros max real time to wait before checking the time again
+	 */
+	public VirtualClock(long startTime, long pollMicros) {
+		if (pollMicros <= 0) {
+			throw new IllegalArgumentException("pollMicros must be positive");
+		}
+		this.time = new AtomicLong(startTime);
+		this.pollNanos = TimeUnit.MICROSECONDS.toNanos(pollMicros);
+	}
+
+	@Override
+	public long currentTimeMillis() {
+		return time.get();
+	}
+
+	@Override
+	public long toWaitNanos(long millis) {
+		return Math.min(TimeUnit.MILLISECONDS.toNanos(millis), pollNanos);
+	}
+
+	/**
+	 * Move the time forward, an earlier time is ignored
+	 * @param currentTime in milliseconds
+	 * @return the time after the call
+	 */
+	public long setTime(long currentTime) {
+		return time.accumulateAndGet(currentTime, Math::max);
+	}
+
+	/**
+	 * Move the time forward by a period
+	 * @param millis
+	 * @return the time after the call
+	 */
+	public long advance(long millis) {
+		if (millis < 0) {
+			throw new IllegalArgumentException("millis must not be negative");
+		}
+		return time.addAndGet(millis);
+	}
+}
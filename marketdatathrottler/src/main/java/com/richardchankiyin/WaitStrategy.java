@@ -0,0 +1,38 @@
+package com.richardchankiyin;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * Decide how the throttle controller thread waits when there is nothing
+ * to publish or when the rate limiter has no permit. An instance serves
+ * a single throttle controller thread
+ */
+public interface WaitStrategy {
+
+	/**
+	 * Wait until work is available. It can return before that and the
+	 * caller has to check again
+	 * @param workAvailable
+	 */
+	public void waitForWork(BooleanSupplier workAvailable);
+
+	/**
+	 * Wait until work is available or the period elapses, e.g. until
+	 * the cooldown of a symbol is over. It can return before that and
+	 * the caller has to check again
+	 * @param workAvailable
+	 * @param nanos
+	 */
+	public void waitForWork(BooleanSupplier workAvailable, long nanos);
+
+	/**
+	 * Wait for the given period, e.g. until the next permit is available
+	 * @param nanos
+	 */
+	public void waitFor(long nanos);
+
+	/**
+	 * Called by producer after new work is available
+	 */
+	public void signal();
+}
@@ -0,0 +1,38 @@
+package com.richardchankiyin;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * Give up the cpu between checks. Lower latency than
+ * {@link BlockingWaitStrategy} but the thread stays runnable
+ */
+public class YieldingWaitStrategy implements WaitStrategy {
+
+	@Override
+	public void waitForWork(BooleanSupplier workAvailable) {
+		while (!workAvailable.getAsBoolean()) {
+			Thread.yield();
+		}
+	}
+
+	@Override
+	public void waitForWork(BooleanSupplier workAvailable, long nanos) {
+		final long deadline = System.nanoTime() + nanos;
+		while (!workAvailable.getAsBoolean() && deadline - System.nanoTime() > 0) {
+			Thread.yield();
+		}
+	}
+
+	@Override
+	public void waitFor(long nanos) {
+		final long deadline = System.nanoTime() + nanos;
+		while (deadline - System.nanoTime() > 0) {
+			Thread.yield();
+		}
+	}
+
+	@Override
+	public void signal() {
+		// nothing to do, the waiting thread keeps checking
+	}
+}
@@ -0,0 +1,69 @@
+package com.richardchankiyin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class DiagnosticsTest {
+
+	@Test
+	public void testFlightRecorderKeepsMostRecent() throws Exception {
+		FlightRecorder recorder = new FlightRecorder(3);
+		assertEquals(4, recorder.capacity());
+		for (int i = 0; i < 10; i++) {
+			recorder.record(DiagnosticEvent.QUEUED, i, Double.doubleToRawLongBits(i + 0.5), i);
+		}
+		assertEquals(10, recorder.getNoOfRecorded());
+		StringBuilder sb = new StringBuilder();
+		recorder.dump(sb, null);
+		String[] lines = sb.toString().split(System.lineSeparator());
+		assertEquals(4, lines.length);
+		assertTrue(lines[0].endsWith("|6|QUEUED|6|6.5|6"));
+		assertTrue(lines[3].endsWith("|9|QUEUED|9|9.5|9"));
+	}
+	
+	@Test
+	public void testSampling() {
+		Diagnostics diagnostics = new Diagnostics(64);
+		diagnostics.setSampleRate(4);
+		for (int i = 0; i < 16; i++) {
+			diagnostics.record(DiagnosticEvent.CONFLATED, 0, 1.0, i);
+		}
+		assertEquals(4, diagnostics.getFlightRecorder().getNoOfRecorded());
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void testSampleRateNotPowerOfTwo() {
+		new Diagnostics().setSampleRate(3);
+	}
+	
+	@Test
+	public void testProcessorDiagnostics() throws Exception {
+		MarketDataProcessorImpl impl = new MarketDataProcessorImpl();
+		impl.loadSymbols(Arrays.asList("TEST1","TEST2"));
+		impl.registerReceiver(data -> {});
+		impl.setRateLimiter(new SlidingWindowRateLimiter(1, 1000));
+		assertFalse(impl.getDiagnostics().isEnabled());
+		impl.start();
+		final long updateTime = impl.getCurrentTimeInMilliseconds();
+		// not recorded when disabled
+		impl.onMessage(new MarketDataImpl("TEST1", 10.1, updateTime));
+		assertEquals(0, impl.getDiagnostics().getFlightRecorder().getNoOfRecorded());
+		impl.getDiagnostics().setEnabled(true);
+		impl.onMessage(new MarketDataImpl("TEST2", 10.2, updateTime));
+		impl.onMessage(new MarketDataImpl("TEST2", 10.3, updateTime + 1));
+		impl.onMessage(new MarketDataImpl("TEST3", 10.4, updateTime));
+		Thread.sleep(100);
+		impl.stop();
+		StringBuilder sb = new StringBuilder();
+		impl.dumpDiagnostics(sb);
+		String dump = sb.toString();
+		assertTrue(dump.contains("|QUEUED|TEST2|10.2|"));
+		assertTrue(dump.contains("|CONFLATED|TEST2|10.3|"));
+		assertTrue(dump.contains("|UNKNOWN_SYMBOL|-1|10.4|"));
+	}
+}
@@ -0,0 +1,147 @@
+package com.richardchankiyin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FeedReplayTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static final long START_TIME = 1_000_000;
+
+	private static List<String> symbols(int noOfSymbols) {
+		List<String> symbols = new ArrayList<>();
+		for (int i = 0; i < noOfSymbols; i++) {
+			symbols.add("TEST" + i);
+		}
+		return symbols;
+	}
+
+	private Path captureFeed() throws Exception {
+		Path file = folder.getRoot().toPath().resolve("feed.capture");
+		Random random = new Random(11);
+		try (FeedRecorder recorder = new FeedRecorder(file)) {
+			long arrivalTime = START_TIME;
+			for (int i = 0; i < 300; i++) {
+				arrivalTime += random.nextInt(20);
+				recorder.record("TEST" + random.nextInt(30), 10 + random.nextInt(100), arrivalTime, arrivalTime);
+			}
+			// stale
+			recorder.record("TEST0", 9.9, START_TIME - 1, arrivalTime);
+			assertEquals(301, recorder.getNoOfMessages());
+		}
+		return file;
+	}
+
+	private List<String> replay(Path file, ThrottlePolicy policy, PublishInvariantChecker checker) throws Exception {
+		MarketDataProcessorImpl impl = new MarketDataProcessorImpl();
+		impl.loadSymbols(symbols(30));
+		VirtualClock clock = new VirtualClock(START_TIME);
+		impl.setClock(clock);
+		impl.setThrottlePolicy(policy);
+		List<String> published = new CopyOnWriteArrayList<>();
+		impl.registerReceiver(data -> published.add(data.getSymbol() + "@" + data.getPublishTime()));
+		impl.registerReceiver(checker);
+		impl.start();
+		FeedReplayer replayer = new FeedReplayer(file);
+		replayer.setLockstep(true);
+		assertEquals(301, replayer.replay(impl, clock, 0));
+		assertEquals(1, replayer.getNoOfRejected());
+		assertTrue(replayer.getThroughput() > 0);
+		// let the remaining cooldowns and permits expire
+		for (int i = 0; i < 10; i++) {
+			clock.advance(1000);
+			while (!impl.isIdleAt(clock.currentTimeMillis())) {
+				Thread.yield();
+			}
+		}
+		for (int i = 0; i < 40 && checker.getNoOfPublishes() < published.size(); i++) {
+			Thread.sleep(50);
+		}
+		Thread.sleep(100);
+		impl.stop();
+		return published;
+	}
+
+	@Test
+	public void testDeterministicReplay() throws Exception {
+		Path file = captureFeed();
+		ThrottlePolicy policy = new ThrottlePolicy(10, 1000, 500);
+		PublishInvariantChecker checker = new PublishInvariantChecker(policy);
+		List<String> published = replay(file, policy, checker);
+		assertEquals(0, checker.getNoOfViolations());
+		assertEquals(published.size(), checker.getNoOfPublishes());
+		assertTrue(published.size() > 30);
+		// same publishes at the same virtual times
+		assertEquals(published, replay(file, policy, new PublishInvariantChecker(policy)));
+	}
+
+	@Test
+	public void testCaptureByProcessor() throws Exception {
+		Path file = folder.getRoot().toPath().resolve("live.capture");
+		MarketDataProcessorImpl impl = new MarketDataProcessorImpl();
+		impl.loadSymbols(symbols(3));
+		VirtualClock clock = new VirtualClock(START_TIME);
+		impl.setClock(clock);
+		FeedRecorder recorder = new FeedRecorder(file);
+		impl.setFeedRecorder(recorder);
+		impl.start();
+		impl.onMessage(new MarketDataImpl("TEST1", 10.1, START_TIME));
+		clock.advance(5);
+		impl.onMessage(impl.getSymbolId("TEST2"), 10.2, START_TIME + 5);
+		impl.onMessage(new MarketDataImpl("TEST0", 10.0, 200, START_TIME + 5, MarketDataImpl.PUBLISH_TIME_NO_PUB));
+		impl.stop();
+		recorder.close();
+		MarketDataProcessorImpl replayed = new MarketDataProcessorImpl();
+		replayed.loadSymbols(symbols(3));
+		replayed.setClock(new VirtualClock(0));
+		replayed.setAggregation(true);
+		List<MarketData> received = new CopyOnWriteArrayList<>();
+		replayed.registerReceiver(received::add);
+		replayed.start();
+		FeedReplayer replayer = new FeedReplayer(file);
+		VirtualClock replayClock = (VirtualClock) replayed.getClock();
+		assertEquals(3, replayer.replay(replayed, replayClock, 0));
+		assertEquals(START_TIME + 5, replayClock.currentTimeMillis());
+		assertTrue(10.2 == replayed.getCache("TEST2").getPrice());
+		for (int i = 0; i < 40 && received.size() < 3; i++) {
+			Thread.sleep(50);
+		}
+		replayed.stop();
+		// quantity captured and replayed
+		for (MarketData data: received) {
+			if ("TEST0".equals(data.getSymbol())) {
+				assertTrue(200 == ((AggregatedMarketData) data).getVolume());
+			}
+		}
+		assertEquals(3, received.size());
+	}
+
+	@Test
+	public void testViolations() {
+		ThrottlePolicy policy = new ThrottlePolicy(2, 1000, 100);
+		PublishInvariantChecker checker = new PublishInvariantChecker(policy);
+		assertTrue(checker.check("TEST1", 1, 0));
+		assertTrue(checker.check("TEST2", 1, 10));
+		// third within the window
+		assertFalse(checker.check("TEST3", 1, 999));
+		// older update
+		assertFalse(checker.check("TEST1", 0, 2050));
+		// within the min interval
+		assertFalse(checker.check("TEST1", 2, 2100));
+		assertEquals(3, checker.getNoOfViolations());
+		assertEquals(3, checker.getViolations().size());
+	}
+}
@@ -0,0 +1,114 @@
+package com.richardchankiyin;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class HierarchicalTimerWheelTest {
+
+	@Test
+	public void testExpireAtDeadline() {
+		HierarchicalTimerWheel wheel = new HierarchicalTimerWheel(4, 1000);
+		wheel.schedule(1, 1010);
+		// in a higher level
+		wheel.schedule(2, 1000 + 5000);
+		// reschedule
+		wheel.schedule(3, 1020);
+		wheel.schedule(3, 1030);
+		assertEquals(3, wheel.size());
+		List<Integer> expired = new ArrayList<>();
+		wheel.advance(1009, expired::add);
+		assertTrue(expired.isEmpty());
+		assertEquals(1010, wheel.nextTick());
+		wheel.advance(1010, expired::add);
+		assertEquals(Arrays.asList(1), expired);
+		wheel.advance(1029, expired::add);
+		assertEquals(Arrays.asList(1), expired);
+		wheel.advance(1030, expired::add);
+		assertEquals(Arrays.asList(1, 3), expired);
+		assertTrue(wheel.nextTick() <= 6000);
+		wheel.advance(5999, expired::add);
+		assertTrue(wheel.contains(2));
+		wheel.advance(6000, expired::add);
+		assertEquals(Arrays.asList(1, 3, 2), expired);
+		assertTrue(wheel.isEmpty());
+		assertEquals(HierarchicalTimerWheel.NO_DEADLINE, wheel.nextTick());
+	}
+
+	@Test
+	public void testCancelAndRemoveAll() {
+		HierarchicalTimerWheel wheel = new HierarchicalTimerWheel(1, 0);
+		wheel.schedule(5, 10);
+		wheel.schedule(100, 100000);
+		wheel.schedule(7, 10);
+		assertTrue(wheel.cancel(5));
+		assertFalse(wheel.cancel(5));
+		assertFalse(wheel.contains(5));
+		// past deadline expires on the next advance
+		wheel.schedule(8, -1);
+		List<Integer> expired = new ArrayList<>();
+		wheel.advance(1, expired::add);
+		assertEquals(Arrays.asList(8), expired);
+		int[] ids = wheel.removeAll();
+		Arrays.sort(ids);
+		assertArrayEquals(new int[] {7, 100}, ids);
+		assertTrue(wheel.isEmpty());
+		wheel.advance(200000, expired::add);
+		assertEquals(Arrays.asList(8), expired);
+	}
+
+	@Test
+	public void testOutOfRangeDeadline() {
+		final long day = 24L * 3600 * 1000;
+		HierarchicalTimerWheel wheel = new HierarchicalTimerWheel(1, 0);
+		wheel.schedule(0, day);
+		List<Integer> expired = new ArrayList<>();
+		long time = 0;
+		while (expired.isEmpty()) {
+			long nextTick = wheel.nextTick();
+			assertTrue(nextTick > time && nextTick <= day);
+			time = nextTick;
+			wheel.advance(time, expired::add);
+		}
+		assertEquals(day, time);
+	}
+
+	@Test
+	public void testSameAsSortedDeadlines() {
+		Random random = new Random(7);
+		final int noOfIds = 500;
+		long[] deadlines = new long[noOfIds];
+		Arrays.fill(deadlines, -1);
+		HierarchicalTimerWheel wheel = new HierarchicalTimerWheel(16, 12345);
+		long time = 12345;
+		for (int round = 0; round < 2000; round++) {
+			int id = random.nextInt(noOfIds);
+			if (random.nextInt(4) == 0) {
+				assertEquals(deadlines[id] >= 0, wheel.cancel(id));
+				deadlines[id] = -1;
+			} else {
+				long deadline = time + 1 + (random.nextBoolean() ? random.nextInt(100) : random.nextInt(300000));
+				wheel.schedule(id, deadline);
+				deadlines[id] = deadline;
+			}
+			long nextTime = time + random.nextInt(2000);
+			final long now = nextTime;
+			wheel.advance(now, expiredId -> {
+				assertTrue(deadlines[expiredId] >= 0 && deadlines[expiredId] <= now);
+				deadlines[expiredId] = -1;
+			});
+			for (int i = 0; i < noOfIds; i++) {
+				assertEquals(deadlines[i] >= 0, wheel.contains(i));
+			}
+			time = nextTime;
+		}
+	}
+}
@@ -0,0 +1,197 @@
+package com.richardchankiyin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class IntQueueTest {
+
+	private void assertFifo(IntQueue queue) {
+		assertTrue(queue.isEmpty());
+		assertEquals(IntQueue.EMPTY, queue.peek());
+		assertEquals(IntQueue.EMPTY, queue.poll());
+		// go around the ring a few times
+		for (int round = 0; round < 3; round++) {
+			for (int i = 0; i < queue.capacity(); i++) {
+				assertTrue(queue.offer(i));
+			}
+			assertFalse(queue.offer(100));
+			assertEquals(queue.capacity(), queue.size());
+			for (int i = 0; i < queue.capacity(); i++) {
+				assertEquals(i, queue.peek());
+				assertEquals(i, queue.poll());
+			}
+			assertTrue(queue.isEmpty());
+			assertEquals(0, queue.size());
+		}
+	}
+	
+	@Test
+	public void testSpscFifo() {
+		IntQueue queue = new SpscIntQueue(3);
+		assertEquals(4, queue.capacity());
+		assertFifo(queue);
+	}
+	
+	@Test
+	public void testMpscFifo() {
+		IntQueue queue = new MpscIntQueue(4);
+		assertEquals(4, queue.capacity());
+		assertFifo(queue);
+	}
+	
+	@Test
+	public void testLockingFifo() {
+		IntQueue queue = new LockingIntQueue(3);
+		assertEquals(3, queue.capacity());
+		assertFifo(queue);
+	}
+	
+	@Test
+	public void testClose() {
+		for (IntQueue queue: Arrays.asList(new SpscIntQueue(4), new MpscIntQueue(4), new LockingIntQueue(4))) {
+			assertTrue(queue.offer(1));
+			assertFalse(queue.isClosed());
+			queue.close();
+			assertTrue(queue.isClosed());
+			assertFalse(queue.offer(2));
+			assertEquals(1, queue.size());
+			assertEquals(1, queue.poll());
+			assertTrue(queue.isEmpty());
+		}
+	}
+	
+	@Test
+	public void testGrowableFifo() {
+		IntQueue queue = new GrowableIntQueue(SpscIntQueue::new, 2);
+		int expected = 0;
+		for (int i = 0; i < 100; i++) {
+			assertTrue(queue.offer(i));
+			if (i % 3 == 0) {
+				// consumer behind producer while the queue grows
+				assertEquals(expected++, queue.poll());
+			}
+		}
+		assertEquals(64, queue.capacity());
+		assertEquals(100 - expected, queue.size());
+		while (!queue.isEmpty()) {
+			assertEquals(expected++, queue.poll());
+		}
+		assertEquals(100, expected);
+		assertEquals(IntQueue.EMPTY, queue.peek());
+		queue.close();
+		assertFalse(queue.offer(1));
+	}
+	
+	@Test
+	public void testGrowableMpscConcurrentProducers() throws Exception {
+		final int noOfProducers = 4;
+		final int noOfValuesPerProducer = 20000;
+		final IntQueue queue = new GrowableIntQueue(MpscIntQueue::new, 1);
+		List<Thread> producers = new ArrayList<>();
+		for (int p = 0; p < noOfProducers; p++) {
+			final int base = p * noOfValuesPerProducer;
+			Thread producer = new Thread(() -> {
+				for (int i = 0; i < noOfValuesPerProducer; i++) {
+					assertTrue(queue.offer(base + i));
+				}
+			});
+			producers.add(producer);
+			producer.start();
+		}
+		boolean[] received = new boolean[noOfProducers * noOfValuesPerProducer];
+		int[] lastPerProducer = new int[noOfProducers];
+		Arrays.fill(lastPerProducer, -1);
+		int noOfReceived = 0;
+		while (noOfReceived < received.length) {
+			int value = queue.poll();
+			if (value != IntQueue.EMPTY) {
+				assertFalse(received[value]);
+				received[value] = true;
+				int producer = value / noOfValuesPerProducer;
+				assertTrue(value > lastPerProducer[producer]);
+				lastPerProducer[producer] = value;
+				noOfReceived++;
+			} else {
+				Thread.yield();
+			}
+		}
+		for (Thread producer: producers) {
+			producer.join();
+		}
+		assertTrue(queue.isEmpty());
+	}
+	
+	@Test
+	public void testSpscConcurrentOrder() throws Exception {
+		final int noOfValues = 100000;
+		final IntQueue queue = new SpscIntQueue(64);
+		Thread producer = new Thread(() -> {
+			for (int i = 0; i < noOfValues; i++) {
+				while (!queue.offer(i)) {
+					Thread.yield();
+				}
+			}
+		});
+		producer.start();
+		int expected = 0;
+		while (expected < noOfValues) {
+			int value = queue.poll();
+			if (value != IntQueue.EMPTY) {
+				assertEquals(expected++, value);
+			} else {
+				Thread.yield();
+			}
+		}
+		producer.join();
+		assertTrue(queue.isEmpty());
+	}
+	
+	@Test
+	public void testMpscConcurrentProducers() throws Exception {
+		final int noOfProducers = 4;
+		final int noOfValuesPerProducer = 20000;
+		final IntQueue queue = new MpscIntQueue(64);
+		List<Thread> producers = new ArrayList<>();
+		for (int p = 0; p < noOfProducers; p++) {
+			final int base = p * noOfValuesPerProducer;
+			Thread producer = new Thread(() -> {
+				for (int i = 0; i < noOfValuesPerProducer; i++) {
+					while (!queue.offer(base + i)) {
+						Thread.yield();
+					}
+				}
+			});
+			producers.add(producer);
+			producer.start();
+		}
+		boolean[] received = new boolean[noOfProducers * noOfValuesPerProducer];
+		int[] lastPerProducer = new int[noOfProducers];
+		Arrays.fill(lastPerProducer, -1);
+		int noOfReceived = 0;
+		while (noOfReceived < received.length) {
+			int value = queue.poll();
+			if (value != IntQueue.EMPTY) {
+				assertFalse(received[value]);
+				received[value] = true;
+				// values of the same producer keep their order
+				int producer = value / noOfValuesPerProducer;
+				assertTrue(value > lastPerProducer[producer]);
+				lastPerProducer[producer] = value;
+				noOfReceived++;
+			} else {
+				Thread.yield();
+			}
+		}
+		for (Thread producer: producers) {
+			producer.join();
+		}
+		assertTrue(queue.isEmpty());
+	}
+}
@@ -0,0 +1,119 @@
+package com.richardchankiyin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class JournalTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testWriteAndTailAcrossSegments() throws Exception {
+		Path directory = folder.newFolder("journal").toPath();
+		SymbolRegistry registry = new SymbolRegistry(Arrays.asList("TEST0", "TEST1", "A_VERY_LONG_SYMBOL_NAME_OVER_ONE_RECORD"));
+		JournalReceiver journal = new JournalReceiver(directory, registry, 4096);
+		JournalReader reader = new JournalReader(directory);
+		List<String> read = new ArrayList<>();
+		JournalReader.RecordHandler handler = (symbolId, symbol, price, updateTime, publishTime) ->
+				read.add(symbolId + "|" + symbol + "|" + price + "|" + updateTime + "|" + publishTime);
+		assertEquals(0, reader.poll(handler, 10));
+		MarketData data = new MarketDataImpl("A_VERY_LONG_SYMBOL_NAME_OVER_ONE_RECORD", 10.5, 1, 2);
+		journal.onReceive(data);
+		assertEquals(1, reader.poll(handler, 10));
+		assertEquals("2|A_VERY_LONG_SYMBOL_NAME_OVER_ONE_RECORD|10.5|1|2", read.get(0));
+		// more records than a segment holds
+		final int noOfRecords = 500;
+		for (int i = 0; i < noOfRecords; i++) {
+			journal.onReceive(new MarketDataImpl("TEST" + (i % 2), i, 10 + i, 20 + i));
+		}
+		// removed symbol is dropped
+		registry.removeSymbol("TEST1");
+		journal.onReceive(new MarketDataImpl("TEST1", 1.1, 1000));
+		assertEquals(1, journal.getNoOfDropped());
+		assertTrue(journal.getSegmentIndex() > 0);
+		journal.close();
+		assertEquals(noOfRecords, reader.poll(handler, Integer.MAX_VALUE));
+		for (int i = 0; i < noOfRecords; i++) {
+			assertEquals((i % 2) + "|TEST" + (i % 2) + "|" + (double) i + "|" + (10 + i) + "|" + (20 + i), read.get(i + 1));
+		}
+		assertEquals(journal.getSegmentIndex(), reader.getSegmentIndex());
+		assertEquals(noOfRecords + 1, reader.getNoOfRecords());
+		// a new writer starts a new segment
+		JournalReceiver next = new JournalReceiver(directory, registry, 4096);
+		assertEquals(journal.getSegmentIndex() + 1, next.getSegmentIndex());
+		next.onReceive(data);
+		assertEquals(1, reader.poll(handler, 10));
+		next.close();
+		reader.close();
+	}
+
+	@Test
+	public void testTailWhileSegmentRolls() throws Exception {
+		Path directory = folder.newFolder("journal").toPath();
+		SymbolRegistry registry = new SymbolRegistry(Arrays.asList("TEST0"));
+		JournalReceiver journal = new JournalReceiver(directory, registry, 4096);
+		journal.onReceive(new MarketDataImpl("TEST0", 0, 0, 0));
+		final int noOfRecords = 200;
+		// the writer fills the segment and rolls between the reader seeing
+		// a header not written and checking for the next segment
+		JournalReader reader = new JournalReader(directory) {
+			boolean rolled = false;
+			
+			@Override
+			boolean nextSegmentExists() {
+				if (!rolled) {
+					rolled = true;
+					for (int i = 1; i < noOfRecords; i++) {
+						journal.onReceive(new MarketDataImpl("TEST0", i, i, i));
+					}
+					assertTrue(journal.getSegmentIndex() > 0);
+				}
+				return super.nextSegmentExists();
+			}
+		};
+		List<Double> prices = new ArrayList<>();
+		JournalReader.RecordHandler handler = (symbolId, symbol, price, updateTime, publishTime) -> prices.add(price);
+		assertEquals(1, reader.poll(handler, 1));
+		assertEquals(noOfRecords - 1, reader.poll(handler, Integer.MAX_VALUE));
+		for (int i = 0; i < noOfRecords; i++) {
+			assertTrue(i == prices.get(i));
+		}
+		journal.close();
+		reader.close();
+	}
+
+	@Test
+	public void testPublishedByProcessor() throws Exception {
+		Path directory = folder.newFolder("journal").toPath();
+		MarketDataProcessorImpl impl = new MarketDataProcessorImpl();
+		impl.loadSymbols(Arrays.asList("TEST1", "TEST2", "TEST3"));
+		JournalReceiver journal = new JournalReceiver(directory, impl.getSymbolRegistry(), 4096);
+		impl.registerReceiver(journal);
+		impl.start();
+		final long updateTime = impl.getCurrentTimeInMilliseconds();
+		impl.onMessage(new MarketDataImpl("TEST1", 10.1, updateTime));
+		impl.onMessage(new MarketDataImpl("TEST3", 10.3, updateTime));
+		List<String> symbols = new CopyOnWriteArrayList<>();
+		JournalReader reader = new JournalReader(directory);
+		for (int i = 0; i < 40 && symbols.size() < 2; i++) {
+			reader.poll((symbolId, symbol, price, time, publishTime) -> {
+				assertTrue(publishTime >= updateTime);
+				symbols.add(symbol);
+			}, 10);
+			Thread.sleep(50);
+		}
+		impl.stop();
+		assertEquals(Arrays.asList("TEST1", "TEST3"), symbols);
+	}
+}
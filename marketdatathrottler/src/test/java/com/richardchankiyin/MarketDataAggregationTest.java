@@ -0,0 +1,112 @@
+package com.richardchankiyin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.Test;
+
+public class MarketDataAggregationTest {
+
+	private void testAggregate(MarketDataCache cache) {
+		cache.add(0, "TEST0");
+		assertEquals(MarketDataSlot.UPDATE_DIRTY, cache.update(0, 10.0, 100, 100));
+		assertEquals(MarketDataSlot.UPDATE_CONFLATED, cache.update(0, 12.0, 100, 101));
+		assertEquals(MarketDataSlot.UPDATE_CONFLATED, cache.update(0, 9.0, 200, 102));
+		// not counted
+		assertEquals(MarketDataSlot.UPDATE_STALE, cache.update(0, 1.0, 100, 99));
+		// without quantity
+		assertEquals(MarketDataSlot.UPDATE_CONFLATED, cache.update(0, 11.0, Double.NaN, 103));
+		AggregatedMarketData published = (AggregatedMarketData) cache.publish(0, 110);
+		assertTrue(11.0 == published.getPrice());
+		assertEquals(103, published.getUpdateTime());
+		assertTrue(10.0 == published.getOpen());
+		assertTrue(12.0 == published.getHigh());
+		assertTrue(9.0 == published.getLow());
+		assertEquals(4, published.getTickCount());
+		assertTrue(400 == published.getVolume());
+		assertEquals((10.0 * 100 + 12.0 * 100 + 9.0 * 200) / 400, published.getVwap(), 1e-9);
+		// reset on publish
+		assertEquals(MarketDataSlot.UPDATE_DIRTY, cache.update(0, 13.0, Double.NaN, 104));
+		published = (AggregatedMarketData) cache.publish(0, 120);
+		assertTrue(13.0 == published.getOpen());
+		assertTrue(13.0 == published.getHigh());
+		assertTrue(13.0 == published.getLow());
+		assertEquals(1, published.getTickCount());
+		assertTrue(0 == published.getVolume());
+		assertTrue(Double.isNaN(published.getVwap()));
+	}
+
+	@Test
+	public void testHeapSlotAggregate() {
+		testAggregate(new HeapMarketDataCache(true));
+	}
+
+	@Test
+	public void testOffHeapSlotAggregate() {
+		OffHeapMarketDataCache cache = new OffHeapMarketDataCache(new SymbolRegistry(Arrays.asList("TEST0")), true);
+		testAggregate(cache);
+		assertEquals((long) OffHeapMarketDataCache.RECORDS_PER_SEGMENT * OffHeapMarketDataCache.AGGREGATING_RECORD_SIZE,
+				cache.getAllocatedBytes());
+	}
+
+	@Test
+	public void testNotAggregating() {
+		MarketDataSlot slot = new MarketDataSlot("TEST0");
+		assertFalse(slot.isAggregating());
+		slot.update(10.0, 100, 100);
+		assertFalse(slot.publish(110) instanceof AggregatedMarketData);
+	}
+
+	@Test
+	public void testProcessorWithAggregation() throws Exception {
+		MarketDataProcessorImpl impl = new MarketDataProcessorImpl();
+		impl.loadSymbols(Arrays.asList("TEST1","TEST2"));
+		impl.setAggregation(true);
+		assertTrue(impl.isAggregation());
+		List<MarketData> received = new CopyOnWriteArrayList<>();
+		impl.registerReceiver(received::add);
+		impl.start();
+		final long updateTime = impl.getCurrentTimeInMilliseconds();
+		MarketDataPacket packet = new MarketDataPacket(4);
+		int test1 = impl.getSymbolId("TEST1");
+		packet.add(test1, 10.1, 100, updateTime);
+		packet.add(test1, 10.3, 300, updateTime);
+		packet.add(test1, 10.2, 100, updateTime);
+		assertEquals(0, impl.onMessages(packet));
+		impl.onMessage(new MarketDataImpl("TEST2", 20.1, 50, updateTime, MarketDataImpl.PUBLISH_TIME_NO_PUB));
+		for (int i = 0; i < 40 && received.size() < 2; i++) {
+			Thread.sleep(50);
+		}
+		assertEquals(2, received.size());
+		AggregatedMarketData data = (AggregatedMarketData) received.get(0);
+		assertEquals("TEST1", data.getSymbol());
+		assertTrue(10.2 == data.getPrice());
+		assertTrue(10.1 == data.getOpen());
+		assertTrue(10.3 == data.getHigh());
+		assertTrue(10.1 == data.getLow());
+		assertEquals(3, data.getTickCount());
+		assertTrue(500 == data.getVolume());
+		assertEquals((10.1 * 100 + 10.3 * 300 + 10.2 * 100) / 500, data.getVwap(), 1e-9);
+		data = (AggregatedMarketData) received.get(1);
+		assertEquals("TEST2", data.getSymbol());
+		assertEquals(1, data.getTickCount());
+		assertTrue(20.1 == data.getVwap());
+		impl.stop();
+	}
+
+	@Test(expected=IllegalStateException.class)
+	public void testSetAggregationAfterStart() {
+		MarketDataProcessorImpl impl = new MarketDataProcessorImpl();
+		impl.start();
+		try {
+			impl.setAggregation(true);
+		} finally {
+			impl.stop();
+		}
+	}
+}
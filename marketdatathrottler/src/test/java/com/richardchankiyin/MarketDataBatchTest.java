@@ -0,0 +1,101 @@
+package com.richardchankiyin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.Test;
+
+public class MarketDataBatchTest {
+
+	@Test
+	public void testAddUpToCapacity() {
+		MarketDataBatch batch = new MarketDataBatch(2);
+		MarketData data1 = new MarketDataImpl("TEST1", 10.1, 1);
+		MarketData data2 = new MarketDataImpl("TEST2", 10.2, 1);
+		assertTrue(batch.isEmpty());
+		assertTrue(batch.add(data1));
+		assertTrue(batch.add(data2));
+		assertFalse(batch.add(data1));
+		assertTrue(batch.isFull());
+		assertSame(data2, batch.get(1));
+		batch.clear();
+		assertEquals(0, batch.size());
+	}
+
+	@Test
+	public void testPoolReuse() {
+		MarketDataBatchPool pool = new MarketDataBatchPool(1, 4);
+		MarketDataBatch batch = pool.acquire();
+		batch.add(new MarketDataImpl("TEST1", 10.1, 1));
+		assertEquals(0, pool.getNoOfFree());
+		// retained by a sink
+		batch.retain();
+		batch.release();
+		MarketDataBatch other = pool.acquire();
+		assertNotSame(batch, other);
+		assertEquals(1, pool.getNoOfMisses());
+		other.release();
+		batch.release();
+		assertEquals(1, pool.getNoOfFree());
+		assertTrue(batch.isEmpty());
+		assertSame(batch, pool.acquire());
+	}
+
+	@Test(expected=IllegalStateException.class)
+	public void testReleaseTwice() {
+		MarketDataBatch batch = new MarketDataBatchPool(1, 4).acquire();
+		batch.release();
+		batch.release();
+	}
+
+	@Test
+	public void testPublishInBatches() throws Exception {
+		final int maxPermits = 10;
+		List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+		MarketDataProcessorImpl impl = new MarketDataProcessorImpl() {
+			@Override
+			public void publishAggregatedMarketData(MarketDataBatch batch) {
+				batchSizes.add(batch.size());
+				super.publishAggregatedMarketData(batch);
+			}
+		};
+		List<String> symbols = new ArrayList<>();
+		for (int i = 0; i < 25; i++) {
+			symbols.add("TEST" + i);
+		}
+		impl.loadSymbols(symbols);
+		List<MarketData> received = new CopyOnWriteArrayList<>();
+		impl.registerReceiver(received::add);
+		impl.setRateLimiter(new SlidingWindowRateLimiter(maxPermits, 60000));
+		impl.setPublishBatchSize(4);
+		impl.start();
+		final long updateTime = impl.getCurrentTimeInMilliseconds();
+		for (String symbol: symbols) {
+			impl.onMessage(new MarketDataImpl(symbol, 10.1, updateTime));
+		}
+		for (int i = 0; i < 40 && received.size() < maxPermits; i++) {
+			Thread.sleep(50);
+		}
+		Thread.sleep(100);
+		// rate is counted by symbol updates
+		assertEquals(maxPermits, received.size());
+		int noOfPublished = 0;
+		for (int batchSize: batchSizes) {
+			assertTrue(batchSize > 0 && batchSize <= 4);
+			noOfPublished += batchSize;
+		}
+		assertEquals(maxPermits, noOfPublished);
+		assertTrue(batchSizes.size() < maxPermits);
+		assertEquals(Arrays.asList("TEST0", "TEST1", "TEST2"),
+				Arrays.asList(received.get(0).getSymbol(), received.get(1).getSymbol(), received.get(2).getSymbol()));
+		impl.stop();
+	}
+}
@@ -0,0 +1,80 @@
+package com.richardchankiyin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.Test;
+
+public class MarketDataPacketTest {
+
+	@Test
+	public void testCoalesce() {
+		MarketDataPacket packet = new MarketDataPacket(6);
+		assertTrue(packet.add(1, 10.1, 100));
+		assertTrue(packet.add(2, 20.1, 100));
+		assertTrue(packet.add(1, 10.2, 101));
+		// older than the first one of the symbol
+		assertTrue(packet.add(2, 20.2, 99));
+		assertTrue(packet.add(3, 30.1, 100));
+		// same update time, the later one wins
+		assertTrue(packet.add(3, 30.2, 100));
+		assertTrue(packet.isFull());
+		assertFalse(packet.add(4, 40.1, 100));
+		assertEquals(3, packet.coalesce());
+		List<Boolean> superseded = new ArrayList<>();
+		List<Boolean> stale = new ArrayList<>();
+		for (int i = 0; i < packet.size(); i++) {
+			superseded.add(packet.isSuperseded(i));
+			stale.add(packet.isStale(i));
+		}
+		assertEquals(Arrays.asList(true, false, false, false, true, false), superseded);
+		assertEquals(Arrays.asList(false, false, false, true, false, false), stale);
+		// reused
+		packet.clear();
+		packet.add(2, 20.3, 102);
+		assertEquals(0, packet.coalesce());
+		assertFalse(packet.isSuperseded(0));
+		assertFalse(packet.isStale(0));
+	}
+
+	@Test
+	public void testOnMessages() throws Exception {
+		MarketDataProcessorImpl impl = new MarketDataProcessorImpl();
+		impl.loadSymbols(Arrays.asList("TEST1","TEST2","TEST3"));
+		List<MarketData> received = new CopyOnWriteArrayList<>();
+		impl.registerReceiver(received::add);
+		impl.start();
+		final long updateTime = impl.getCurrentTimeInMilliseconds();
+		int test1 = impl.getSymbolId("TEST1");
+		int test2 = impl.getSymbolId("TEST2");
+		impl.onMessage(new MarketDataImpl("TEST3", 30.1, updateTime + 10));
+		MarketDataPacket packet = new MarketDataPacket(8);
+		packet.add(test1, 10.1, updateTime);
+		packet.add(test2, 20.1, updateTime);
+		packet.add(test1, 10.2, updateTime + 1);
+		// stale, the rest of the packet is still applied
+		packet.add(impl.getSymbolId("TEST3"), 30.2, updateTime);
+		packet.add(test2, 20.2, updateTime + 1);
+		// older than the earlier one of the packet, stale as by onMessage
+		packet.add(test1, 10.3, updateTime);
+		assertEquals(2, impl.onMessages(packet));
+		for (int i = 0; i < 40 && received.size() < 3; i++) {
+			Thread.sleep(50);
+		}
+		assertEquals(3, received.size());
+		assertTrue(10.2 == impl.getCache("TEST1").getPrice());
+		assertTrue(20.2 == impl.getCache("TEST2").getPrice());
+		assertTrue(30.1 == impl.getCache("TEST3").getPrice());
+		ProcessorMetrics metrics = impl.getMetrics();
+		assertEquals(7, metrics.getNoOfReceived());
+		assertEquals(2, metrics.getNoOfConflated());
+		assertEquals(2, metrics.getNoOfRejectedStale());
+		impl.stop();
+	}
+}
@@ -1,12 +1,24 @@
 package com.richardchankiyin;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -86,6 +98,167 @@ public class MarketDataProcessImplTest {
 		impl.registerReceiver(receiver);
 	}
 	
+	@Test(expected=IllegalStateException.class)
+	public void testSetRateLimiterAfterStart() {
+		MarketDataProcessorImpl impl = new MarketDataProcessorImpl();
+		impl.start();
+		impl.setRateLimiter(new TokenBucketRateLimiter(10, 1000));
+	}
+	
+	@Test
+	public void testOnMessageAndPublishAutomaticallyWithCustomRateLimiter() throws Exception {
+		MarketDataProcessorImpl impl = new MarketDataProcessorImpl();
+		List<String> symbols = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			symbols.add("TEST" + i);
+		}
+		impl.loadSymbols(symbols);
+		impl.setRateLimiter(new SlidingWindowRateLimiter(10, 1000));
+		List<String> symbolsReceived = new ArrayList<>();
+		Receiver receiver = new Receiver() {
+			@Override
+			public void onReceive(MarketData data) {
+				symbolsReceived.add(data.getSymbol());
+			}
+		};
+		impl.registerReceiver(receiver);
+		impl.start();
+		final long updateTime = impl.getCurrentTimeInMilliseconds();
+		for (int i = 0; i < 20; i++) {
+			impl.onMessage(new MarketDataImpl("TEST" + i, 10, updateTime));
+		}
+		// we want to wait for a while to have receiver received
+		Thread.sleep(300);
+		assertEquals(10, symbolsReceived.size());
+		Thread.sleep(1200);
+		assertEquals(20, symbolsReceived.size());
+		impl.stop();
+	}
+	
+	@Test(expected=IllegalStateException.class)
+	public void testSetWaitStrategyAfterStart() {
+		MarketDataProcessorImpl impl = new MarketDataProcessorImpl();
+		impl.start();
+		impl.setWaitStrategy(new YieldingWaitStrategy());
+	}
+	
+	@Test(expected=IllegalStateException.class)
+	public void testSetPublishQueueTypeAfterStart() {
+		MarketDataProcessorImpl impl = new MarketDataProcessorImpl();
+		impl.start();
+		impl.setPublishQueueType(PublishQueueType.MPSC);
+	}
+	
+	@Test
+	public void testOnMessageAndPublishWithMpscPublishQueue() throws Exception {
+		MarketDataProcessorImpl impl = new MarketDataProcessorImpl();
+		impl.loadSymbols(Arrays.asList("TEST1","TEST2","TEST3"));
+		impl.setPublishQueueType(PublishQueueType.MPSC);
+		List<String> symbolsReceived = new ArrayList<>();
+		Receiver receiver = new Receiver() {
+			@Override
+			public void onReceive(MarketData data) {
+				symbolsReceived.add(data.getSymbol());
+			}
+		};
+		impl.registerReceiver(receiver);
+		impl.setRateLimiter(new SlidingWindowRateLimiter(1, 1000));
+		impl.start();
+		final long updateTime = impl.getCurrentTimeInMilliseconds();
+		impl.onMessage(new MarketDataImpl("TEST1", 10.2, updateTime));
+		impl.onMessage(new MarketDataImpl("TEST2", 10.3, updateTime));
+		impl.onMessage(new MarketDataImpl("TEST3", 10.4, updateTime));
+		// we want to wait for a while to have receiver received
+		Thread.sleep(100);
+		assertEquals(Arrays.asList("TEST1"), symbolsReceived);
+		assertEquals(2, impl.getPublishQueueDepth());
+		impl.stop();
+	}
+	
+	@Test
+	public void testOnMessageAndPublishWithYieldingWaitStrategy() throws Exception {
+		assertPublishedWithWaitStrategy(new YieldingWaitStrategy());
+	}
+	
+	@Test
+	public void testOnMessageAndPublishWithBackoffSpinWaitStrategy() throws Exception {
+		assertPublishedWithWaitStrategy(new BackoffSpinWaitStrategy());
+	}
+	
+	@Test
+	public void testBackoffSpinWaitStrategyWaitFor() {
+		WaitStrategy waitStrategy = new BackoffSpinWaitStrategy();
+		for (long nanos : new long[] {0, 10000, 2000000}) {
+			long start = System.nanoTime();
+			waitStrategy.waitFor(nanos);
+			assertTrue(System.nanoTime() - start >= nanos);
+		}
+	}
+	
+	@Test
+	public void testBlockingWaitStrategySignalsNewWaiter() throws Exception {
+		BlockingWaitStrategy waitStrategy = new BlockingWaitStrategy();
+		AtomicBoolean workAvailable = new AtomicBoolean(false);
+		// each waiter, e.g. the thread of a restarted instance, is woken up
+		for (int i = 0; i < 2; i++) {
+			workAvailable.set(false);
+			Thread waiter = new Thread(() -> waitStrategy.waitForWork(workAvailable::get));
+			waiter.start();
+			while (waiter.getState() != Thread.State.WAITING) {
+				Thread.sleep(1);
+			}
+			workAvailable.set(true);
+			waitStrategy.signal();
+			waiter.join(1000);
+			assertFalse("waiter " + i + " not signalled", waiter.isAlive());
+		}
+	}
+	
+	private void assertPublishedWithWaitStrategy(WaitStrategy waitStrategy) throws Exception {
+		MarketDataProcessorImpl impl = new MarketDataProcessorImpl();
+		impl.loadSymbols(Arrays.asList("TEST1","TEST2","TEST3"));
+		impl.setWaitStrategy(waitStrategy);
+		List<String> symbolsReceived = new ArrayList<>();
+		Receiver receiver = new Receiver() {
+			@Override
+			public void onReceive(MarketData data) {
+				symbolsReceived.add(data.getSymbol());
+			}
+		};
+		impl.registerReceiver(receiver);
+		impl.start();
+		// let the throttle controller thread go idle before any message
+		Thread.sleep(50);
+		final long updateTime = impl.getCurrentTimeInMilliseconds();
+		impl.onMessage(new MarketDataImpl("TEST1", 10.2, updateTime));
+		impl.onMessage(new MarketDataImpl("TEST2", 10.3, updateTime));
+		// we want to wait for a while to have receiver received
+		Thread.sleep(100);
+		assertEquals(Arrays.asList("TEST1","TEST2"), symbolsReceived);
+		impl.stop();
+	}
+	
+	@Test
+	public void testNoLostWakeupBetweenIdleGaps() throws Exception {
+		MarketDataProcessorImpl impl = new MarketDataProcessorImpl();
+		impl.loadSymbols(Arrays.asList("TEST1"));
+		impl.setThrottlePolicy(new ThrottlePolicy(1000000, 1000, 0));
+		BlockingQueue<MarketData> received = new LinkedBlockingQueue<>();
+		impl.registerReceiver(received::add);
+		impl.start();
+		final long updateTime = impl.getCurrentTimeInMilliseconds();
+		Random random = new Random(5);
+		for (int i = 0; i < 2000; i++) {
+			impl.onMessage(new MarketDataImpl("TEST1", i, updateTime + i));
+			// published within the bound even if the thread went idle
+			assertNotNull("update " + i + " not published", received.poll(1, TimeUnit.SECONDS));
+			if (random.nextBoolean()) {
+				LockSupport.parkNanos(random.nextInt(200000));
+			}
+		}
+		impl.stop();
+	}
+	
 	@Test(expected=IllegalStateException.class)
 	public void testOnMessageBeforeStart() {
 		MarketDataProcessorImpl impl = new MarketDataProcessorImpl();
@@ -126,6 +299,98 @@ public class MarketDataProcessImplTest {
 		assertTrue(10.4 == cache.getPrice());
 	}
 	
+	@Test
+	public void testLoadSymbolsAssignSymbolIds() {
+		MarketDataProcessorImpl impl = new MarketDataProcessorImpl();
+		impl.loadSymbols(Arrays.asList("TEST1","TEST2","TEST1","TEST3"));
+		assertEquals(0, impl.getSymbolId("TEST1"));
+		assertEquals(1, impl.getSymbolId("TEST2"));
+		assertEquals(2, impl.getSymbolId("TEST3"));
+		assertEquals(SymbolRegistry.SYMBOL_ID_UNKNOWN, impl.getSymbolId("TEST4"));
+		assertEquals(3, impl.getSymbolRegistry().size());
+		assertEquals("TEST3", impl.getCache(2).getSymbol());
+		assertNull(impl.getCache(3));
+	}
+	
+	@Test
+	public void testOnMessageBySymbolId() throws Exception {
+		MarketDataProcessorImpl impl = new MarketDataProcessorImpl();
+		impl.loadSymbols(Arrays.asList("TEST1","TEST2","TEST3"));
+		List<String> symbolsReceived = new ArrayList<>();
+		Receiver receiver = new Receiver() {
+			@Override
+			public void onReceive(MarketData data) {
+				symbolsReceived.add(data.getSymbol());
+			}
+		};
+		impl.registerReceiver(receiver);
+		impl.start();
+		final long updateTime = impl.getCurrentTimeInMilliseconds();
+		impl.onMessage(impl.getSymbolId("TEST2"), 10.3, updateTime);
+		// unknown id is ignored
+		impl.onMessage(5, 10.5, updateTime);
+		// we want to wait for a while to have receiver received
+		Thread.sleep(100);
+		assertEquals(Arrays.asList("TEST2"), symbolsReceived);
+		assertTrue(10.3 == impl.getCache("TEST2").getPrice());
+		impl.stop();
+	}
+	
+	@Test
+	public void testAddAndRemoveSymbolsAfterStart() throws Exception {
+		MarketDataProcessorImpl impl = new MarketDataProcessorImpl();
+		impl.loadSymbols(Arrays.asList("TEST0"));
+		Set<String> symbolsReceived = ConcurrentHashMap.newKeySet();
+		Set<String> symbolsConflated = ConcurrentHashMap.newKeySet();
+		impl.registerReceiver(data -> symbolsReceived.add(data.getSymbol()));
+		impl.registerReceiver(data -> symbolsConflated.add(data.getSymbol()), true);
+		impl.setRateLimiter(new TokenBucketRateLimiter(1000000, 1000));
+		impl.start();
+		final long updateTime = impl.getCurrentTimeInMilliseconds();
+		// more symbols than the initial publish queue and a registry segment
+		final int noOfSymbols = 2000;
+		for (int i = 1; i <= noOfSymbols; i++) {
+			assertEquals(i, impl.addSymbol("TEST" + i));
+			impl.onMessage(new MarketDataImpl("TEST" + i, i, updateTime));
+		}
+		assertEquals(1, impl.addSymbol("TEST1"));
+		for (int i = 0; i < 100 && symbolsConflated.size() < noOfSymbols; i++) {
+			Thread.sleep(50);
+		}
+		assertEquals(noOfSymbols, symbolsReceived.size());
+		assertEquals(noOfSymbols, symbolsConflated.size());
+		assertTrue(impl.removeSymbol("TEST5"));
+		assertFalse(impl.removeSymbol("TEST5"));
+		assertNull(impl.getCache("TEST5"));
+		// removed symbol is ignored
+		impl.onMessage(new MarketDataImpl("TEST5", 5.5, updateTime + 1));
+		impl.onMessage(5, 5.5, updateTime + 1);
+		// a removed symbol added again gets a new id
+		assertEquals(noOfSymbols + 1, impl.addSymbol("TEST5"));
+		assertEquals(MarketDataImpl.UPDATE_TIME_INIT_LOAD, impl.getCache("TEST5").getUpdateTime());
+		impl.stop();
+	}
+	
+	@Test
+	public void testGetCacheAfterPublish() throws Exception {
+		MarketDataProcessorImpl impl = new MarketDataProcessorImpl();
+		impl.loadSymbols(Arrays.asList("TEST1","TEST2","TEST3"));
+		impl.start();
+		final long updateTime = impl.getCurrentTimeInMilliseconds();
+		impl.onMessage(new MarketDataImpl("TEST1", 10.2, updateTime));
+		// we want to wait for a while to have it published
+		Thread.sleep(100);
+		MarketData cache = impl.getCache("TEST1");
+		assertTrue(10.2 == cache.getPrice());
+		assertEquals(updateTime, cache.getUpdateTime());
+		assertTrue(cache.getPublishTime() >= updateTime);
+		// the copy is not affected by later updates
+		impl.onMessage(new MarketDataImpl("TEST1", 10.4, updateTime + 1));
+		assertTrue(10.2 == cache.getPrice());
+		assertTrue(10.4 == impl.getCache("TEST1").getPrice());
+		impl.stop();
+	}
+	
 	@Test
 	public void testOnMessageAfterStartStaleDataNotCached() {
 		MarketDataProcessorImpl impl = new MarketDataProcessorImpl();
@@ -295,4 +560,57 @@ public class MarketDataProcessImplTest {
 		assertEquals(150, priceReceived.size());
 		assertEquals(150, updateTimeReceived.size());
 	}
+	
+	@Test
+	public void testMultiProducerLatestUpdateWins() throws Exception {
+		final int noOfProducers = 4;
+		final int noOfRounds = 2000;
+		List<String> symbols = Arrays.asList("TEST1","TEST2","TEST3");
+		MarketDataProcessorImpl impl = new MarketDataProcessorImpl();
+		impl.loadSymbols(symbols);
+		impl.setThrottlePolicy(new ThrottlePolicy(1000000, 1000, 0));
+		impl.setMultiProducer(true);
+		ConcurrentHashMap<String, Long> lastUpdateTimeReceived = new ConcurrentHashMap<>();
+		impl.registerReceiver(data -> lastUpdateTimeReceived.put(data.getSymbol(), data.getUpdateTime()));
+		impl.start();
+		final long updateTime = impl.getCurrentTimeInMilliseconds();
+		CountDownLatch ready = new CountDownLatch(1);
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+		List<Thread> producers = new ArrayList<>();
+		for (int p = 0; p < noOfProducers; p++) {
+			final int venue = p;
+			Thread producer = new Thread(() -> {
+				try {
+					ready.await();
+					for (int i = 0; i < noOfRounds; i++) {
+						for (String symbol: symbols) {
+							// venues interleave update times so ticks race
+							impl.onMessage(new MarketDataImpl(symbol, venue, updateTime + i * noOfProducers + venue));
+						}
+					}
+				} catch (Throwable e) {
+					failure.set(e);
+				}
+			});
+			producer.start();
+			producers.add(producer);
+		}
+		ready.countDown();
+		for (Thread producer: producers) {
+			producer.join();
+		}
+		assertNull(failure.get());
+		final long latestUpdateTime = updateTime + (noOfRounds - 1) * noOfProducers + noOfProducers - 1;
+		for (int i = 0; i < 40 && lastUpdateTimeReceived.values().stream().anyMatch(t -> t != latestUpdateTime); i++) {
+			Thread.sleep(50);
+		}
+		for (String symbol: symbols) {
+			assertEquals(latestUpdateTime, impl.getCache(symbol).getUpdateTime());
+			assertTrue(noOfProducers - 1 == impl.getCache(symbol).getPrice());
+			assertEquals(Long.valueOf(latestUpdateTime), lastUpdateTimeReceived.get(symbol));
+		}
+		ProcessorMetrics metrics = impl.getMetrics();
+		assertEquals(noOfProducers * noOfRounds * symbols.size(), metrics.getNoOfReceived());
+		impl.stop();
+	}
 }
@@ -0,0 +1,223 @@
+package com.richardchankiyin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MarketDataSnapshotTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testWarmRestart() throws Exception {
+		Path file = folder.getRoot().toPath().resolve("cache.snapshot");
+		MarketDataProcessorImpl impl = new MarketDataProcessorImpl();
+		impl.loadSymbols(Arrays.asList("TEST1","TEST2","TEST3"));
+		impl.setSnapshotFile(file, 60000);
+		impl.start();
+		final long updateTime = impl.getCurrentTimeInMilliseconds();
+		impl.onMessage(new MarketDataImpl("TEST1", 10.1, updateTime));
+		impl.onMessage(new MarketDataImpl("TEST2", 10.2, updateTime));
+		Thread.sleep(100);
+		// saved on stop
+		impl.stop();
+		assertTrue(Files.exists(file));
+		assertTrue(MarketDataSnapshot.readSnapshotTime(file) >= updateTime);
+
+		MarketDataProcessorImpl restarted = new MarketDataProcessorImpl();
+		restarted.loadSymbols(Arrays.asList("TEST1","TEST2","TEST3"));
+		assertEquals(2, restarted.loadSnapshot(file));
+		MarketData cache = restarted.getCache("TEST1");
+		assertTrue(10.1 == cache.getPrice());
+		assertEquals(updateTime, cache.getUpdateTime());
+		assertTrue(cache.getPublishTime() >= updateTime);
+		assertTrue(Double.isNaN(restarted.getCache("TEST3").getPrice()));
+		restarted.start();
+		// older than the restored one
+		restarted.onMessage(new MarketDataImpl("TEST2", 10.4, updateTime + 1));
+		try {
+			restarted.onMessage(new MarketDataImpl("TEST1", 10.3, updateTime - 1));
+		} catch (IllegalStateException e) {
+			// stale
+		}
+		assertTrue(10.1 == restarted.getCache("TEST1").getPrice());
+		assertTrue(10.4 == restarted.getCache("TEST2").getPrice());
+		restarted.stop();
+	}
+
+	@Test
+	public void testPendingUpdatePublishedAfterRestart() throws Exception {
+		Path file = folder.getRoot().toPath().resolve("cache.snapshot");
+		MarketDataProcessorImpl impl = new MarketDataProcessorImpl();
+		impl.loadSymbols(Arrays.asList("TEST1","TEST2","TEST3"));
+		impl.setSnapshotFile(file, 60000);
+		impl.setRateLimiter(new SlidingWindowRateLimiter(1, 60000));
+		List<String> received = new CopyOnWriteArrayList<>();
+		impl.registerReceiver(data -> received.add(data.getSymbol()));
+		impl.start();
+		final long updateTime = impl.getCurrentTimeInMilliseconds();
+		impl.onMessage(new MarketDataImpl("TEST1", 10.1, updateTime));
+		Thread.sleep(100);
+		// throttled, pending at stop
+		impl.onMessage(new MarketDataImpl("TEST2", 10.2, updateTime));
+		Thread.sleep(100);
+		impl.stop();
+		assertEquals(Arrays.asList("TEST1"), received);
+
+		MarketDataProcessorImpl restarted = new MarketDataProcessorImpl();
+		restarted.loadSymbols(Arrays.asList("TEST1","TEST2","TEST3"));
+		assertEquals(2, restarted.loadSnapshot(file));
+		List<MarketData> republished = new CopyOnWriteArrayList<>();
+		restarted.registerReceiver(republished::add);
+		restarted.start();
+		for (int i = 0; i < 40 && republished.isEmpty(); i++) {
+			Thread.sleep(50);
+		}
+		Thread.sleep(100);
+		assertEquals(1, republished.size());
+		assertEquals("TEST2", republished.get(0).getSymbol());
+		assertTrue(10.2 == republished.get(0).getPrice());
+		assertEquals(updateTime, republished.get(0).getUpdateTime());
+		restarted.stop();
+	}
+
+	private void testRestoredAggregate(boolean offHeapCache) throws Exception {
+		Path file = folder.getRoot().toPath().resolve("aggregate.snapshot");
+		MarketDataProcessorImpl impl = new MarketDataProcessorImpl();
+		impl.loadSymbols(Arrays.asList("TEST1","TEST2"));
+		// not published before the snapshot
+		assertTrue(impl.restore("TEST2", 10.2, 100, MarketDataImpl.PUBLISH_TIME_NO_PUB));
+		assertEquals(1, impl.saveSnapshot(file));
+
+		MarketDataProcessorImpl restarted = new MarketDataProcessorImpl();
+		restarted.loadSymbols(Arrays.asList("TEST1","TEST2"));
+		if (offHeapCache) {
+			// restored before the cache is rebuilt
+			assertEquals(1, restarted.loadSnapshot(file));
+			restarted.setAggregation(true);
+			restarted.setOffHeapCache(true);
+		} else {
+			restarted.setAggregation(true);
+			assertEquals(1, restarted.loadSnapshot(file));
+		}
+		List<MarketData> republished = new CopyOnWriteArrayList<>();
+		restarted.registerReceiver(republished::add);
+		restarted.start();
+		for (int i = 0; i < 40 && republished.isEmpty(); i++) {
+			Thread.sleep(50);
+		}
+		final long updateTime = restarted.getCurrentTimeInMilliseconds();
+		restarted.onMessage(new MarketDataImpl("TEST2", 10.0, updateTime));
+		for (int i = 0; i < 40 && republished.size() < 2; i++) {
+			Thread.sleep(50);
+		}
+		restarted.stop();
+		assertEquals(2, republished.size());
+		AggregatedMarketData data = (AggregatedMarketData) republished.get(0);
+		assertTrue(10.2 == data.getPrice());
+		assertTrue(10.2 == data.getOpen());
+		assertTrue(10.2 == data.getHigh());
+		assertTrue(10.2 == data.getLow());
+		assertEquals(1, data.getTickCount());
+		// not seeded again once published
+		data = (AggregatedMarketData) republished.get(1);
+		assertTrue(10.0 == data.getOpen());
+		assertTrue(10.0 == data.getLow());
+		assertEquals(1, data.getTickCount());
+	}
+
+	@Test
+	public void testRestoredAggregate() throws Exception {
+		testRestoredAggregate(false);
+	}
+
+	@Test
+	public void testRestoredAggregateOffHeap() throws Exception {
+		testRestoredAggregate(true);
+	}
+
+	@Test
+	public void testLargeUniverse() throws Exception {
+		Path file = folder.getRoot().toPath().resolve("large.snapshot");
+		final int noOfSymbols = 100000;
+		List<String> symbols = new ArrayList<>(noOfSymbols);
+		for (int i = 0; i < noOfSymbols; i++) {
+			symbols.add("TEST" + i);
+		}
+		ShardedMarketDataProcessor sharded = new ShardedMarketDataProcessor(2);
+		sharded.loadSymbols(symbols);
+		for (int i = 0; i < noOfSymbols; i++) {
+			sharded.getShard(symbols.get(i)).restore(symbols.get(i), i, 1 + i, 2 + i);
+		}
+		assertEquals(noOfSymbols, sharded.saveSnapshot(file));
+		MarketDataProcessorImpl impl = new MarketDataProcessorImpl();
+		impl.loadSymbols(symbols.subList(0, noOfSymbols - 1));
+		assertEquals(noOfSymbols - 1, impl.loadSnapshot(file));
+		// same symbol ids
+		Path same = folder.getRoot().toPath().resolve("same.snapshot");
+		assertEquals(noOfSymbols - 1, impl.saveSnapshot(same));
+		MarketDataProcessorImpl restarted = new MarketDataProcessorImpl();
+		restarted.loadSymbols(symbols);
+		assertEquals(noOfSymbols - 1, restarted.loadSnapshot(same));
+		assertTrue(5 == restarted.getCache("TEST5").getPrice());
+		MarketData cache = impl.getCache("TEST99");
+		assertTrue(99 == cache.getPrice());
+		assertEquals(100, cache.getUpdateTime());
+		assertEquals(101, cache.getPublishTime());
+		// not restored over a newer value
+		assertFalse(impl.getSymbolRegistry().getSymbol(0) == null);
+		assertEquals(0, impl.loadSnapshot(file));
+	}
+
+	@Test
+	public void testLongSymbol() throws Exception {
+		Path file = folder.getRoot().toPath().resolve("long.snapshot");
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < 70000; i++) {
+			builder.append((char) ('A' + i % 26));
+		}
+		String symbol = builder.toString();
+		assertEquals(1, MarketDataSnapshot.write(file, 1, 1, i -> new MarketDataImpl(symbol, 10.1, 2, 3)));
+		List<String> restored = new ArrayList<>();
+		assertEquals(1, MarketDataSnapshot.read(file, MarketDataSnapshot.bySymbol((s, price, updateTime, publishTime) -> restored.add(s))));
+		assertEquals(Arrays.asList(symbol), restored);
+	}
+
+	@Test
+	public void testVersionOne() throws Exception {
+		Path file = folder.getRoot().toPath().resolve("v1.snapshot");
+		byte[] symbol = "TEST1".getBytes(StandardCharsets.UTF_8);
+		ByteBuffer buffer = ByteBuffer.allocate(16 + 4 + 2 + symbol.length + 24);
+		buffer.putInt(0x4D445348).putInt(1).putLong(1);
+		buffer.putInt(0).putShort((short) symbol.length).put(symbol).putDouble(10.1).putLong(2).putLong(3);
+		Files.write(file, buffer.array());
+		MarketDataProcessorImpl impl = new MarketDataProcessorImpl();
+		impl.loadSymbols(Arrays.asList("TEST1"));
+		assertEquals(1, impl.loadSnapshot(file));
+		assertTrue(10.1 == impl.getCache("TEST1").getPrice());
+	}
+
+	@Test(expected=IOException.class)
+	public void testTruncated() throws Exception {
+		Path file = folder.getRoot().toPath().resolve("truncated.snapshot");
+		assertEquals(2, MarketDataSnapshot.write(file, 1, 2, i -> new MarketDataImpl("TEST" + i, 10.1, 2, 3)));
+		byte[] bytes = Files.readAllBytes(file);
+		Files.write(file, Arrays.copyOf(bytes, bytes.length - 5));
+		MarketDataSnapshot.read(file, (symbolIdHint, symbol, length, price, updateTime, publishTime) -> true);
+	}
+}
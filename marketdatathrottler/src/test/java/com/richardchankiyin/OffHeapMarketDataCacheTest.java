@@ -0,0 +1,111 @@
+package com.richardchankiyin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.Test;
+
+public class OffHeapMarketDataCacheTest {
+
+	@Test
+	public void testSameAsSlot() {
+		SymbolRegistry symbolRegistry = new SymbolRegistry(Arrays.asList("TEST0", "TEST1"));
+		OffHeapMarketDataCache cache = new OffHeapMarketDataCache(symbolRegistry);
+		assertFalse(cache.contains(0));
+		assertEquals(MarketDataCache.UPDATE_NOT_LOADED, cache.update(0, 10.0, Double.NaN, 100));
+		cache.add(0, "TEST0");
+		cache.add(1, "TEST1");
+		assertFalse(cache.contains(2));
+		assertNull(cache.snapshot(2));
+		assertTrue(cache.contains(1));
+		assertTrue(Double.isNaN(cache.getPrice(1)));
+		assertEquals(MarketDataImpl.PUBLISH_TIME_NO_PUB, cache.getPublishTime(1));
+		assertEquals(MarketDataSlot.UPDATE_DIRTY, cache.update(1, 10.1, Double.NaN, 100));
+		assertEquals(MarketDataSlot.UPDATE_CONFLATED, cache.update(1, 10.2, Double.NaN, 100));
+		assertEquals(MarketDataSlot.UPDATE_STALE, cache.update(1, 10.3, Double.NaN, 99));
+		assertTrue(cache.isDirty(1));
+		assertTrue(cache.tryMarkRequeued(1));
+		assertFalse(cache.tryMarkRequeued(1));
+		cache.clearRequeued(1);
+		// stamped by the update turning it dirty
+		assertTrue(cache.getDirtyTimeNanos(1) != 0);
+		MarketData published = cache.publish(1, 110);
+		assertEquals("TEST1", published.getSymbol());
+		assertTrue(10.2 == published.getPrice());
+		assertEquals(100, published.getUpdateTime());
+		assertEquals(110, published.getPublishTime());
+		assertNull(cache.publish(1, 120));
+		assertFalse(cache.isDirty(1));
+		assertFalse(cache.restore(1, 10.4, 100, 110));
+		assertTrue(cache.restore(1, 10.4, 101, 111));
+		MarketData snapshot = cache.snapshot(1);
+		assertEquals("TEST1", snapshot.getSymbol());
+		assertTrue(10.4 == snapshot.getPrice());
+		assertEquals(101, snapshot.getUpdateTime());
+		assertEquals(111, snapshot.getPublishTime());
+		// untouched
+		assertEquals(MarketDataImpl.UPDATE_TIME_INIT_LOAD, cache.snapshot(0).getUpdateTime());
+		cache.remove(1);
+		assertFalse(cache.contains(1));
+		assertNull(cache.snapshot(1));
+		assertNull(cache.publish(1, 130));
+	}
+
+	@Test
+	public void testGrowBySegments() {
+		final int noOfSymbols = OffHeapMarketDataCache.RECORDS_PER_SEGMENT * 2 + 1;
+		List<String> symbols = new ArrayList<>(noOfSymbols);
+		for (int i = 0; i < noOfSymbols; i++) {
+			symbols.add("TEST" + i);
+		}
+		SymbolRegistry symbolRegistry = new SymbolRegistry(symbols);
+		OffHeapMarketDataCache cache = new OffHeapMarketDataCache(symbolRegistry);
+		for (int i = 0; i < noOfSymbols; i++) {
+			cache.add(i, symbols.get(i));
+			cache.update(i, i, Double.NaN, i);
+		}
+		assertEquals(OffHeapMarketDataCache.RECORDS_PER_SEGMENT * 3, cache.capacity());
+		assertEquals((long) cache.capacity() * OffHeapMarketDataCache.RECORD_SIZE, cache.getAllocatedBytes());
+		for (int i = 0; i < noOfSymbols; i += 997) {
+			MarketData data = cache.snapshot(i);
+			assertEquals("TEST" + i, data.getSymbol());
+			assertTrue(i == data.getPrice());
+		}
+	}
+
+	@Test
+	public void testProcessorWithOffHeapCache() throws Exception {
+		MarketDataProcessorImpl impl = new MarketDataProcessorImpl();
+		impl.loadSymbols(Arrays.asList("TEST1","TEST2","TEST3"));
+		impl.setOffHeapCache(true);
+		List<MarketData> received = new CopyOnWriteArrayList<>();
+		impl.registerReceiver(received::add);
+		impl.start();
+		final long updateTime = impl.getCurrentTimeInMilliseconds();
+		impl.onMessage(new MarketDataImpl("TEST1", 10.1, updateTime));
+		impl.onMessage(new MarketDataImpl("TEST1", 10.2, updateTime));
+		impl.onMessage(new MarketDataImpl("TEST2", 10.3, updateTime));
+		int symbolId = impl.addSymbol("TEST4");
+		impl.onMessage(symbolId, 10.4, updateTime);
+		assertTrue(impl.removeSymbol("TEST3"));
+		assertNull(impl.getCache("TEST3"));
+		for (int i = 0; i < 40 && received.size() < 3; i++) {
+			Thread.sleep(50);
+		}
+		assertEquals(3, received.size());
+		assertEquals("TEST1", received.get(0).getSymbol());
+		assertTrue(10.2 == received.get(0).getPrice());
+		MarketData cache = impl.getCache("TEST4");
+		assertTrue(10.4 == cache.getPrice());
+		assertEquals(updateTime, cache.getUpdateTime());
+		assertTrue(cache.getPublishTime() >= updateTime);
+		impl.stop();
+	}
+}
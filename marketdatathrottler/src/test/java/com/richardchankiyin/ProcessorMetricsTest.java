@@ -0,0 +1,90 @@
+package com.richardchankiyin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+public class ProcessorMetricsTest {
+
+	@Test
+	public void testHistogramExactForSmallValues() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 1; i <= 50; i++) {
+			histogram.record(i);
+		}
+		assertEquals(50, histogram.getTotalCount());
+		assertEquals(25, histogram.getValueAtPercentile(50));
+		assertEquals(50, histogram.getValueAtPercentile(100));
+		assertEquals(50, histogram.getMaxValue());
+	}
+	
+	@Test
+	public void testHistogramRelativePrecision() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (long value = 1000; value <= 100000000L; value *= 10) {
+			histogram.record(value);
+		}
+		long p50 = histogram.getValueAtPercentile(50);
+		// 3rd of 6 values, 100000 within about 3%
+		assertTrue(p50 >= 100000 && p50 <= 100000 * 1.04);
+		assertEquals(100000000L, histogram.getValueAtPercentile(100));
+	}
+	
+	@Test
+	public void testHistogramBuckets() {
+		for (long value = 0; value < 1000000; value = value * 3 / 2 + 1) {
+			int index = LatencyHistogram.indexOf(value);
+			assertTrue(LatencyHistogram.highestValueOf(index) >= value);
+			assertTrue(index == 0 || LatencyHistogram.highestValueOf(index - 1) < value);
+		}
+	}
+	
+	@Test
+	public void testProcessorMetrics() throws Exception {
+		MarketDataProcessorImpl impl = new MarketDataProcessorImpl();
+		impl.loadSymbols(Arrays.asList("TEST1","TEST2","TEST3"));
+		impl.registerReceiver(data -> {});
+		impl.setRateLimiter(new SlidingWindowRateLimiter(1, 1000));
+		impl.start();
+		final long updateTime = impl.getCurrentTimeInMilliseconds();
+		impl.onMessage(new MarketDataImpl("TEST1", 10.2, updateTime));
+		impl.onMessage(new MarketDataImpl("TEST2", 10.3, updateTime));
+		impl.onMessage(new MarketDataImpl("TEST2", 10.4, updateTime + 1));
+		try {
+			impl.onMessage(new MarketDataImpl("TEST2", 10.1, updateTime));
+		} catch (IllegalStateException e) {
+			// stale data
+		}
+		// we want to wait for a while to have TEST1 published and TEST2 waiting for permit
+		Thread.sleep(100);
+		ProcessorMetricsSnapshot snapshot = impl.getMetrics().snapshot();
+		assertEquals(4, snapshot.getNoOfReceived());
+		assertEquals(1, snapshot.getNoOfConflated());
+		assertEquals(1, snapshot.getNoOfRejectedStale());
+		assertEquals(1, snapshot.getNoOfPublished());
+		assertEquals(1, snapshot.getPublishQueueDepth());
+		assertEquals(1, snapshot.getTickToPublishLatency().getTotalCount());
+		assertEquals(1, snapshot.getReceiverBacklogs().length);
+		impl.stop();
+	}
+	
+	@Test
+	public void testRegisterMBean() throws Exception {
+		MarketDataProcessorImpl impl = new MarketDataProcessorImpl();
+		ObjectName name = impl.getMetrics().registerMBean("testRegisterMBean");
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			assertEquals(0L, server.getAttribute(name, "NoOfPublished"));
+			assertEquals(0, server.getAttribute(name, "PublishQueueDepth"));
+		} finally {
+			server.unregisterMBean(name);
+		}
+	}
+}
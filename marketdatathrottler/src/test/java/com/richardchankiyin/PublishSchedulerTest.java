@@ -0,0 +1,148 @@
+package com.richardchankiyin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class PublishSchedulerTest {
+
+	@Test
+	public void testIndexedHeapOrder() {
+		IndexedIntHeap heap = new IndexedIntHeap(1);
+		Random random = new Random(7);
+		double[] keys = new double[1000];
+		for (int id = 0; id < keys.length; id++) {
+			keys[id] = random.nextDouble();
+			heap.put(id, keys[id]);
+		}
+		// change and remove some
+		for (int id = 0; id < keys.length; id += 3) {
+			keys[id] = random.nextDouble();
+			heap.put(id, keys[id]);
+		}
+		List<Double> expected = new ArrayList<>();
+		for (int id = 0; id < keys.length; id++) {
+			if (id % 7 == 0) {
+				assertTrue(heap.remove(id));
+			} else {
+				expected.add(keys[id]);
+			}
+		}
+		assertFalse(heap.remove(0));
+		Collections.sort(expected);
+		assertEquals(expected.size(), heap.size());
+		for (double key: expected) {
+			int id = heap.poll();
+			assertTrue(key == keys[id]);
+		}
+		assertTrue(heap.isEmpty());
+		assertEquals(IntQueue.EMPTY, heap.poll());
+	}
+	
+	@Test
+	public void testFifo() {
+		PublishScheduler scheduler = new FifoPublishScheduler();
+		scheduler.offer(2, "TEST2", 1.0, 0);
+		scheduler.offer(0, "TEST0", 1.0, 0);
+		scheduler.offer(2, "TEST2", 2.0, 0);
+		assertEquals(2, scheduler.size());
+		assertEquals(2, scheduler.peek());
+		scheduler.remove(2);
+		assertFalse(scheduler.contains(2));
+		assertEquals(0, scheduler.peek());
+	}
+	
+	@Test
+	public void testPriorityByPriceChange() {
+		PriorityPublishScheduler scheduler = new PriorityPublishScheduler(PriorityPublishScheduler.PriceChange.RELATIVE, 0);
+		double[] prices = {100.1, 102.0, 99.5};
+		for (int i = 0; i < prices.length; i++) {
+			scheduler.onPublished(i, new MarketDataImpl("TEST" + i, 100.0, 1));
+		}
+		for (int i = 0; i < prices.length; i++) {
+			scheduler.offer(i, "TEST" + i, prices[i], 0);
+		}
+		assertEquals(1, scheduler.peek());
+		// moved further while waiting
+		scheduler.offer(0, "TEST0", 95.0, 10);
+		assertEquals(0, scheduler.peek());
+		scheduler.remove(0);
+		assertEquals(1, scheduler.peek());
+		scheduler.remove(1);
+		assertEquals(2, scheduler.peek());
+	}
+	
+	@Test
+	public void testPriorityWeightAndAging() {
+		PriorityPublishScheduler scheduler = new PriorityPublishScheduler(PriorityPublishScheduler.PriceChange.ABSOLUTE, 1.0);
+		scheduler.setWeight("TEST1", 10);
+		scheduler.onPublished(0, new MarketDataImpl("TEST0", 9.0, 0));
+		scheduler.onPublished(1, new MarketDataImpl("TEST1", 9.9, 0));
+		// 1.0 * 1 vs 10 * 0.1, TEST0 ready earlier
+		scheduler.offer(0, "TEST0", 10.0, 0);
+		scheduler.offer(1, "TEST1", 10.0, 500);
+		assertEquals(0, scheduler.peek());
+		scheduler.remove(0);
+		// TEST0 ready again later, loses to TEST1 which waited longer
+		scheduler.offer(0, "TEST0", 10.0, 1000);
+		assertEquals(1, scheduler.peek());
+	}
+	
+	@Test
+	public void testProcessorPublishesLargestMoverFirst() throws Exception {
+		MarketDataProcessorImpl impl = new MarketDataProcessorImpl();
+		impl.loadSymbols(Arrays.asList("TEST1","TEST2","TEST3"));
+		List<String> symbolsReceived = Collections.synchronizedList(new ArrayList<>());
+		impl.registerReceiver(data -> symbolsReceived.add(data.getSymbol()));
+		impl.setRateLimiter(new SlidingWindowRateLimiter(1, 300));
+		impl.setPublishScheduler(new PriorityPublishScheduler());
+		impl.setMinPublishIntervalMillis(0);
+		impl.start();
+		final long updateTime = impl.getCurrentTimeInMilliseconds();
+		impl.onMessage(new MarketDataImpl("TEST1", 100.0, updateTime));
+		Thread.sleep(50);
+		impl.onMessage(new MarketDataImpl("TEST2", 100.0, updateTime));
+		impl.onMessage(new MarketDataImpl("TEST3", 100.0, updateTime));
+		Thread.sleep(350);
+		impl.onMessage(new MarketDataImpl("TEST1", 100.1, updateTime + 1));
+		// TEST3 moves 5% while waiting
+		impl.onMessage(new MarketDataImpl("TEST3", 105.0, updateTime + 1));
+		for (int i = 0; i < 40 && symbolsReceived.size() < 4; i++) {
+			Thread.sleep(50);
+		}
+		impl.stop();
+		assertEquals(Arrays.asList("TEST1", "TEST2", "TEST3", "TEST1"), symbolsReceived);
+	}
+	
+	@Test
+	public void testMinPublishInterval() throws Exception {
+		MarketDataProcessorImpl impl = new MarketDataProcessorImpl();
+		impl.loadSymbols(Arrays.asList("TEST1"));
+		List<Long> publishTimes = Collections.synchronizedList(new ArrayList<>());
+		impl.registerReceiver(data -> publishTimes.add(data.getPublishTime()));
+		impl.setMinPublishIntervalMillis(200);
+		impl.start();
+		final long updateTime = impl.getCurrentTimeInMilliseconds();
+		impl.onMessage(new MarketDataImpl("TEST1", 10.1, updateTime));
+		Thread.sleep(50);
+		impl.onMessage(new MarketDataImpl("TEST1", 10.2, updateTime + 1));
+		impl.onMessage(new MarketDataImpl("TEST1", 10.3, updateTime + 2));
+		Thread.sleep(100);
+		assertEquals(1, publishTimes.size());
+		for (int i = 0; i < 20 && publishTimes.size() < 2; i++) {
+			Thread.sleep(50);
+		}
+		impl.stop();
+		assertEquals(2, publishTimes.size());
+		assertTrue(publishTimes.get(1) - publishTimes.get(0) >= 200);
+		assertTrue(10.3 == impl.getCache("TEST1").getPrice());
+	}
+}
@@ -0,0 +1,190 @@
+package com.richardchankiyin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class RateLimiterTest {
+
+	@Test
+	public void testSlidingWindowUnderLimit() {
+		RateLimiter limiter = new SlidingWindowRateLimiter(3, 1000);
+		assertTrue(limiter.tryAcquire(0));
+		assertTrue(limiter.tryAcquire(10));
+		assertEquals(20, limiter.nextPermitTime(20));
+		assertTrue(limiter.tryAcquire(20));
+	}
+	
+	@Test
+	public void testSlidingWindowAtLimit() {
+		RateLimiter limiter = new SlidingWindowRateLimiter(3, 1000);
+		assertTrue(limiter.tryAcquire(0));
+		assertTrue(limiter.tryAcquire(10));
+		assertTrue(limiter.tryAcquire(20));
+		assertFalse(limiter.tryAcquire(500));
+		// oldest permit at 0 leaves the window at 1000
+		assertEquals(1000, limiter.nextPermitTime(500));
+		assertFalse(limiter.tryAcquire(999));
+		assertTrue(limiter.tryAcquire(1000));
+		assertEquals(1010, limiter.nextPermitTime(1000));
+	}
+	
+	@Test
+	public void testSlidingWindowNeverExceedsLimitInAnyWindow() {
+		final int maxPermits = 100;
+		final long window = 1000;
+		RateLimiter limiter = new SlidingWindowRateLimiter(maxPermits, window);
+		long[] granted = new long[5000];
+		int noOfGranted = 0;
+		for (long t = 0; t < 5000 && noOfGranted < granted.length; t++) {
+			// several attempts within the same millisecond
+			for (int i = 0; i < 3; i++) {
+				if (limiter.tryAcquire(t)) {
+					granted[noOfGranted++] = t;
+				}
+			}
+		}
+		for (int i = maxPermits; i < noOfGranted; i++) {
+			assertTrue(granted[i] - granted[i - maxPermits] >= window);
+		}
+	}
+	
+	@Test
+	public void testConcurrentSlidingWindowAtLimit() {
+		RateLimiter limiter = new ConcurrentSlidingWindowRateLimiter(3, 1000);
+		assertTrue(limiter.tryAcquire(0));
+		assertTrue(limiter.tryAcquire(10));
+		assertTrue(limiter.tryAcquire(20));
+		assertFalse(limiter.tryAcquire(500));
+		assertEquals(1000, limiter.nextPermitTime(500));
+		assertFalse(limiter.tryAcquire(999));
+		assertTrue(limiter.tryAcquire(1000));
+		assertEquals(1010, limiter.nextPermitTime(1000));
+	}
+	
+	@Test
+	public void testConcurrentSlidingWindowSharedByThreads() throws Exception {
+		final int maxPermits = 100;
+		final RateLimiter limiter = new ConcurrentSlidingWindowRateLimiter(maxPermits, 1000);
+		final AtomicInteger noOfGranted = new AtomicInteger();
+		List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			Thread thread = new Thread(() -> {
+				// all within the same window
+				for (int t = 0; t < 500; t++) {
+					if (limiter.tryAcquire(t)) {
+						noOfGranted.incrementAndGet();
+					}
+				}
+			});
+			threads.add(thread);
+			thread.start();
+		}
+		for (Thread thread: threads) {
+			thread.join();
+		}
+		assertEquals(maxPermits, noOfGranted.get());
+		assertFalse(limiter.tryAcquire(999));
+		assertTrue(limiter.tryAcquire(1499));
+	}
+	
+	@Test
+	public void testConcurrentSlidingWindowNeverWaitsForFreePermits() throws Exception {
+		final int noOfThreads = 4;
+		final int noOfTries = 20000;
+		// room for every try, no thread should ever be told to wait
+		final RateLimiter limiter = new ConcurrentSlidingWindowRateLimiter(noOfThreads * noOfTries, 1000);
+		final AtomicInteger noOfRefused = new AtomicInteger();
+		final AtomicInteger noOfLateNextPermits = new AtomicInteger();
+		List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < noOfThreads; i++) {
+			Thread thread = new Thread(() -> {
+				for (int t = 0; t < noOfTries; t++) {
+					if (limiter.nextPermitTime(0) != 0) {
+						noOfLateNextPermits.incrementAndGet();
+					}
+					if (!limiter.tryAcquire(0)) {
+						noOfRefused.incrementAndGet();
+					}
+				}
+			});
+			threads.add(thread);
+			thread.start();
+		}
+		for (Thread thread: threads) {
+			thread.join();
+		}
+		assertEquals(0, noOfRefused.get());
+		assertEquals(0, noOfLateNextPermits.get());
+		assertFalse(limiter.tryAcquire(999));
+		assertEquals(1000, limiter.nextPermitTime(999));
+	}
+	
+	@Test
+	public void testTokenBucket() {
+		RateLimiter limiter = new TokenBucketRateLimiter(2, 1000);
+		assertTrue(limiter.tryAcquire(0));
+		assertTrue(limiter.tryAcquire(0));
+		assertFalse(limiter.tryAcquire(0));
+		// refilled at 2 per 1000ms
+		assertEquals(500, limiter.nextPermitTime(0));
+		assertFalse(limiter.tryAcquire(499));
+		assertTrue(limiter.tryAcquire(500));
+		assertFalse(limiter.tryAcquire(500));
+	}
+	
+	@Test
+	public void testGcraEvenlySpaced() {
+		RateLimiter limiter = new GcraRateLimiter(4, 1000, 1);
+		assertTrue(limiter.tryAcquire(0));
+		assertFalse(limiter.tryAcquire(100));
+		assertEquals(250, limiter.nextPermitTime(100));
+		assertTrue(limiter.tryAcquire(250));
+		assertEquals(500, limiter.nextPermitTime(250));
+	}
+	
+	@Test
+	public void testGcraBurst() {
+		RateLimiter limiter = new GcraRateLimiter(4, 1000, 4);
+		for (int i = 0; i < 4; i++) {
+			assertTrue(limiter.tryAcquire(0));
+		}
+		assertFalse(limiter.tryAcquire(0));
+		assertEquals(250, limiter.nextPermitTime(0));
+	}
+	
+	@Test
+	public void testGcraDefaultWithinSlidingWindow() {
+		RateLimiter limiter = new GcraRateLimiter(4, 1000);
+		int acquired = 0;
+		for (long t = 0; t < 1000; t++) {
+			if (limiter.tryAcquire(t)) {
+				acquired++;
+			}
+		}
+		assertEquals(4, acquired);
+		// no more than 4 in any sliding window
+		limiter = new GcraRateLimiter(4, 1000);
+		long[] times = new long[64];
+		int n = 0;
+		for (long t = 0; n < times.length; t++) {
+			while (n < times.length && limiter.tryAcquire(t)) {
+				times[n++] = t;
+			}
+		}
+		for (int i = 4; i < times.length; i++) {
+			assertTrue(times[i] - times[i - 4] >= 1000);
+		}
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void testInvalidMaxPermits() {
+		new SlidingWindowRateLimiter(0, 1000);
+	}
+}
@@ -0,0 +1,258 @@
+package com.richardchankiyin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class ReceiverLaneTest {
+
+	/**
+	 * Receiver blocked on its first update until released so that
+	 * the ring of the lane can be filled
+	 */
+	private static class BlockedReceiver implements Receiver {
+		final CountDownLatch firstReceived = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final List<String> received = Collections.synchronizedList(new ArrayList<>());
+		final List<MarketData> receivedData = Collections.synchronizedList(new ArrayList<>());
+		final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+		
+		@Override
+		public void onReceive(MarketData data) {
+			firstReceived.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			received.add(data.getSymbol() + "=" + data.getPrice());
+			receivedData.add(data);
+		}
+		
+		@Override
+		public void onReceiveBatch(List<MarketData> datas) {
+			batchSizes.add(datas.size());
+			Receiver.super.onReceiveBatch(datas);
+		}
+	}
+	
+	private List<String> fillAndRelease(OverflowPolicy overflowPolicy, int maxBatchSize) throws Exception {
+		BlockedReceiver receiver = new BlockedReceiver();
+		ReceiverLane lane = new RingReceiverLane(receiver, 2, overflowPolicy, maxBatchSize);
+		lane.start("test-lane");
+		lane.offer(new MarketDataImpl("TEST1", 1, 1));
+		assertTrue(receiver.firstReceived.await(1, TimeUnit.SECONDS));
+		// receiver is busy, the ring takes 2 more
+		lane.offer(new MarketDataImpl("TEST2", 2, 2));
+		lane.offer(new MarketDataImpl("TEST3", 3, 3));
+		lane.offer(new MarketDataImpl("TEST2", 4, 4));
+		receiver.release.countDown();
+		lane.stop();
+		for (int i = 0; i < 100 && receiver.received.size() < 3; i++) {
+			Thread.sleep(10);
+		}
+		return receiver.received;
+	}
+	
+	@Test
+	public void testDropOldest() throws Exception {
+		assertEquals(Arrays.asList("TEST1=1.0", "TEST3=3.0", "TEST2=4.0"), fillAndRelease(OverflowPolicy.DROP_OLDEST, 1));
+	}
+	
+	@Test
+	public void testConflate() throws Exception {
+		assertEquals(Arrays.asList("TEST1=1.0", "TEST2=4.0", "TEST3=3.0"), fillAndRelease(OverflowPolicy.CONFLATE, 1));
+	}
+	
+	@Test
+	public void testConflateNeverDropsAnotherSymbol() throws Exception {
+		final int capacity = 4;
+		BlockedReceiver receiver = new BlockedReceiver();
+		SymbolRegistry symbolRegistry = new SymbolRegistry(Arrays.asList("TEST0", "TEST1", "TEST2", "TEST3", "TEST4", "TEST5"));
+		ReceiverLane lane = new RingReceiverLane(receiver, capacity, OverflowPolicy.CONFLATE, 1, symbolRegistry);
+		lane.start("test-lane");
+		lane.offer(new MarketDataImpl("TEST0", 0, 0));
+		assertTrue(receiver.firstReceived.await(1, TimeUnit.SECONDS));
+		for (int i = 1; i <= capacity; i++) {
+			lane.offer(new MarketDataImpl("TEST" + i, i, i));
+		}
+		// full, conflated with the pending update of the same symbol
+		lane.offer(new MarketDataImpl("TEST2", 20, 20));
+		assertEquals(1, lane.getNoOfConflated());
+		// capacity + 1 distinct symbols pending, waits for the receiver
+		Thread publisher = new Thread(() -> lane.offer(new MarketDataImpl("TEST5", 5, 5)));
+		publisher.start();
+		publisher.join(100);
+		assertTrue(publisher.isAlive());
+		receiver.release.countDown();
+		publisher.join(1000);
+		assertFalse(publisher.isAlive());
+		lane.stop();
+		for (int i = 0; i < 100 && receiver.received.size() < capacity + 2; i++) {
+			Thread.sleep(10);
+		}
+		assertEquals(Arrays.asList("TEST0=0.0", "TEST1=1.0", "TEST2=20.0", "TEST3=3.0", "TEST4=4.0", "TEST5=5.0"),
+				receiver.received);
+		assertEquals(0, lane.getNoOfDropped());
+	}
+	
+	@Test
+	public void testBlock() throws Exception {
+		BlockedReceiver receiver = new BlockedReceiver();
+		ReceiverLane lane = new RingReceiverLane(receiver, 2, OverflowPolicy.BLOCK, 1);
+		lane.start("test-lane");
+		lane.offer(new MarketDataImpl("TEST1", 1, 1));
+		assertTrue(receiver.firstReceived.await(1, TimeUnit.SECONDS));
+		lane.offer(new MarketDataImpl("TEST2", 2, 2));
+		lane.offer(new MarketDataImpl("TEST3", 3, 3));
+		Thread publisher = new Thread(() -> lane.offer(new MarketDataImpl("TEST4", 4, 4)));
+		publisher.start();
+		publisher.join(100);
+		// publisher waits for the receiver
+		assertTrue(publisher.isAlive());
+		receiver.release.countDown();
+		publisher.join(1000);
+		lane.stop();
+		Thread.sleep(100);
+		assertEquals(Arrays.asList("TEST1=1.0", "TEST2=2.0", "TEST3=3.0", "TEST4=4.0"), receiver.received);
+		assertEquals(0, lane.getNoOfDropped());
+	}
+	
+	@Test
+	public void testConflatingLaneKeepsLatestPerSymbol() throws Exception {
+		BlockedReceiver receiver = new BlockedReceiver();
+		SymbolRegistry symbolRegistry = new SymbolRegistry(Arrays.asList("TEST1", "TEST2", "TEST3"));
+		ReceiverLane lane = new ConflatingReceiverLane(receiver, symbolRegistry, 1);
+		lane.start("test-lane");
+		lane.offer(new MarketDataImpl("TEST1", 1, 1));
+		assertTrue(receiver.firstReceived.await(1, TimeUnit.SECONDS));
+		// receiver lags behind, backlog never exceeds no of symbols
+		for (int i = 2; i <= 1000; i++) {
+			lane.offer(new MarketDataImpl("TEST" + (i % 3 + 1), i, i));
+			assertTrue(lane.size() <= 3);
+		}
+		lane.offer(new MarketDataImpl("TEST4", 5, 5));
+		receiver.release.countDown();
+		lane.stop();
+		for (int i = 0; i < 100 && receiver.received.size() < 4; i++) {
+			Thread.sleep(10);
+		}
+		assertEquals(Arrays.asList("TEST1=1.0", "TEST3=998.0", "TEST1=999.0", "TEST2=1000.0"), receiver.received);
+		assertEquals(1, lane.getNoOfDropped());
+		assertEquals(996, lane.getNoOfConflated());
+	}
+	
+	private void testMergeAggregates(ReceiverLane lane, BlockedReceiver receiver) throws Exception {
+		lane.start("test-lane");
+		lane.offer(new MarketDataImpl("TEST1", 1, 1));
+		assertTrue(receiver.firstReceived.await(1, TimeUnit.SECONDS));
+		lane.offer(new AggregatedMarketDataImpl("TEST2", 10.5, 2, 2, 10.0, 11.0, 10.0, 3, 100, 10.4));
+		lane.offer(new AggregatedMarketDataImpl("TEST2", 9.5, 3, 3, 10.5, 10.5, 9.0, 2, 0, Double.NaN));
+		lane.offer(new AggregatedMarketDataImpl("TEST2", 9.8, 4, 4, 9.5, 9.9, 9.5, 1, 300, 9.8));
+		receiver.release.countDown();
+		lane.stop();
+		for (int i = 0; i < 100 && receiver.receivedData.size() < 2; i++) {
+			Thread.sleep(10);
+		}
+		assertEquals(2, receiver.receivedData.size());
+		assertEquals(2, lane.getNoOfConflated());
+		// as if aggregated between two publishes
+		AggregatedMarketData data = (AggregatedMarketData) receiver.receivedData.get(1);
+		assertTrue(9.8 == data.getPrice());
+		assertEquals(4, data.getUpdateTime());
+		assertTrue(10.0 == data.getOpen());
+		assertTrue(11.0 == data.getHigh());
+		assertTrue(9.0 == data.getLow());
+		assertEquals(6, data.getTickCount());
+		assertTrue(400 == data.getVolume());
+		assertEquals((10.4 * 100 + 9.8 * 300) / 400, data.getVwap(), 1e-9);
+	}
+	
+	@Test
+	public void testConflateMergesAggregates() throws Exception {
+		BlockedReceiver receiver = new BlockedReceiver();
+		SymbolRegistry symbolRegistry = new SymbolRegistry(Arrays.asList("TEST1", "TEST2"));
+		testMergeAggregates(new RingReceiverLane(receiver, 1, OverflowPolicy.CONFLATE, 1, symbolRegistry), receiver);
+	}
+	
+	@Test
+	public void testConflatingLaneMergesAggregates() throws Exception {
+		BlockedReceiver receiver = new BlockedReceiver();
+		SymbolRegistry symbolRegistry = new SymbolRegistry(Arrays.asList("TEST1", "TEST2"));
+		testMergeAggregates(new ConflatingReceiverLane(receiver, symbolRegistry, 1), receiver);
+	}
+	
+	@Test
+	public void testBatchDelivery() throws Exception {
+		BlockedReceiver receiver = new BlockedReceiver();
+		ReceiverLane lane = new RingReceiverLane(receiver, 8, OverflowPolicy.BLOCK, 4);
+		lane.start("test-lane");
+		lane.offer(new MarketDataImpl("TEST0", 0, 0));
+		assertTrue(receiver.firstReceived.await(1, TimeUnit.SECONDS));
+		for (int i = 1; i <= 6; i++) {
+			lane.offer(new MarketDataImpl("TEST" + i, i, i));
+		}
+		receiver.release.countDown();
+		lane.stop();
+		Thread.sleep(100);
+		assertEquals(7, receiver.received.size());
+		assertEquals("TEST6=6.0", receiver.received.get(6));
+		assertEquals(Arrays.asList(1, 4, 2), receiver.batchSizes);
+	}
+
+	@Test
+	public void testVirtualThreadsWithBoundedDeliveries() throws Exception {
+		final int noOfReceivers = 300;
+		final int noOfUpdates = 5;
+		final int maxConcurrentDeliveries = 20;
+		SymbolRegistry symbolRegistry = new SymbolRegistry(Arrays.asList("TEST1"));
+		List<Receiver> receivers = new ArrayList<>();
+		List<List<Double>> received = new ArrayList<>();
+		AtomicInteger inProgress = new AtomicInteger();
+		AtomicInteger maxInProgress = new AtomicInteger();
+		CountDownLatch allReceived = new CountDownLatch(noOfReceivers * noOfUpdates);
+		List<Boolean> virtual = Collections.synchronizedList(new ArrayList<>());
+		for (int i = 0; i < noOfReceivers; i++) {
+			List<Double> prices = Collections.synchronizedList(new ArrayList<>());
+			received.add(prices);
+			receivers.add(data -> {
+				int n = inProgress.incrementAndGet();
+				maxInProgress.accumulateAndGet(n, Math::max);
+				virtual.add(Thread.currentThread().isVirtual());
+				try {
+					// blocking I/O
+					Thread.sleep(5);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				prices.add(data.getPrice());
+				inProgress.decrementAndGet();
+				allReceived.countDown();
+			});
+		}
+		ReceiverDispatcher dispatcher = ReceiverDispatcher.create(receivers, Collections.emptyList(), symbolRegistry,
+				noOfUpdates, OverflowPolicy.BLOCK, 1, ReceiverThreadMode.VIRTUAL, maxConcurrentDeliveries);
+		dispatcher.start();
+		for (int i = 0; i < noOfUpdates; i++) {
+			dispatcher.dispatch(new MarketDataImpl("TEST1", i, i));
+		}
+		assertTrue(allReceived.await(30, TimeUnit.SECONDS));
+		dispatcher.stop();
+		assertTrue(maxInProgress.get() <= maxConcurrentDeliveries);
+		assertFalse(virtual.contains(Boolean.FALSE));
+		// in publish order for each receiver
+		for (List<Double> prices: received) {
+			assertEquals(Arrays.asList(0.0, 1.0, 2.0, 3.0, 4.0), prices);
+		}
+	}
+}
@@ -0,0 +1,98 @@
+package com.richardchankiyin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.Test;
+
+public class ShardedMarketDataProcessorTest {
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testInvalidNoOfShards() {
+		new ShardedMarketDataProcessor(0);
+	}
+	
+	@Test(expected=IllegalStateException.class)
+	public void testOnMessageBeforeStart() {
+		ShardedMarketDataProcessor sharded = new ShardedMarketDataProcessor(2);
+		sharded.onMessage(new MarketDataImpl("TEST1", 10.1, 1));
+	}
+	
+	@Test
+	public void testSymbolsPartitioned() {
+		ShardedMarketDataProcessor sharded = new ShardedMarketDataProcessor(4);
+		List<String> symbols = new ArrayList<>();
+		for (int i = 0; i < 400; i++) {
+			symbols.add("TEST" + i);
+		}
+		sharded.loadSymbols(symbols);
+		int noOfSymbols = 0;
+		for (int i = 0; i < sharded.getNoOfShards(); i++) {
+			int size = sharded.getShard(i).getSymbolRegistry().size();
+			// reasonably balanced
+			assertTrue(size > 50);
+			noOfSymbols += size;
+		}
+		assertEquals(400, noOfSymbols);
+		for (String symbol: symbols) {
+			assertTrue(sharded.getShard(symbol).getSymbolId(symbol) != SymbolRegistry.SYMBOL_ID_UNKNOWN);
+		}
+	}
+	
+	@Test
+	public void testThrottlePolicySharedByShards() {
+		ShardedMarketDataProcessor sharded = new ShardedMarketDataProcessor(2);
+		sharded.setThrottlePolicy(new ThrottlePolicy(10, 300, 0).withSymbolMinPublishInterval("TEST1", 100));
+		RateLimiter rateLimiter = sharded.getRateLimiter();
+		assertTrue(rateLimiter instanceof ConcurrentSlidingWindowRateLimiter);
+		assertEquals(10, rateLimiter.getMaxPermits());
+		for (int i = 0; i < sharded.getNoOfShards(); i++) {
+			ThrottlePolicy policy = sharded.getShard(i).getThrottlePolicy();
+			assertEquals(100, policy.getMinPublishIntervalMillis("TEST1"));
+			assertSame(rateLimiter, policy.newRateLimiter(null));
+		}
+	}
+	
+	@Test
+	public void testGlobalLimitAcrossShards() throws Exception {
+		final int maxPermits = 10;
+		ShardedMarketDataProcessor sharded = new ShardedMarketDataProcessor(4);
+		List<String> symbols = new ArrayList<>();
+		for (int i = 0; i < 30; i++) {
+			symbols.add("TEST" + i);
+		}
+		sharded.loadSymbols(symbols);
+		Set<String> symbolsReceived = ConcurrentHashMap.newKeySet();
+		Set<String> symbolsConflated = ConcurrentHashMap.newKeySet();
+		sharded.registerReceiver(data -> symbolsReceived.add(data.getSymbol()));
+		sharded.registerReceiver(data -> symbolsConflated.add(data.getSymbol()), true);
+		sharded.setRateLimiter(new ConcurrentSlidingWindowRateLimiter(maxPermits, 300));
+		sharded.start();
+		final long updateTime = System.currentTimeMillis();
+		for (String symbol: symbols) {
+			sharded.onMessage(new MarketDataImpl(symbol, 10.1, updateTime));
+		}
+		Thread.sleep(150);
+		// only the permits of the first window are taken by all shards
+		assertEquals(maxPermits, symbolsReceived.size());
+		for (int i = 0; i < 40 && symbolsConflated.size() < symbols.size(); i++) {
+			Thread.sleep(50);
+		}
+		assertEquals(symbols.size(), symbolsReceived.size());
+		assertEquals(symbols.size(), symbolsConflated.size());
+		assertTrue(10.1 == sharded.getCache("TEST1").getPrice());
+		sharded.addSymbol("TEST100");
+		sharded.onMessage(new MarketDataImpl("TEST100", 10.2, updateTime));
+		assertTrue(10.2 == sharded.getCache("TEST100").getPrice());
+		assertTrue(sharded.removeSymbol("TEST100"));
+		assertNull(sharded.getCache("TEST100"));
+		sharded.stop();
+	}
+}
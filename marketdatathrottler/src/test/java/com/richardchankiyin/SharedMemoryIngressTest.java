@@ -0,0 +1,160 @@
+package com.richardchankiyin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SharedMemoryIngressTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testPollFromWriter() throws Exception {
+		Path file = folder.getRoot().toPath().resolve("ingress.ring");
+		MarketDataProcessorImpl impl = new MarketDataProcessorImpl();
+		impl.loadSymbols(Arrays.asList("TEST1","TEST2","TEST3"));
+		impl.setThrottlePolicy(new ThrottlePolicy(1000000, 1000, 0));
+		List<MarketData> received = new CopyOnWriteArrayList<>();
+		impl.registerReceiver(received::add);
+		impl.start();
+		final long updateTime = impl.getCurrentTimeInMilliseconds();
+		try (SharedMemoryIngress ingress = new SharedMemoryIngress(file, impl, 4);
+				SharedMemoryRingWriter writer = new SharedMemoryRingWriter(file)) {
+			assertEquals(4, writer.capacity());
+			int test1 = writer.getSymbolId("TEST1");
+			assertEquals(impl.getSymbolId("TEST1"), test1);
+			assertTrue(writer.offer(test1, 10.1, updateTime));
+			assertTrue(writer.offer("TEST2", 10.2, updateTime));
+			// added after the ring is created, written inline
+			impl.addSymbol("TEST4");
+			assertEquals(SymbolRegistry.SYMBOL_ID_UNKNOWN, writer.getSymbolId("TEST4"));
+			assertTrue(writer.offer("TEST4", 10.4, updateTime));
+			// older than the earlier one of the same poll, stale
+			assertTrue(writer.offer(test1, 10.11, updateTime - 1));
+			assertFalse(writer.offer(test1, 10.12, updateTime + 1));
+			assertEquals(4, writer.size());
+			assertTrue(ingress.hasRecords());
+			assertEquals(4, ingress.poll(10));
+			assertEquals(1, ingress.getNoOfRejectedStale());
+			assertFalse(ingress.hasRecords());
+			// room again
+			assertTrue(writer.offer(test1, 10.11, updateTime - 1));
+			assertTrue(writer.offer(test1, 10.12, updateTime + 1));
+			assertEquals(1, ingress.poll(1));
+			assertEquals(2, ingress.getNoOfRejectedStale());
+			assertEquals(1, ingress.poll(10));
+			assertEquals(6, ingress.getNoOfRecords());
+		}
+		for (int i = 0; i < 40 && received.size() < 4; i++) {
+			Thread.sleep(50);
+		}
+		assertTrue(10.12 == impl.getCache("TEST1").getPrice());
+		assertTrue(10.2 == impl.getCache("TEST2").getPrice());
+		assertTrue(10.4 == impl.getCache("TEST4").getPrice());
+		assertTrue(received.size() >= 3);
+		impl.stop();
+	}
+
+	@Test
+	public void testPollingThread() throws Exception {
+		Path file = folder.getRoot().toPath().resolve("ingress.ring");
+		MarketDataProcessorImpl impl = new MarketDataProcessorImpl();
+		impl.loadSymbols(Arrays.asList("TEST1","TEST2","TEST3"));
+		impl.start();
+		final long updateTime = impl.getCurrentTimeInMilliseconds();
+		final int noOfTicks = 100000;
+		try (SharedMemoryIngress ingress = new SharedMemoryIngress(file, impl, 64)) {
+			ingress.start("shared-memory-ingress");
+			try (SharedMemoryRingWriter writer = new SharedMemoryRingWriter(file)) {
+				for (int i = 0; i < noOfTicks; i++) {
+					while (!writer.offer(i % 3, i, updateTime + i)) {
+						Thread.yield();
+					}
+				}
+			}
+			ingress.stop();
+			assertEquals(noOfTicks, ingress.getNoOfRecords());
+			assertEquals(0, ingress.getNoOfRejectedStale());
+		}
+		assertTrue(noOfTicks - 1 == impl.getCache((noOfTicks - 1) % 3).getPrice());
+		assertEquals(updateTime + noOfTicks - 1, impl.getCache((noOfTicks - 1) % 3).getUpdateTime());
+		impl.stop();
+	}
+
+	@Test
+	public void testPollingThreadSurvivesFailure() throws Exception {
+		Path file = folder.getRoot().toPath().resolve("ingress.ring");
+		MarketDataProcessorImpl impl = new MarketDataProcessorImpl();
+		impl.loadSymbols(Arrays.asList("TEST1","TEST2","TEST3"));
+		try (SharedMemoryIngress ingress = new SharedMemoryIngress(file, impl, 4);
+				SharedMemoryRingWriter writer = new SharedMemoryRingWriter(file)) {
+			ingress.start("shared-memory-ingress");
+			// not started, onMessages throws
+			assertTrue(writer.offer(0, 10.1, 1));
+			for (int i = 0; i < 40 && ingress.getNoOfDropped() < 1; i++) {
+				Thread.sleep(50);
+			}
+			assertEquals(1, ingress.getNoOfDropped());
+			assertFalse(ingress.hasRecords());
+			impl.start();
+			final long updateTime = impl.getCurrentTimeInMilliseconds();
+			assertTrue(writer.offer(0, 10.2, updateTime));
+			for (int i = 0; i < 40 && ingress.getNoOfRecords() < 2; i++) {
+				Thread.sleep(50);
+			}
+			ingress.stop();
+			assertEquals(2, ingress.getNoOfRecords());
+			assertEquals(1, ingress.getNoOfDropped());
+		}
+		assertTrue(10.2 == impl.getCache(0).getPrice());
+		impl.stop();
+	}
+
+	@Test
+	public void testPollQuantity() throws Exception {
+		Path file = folder.getRoot().toPath().resolve("ingress.ring");
+		MarketDataProcessorImpl impl = new MarketDataProcessorImpl();
+		impl.loadSymbols(Arrays.asList("TEST1","TEST2","TEST3"));
+		impl.setAggregation(true);
+		impl.setThrottlePolicy(new ThrottlePolicy(1000000, 1000, 0));
+		List<MarketData> received = new CopyOnWriteArrayList<>();
+		impl.registerReceiver(received::add);
+		impl.start();
+		final long updateTime = impl.getCurrentTimeInMilliseconds();
+		try (SharedMemoryIngress ingress = new SharedMemoryIngress(file, impl, 4);
+				SharedMemoryRingWriter writer = new SharedMemoryRingWriter(file)) {
+			assertTrue(writer.offer(writer.getSymbolId("TEST1"), 10.0, 100, updateTime));
+			impl.addSymbol("TEST4");
+			// inline symbol
+			assertTrue(writer.offer("TEST4", 10.4, 300, updateTime));
+			assertEquals(2, ingress.poll(10));
+		}
+		for (int i = 0; i < 40 && received.size() < 2; i++) {
+			Thread.sleep(50);
+		}
+		impl.stop();
+		assertEquals(2, received.size());
+		for (MarketData data : received) {
+			assertTrue((data.getSymbol().equals("TEST1") ? 100 : 300) == ((AggregatedMarketData) data).getVolume());
+		}
+	}
+
+	@Test(expected=IOException.class)
+	public void testRingNotCreated() throws Exception {
+		Path file = folder.getRoot().toPath().resolve("ingress.ring");
+		Files.createFile(file);
+		new SharedMemoryRingWriter(file);
+	}
+}
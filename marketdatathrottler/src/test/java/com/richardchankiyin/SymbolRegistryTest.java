@@ -0,0 +1,69 @@
+package com.richardchankiyin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class SymbolRegistryTest {
+
+	@Test
+	public void testAddAndRemove() {
+		SymbolRegistry registry = new SymbolRegistry(Arrays.asList("TEST1", "TEST2"));
+		assertEquals(2, registry.addSymbol("TEST3"));
+		assertEquals(0, registry.addSymbol("TEST1"));
+		assertEquals(1, registry.removeSymbol("TEST2"));
+		assertEquals(SymbolRegistry.SYMBOL_ID_UNKNOWN, registry.removeSymbol("TEST2"));
+		assertEquals(SymbolRegistry.SYMBOL_ID_UNKNOWN, registry.getSymbolId("TEST2"));
+		assertFalse(registry.isValid(1));
+		assertNull(registry.getSymbol(1));
+		// id of removed symbol is not reused
+		assertEquals(3, registry.addSymbol("TEST2"));
+		assertEquals(4, registry.size());
+		assertEquals(3, registry.getNoOfSymbols());
+	}
+	
+	@Test
+	public void testGrowBeyondSegments() {
+		SymbolRegistry registry = new SymbolRegistry(Arrays.asList());
+		final int noOfSymbols = SegmentedArray.SEGMENT_SIZE * 3 + 1;
+		for (int i = 0; i < noOfSymbols; i++) {
+			assertEquals(i, registry.addSymbol("TEST" + i));
+		}
+		for (int i = 0; i < noOfSymbols; i++) {
+			assertTrue(registry.isValid(i));
+			assertEquals("TEST" + i, registry.getSymbol(i));
+			assertEquals(i, registry.getSymbolId("TEST" + i));
+		}
+		assertFalse(registry.isValid(noOfSymbols));
+		assertFalse(registry.isValid(-1));
+	}
+	
+	@Test
+	public void testConcurrentLookupWhileAdding() throws Exception {
+		final SymbolRegistry registry = new SymbolRegistry(Arrays.asList("TEST0"));
+		final int noOfSymbols = 5000;
+		Thread adder = new Thread(() -> {
+			for (int i = 1; i < noOfSymbols; i++) {
+				registry.addSymbol("TEST" + i);
+			}
+		});
+		adder.start();
+		int lookups = 0;
+		while (adder.isAlive() || lookups == 0) {
+			int size = registry.size();
+			// every assigned id resolves to its symbol
+			for (int i = Math.max(0, size - 10); i < size; i++) {
+				assertEquals(i, registry.getSymbolId(registry.getSymbol(i)));
+			}
+			lookups++;
+			Thread.yield();
+		}
+		adder.join();
+		assertEquals(noOfSymbols, registry.size());
+	}
+}
@@ -0,0 +1,142 @@
+package com.richardchankiyin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.Test;
+
+public class ThrottlePolicyTest {
+
+	@Test
+	public void testMinPublishIntervalResolution() {
+		ThrottlePolicy policy = new ThrottlePolicy(100, 1000, 1000)
+				.withSymbolGroup("TEST1", "TIER1")
+				.withSymbolGroup("TEST2", "TIER1")
+				.withGroupMinPublishInterval("TIER1", 100)
+				.withSymbolMinPublishInterval("TEST2", 10);
+		assertEquals(100, policy.getMinPublishIntervalMillis("TEST1"));
+		assertEquals(10, policy.getMinPublishIntervalMillis("TEST2"));
+		assertEquals(1000, policy.getMinPublishIntervalMillis("TEST3"));
+		assertEquals("TIER1", policy.getSymbolGroup("TEST1"));
+		// immutable
+		ThrottlePolicy changed = policy.withMinPublishInterval(0).withGlobalRate(10, 500);
+		assertEquals(0, changed.getMinPublishIntervalMillis("TEST3"));
+		assertEquals(100, changed.getMinPublishIntervalMillis("TEST1"));
+		assertEquals(10, changed.getMaxPublishes());
+		assertEquals(500, changed.getWindowMillis());
+		assertEquals(1000, policy.getMinPublishIntervalMillis("TEST3"));
+		assertEquals(100, policy.getMaxPublishes());
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testNegativeInterval() {
+		ThrottlePolicy.DEFAULT.withSymbolMinPublishInterval("TEST1", -1);
+	}
+
+	@Test
+	public void testSlidingWindowCarriedOver() {
+		SlidingWindowRateLimiter limiter = new SlidingWindowRateLimiter(3, 1000);
+		assertTrue(limiter.tryAcquire(0));
+		assertTrue(limiter.tryAcquire(10));
+		assertTrue(limiter.tryAcquire(20));
+		RateLimiter raised = new ThrottlePolicy(4, 1000, 0).newRateLimiter(limiter);
+		assertTrue(raised.tryAcquire(30));
+		assertFalse(raised.tryAcquire(40));
+		assertEquals(1000, raised.nextPermitTime(40));
+		// lowered limit keeps the most recent permits only
+		RateLimiter lowered = new ThrottlePolicy(2, 1000, 0).newRateLimiter(raised);
+		assertEquals(1020, lowered.nextPermitTime(40));
+		assertTrue(lowered.tryAcquire(1020));
+	}
+
+	@Test
+	public void testConcurrentSlidingWindowCarriedOver() {
+		ConcurrentSlidingWindowRateLimiter limiter = new ConcurrentSlidingWindowRateLimiter(3, 1000);
+		assertTrue(limiter.tryAcquire(0));
+		assertTrue(limiter.tryAcquire(10));
+		RateLimiter raised = new ConcurrentSlidingWindowRateLimiter(3, 1000, limiter);
+		assertTrue(raised.tryAcquire(20));
+		assertFalse(raised.tryAcquire(30));
+		RateLimiter lowered = new ConcurrentSlidingWindowRateLimiter(2, 1000, (ConcurrentSlidingWindowRateLimiter) raised);
+		assertEquals(1010, lowered.nextPermitTime(30));
+	}
+
+	@Test
+	public void testPolicyChangedAfterStart() throws Exception {
+		MarketDataProcessorImpl impl = new MarketDataProcessorImpl();
+		List<String> symbols = Arrays.asList("TEST1","TEST2","TEST3","TEST4","TEST5");
+		impl.loadSymbols(symbols);
+		List<String> symbolsReceived = new CopyOnWriteArrayList<>();
+		impl.registerReceiver(data -> symbolsReceived.add(data.getSymbol()));
+		impl.setThrottlePolicy(new ThrottlePolicy(2, 60000, 60000));
+		impl.start();
+		final long updateTime = impl.getCurrentTimeInMilliseconds();
+		for (String symbol: symbols) {
+			impl.onMessage(new MarketDataImpl(symbol, 10.1, updateTime));
+		}
+		Thread.sleep(100);
+		assertEquals(2, symbolsReceived.size());
+		// permits taken before the change are still in the window
+		ThrottlePolicy raised = impl.getThrottlePolicy().withGlobalRate(6, 60000);
+		impl.setThrottlePolicy(raised);
+		for (int i = 0; i < 40 && symbolsReceived.size() < symbols.size(); i++) {
+			Thread.sleep(50);
+		}
+		assertSame(raised, impl.getThrottlePolicy());
+		assertEquals(symbols.size(), symbolsReceived.size());
+		// TEST1 is in cooldown until its interval is overridden
+		impl.onMessage(new MarketDataImpl("TEST1", 10.2, updateTime + 1));
+		Thread.sleep(100);
+		assertEquals(symbols.size(), symbolsReceived.size());
+		impl.setThrottlePolicy(raised.withSymbolMinPublishInterval("TEST1", 0));
+		for (int i = 0; i < 40 && symbolsReceived.size() == symbols.size(); i++) {
+			Thread.sleep(50);
+		}
+		assertEquals(symbols.size() + 1, symbolsReceived.size());
+		assertTrue(10.2 == impl.getCache("TEST1").getPrice());
+		// the global rate is used up
+		impl.onMessage(new MarketDataImpl("TEST2", 10.2, updateTime + 1));
+		impl.setThrottlePolicy(impl.getThrottlePolicy().withMinPublishInterval(0));
+		Thread.sleep(100);
+		assertEquals(symbols.size() + 1, symbolsReceived.size());
+		impl.stop();
+	}
+
+	@Test
+	public void testFixedRateLimiterReplacedOnRateChange() throws Exception {
+		RateLimiter fixed = new TokenBucketRateLimiter(1, 60000);
+		ThrottlePolicy.RateLimiterFactory factory = ThrottlePolicy.fixed(fixed);
+		assertSame(fixed, factory.newRateLimiter(1, 60000, null));
+		RateLimiter changed = factory.newRateLimiter(5, 60000, fixed);
+		assertTrue(changed instanceof SlidingWindowRateLimiter);
+		assertEquals(5, changed.getMaxPermits());
+		
+		MarketDataProcessorImpl impl = new MarketDataProcessorImpl();
+		List<String> symbols = Arrays.asList("TEST1","TEST2","TEST3","TEST4","TEST5");
+		impl.loadSymbols(symbols);
+		List<String> symbolsReceived = new CopyOnWriteArrayList<>();
+		impl.registerReceiver(data -> symbolsReceived.add(data.getSymbol()));
+		impl.setRateLimiter(fixed);
+		impl.start();
+		final long updateTime = impl.getCurrentTimeInMilliseconds();
+		for (String symbol: symbols) {
+			impl.onMessage(new MarketDataImpl(symbol, 10.1, updateTime));
+		}
+		Thread.sleep(100);
+		assertEquals(1, symbolsReceived.size());
+		// the rate reported is the rate enforced
+		impl.setThrottlePolicy(impl.getThrottlePolicy().withGlobalRate(5, 60000));
+		for (int i = 0; i < 40 && symbolsReceived.size() < symbols.size(); i++) {
+			Thread.sleep(50);
+		}
+		assertEquals(symbols.size(), symbolsReceived.size());
+		assertEquals(5, impl.getRateLimiter().getMaxPermits());
+		impl.stop();
+	}
+}